@@ -0,0 +1,23 @@
+package org.apache.lucene.codecs.lucene84;
+
+import org.apache.lucene.store.DataInput;
+import org.apache.lucene.store.DataOutput;
+
+import java.io.IOException;
+
+/**
+ * Opens up the package-private {@link PForUtil} to the benchmarks.
+ */
+public final class PForUtilAccess {
+    public static final int BLOCK_SIZE = ForUtil.BLOCK_SIZE;
+
+    private final PForUtil pforUtil = new PForUtil(new ForUtil());
+
+    public void encode(long[] longs, DataOutput out) throws IOException {
+        pforUtil.encode(longs, out);
+    }
+
+    public void decode(DataInput in, long[] longs) throws IOException {
+        pforUtil.decode(in, longs);
+    }
+}
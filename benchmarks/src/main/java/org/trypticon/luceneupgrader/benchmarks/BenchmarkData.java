@@ -0,0 +1,218 @@
+package org.trypticon.luceneupgrader.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Generates the data the benchmarks run over. Everything comes from a fixed seed, so the benchmarks
+ * for each Lucene version get exactly the same input and their results can be compared directly.
+ */
+public class BenchmarkData {
+    private static final long SEED = 0x5EED_1DEAL;
+
+    /**
+     * How many values each variable-length and packed integer benchmark reads.
+     */
+    public static final int VALUE_COUNT = 4096;
+
+    /**
+     * Size of a stored fields chunk, as used by the stored fields formats from Lucene 4.1 onwards.
+     */
+    public static final int CHUNK_SIZE = 1 << 14;
+
+    /**
+     * How many values there are in one block of postings.
+     */
+    public static final int BLOCK_SIZE = 128;
+
+    /**
+     * How many blocks of postings each postings benchmark reads or writes.
+     */
+    public static final int BLOCK_COUNT = 256;
+
+    /**
+     * How many terms there are in the term dictionary benchmarks.
+     */
+    public static final int TERM_COUNT = 100_000;
+
+    /**
+     * How many points there are in the points benchmarks.
+     */
+    public static final int POINT_COUNT = 100_000;
+
+    /**
+     * How many bytes each dimension of a point has.
+     */
+    public static final int BYTES_PER_DIM = 4;
+
+    private static final String[] WORDS = words();
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Gets the ints for the variable-length int benchmarks. Their lengths are spread evenly,
+     * so every encoded length from 1 to 5 bytes turns up.
+     *
+     * @return the values.
+     */
+    public static int[] ints() {
+        Random random = new Random(SEED);
+        int[] values = new int[VALUE_COUNT];
+        for (int i = 0; i < values.length; i++) {
+            int bits = 1 + random.nextInt(31);
+            values[i] = random.nextInt(1 << (bits - 1)) | (1 << (bits - 1));
+        }
+        return values;
+    }
+
+    /**
+     * Gets the longs for the variable-length long benchmarks, spread the same way as {@link #ints()}.
+     *
+     * @return the values.
+     */
+    public static long[] longs() {
+        Random random = new Random(SEED);
+        long[] values = new long[VALUE_COUNT];
+        for (int i = 0; i < values.length; i++) {
+            int bits = 1 + random.nextInt(63);
+            values[i] = (random.nextLong() & ((1L << (bits - 1)) - 1)) | (1L << (bits - 1));
+        }
+        return values;
+    }
+
+    /**
+     * Encodes ints the way {@code DataOutput.writeVInt} does in every version.
+     *
+     * @param values the values.
+     * @return the encoded bytes.
+     */
+    public static byte[] vInts(int[] values) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int value : values) {
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes longs the way {@code DataOutput.writeVLong} does in every version.
+     *
+     * @param values the values.
+     * @return the encoded bytes.
+     */
+    public static byte[] vLongs(long[] values) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (long value : values) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Gets packed blocks holding {@link #VALUE_COUNT} values. Every bit pattern is a valid
+     * packed value, so these are just random bytes.
+     *
+     * @param bitsPerValue the number of bits per value.
+     * @return the blocks.
+     */
+    public static byte[] packedBlocks(int bitsPerValue) {
+        Random random = new Random(SEED + bitsPerValue);
+        byte[] blocks = new byte[VALUE_COUNT * bitsPerValue / 8];
+        random.nextBytes(blocks);
+        return blocks;
+    }
+
+    /**
+     * Gets a chunk of stored field text. Words are picked from a small vocabulary with a skewed
+     * distribution, so it compresses about as well as real text.
+     *
+     * @return the UTF-8 bytes of the chunk.
+     */
+    public static byte[] storedFieldsChunk() {
+        Random random = new Random(SEED);
+        StringBuilder builder = new StringBuilder(CHUNK_SIZE);
+        while (builder.length() < CHUNK_SIZE) {
+            builder.append(randomWord(random)).append(random.nextInt(12) == 0 ? ". " : " ");
+        }
+        builder.setLength(CHUNK_SIZE);
+        return builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Gets blocks of postings. Each block is given its own number of bits, as delta-coded doc IDs
+     * and frequencies get in practice, so every block size the encoders support turns up.
+     *
+     * @return the blocks.
+     */
+    public static int[][] postingsBlocks() {
+        Random random = new Random(SEED);
+        int[][] blocks = new int[BLOCK_COUNT][BLOCK_SIZE];
+        for (int[] block : blocks) {
+            int bits = 1 + random.nextInt(24);
+            for (int i = 0; i < block.length; i++) {
+                block[i] = random.nextInt(1 << bits);
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * Gets the terms for the term dictionary benchmarks, in sorted order. The terms are words
+     * with suffixes, so neighbouring terms share prefixes the way they do in real indexes.
+     *
+     * @return the terms.
+     */
+    public static List<String> sortedTerms() {
+        Random random = new Random(SEED);
+        TreeSet<String> terms = new TreeSet<>();
+        while (terms.size() < TERM_COUNT) {
+            terms.add(randomWord(random) + Integer.toString(random.nextInt(10_000), 36));
+        }
+        return new ArrayList<>(terms);
+    }
+
+    /**
+     * Gets the points for the points benchmarks, packed one after another.
+     *
+     * @param numDims the number of dimensions.
+     * @return the packed points.
+     */
+    public static byte[] points(int numDims) {
+        Random random = new Random(SEED + numDims);
+        byte[] points = new byte[POINT_COUNT * numDims * BYTES_PER_DIM];
+        random.nextBytes(points);
+        return points;
+    }
+
+    private static String randomWord(Random random) {
+        // Squaring skews the choice towards the start of the vocabulary.
+        double skew = random.nextDouble();
+        return WORDS[(int) (skew * skew * WORDS.length)];
+    }
+
+    private static String[] words() {
+        Random random = new Random(SEED);
+        String[] words = new String[2000];
+        for (int i = 0; i < words.length; i++) {
+            char[] chars = new char[2 + random.nextInt(9)];
+            for (int j = 0; j < chars.length; j++) {
+                chars[j] = (char) ('a' + random.nextInt(26));
+            }
+            words[i] = new String(chars);
+        }
+        return words;
+    }
+}
@@ -0,0 +1,32 @@
+package org.trypticon.luceneupgrader.benchmarks;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Generates an index in the format of one version of Lucene, for {@link UpgradeBenchmark} to upgrade.
+ * Every version indexes the same fields, as far as it supports them:
+ * <ul>
+ *     <li>{@code id}, {@code group} and {@code category}, as stored, untokenised strings.</li>
+ *     <li>{@code title}, as stored text.</li>
+ *     <li>{@code body}, as stored text with payloads and term vectors with positions and offsets.</li>
+ *     <li>{@code tags}, as a multi-valued string.</li>
+ *     <li>{@code timestamp} and {@code price}, as trie numerics up to Lucene 6 and points from Lucene 6.</li>
+ *     <li>Doc values from Lucene 4 on: numeric {@code timestamp_dv}, sorted {@code category_dv},
+ *         sorted set {@code tags_dv}, sorted numeric {@code price_dv} and binary {@code hash_dv}.</li>
+ * </ul>
+ * Once every document has been added, the ones in {@link SyntheticCorpus#DELETED_GROUP} are deleted.
+ */
+public interface IndexGenerator {
+
+    /**
+     * Generates the index.
+     *
+     * @param directory the directory to generate the index in, which shouldn't already have one.
+     * @param corpus the corpus to take the documents from.
+     * @param docCount the number of documents to add, counting the ones which are deleted.
+     * @throws IOException if an error occurs writing the index.
+     */
+    void generate(@Nonnull Path directory, @Nonnull SyntheticCorpus corpus, int docCount) throws IOException;
+}
@@ -0,0 +1,101 @@
+package org.trypticon.luceneupgrader.benchmarks;
+
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Makes up documents for {@link UpgradeBenchmark}. Each document comes from the seed and its own ID,
+ * so the same seed always gives the same documents, and the index generated for each version holds
+ * the same content.
+ */
+public class SyntheticCorpus {
+
+    /**
+     * How many groups the documents are spread over.
+     */
+    public static final int GROUP_COUNT = 20;
+
+    /**
+     * The group whose documents get deleted once the index has been generated, one in every
+     * {@link #GROUP_COUNT}.
+     */
+    public static final String DELETED_GROUP = "7";
+
+    private static final int VOCABULARY_SIZE = 50_000;
+    private static final int TAG_COUNT = 200;
+    private static final int CATEGORY_COUNT = 100;
+    private static final long FIRST_TIMESTAMP = 946684800000L; // 2000-01-01
+    private static final long TIMESTAMP_RANGE = 20L * 365 * 24 * 60 * 60 * 1000;
+
+    private final long seed;
+    private final int bodyWords;
+    private final String[] vocabulary;
+
+    /**
+     * Constructs the corpus.
+     *
+     * @param seed the seed everything is made up from.
+     * @param bodyWords the average number of words in a document's body.
+     */
+    public SyntheticCorpus(long seed, int bodyWords) {
+        this.seed = seed;
+        this.bodyWords = bodyWords;
+
+        Random random = new Random(seed);
+        Set<String> words = new LinkedHashSet<>();
+        while (words.size() < VOCABULARY_SIZE) {
+            char[] chars = new char[2 + random.nextInt(11)];
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = (char) ('a' + random.nextInt(26));
+            }
+            words.add(new String(chars));
+        }
+        vocabulary = words.toArray(new String[0]);
+    }
+
+    /**
+     * Makes up a document.
+     *
+     * @param id the ID of the document, from 0 up.
+     * @return the document.
+     */
+    public SyntheticDocument document(int id) {
+        Random random = new Random(seed * 31 + id);
+
+        String[] title = words(random, 3 + random.nextInt(8));
+        String[] body = words(random, bodyWords / 2 + random.nextInt(bodyWords + 1));
+        byte[][] bodyPayloads = new byte[body.length][];
+        for (int i = 0; i < body.length; i++) {
+            // Mostly one byte, like a weight, with the odd longer one.
+            bodyPayloads[i] = new byte[random.nextInt(16) == 0 ? 4 : 1];
+            random.nextBytes(bodyPayloads[i]);
+        }
+
+        Set<String> tags = new LinkedHashSet<>();
+        int tagCount = 1 + random.nextInt(5);
+        while (tags.size() < tagCount) {
+            tags.add("tag" + random.nextInt(TAG_COUNT));
+        }
+
+        String category = "category" + random.nextInt(CATEGORY_COUNT);
+        long timestamp = FIRST_TIMESTAMP + (long) (random.nextDouble() * TIMESTAMP_RANGE);
+        double price = random.nextInt(1_000_000) / 100.0;
+        byte[] hash = new byte[16];
+        random.nextBytes(hash);
+
+        return new SyntheticDocument(Integer.toString(id), Integer.toString(id % GROUP_COUNT), title, body,
+                                     bodyPayloads, tags.toArray(new String[0]), category, timestamp, price, hash);
+    }
+
+    private String[] words(Random random, int count) {
+        String[] words = new String[count];
+        for (int i = 0; i < count; i++) {
+            // Cubing skews the choice heavily towards the start of the vocabulary, so a few words are
+            // very common and most are rare, as in real text.
+            double skew = random.nextDouble();
+            words[i] = vocabulary[(int) (skew * skew * skew * vocabulary.length)];
+        }
+        return words;
+    }
+}
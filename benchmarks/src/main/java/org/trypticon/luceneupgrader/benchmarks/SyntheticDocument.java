@@ -0,0 +1,132 @@
+package org.trypticon.luceneupgrader.benchmarks;
+
+/**
+ * A made up document, which the generator for each version turns into a document of its own.
+ */
+public class SyntheticDocument {
+    private final String id;
+    private final String group;
+    private final String[] title;
+    private final String[] body;
+    private final byte[][] bodyPayloads;
+    private final String[] tags;
+    private final String category;
+    private final long timestamp;
+    private final double price;
+    private final byte[] hash;
+
+    SyntheticDocument(String id, String group, String[] title, String[] body, byte[][] bodyPayloads,
+                      String[] tags, String category, long timestamp, double price, byte[] hash) {
+        this.id = id;
+        this.group = group;
+        this.title = title;
+        this.body = body;
+        this.bodyPayloads = bodyPayloads;
+        this.tags = tags;
+        this.category = category;
+        this.timestamp = timestamp;
+        this.price = price;
+        this.hash = hash;
+    }
+
+    /**
+     * Gets the ID, which is unique to the document.
+     *
+     * @return the ID.
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Gets the group, which decides whether the document gets deleted.
+     *
+     * @return the group.
+     * @see SyntheticCorpus#DELETED_GROUP
+     */
+    public String getGroup() {
+        return group;
+    }
+
+    /**
+     * Gets the words of the title.
+     *
+     * @return the words.
+     */
+    public String[] getTitle() {
+        return title;
+    }
+
+    /**
+     * Gets the words of the body.
+     *
+     * @return the words.
+     */
+    public String[] getBody() {
+        return body;
+    }
+
+    /**
+     * Gets the payload for each word of the body.
+     *
+     * @return the payloads, one for each word.
+     */
+    public byte[][] getBodyPayloads() {
+        return bodyPayloads;
+    }
+
+    /**
+     * Gets the tags, for multi-valued fields.
+     *
+     * @return the tags, all different.
+     */
+    public String[] getTags() {
+        return tags;
+    }
+
+    /**
+     * Gets the category, for single-valued string fields.
+     *
+     * @return the category.
+     */
+    public String getCategory() {
+        return category;
+    }
+
+    /**
+     * Gets the timestamp, for long-valued fields.
+     *
+     * @return the timestamp in milliseconds.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Gets the price, for double-valued fields.
+     *
+     * @return the price.
+     */
+    public double getPrice() {
+        return price;
+    }
+
+    /**
+     * Gets the hash, for binary fields.
+     *
+     * @return the hash.
+     */
+    public byte[] getHash() {
+        return hash;
+    }
+
+    /**
+     * Joins words up into text, the way their offsets are worked out.
+     *
+     * @param words the words.
+     * @return the text, with a space between each word.
+     */
+    public static String join(String[] words) {
+        return String.join(" ", words);
+    }
+}
@@ -0,0 +1,210 @@
+package org.trypticon.luceneupgrader.benchmarks;
+
+import org.trypticon.luceneupgrader.FileUtils;
+import org.trypticon.luceneupgrader.IndexUpgrader;
+import org.trypticon.luceneupgrader.IndexUpgraderConfig;
+import org.trypticon.luceneupgrader.InfoStream;
+import org.trypticon.luceneupgrader.LuceneVersion;
+import org.trypticon.luceneupgrader.StepFinishedEvent;
+import org.trypticon.luceneupgrader.UpgradeListener;
+import org.trypticon.luceneupgrader.benchmarks.lucene3.IndexGenerator3;
+import org.trypticon.luceneupgrader.benchmarks.lucene4.IndexGenerator4;
+import org.trypticon.luceneupgrader.benchmarks.lucene5.IndexGenerator5;
+import org.trypticon.luceneupgrader.benchmarks.lucene6.IndexGenerator6;
+import org.trypticon.luceneupgrader.benchmarks.lucene7.IndexGenerator7;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Generates an index for each version of Lucene, upgrades each one to Lucene 8, and records how
+ * each step of the upgrade went.
+ * <p>
+ * Options:
+ * <dl>
+ *     <dt>{@code --versions 3,4,5,6,7}</dt>
+ *     <dd>The versions to generate indexes for and upgrade from.</dd>
+ *     <dt>{@code --docs 100000}</dt>
+ *     <dd>The number of documents in each index, counting the ones which get deleted.</dd>
+ *     <dt>{@code --words 200}</dt>
+ *     <dd>The average number of words in the body of each document.</dd>
+ *     <dt>{@code --seed 1}</dt>
+ *     <dd>The seed the documents are made up from.</dd>
+ *     <dt>{@code --work upgrade-benchmark}</dt>
+ *     <dd>The directory to generate and upgrade the indexes in. Generated indexes are kept there, and
+ *         used again by later runs with the same options, since big ones take a long time to generate.
+ *         Each upgrade works on a copy.</dd>
+ *     <dt>{@code --output <work>/results.csv}</dt>
+ *     <dd>The file to write the results to.</dd>
+ * </dl>
+ * The results have a line for each step of each upgrade, giving the version the upgrade started from,
+ * the options, the size of the generated index, then the step's own figures from its
+ * {@link StepFinishedEvent}.
+ */
+public class UpgradeBenchmark {
+    private static final String[] COLUMNS = {
+            "source_version", "docs", "words", "seed", "index_bytes",
+            "step", "step_count", "version", "segments", "step_docs", "elapsed_millis",
+            "bytes_read", "bytes_written", "peak_heap_bytes", "gc_count", "gc_millis", "failed"
+    };
+
+    private List<LuceneVersion> versions = Arrays.asList(LuceneVersion.VERSION_3, LuceneVersion.VERSION_4,
+                                                         LuceneVersion.VERSION_5, LuceneVersion.VERSION_6,
+                                                         LuceneVersion.VERSION_7);
+    private int docCount = 100_000;
+    private int bodyWords = 200;
+    private long seed = 1;
+    private Path work = Paths.get("upgrade-benchmark");
+    private Path output;
+
+    public static void main(String[] args) throws IOException {
+        UpgradeBenchmark benchmark = new UpgradeBenchmark();
+        for (int i = 0; i < args.length; i += 2) {
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("No value given for " + args[i]);
+            }
+            benchmark.setOption(args[i], args[i + 1]);
+        }
+        benchmark.run();
+    }
+
+    private void setOption(String name, String value) {
+        switch (name) {
+            case "--versions":
+                versions = new ArrayList<>();
+                for (String version : value.split(",")) {
+                    versions.add(LuceneVersion.valueOf("VERSION_" + version.trim()));
+                }
+                break;
+            case "--docs":
+                docCount = Integer.parseInt(value);
+                break;
+            case "--words":
+                bodyWords = Integer.parseInt(value);
+                break;
+            case "--seed":
+                seed = Long.parseLong(value);
+                break;
+            case "--work":
+                work = Paths.get(value);
+                break;
+            case "--output":
+                output = Paths.get(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown option: " + name);
+        }
+    }
+
+    private void run() throws IOException {
+        Files.createDirectories(work);
+        Path resultsFile = output != null ? output : work.resolve("results.csv");
+        SyntheticCorpus corpus = new SyntheticCorpus(seed, bodyWords);
+        Path index = work.resolve("upgrading");
+
+        try (PrintWriter results = new PrintWriter(Files.newBufferedWriter(resultsFile, StandardCharsets.UTF_8))) {
+            results.println(String.join(",", COLUMNS));
+            for (LuceneVersion version : versions) {
+                Path generated = generate(version, corpus);
+                long indexBytes = FileUtils.directorySize(generated);
+
+                if (Files.exists(index)) {
+                    FileUtils.insecureRecursiveDelete(index);
+                }
+                FileUtils.copyDirectory(generated, index);
+
+                List<StepFinishedEvent> steps = Collections.synchronizedList(new ArrayList<>());
+                IndexUpgraderConfig config = new IndexUpgraderConfig().setUpgradeListener(new UpgradeListener() {
+                    @Override
+                    public void stepFinished(@Nonnull StepFinishedEvent event) {
+                        System.out.println(event);
+                        steps.add(event);
+                    }
+                });
+
+                // Otherwise garbage left over from generating the index counts against the first step's peak heap.
+                System.gc();
+                try {
+                    new IndexUpgrader(index, InfoStream.NO_OUTPUT, config).upgradeTo(LuceneVersion.VERSION_8);
+                } finally {
+                    for (StepFinishedEvent step : steps) {
+                        results.println(String.join(",", number(version), Integer.toString(docCount),
+                                                    Integer.toString(bodyWords), Long.toString(seed),
+                                                    Long.toString(indexBytes),
+                                                    Integer.toString(step.getStepNumber()),
+                                                    Integer.toString(step.getStepCount()),
+                                                    number(step.getVersion()),
+                                                    Integer.toString(step.getSegmentCount()),
+                                                    Long.toString(step.getDocCount()),
+                                                    Long.toString(step.getElapsedMillis()),
+                                                    Long.toString(step.getBytesRead()),
+                                                    Long.toString(step.getBytesWritten()),
+                                                    Long.toString(step.getPeakHeapBytes()),
+                                                    Long.toString(step.getGcCount()),
+                                                    Long.toString(step.getGcMillis()),
+                                                    Boolean.toString(step.getFailure() != null)));
+                    }
+                    results.flush();
+                }
+            }
+        } finally {
+            if (Files.exists(index)) {
+                FileUtils.insecureRecursiveDelete(index);
+            }
+        }
+
+        System.out.println("Results written to " + resultsFile);
+    }
+
+    private Path generate(LuceneVersion version, SyntheticCorpus corpus) throws IOException {
+        String name = String.format(Locale.ROOT, "lucene%s-%d-docs-%d-words-seed-%d",
+                                    number(version), docCount, bodyWords, seed);
+        Path generated = work.resolve(name);
+        if (Files.isDirectory(generated)) {
+            return generated;
+        }
+
+        System.out.println("Generating " + generated);
+
+        // Generated into a temporary directory first, so that an index which didn't get finished is never used.
+        Path temporary = work.resolve(name + ".tmp");
+        if (Files.exists(temporary)) {
+            FileUtils.insecureRecursiveDelete(temporary);
+        }
+        Files.createDirectories(temporary);
+        generator(version).generate(temporary, corpus, docCount);
+        Files.move(temporary, generated);
+        return generated;
+    }
+
+    private static IndexGenerator generator(LuceneVersion version) {
+        switch (version) {
+            case VERSION_3:
+                return new IndexGenerator3();
+            case VERSION_4:
+                return new IndexGenerator4();
+            case VERSION_5:
+                return new IndexGenerator5();
+            case VERSION_6:
+                return new IndexGenerator6();
+            case VERSION_7:
+                return new IndexGenerator7();
+            default:
+                throw new IllegalArgumentException("Can't generate indexes for " + version);
+        }
+    }
+
+    private static String number(LuceneVersion version) {
+        return version.name().substring("VERSION_".length());
+    }
+}
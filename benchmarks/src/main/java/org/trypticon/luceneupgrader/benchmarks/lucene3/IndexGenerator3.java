@@ -0,0 +1,59 @@
+package org.trypticon.luceneupgrader.benchmarks.lucene3;
+
+import org.trypticon.luceneupgrader.benchmarks.IndexGenerator;
+import org.trypticon.luceneupgrader.benchmarks.SyntheticCorpus;
+import org.trypticon.luceneupgrader.benchmarks.SyntheticDocument;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.document.Document;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.document.Field;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.document.NumericField;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.index.IndexWriter;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.index.IndexWriterConfig;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.index.Term;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.Directory;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.FSDirectory;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.util.Version;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Generates a Lucene 3 index. Lucene 3 has no doc values, so those fields are left out.
+ */
+public class IndexGenerator3 implements IndexGenerator {
+    @Override
+    public void generate(@Nonnull Path directory, @Nonnull SyntheticCorpus corpus, int docCount) throws IOException {
+        // Every field which is tokenised is given as a token stream, so nothing needs analysing.
+        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(Version.LUCENE_36, null);
+        try (Directory dir = FSDirectory.open(directory.toFile());
+             IndexWriter writer = new IndexWriter(dir, indexWriterConfig)) {
+            for (int id = 0; id < docCount; id++) {
+                writer.addDocument(createDocument(corpus.document(id)));
+            }
+            writer.deleteDocuments(new Term("group", SyntheticCorpus.DELETED_GROUP));
+            writer.commit();
+        }
+    }
+
+    private Document createDocument(SyntheticDocument source) {
+        Document document = new Document();
+        document.add(new Field("id", source.getId(), Field.Store.YES, Field.Index.NOT_ANALYZED_NO_NORMS));
+        document.add(new Field("group", source.getGroup(), Field.Store.YES, Field.Index.NOT_ANALYZED_NO_NORMS));
+        document.add(new Field("category", source.getCategory(), Field.Store.YES, Field.Index.NOT_ANALYZED_NO_NORMS));
+
+        document.add(new Field("title", SyntheticDocument.join(source.getTitle()), Field.Store.YES, Field.Index.NO));
+        document.add(new Field("title", new WordTokenStream(source.getTitle(), null)));
+
+        document.add(new Field("body", SyntheticDocument.join(source.getBody()), Field.Store.YES, Field.Index.NO));
+        document.add(new Field("body", new WordTokenStream(source.getBody(), source.getBodyPayloads()),
+                               Field.TermVector.WITH_POSITIONS_OFFSETS));
+
+        for (String tag : source.getTags()) {
+            document.add(new Field("tags", tag, Field.Store.NO, Field.Index.NOT_ANALYZED_NO_NORMS));
+        }
+
+        document.add(new NumericField("timestamp", Field.Store.YES, true).setLongValue(source.getTimestamp()));
+        document.add(new NumericField("price", Field.Store.YES, true).setDoubleValue(source.getPrice()));
+        return document;
+    }
+}
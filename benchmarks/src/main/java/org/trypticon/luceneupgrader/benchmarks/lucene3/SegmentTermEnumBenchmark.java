@@ -0,0 +1,67 @@
+package org.trypticon.luceneupgrader.benchmarks.lucene3;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.trypticon.luceneupgrader.benchmarks.BenchmarkData;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.index.FieldInfos;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.index.SegmentTermEnumAccess;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.IndexInput;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.IndexOutput;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.RAMDirectory;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks walking through a 3.x term dictionary in Lucene 3, which every merge of a 3.x segment does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SegmentTermEnumBenchmark {
+    private static final String FIELD = "body";
+
+    private FieldInfos fieldInfos;
+    private IndexInput input;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] termInfos = SegmentTermEnumAccess.writeTermInfos(FIELD, BenchmarkData.sortedTerms());
+        RAMDirectory directory = new RAMDirectory();
+        try (IndexOutput out = directory.createOutput("_0.tis")) {
+            out.writeBytes(termInfos, termInfos.length);
+        }
+        fieldInfos = new FieldInfos();
+        fieldInfos.add(FIELD, true);
+        input = directory.openInput("_0.tis");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        input.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkData.TERM_COUNT)
+    public int next() throws IOException {
+        SegmentTermEnumAccess termEnum = new SegmentTermEnumAccess((IndexInput) input.clone(), fieldInfos);
+        int sum = 0;
+        while (termEnum.next()) {
+            sum += termEnum.docFreq();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,73 @@
+package org.trypticon.luceneupgrader.benchmarks.lucene4;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.trypticon.luceneupgrader.benchmarks.BenchmarkData;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.codecs.lucene3x.SegmentTermEnumAccess;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.index.FieldInfo;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.index.FieldInfos;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.store.IOContext;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.store.IndexInput;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.store.IndexOutput;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.store.RAMDirectory;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks walking through a 3.x term dictionary in Lucene 4, which is how it reads the terms of 3.x
+ * segments. The dictionary itself is written by Lucene 3.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SegmentTermEnumBenchmark {
+    private static final String FIELD = "body";
+
+    private FieldInfos fieldInfos;
+    private IndexInput input;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[] termInfos = org.trypticon.luceneupgrader.lucene3.internal.lucene.index.SegmentTermEnumAccess
+                .writeTermInfos(FIELD, BenchmarkData.sortedTerms());
+        RAMDirectory directory = new RAMDirectory();
+        try (IndexOutput out = directory.createOutput("_0.tis", IOContext.DEFAULT)) {
+            out.writeBytes(termInfos, termInfos.length);
+        }
+        fieldInfos = new FieldInfos(new FieldInfo[] {
+                new FieldInfo(FIELD, true, 0, false, false, false, FieldInfo.IndexOptions.DOCS_AND_FREQS_AND_POSITIONS,
+                              null, FieldInfo.DocValuesType.NUMERIC, -1, null)
+        });
+        input = directory.openInput("_0.tis", IOContext.DEFAULT);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        input.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkData.TERM_COUNT)
+    public int next() throws IOException {
+        SegmentTermEnumAccess termEnum = new SegmentTermEnumAccess(input.clone(), fieldInfos);
+        int sum = 0;
+        while (termEnum.next()) {
+            sum += termEnum.docFreq();
+        }
+        return sum;
+    }
+}
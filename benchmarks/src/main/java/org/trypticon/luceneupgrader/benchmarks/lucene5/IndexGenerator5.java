@@ -0,0 +1,92 @@
+package org.trypticon.luceneupgrader.benchmarks.lucene5;
+
+import org.trypticon.luceneupgrader.benchmarks.IndexGenerator;
+import org.trypticon.luceneupgrader.benchmarks.SyntheticCorpus;
+import org.trypticon.luceneupgrader.benchmarks.SyntheticDocument;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.analysis.Analyzer;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.document.BinaryDocValuesField;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.document.Document;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.document.DoubleField;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.document.Field;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.document.FieldType;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.document.LongField;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.document.NumericDocValuesField;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.document.SortedDocValuesField;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.document.SortedNumericDocValuesField;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.document.SortedSetDocValuesField;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.document.StoredField;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.document.StringField;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.document.TextField;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.index.IndexWriter;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.index.IndexWriterConfig;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.index.Term;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.store.Directory;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.store.FSDirectory;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.util.BytesRef;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.util.NumericUtils;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Generates a Lucene 5 index.
+ */
+public class IndexGenerator5 implements IndexGenerator {
+    private static final FieldType BODY_TYPE = new FieldType(TextField.TYPE_NOT_STORED);
+    static {
+        BODY_TYPE.setStoreTermVectors(true);
+        BODY_TYPE.setStoreTermVectorPositions(true);
+        BODY_TYPE.setStoreTermVectorOffsets(true);
+        BODY_TYPE.freeze();
+    }
+
+    @Override
+    public void generate(@Nonnull Path directory, @Nonnull SyntheticCorpus corpus, int docCount) throws IOException {
+        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(new NoAnalyzer());
+        try (Directory dir = FSDirectory.open(directory);
+             IndexWriter writer = new IndexWriter(dir, indexWriterConfig)) {
+            for (int id = 0; id < docCount; id++) {
+                writer.addDocument(createDocument(corpus.document(id)));
+            }
+            writer.deleteDocuments(new Term("group", SyntheticCorpus.DELETED_GROUP));
+            writer.commit();
+        }
+    }
+
+    private Document createDocument(SyntheticDocument source) {
+        Document document = new Document();
+        document.add(new StringField("id", source.getId(), Field.Store.YES));
+        document.add(new StringField("group", source.getGroup(), Field.Store.YES));
+        document.add(new StringField("category", source.getCategory(), Field.Store.YES));
+        document.add(new SortedDocValuesField("category_dv", new BytesRef(source.getCategory())));
+
+        document.add(new StoredField("title", SyntheticDocument.join(source.getTitle())));
+        document.add(new TextField("title", new WordTokenStream(source.getTitle(), null)));
+
+        document.add(new StoredField("body", SyntheticDocument.join(source.getBody())));
+        document.add(new Field("body", new WordTokenStream(source.getBody(), source.getBodyPayloads()), BODY_TYPE));
+
+        for (String tag : source.getTags()) {
+            document.add(new StringField("tags", tag, Field.Store.NO));
+            document.add(new SortedSetDocValuesField("tags_dv", new BytesRef(tag)));
+        }
+
+        document.add(new LongField("timestamp", source.getTimestamp(), Field.Store.YES));
+        document.add(new NumericDocValuesField("timestamp_dv", source.getTimestamp()));
+        document.add(new DoubleField("price", source.getPrice(), Field.Store.YES));
+        document.add(new SortedNumericDocValuesField("price_dv", NumericUtils.doubleToSortableLong(source.getPrice())));
+        document.add(new BinaryDocValuesField("hash_dv", new BytesRef(source.getHash())));
+        return document;
+    }
+
+    /**
+     * An analyser which fails, because every field which is tokenised is given as a token stream.
+     */
+    private static class NoAnalyzer extends Analyzer {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            throw new UnsupportedOperationException("Nothing should need analysing");
+        }
+    }
+}
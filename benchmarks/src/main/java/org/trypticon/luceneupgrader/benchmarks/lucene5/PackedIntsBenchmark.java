@@ -0,0 +1,60 @@
+package org.trypticon.luceneupgrader.benchmarks.lucene5;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.trypticon.luceneupgrader.benchmarks.BenchmarkData;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.util.packed.PackedInts;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the bulk decoders for packed ints in Lucene 5, which the postings and doc values of
+ * 4.x and 5.x segments are decoded with.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PackedIntsBenchmark {
+    @Param({"1", "5", "12", "21", "31"})
+    public int bitsPerValue;
+
+    private final long[] longs = new long[BenchmarkData.VALUE_COUNT];
+    private final int[] ints = new int[BenchmarkData.VALUE_COUNT];
+    private PackedInts.Decoder decoder;
+    private byte[] blocks;
+    private int iterations;
+
+    @Setup
+    public void setUp() {
+        decoder = PackedInts.getDecoder(PackedInts.Format.PACKED, PackedInts.VERSION_CURRENT, bitsPerValue);
+        blocks = BenchmarkData.packedBlocks(bitsPerValue);
+        iterations = BenchmarkData.VALUE_COUNT / decoder.byteValueCount();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkData.VALUE_COUNT)
+    public long decodeLongs() {
+        decoder.decode(blocks, 0, longs, 0, iterations);
+        return longs[BenchmarkData.VALUE_COUNT - 1];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkData.VALUE_COUNT)
+    public int decodeInts() {
+        decoder.decode(blocks, 0, ints, 0, iterations);
+        return ints[BenchmarkData.VALUE_COUNT - 1];
+    }
+}
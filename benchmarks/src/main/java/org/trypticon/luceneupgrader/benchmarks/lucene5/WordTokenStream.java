@@ -0,0 +1,63 @@
+package org.trypticon.luceneupgrader.benchmarks.lucene5;
+
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.analysis.TokenStream;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.analysis.tokenattributes.PayloadAttribute;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.util.BytesRef;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+
+/**
+ * Token stream over words which have already been split up, so that no analyser is needed.
+ */
+final class WordTokenStream extends TokenStream {
+    private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
+    private final OffsetAttribute offsetAttribute = addAttribute(OffsetAttribute.class);
+    private final PayloadAttribute payloadAttribute = addAttribute(PayloadAttribute.class);
+
+    private final String[] words;
+
+    @Nullable
+    private final byte[][] payloads;
+
+    private int position;
+    private int offset;
+
+    WordTokenStream(String[] words, @Nullable byte[][] payloads) {
+        this.words = words;
+        this.payloads = payloads;
+    }
+
+    @Override
+    public boolean incrementToken() throws IOException {
+        if (position == words.length) {
+            return false;
+        }
+        clearAttributes();
+        String word = words[position];
+        termAttribute.setEmpty().append(word);
+        offsetAttribute.setOffset(offset, offset + word.length());
+        if (payloads != null) {
+            payloadAttribute.setPayload(new BytesRef(payloads[position]));
+        }
+        offset += word.length() + 1;
+        position++;
+        return true;
+    }
+
+    @Override
+    public void end() throws IOException {
+        super.end();
+        int finalOffset = Math.max(0, offset - 1);
+        offsetAttribute.setOffset(finalOffset, finalOffset);
+    }
+
+    @Override
+    public void reset() throws IOException {
+        super.reset();
+        position = 0;
+        offset = 0;
+    }
+}
@@ -0,0 +1,62 @@
+package org.trypticon.luceneupgrader.benchmarks.lucene6;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.trypticon.luceneupgrader.benchmarks.BenchmarkData;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.RAMDirectory;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.RAMOutputStream;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.util.bkd.BKDWriter;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks building a BKD tree in Lucene 6, the first version to have points. Most of the time goes
+ * into sorting the points and writing out the leaf blocks.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BKDWriterBenchmark {
+    @Param({"1", "2"})
+    public int numDims;
+
+    // Only used if the points don't fit in the heap, which they always should here.
+    private final RAMDirectory tempDir = new RAMDirectory();
+    private byte[] points;
+    private byte[] packedValue;
+
+    @Setup
+    public void setUp() {
+        points = BenchmarkData.points(numDims);
+        packedValue = new byte[numDims * BenchmarkData.BYTES_PER_DIM];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkData.POINT_COUNT)
+    public long write() throws IOException {
+        try (BKDWriter writer = new BKDWriter(BenchmarkData.POINT_COUNT, tempDir, "bkd", numDims,
+                                              BenchmarkData.BYTES_PER_DIM, BKDWriter.DEFAULT_MAX_POINTS_IN_LEAF_NODE,
+                                              BKDWriter.DEFAULT_MAX_MB_SORT_IN_HEAP, BenchmarkData.POINT_COUNT, true);
+             RAMOutputStream out = new RAMOutputStream()) {
+            for (int doc = 0; doc < BenchmarkData.POINT_COUNT; doc++) {
+                System.arraycopy(points, doc * packedValue.length, packedValue, 0, packedValue.length);
+                writer.add(packedValue, doc);
+            }
+            return writer.finish(out);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.trypticon.luceneupgrader.benchmarks.lucene6;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.trypticon.luceneupgrader.benchmarks.BenchmarkData;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.codecs.compressing.CompressionMode;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.codecs.compressing.Compressor;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.codecs.compressing.Decompressor;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.ByteArrayDataInput;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.ByteArrayDataOutput;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.util.BytesRef;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks compressing and decompressing one chunk of stored fields in Lucene 6, with LZ4
+ * ({@code FAST}) and Deflate ({@code HIGH_COMPRESSION}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompressionBenchmark {
+    @Param({"FAST", "HIGH_COMPRESSION"})
+    public String mode;
+
+    private final ByteArrayDataInput in = new ByteArrayDataInput();
+    private final ByteArrayDataOutput out = new ByteArrayDataOutput();
+    private final BytesRef bytes = new BytesRef();
+    private Compressor compressor;
+    private Decompressor decompressor;
+    private byte[] chunk;
+    private byte[] compressed;
+    private int compressedLength;
+    private byte[] scratch;
+
+    @Setup
+    public void setUp() throws IOException {
+        CompressionMode compressionMode = "FAST".equals(mode) ? CompressionMode.FAST : CompressionMode.HIGH_COMPRESSION;
+        compressor = compressionMode.newCompressor();
+        decompressor = compressionMode.newDecompressor();
+        chunk = BenchmarkData.storedFieldsChunk();
+
+        // Compressed data can come out a bit bigger than the input, so leave plenty of room.
+        compressed = new byte[chunk.length * 2];
+        out.reset(compressed);
+        compressor.compress(chunk, 0, chunk.length, out);
+        compressedLength = out.getPosition();
+        scratch = new byte[compressed.length];
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        compressor.close();
+    }
+
+    @Benchmark
+    public int compress() throws IOException {
+        out.reset(scratch);
+        compressor.compress(chunk, 0, chunk.length, out);
+        return out.getPosition();
+    }
+
+    @Benchmark
+    public int decompress() throws IOException {
+        in.reset(compressed, 0, compressedLength);
+        decompressor.decompress(in, chunk.length, 0, chunk.length, bytes);
+        return bytes.length;
+    }
+}
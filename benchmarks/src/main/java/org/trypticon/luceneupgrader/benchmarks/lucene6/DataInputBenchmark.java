@@ -0,0 +1,62 @@
+package org.trypticon.luceneupgrader.benchmarks.lucene6;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.trypticon.luceneupgrader.benchmarks.BenchmarkData;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.ByteArrayDataInput;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks reading variable-length numbers in Lucene 6, which most of the 5.x codecs it reads
+ * lean on.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DataInputBenchmark {
+    private final ByteArrayDataInput in = new ByteArrayDataInput();
+    private byte[] vInts;
+    private byte[] vLongs;
+
+    @Setup
+    public void setUp() {
+        vInts = BenchmarkData.vInts(BenchmarkData.ints());
+        vLongs = BenchmarkData.vLongs(BenchmarkData.longs());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkData.VALUE_COUNT)
+    public int readVInt() throws IOException {
+        in.reset(vInts);
+        int sum = 0;
+        for (int i = 0; i < BenchmarkData.VALUE_COUNT; i++) {
+            sum += in.readVInt();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkData.VALUE_COUNT)
+    public long readVLong() throws IOException {
+        in.reset(vLongs);
+        long sum = 0;
+        for (int i = 0; i < BenchmarkData.VALUE_COUNT; i++) {
+            sum += in.readVLong();
+        }
+        return sum;
+    }
+}
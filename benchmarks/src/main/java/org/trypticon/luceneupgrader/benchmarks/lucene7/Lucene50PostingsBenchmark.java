@@ -0,0 +1,95 @@
+package org.trypticon.luceneupgrader.benchmarks.lucene7;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.trypticon.luceneupgrader.benchmarks.BenchmarkData;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.lucene50.ForUtilAccess;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.IOContext;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.IndexInput;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.IndexOutput;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.RAMDirectory;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.RAMOutputStream;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.util.packed.PackedInts;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks encoding and decoding the blocks of doc IDs, frequencies and positions in the Lucene 5.0
+ * postings format, which Lucene 7 both reads and writes. {@code RAMDirectory} is deprecated here,
+ * but it's still used so that the numbers line up with the older versions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+@SuppressWarnings("deprecation")
+public class Lucene50PostingsBenchmark {
+    private final byte[] encoded = new byte[ForUtilAccess.MAX_ENCODED_SIZE];
+    private final int[] decoded = new int[ForUtilAccess.MAX_DATA_SIZE];
+    private final RAMOutputStream output = new RAMOutputStream();
+    private int[][] blocks;
+    private ForUtilAccess writer;
+    private ForUtilAccess reader;
+    private IndexInput input;
+    private long blocksStart;
+
+    @Setup
+    public void setUp() throws IOException {
+        // Encoding can read past the end of a block, so each one gets as much room as the postings writer gives it.
+        blocks = Arrays.stream(BenchmarkData.postingsBlocks())
+                .map(block -> Arrays.copyOf(block, ForUtilAccess.MAX_DATA_SIZE))
+                .toArray(int[][]::new);
+
+        RAMDirectory directory = new RAMDirectory();
+        try (IndexOutput out = directory.createOutput("postings", IOContext.DEFAULT)) {
+            writer = new ForUtilAccess(PackedInts.COMPACT, out);
+            for (int[] block : blocks) {
+                writer.writeBlock(block, encoded, out);
+            }
+        }
+        input = directory.openInput("postings", IOContext.DEFAULT);
+        reader = new ForUtilAccess(input);
+        blocksStart = input.getFilePointer();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        input.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkData.BLOCK_COUNT)
+    public int decodeBlocks() throws IOException {
+        input.seek(blocksStart);
+        int sum = 0;
+        for (int i = 0; i < BenchmarkData.BLOCK_COUNT; i++) {
+            reader.readBlock(input, encoded, decoded);
+            sum += decoded[0];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkData.BLOCK_COUNT)
+    public long encodeBlocks() throws IOException {
+        output.reset();
+        for (int[] block : blocks) {
+            writer.writeBlock(block, encoded, output);
+        }
+        return output.getFilePointer();
+    }
+}
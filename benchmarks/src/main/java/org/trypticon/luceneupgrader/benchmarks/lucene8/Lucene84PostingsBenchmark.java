@@ -0,0 +1,90 @@
+package org.trypticon.luceneupgrader.benchmarks.lucene8;
+
+import org.apache.lucene.codecs.lucene84.PForUtilAccess;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.store.RAMDirectory;
+import org.apache.lucene.store.RAMOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.trypticon.luceneupgrader.benchmarks.BenchmarkData;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks encoding and decoding the blocks of frequencies and positions in the Lucene 8.4
+ * postings format, which Lucene 8 encodes the postings of every upgraded segment with. The blocks
+ * are the same ones the older formats get, so the numbers can be compared with theirs.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+@SuppressWarnings("deprecation")
+public class Lucene84PostingsBenchmark {
+    private final PForUtilAccess pforUtil = new PForUtilAccess();
+    private final long[] buffer = new long[PForUtilAccess.BLOCK_SIZE];
+    private final RAMOutputStream output = new RAMOutputStream();
+    private long[][] blocks;
+    private IndexInput input;
+
+    @Setup
+    public void setUp() throws IOException {
+        blocks = Arrays.stream(BenchmarkData.postingsBlocks())
+                .map(block -> Arrays.stream(block).asLongStream().toArray())
+                .toArray(long[][]::new);
+
+        RAMDirectory directory = new RAMDirectory();
+        try (IndexOutput out = directory.createOutput("postings", IOContext.DEFAULT)) {
+            for (long[] block : blocks) {
+                System.arraycopy(block, 0, buffer, 0, buffer.length);
+                pforUtil.encode(buffer, out);
+            }
+        }
+        input = directory.openInput("postings", IOContext.DEFAULT);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        input.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkData.BLOCK_COUNT)
+    public long decodeBlocks() throws IOException {
+        input.seek(0);
+        long sum = 0;
+        for (int i = 0; i < BenchmarkData.BLOCK_COUNT; i++) {
+            pforUtil.decode(input, buffer);
+            sum += buffer[0];
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkData.BLOCK_COUNT)
+    public long encodeBlocks() throws IOException {
+        output.reset();
+        for (long[] block : blocks) {
+            // Encoding patches exceptions in place, so it gets a copy, the way the postings writer fills its buffers.
+            System.arraycopy(block, 0, buffer, 0, buffer.length);
+            pforUtil.encode(buffer, output);
+        }
+        return output.getFilePointer();
+    }
+}
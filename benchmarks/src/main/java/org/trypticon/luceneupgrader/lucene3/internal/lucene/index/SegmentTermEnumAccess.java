@@ -0,0 +1,59 @@
+package org.trypticon.luceneupgrader.lucene3.internal.lucene.index;
+
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.IndexInput;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.RAMDirectory;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Opens up the package-private {@link SegmentTermEnum} and {@link TermInfosWriter} to the benchmarks.
+ */
+public final class SegmentTermEnumAccess {
+    private final SegmentTermEnum termEnum;
+
+    public SegmentTermEnumAccess(IndexInput input, FieldInfos fieldInfos) throws IOException {
+        termEnum = new SegmentTermEnum(input, fieldInfos, false);
+    }
+
+    public boolean next() throws IOException {
+        return termEnum.next();
+    }
+
+    public Term term() {
+        return termEnum.term();
+    }
+
+    public int docFreq() {
+        return termEnum.docFreq();
+    }
+
+    /**
+     * Writes a term dictionary with made up postings pointers, the way a 3.x segment has one.
+     *
+     * @param field the field the terms are in, which will be field number 0.
+     * @param sortedTerms the terms, in sorted order.
+     * @return the contents of the {@code .tis} file.
+     * @throws IOException if an error occurs writing the file.
+     */
+    public static byte[] writeTermInfos(String field, List<String> sortedTerms) throws IOException {
+        RAMDirectory directory = new RAMDirectory();
+        FieldInfos fieldInfos = new FieldInfos();
+        fieldInfos.add(field, true);
+        try (TermInfosWriter writer = new TermInfosWriter(directory, "_0", fieldInfos, 128)) {
+            long freqPointer = 0;
+            long proxPointer = 0;
+            for (String text : sortedTerms) {
+                int docFreq = 1 + (text.length() & 7);
+                writer.add(new Term(field, text), new TermInfo(docFreq, freqPointer, proxPointer));
+                freqPointer += docFreq * 2;
+                proxPointer += docFreq * 3;
+            }
+        }
+        try (IndexInput input = directory.openInput("_0.tis")) {
+            byte[] bytes = new byte[(int) input.length()];
+            input.readBytes(bytes, 0, bytes.length);
+            return bytes;
+        }
+    }
+}
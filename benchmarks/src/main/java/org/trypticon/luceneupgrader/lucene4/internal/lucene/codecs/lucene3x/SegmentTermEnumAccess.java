@@ -0,0 +1,31 @@
+package org.trypticon.luceneupgrader.lucene4.internal.lucene.codecs.lucene3x;
+
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.index.FieldInfos;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.index.Term;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.store.IndexInput;
+
+import java.io.IOException;
+
+/**
+ * Opens up the package-private {@link SegmentTermEnum} to the benchmarks.
+ */
+@SuppressWarnings("deprecation")
+public final class SegmentTermEnumAccess {
+    private final SegmentTermEnum termEnum;
+
+    public SegmentTermEnumAccess(IndexInput input, FieldInfos fieldInfos) throws IOException {
+        termEnum = new SegmentTermEnum(input, fieldInfos, false);
+    }
+
+    public boolean next() throws IOException {
+        return termEnum.next();
+    }
+
+    public Term term() {
+        return termEnum.term();
+    }
+
+    public int docFreq() {
+        return termEnum.docFreq();
+    }
+}
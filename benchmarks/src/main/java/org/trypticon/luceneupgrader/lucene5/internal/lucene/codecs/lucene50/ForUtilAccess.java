@@ -0,0 +1,34 @@
+package org.trypticon.luceneupgrader.lucene5.internal.lucene.codecs.lucene50;
+
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.store.DataInput;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.store.DataOutput;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.store.IndexInput;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.store.IndexOutput;
+
+import java.io.IOException;
+
+/**
+ * Opens up the package-private {@link ForUtil} to the benchmarks.
+ */
+public final class ForUtilAccess {
+    public static final int MAX_DATA_SIZE = ForUtil.MAX_DATA_SIZE;
+    public static final int MAX_ENCODED_SIZE = ForUtil.MAX_ENCODED_SIZE;
+
+    private final ForUtil forUtil;
+
+    public ForUtilAccess(float acceptableOverheadRatio, DataOutput out) throws IOException {
+        forUtil = new ForUtil(acceptableOverheadRatio, out);
+    }
+
+    public ForUtilAccess(DataInput in) throws IOException {
+        forUtil = new ForUtil(in);
+    }
+
+    public void writeBlock(int[] data, byte[] encoded, IndexOutput out) throws IOException {
+        forUtil.writeBlock(data, encoded, out);
+    }
+
+    public void readBlock(IndexInput in, byte[] encoded, int[] decoded) throws IOException {
+        forUtil.readBlock(in, encoded, decoded);
+    }
+}
@@ -0,0 +1,279 @@
+package org.trypticon.luceneupgrader;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Upgrades many indexes, running several upgrades at once but keeping within limits on
+ * how many run at the same time and how much index data is being rewritten at the same time.
+ */
+public class BatchIndexUpgrader {
+
+    @Nonnull
+    private final InfoStream infoStream;
+
+    @Nonnull
+    private final IndexUpgraderConfig config;
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    private int maxConcurrentUpgrades = 1;
+
+    private long maxConcurrentBytes = Long.MAX_VALUE;
+
+    public BatchIndexUpgrader() {
+        this(InfoStream.NO_OUTPUT);
+    }
+
+    public BatchIndexUpgrader(@Nonnull InfoStream infoStream) {
+        this(infoStream, new IndexUpgraderConfig());
+    }
+
+    public BatchIndexUpgrader(@Nonnull InfoStream infoStream, @Nonnull IndexUpgraderConfig config) {
+        this.infoStream = infoStream;
+        this.config = config;
+    }
+
+    /**
+     * Sets the maximum number of indexes to upgrade at the same time.
+     * Each upgrade also uses the number of threads given by its {@link IndexUpgraderConfig},
+     * so the two should be chosen together to fit the number of cores.
+     *
+     * @param maxConcurrentUpgrades the maximum number of upgrades.
+     * @return this upgrader.
+     */
+    public BatchIndexUpgrader setMaxConcurrentUpgrades(int maxConcurrentUpgrades) {
+        if (maxConcurrentUpgrades < 1) {
+            throw new IllegalArgumentException("maxConcurrentUpgrades must be at least 1: " + maxConcurrentUpgrades);
+        }
+        this.maxConcurrentUpgrades = maxConcurrentUpgrades;
+        return this;
+    }
+
+    /**
+     * Sets the maximum total size of the indexes being upgraded at the same time.
+     * An upgrade writes a new copy of the index before removing the old one, so this also
+     * bounds the extra disk space used at any one time. An index bigger than the limit is
+     * still upgraded, but only once nothing else is running.
+     *
+     * @param maxConcurrentBytes the maximum number of bytes.
+     * @return this upgrader.
+     */
+    public BatchIndexUpgrader setMaxConcurrentBytes(long maxConcurrentBytes) {
+        if (maxConcurrentBytes < 1) {
+            throw new IllegalArgumentException("maxConcurrentBytes must be at least 1: " + maxConcurrentBytes);
+        }
+        this.maxConcurrentBytes = maxConcurrentBytes;
+        return this;
+    }
+
+    /**
+     * Adds an index to upgrade, with the default priority of 0.
+     *
+     * @param directory the directory containing the index.
+     * @return this upgrader.
+     */
+    public BatchIndexUpgrader add(@Nonnull Path directory) {
+        return add(directory, 0);
+    }
+
+    /**
+     * Adds an index to upgrade. Indexes with a higher priority are started first.
+     * Indexes with the same priority are started in the order they were added.
+     *
+     * @param directory the directory containing the index.
+     * @param priority the priority.
+     * @return this upgrader.
+     */
+    public BatchIndexUpgrader add(@Nonnull Path directory, int priority) {
+        entries.add(new Entry(directory, priority, entries.size()));
+        return this;
+    }
+
+    /**
+     * Upgrades all the added indexes to a specific version of Lucene.
+     * A failure upgrading one index does not stop the others from being upgraded.
+     *
+     * @param destinationVersion the destination version.
+     * @return the result for each index, in the order the indexes were added.
+     * @throws IOException if an error occurs running the upgrades themselves.
+     */
+    public List<Result> upgradeTo(@Nonnull LuceneVersion destinationVersion) throws IOException {
+        List<Result> results = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            results.add(new Result(entry.directory));
+        }
+
+        // Census first, so that indexes which don't need upgrading never take up a slot.
+        List<Entry> pending = new ArrayList<>();
+        for (Entry entry : entries) {
+            Result result = results.get(entry.index);
+            try {
+                result.originalVersion = new VersionGuesser().guess(entry.directory);
+                if (result.originalVersion.isOlderThan(destinationVersion)) {
+                    entry.size = FileUtils.directorySize(entry.directory);
+                    pending.add(entry);
+                }
+            } catch (IOException | RuntimeException e) {
+                result.failure = e;
+            }
+        }
+        pending.sort(Comparator.comparingInt((Entry entry) -> entry.priority).reversed()
+                               .thenComparingInt(entry -> entry.index));
+
+        Scheduler scheduler = new Scheduler(pending);
+        List<ParallelUtils.IOTask> workers = new ArrayList<>();
+        for (int i = 0; i < Math.min(maxConcurrentUpgrades, pending.size()); i++) {
+            workers.add(() -> {
+                Entry entry;
+                while ((entry = scheduler.next()) != null) {
+                    try {
+                        upgrade(entry, results.get(entry.index), destinationVersion);
+                    } finally {
+                        scheduler.finished(entry);
+                    }
+                }
+            });
+        }
+        ParallelUtils.runAll(workers.size(), "upgrade-batch", workers);
+
+        return Collections.unmodifiableList(results);
+    }
+
+    private void upgrade(Entry entry, Result result, LuceneVersion destinationVersion) {
+        if (infoStream.isEnabled("BATCH")) {
+            infoStream.message("BATCH", "Upgrading " + entry.directory + " from " + result.originalVersion);
+        }
+        long t0 = System.nanoTime();
+        try {
+            new IndexUpgrader(entry.directory, infoStream, config).upgradeTo(destinationVersion);
+            result.upgraded = true;
+        } catch (IOException | RuntimeException e) {
+            result.failure = e;
+        }
+        if (infoStream.isEnabled("BATCH")) {
+            long t1 = System.nanoTime();
+            infoStream.message("BATCH", ((t1 - t0) / 1000000) + " msec to upgrade " + entry.directory +
+                                        (result.failure == null ? "" : " (failed: " + result.failure + ")"));
+        }
+    }
+
+    /**
+     * Hands out indexes in priority order, holding back an index while starting it would
+     * take the total size of the running upgrades over the limit.
+     */
+    private class Scheduler {
+        private final List<Entry> pending;
+        private long bytesInFlight;
+        private int upgradesInFlight;
+
+        private Scheduler(List<Entry> pending) {
+            this.pending = new ArrayList<>(pending);
+        }
+
+        @Nullable
+        private synchronized Entry next() throws IOException {
+            while (!pending.isEmpty()) {
+                Entry entry = pending.get(0);
+                if (upgradesInFlight == 0 || bytesInFlight + entry.size <= maxConcurrentBytes) {
+                    pending.remove(0);
+                    bytesInFlight += entry.size;
+                    upgradesInFlight++;
+                    return entry;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted waiting to start an upgrade", e);
+                }
+            }
+            return null;
+        }
+
+        private synchronized void finished(Entry entry) {
+            bytesInFlight -= entry.size;
+            upgradesInFlight--;
+            notifyAll();
+        }
+    }
+
+    private static class Entry {
+        private final Path directory;
+        private final int priority;
+        private final int index;
+        private long size;
+
+        private Entry(Path directory, int priority, int index) {
+            this.directory = directory;
+            this.priority = priority;
+            this.index = index;
+        }
+    }
+
+    /**
+     * The outcome of upgrading one index.
+     */
+    public static class Result {
+        @Nonnull
+        private final Path directory;
+
+        @Nullable
+        private volatile LuceneVersion originalVersion;
+
+        private volatile boolean upgraded;
+
+        @Nullable
+        private volatile Exception failure;
+
+        private Result(@Nonnull Path directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * Gets the directory containing the index.
+         *
+         * @return the directory.
+         */
+        @Nonnull
+        public Path getDirectory() {
+            return directory;
+        }
+
+        /**
+         * Gets the version the index was at before the upgrade.
+         *
+         * @return the original version, or {@code null} if it couldn't be determined.
+         */
+        @Nullable
+        public LuceneVersion getOriginalVersion() {
+            return originalVersion;
+        }
+
+        /**
+         * Tests whether the index was upgraded. Indexes which were already at the destination
+         * version are not upgraded, and neither are indexes which failed.
+         *
+         * @return {@code true} if the index was upgraded.
+         */
+        public boolean isUpgraded() {
+            return upgraded;
+        }
+
+        /**
+         * Gets the error which stopped the index from being upgraded.
+         *
+         * @return the error, or {@code null} if there was none.
+         */
+        @Nullable
+        public Exception getFailure() {
+            return failure;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package org.trypticon.luceneupgrader;
+
+import javax.annotation.Nonnull;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How much one component of the index took to upgrade, for a single segment or for a whole step.
+ */
+public class ComponentStats {
+    @Nonnull
+    private final IndexComponent component;
+
+    private final long bytesRead;
+
+    private final long bytesWritten;
+
+    private final long elapsedNanos;
+
+    public ComponentStats(@Nonnull IndexComponent component, long bytesRead, long bytesWritten, long elapsedNanos) {
+        this.component = component;
+        this.bytesRead = bytesRead;
+        this.bytesWritten = bytesWritten;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Gets the component.
+     *
+     * @return the component.
+     */
+    @Nonnull
+    public IndexComponent getComponent() {
+        return component;
+    }
+
+    /**
+     * Gets how much was read from the component's files.
+     *
+     * @return the number of bytes.
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Gets how much was written to the component's files.
+     *
+     * @return the number of bytes.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Gets how long the component's files were being written for. For a step, this is the total
+     * over all of its segments, which can add up to more than the step took when segments are
+     * written concurrently.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    @Override
+    public String toString() {
+        return component + ": read " + bytesRead + " bytes, wrote " + bytesWritten + " bytes [took " +
+               getElapsedMillis() + " ms]";
+    }
+}
@@ -1,11 +1,19 @@
 package org.trypticon.luceneupgrader;
 
+import org.apache.lucene.util.IOUtils;
+
+import javax.annotation.Nullable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.NotDirectoryException;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.stream.Stream;
 
 public class FileUtils {
     public static void insecureRecursiveDelete(Path path) throws IOException {
@@ -18,4 +26,106 @@ public class FileUtils {
         }
         Files.deleteIfExists(path);
     }
+
+    /**
+     * Hard-links a file to a new path, copying it instead if the file system can't link it.
+     * Only safe for files which are never modified once written, like the files in an index.
+     *
+     * @param source the existing file.
+     * @param target the path for the new file.
+     * @throws IOException if an error occurs linking or copying.
+     */
+    public static void linkOrCopy(Path source, Path target) throws IOException {
+        try {
+            Files.createLink(target, source);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Different file systems, or links aren't supported. Copy instead.
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Works out the total size of the files directly inside a directory.
+     *
+     * @param directory the directory.
+     * @return the total size in bytes.
+     * @throws IOException if an error occurs listing the directory.
+     */
+    public static long directorySize(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            long size = 0;
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(file)) {
+                    size += Files.size(file);
+                }
+            }
+            return size;
+        }
+    }
+
+    /**
+     * Copies the files directly inside a directory into another directory, creating it if needed.
+     *
+     * @param source the directory to copy from.
+     * @param target the directory to copy to.
+     * @throws IOException if an error occurs copying.
+     */
+    public static void copyDirectory(Path source, Path target) throws IOException {
+        copyDirectory(source, target, null);
+    }
+
+    /**
+     * Copies the files directly inside a directory into another directory, creating it if needed,
+     * keeping to the rates of a throttle.
+     *
+     * @param source the directory to copy from.
+     * @param target the directory to copy to.
+     * @param ioThrottle the throttle, or {@code null} to copy as fast as possible.
+     * @throws IOException if an error occurs copying.
+     */
+    public static void copyDirectory(Path source, Path target, @Nullable IoThrottle ioThrottle) throws IOException {
+        Files.createDirectories(target);
+        try (Stream<Path> files = Files.list(source)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(file)) {
+                    Path targetFile = target.resolve(file.getFileName().toString());
+                    if (ioThrottle == null) {
+                        Files.copy(file, targetFile);
+                    } else {
+                        copyFile(file, targetFile, ioThrottle);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void copyFile(Path source, Path target, IoThrottle ioThrottle) throws IOException {
+        byte[] buffer = new byte[IoThrottle.MIN_PAUSE_CHECK_BYTES];
+        try (InputStream in = Files.newInputStream(source);
+             OutputStream out = Files.newOutputStream(target, StandardOpenOption.CREATE_NEW)) {
+            int count;
+            while ((count = in.read(buffer)) > 0) {
+                ioThrottle.pauseForRead(count);
+                out.write(buffer, 0, count);
+                ioThrottle.pauseForWrite(count);
+            }
+        }
+    }
+
+    /**
+     * Syncs the files directly inside a directory to disk, followed by the directory itself.
+     *
+     * @param directory the directory.
+     * @throws IOException if an error occurs syncing.
+     */
+    public static void syncDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(file)) {
+                    IOUtils.fsync(file, false);
+                }
+            }
+        }
+        IOUtils.fsync(directory, true);
+    }
 }
\ No newline at end of file
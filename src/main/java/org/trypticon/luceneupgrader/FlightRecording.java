@@ -0,0 +1,113 @@
+package org.trypticon.luceneupgrader;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.file.Path;
+
+/**
+ * Emits JDK Flight Recorder events for each step, each segment it writes and each component of
+ * those segments. Java 8 has no API for custom events, so this version records nothing. Java 11
+ * and later load the version in {@code src/main/java11} instead, from the multi-release part of
+ * the jar, which has the same methods. Events are passed around as plain objects so that nothing
+ * here refers to the flight recorder.
+ */
+final class FlightRecording {
+    private FlightRecording() {
+    }
+
+    /**
+     * Tests whether any of the events are being recorded.
+     *
+     * @return {@code true} if they are.
+     */
+    static boolean isRecording() {
+        return false;
+    }
+
+    /**
+     * Starts timing a step.
+     *
+     * @return the event, or {@code null} if it isn't being recorded.
+     */
+    @Nullable
+    static Object beginStep() {
+        return null;
+    }
+
+    /**
+     * Records a step which has finished.
+     *
+     * @param event the event returned by {@link #beginStep()}.
+     * @param path the directory containing the index.
+     * @param version the version the step upgraded to.
+     * @param stepNumber which step it was, counting from 1.
+     * @param stepCount how many steps the upgrade takes.
+     * @param segmentCount how many segments the step wrote.
+     * @param docCount how many documents the step rewrote.
+     * @param bytesRead how much the step read.
+     * @param bytesWritten how much the step wrote.
+     * @param failed whether the step failed.
+     */
+    static void commitStep(@Nullable Object event, @Nonnull Path path, @Nonnull LuceneVersion version,
+                           int stepNumber, int stepCount, int segmentCount, long docCount, long bytesRead,
+                           long bytesWritten, boolean failed) {
+    }
+
+    /**
+     * Starts timing a segment being written.
+     *
+     * @return the event, or {@code null} if it isn't being recorded.
+     */
+    @Nullable
+    static Object beginSegment() {
+        return null;
+    }
+
+    /**
+     * Records a segment which has been written.
+     *
+     * @param event the event returned by {@link #beginSegment()}.
+     * @param path the directory containing the index.
+     * @param version the version the segment was written in.
+     * @param segmentName the name of the segment.
+     * @param docCount how many documents were rewritten into the segment.
+     * @param bytesRead how much was read to write the segment.
+     * @param bytesWritten how much was written for the segment.
+     */
+    static void commitSegment(@Nullable Object event, @Nonnull Path path, @Nonnull LuceneVersion version,
+                              @Nonnull String segmentName, int docCount, long bytesRead, long bytesWritten) {
+    }
+
+    /**
+     * Starts timing one component of a segment being written.
+     *
+     * @return the event, or {@code null} if it isn't being recorded.
+     */
+    @Nullable
+    static Object beginPhase() {
+        return null;
+    }
+
+    /**
+     * Marks a component as done so far. Called each time one of its files is closed, so that it
+     * ends with the last one.
+     *
+     * @param event the event returned by {@link #beginPhase()}.
+     */
+    static void endPhase(@Nullable Object event) {
+    }
+
+    /**
+     * Records a component of a segment which has been written.
+     *
+     * @param event the event returned by {@link #beginPhase()}.
+     * @param version the version the segment was written in.
+     * @param segmentName the name of the segment.
+     * @param component the component.
+     * @param bytesRead how much was read for the component.
+     * @param bytesWritten how much was written for the component.
+     */
+    static void commitPhase(@Nullable Object event, @Nonnull LuceneVersion version, @Nonnull String segmentName,
+                            @Nonnull IndexComponent component, long bytesRead, long bytesWritten) {
+    }
+}
@@ -0,0 +1,41 @@
+package org.trypticon.luceneupgrader;
+
+import javax.annotation.Nonnull;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Checks an index for corruption for a single version of Lucene, one segment, or one part of
+ * a segment, at a time. Checks can be made from several threads at once.
+ */
+public interface IndexChecker extends Closeable {
+
+    /**
+     * Lists the parts of a segment which can be checked on their own.
+     *
+     * @return the names of the parts, like {@code postings}. Empty if segments can only be
+     *         checked as a whole.
+     */
+    @Nonnull
+    List<String> getComponents();
+
+    /**
+     * Checks a whole segment, the same way Lucene's {@code CheckIndex} does.
+     *
+     * @param segmentName the name of the segment.
+     * @throws IOException if a problem is found, or an error occurs reading.
+     */
+    void checkSegment(@Nonnull String segmentName) throws IOException;
+
+    /**
+     * Checks one part of a segment. The checks on the segment as a whole, like whether its
+     * document counts add up, are not made.
+     *
+     * @param segmentName the name of the segment.
+     * @param component the name of the part, one of {@link #getComponents()}.
+     * @throws IOException if an error occurs reading.
+     * @throws RuntimeException if a problem is found.
+     */
+    void checkComponent(@Nonnull String segmentName, @Nonnull String component) throws IOException;
+}
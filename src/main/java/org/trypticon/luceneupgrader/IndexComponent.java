@@ -0,0 +1,83 @@
+package org.trypticon.luceneupgrader;
+
+import javax.annotation.Nonnull;
+import java.util.Locale;
+
+/**
+ * Enumeration of the parts of a segment which are written separately, which is how the
+ * time and I/O of an upgrade are broken down.
+ */
+public enum IndexComponent {
+
+    /**
+     * Terms and postings, including positions and payloads.
+     */
+    POSTINGS,
+
+    /**
+     * Stored fields.
+     */
+    STORED_FIELDS,
+
+    /**
+     * Doc values.
+     */
+    DOC_VALUES,
+
+    /**
+     * Norms.
+     */
+    NORMS,
+
+    /**
+     * Points.
+     */
+    POINTS,
+
+    /**
+     * Term vectors.
+     */
+    TERM_VECTORS,
+
+    /**
+     * Everything else, like field infos, segment infos, live docs, compound files and commits.
+     */
+    OTHER;
+
+    /**
+     * Works out which component a file belongs to, from the names used by Lucene 3 through 8.
+     *
+     * @param fileName the name of the file.
+     * @return the component.
+     */
+    @Nonnull
+    static IndexComponent forFileName(@Nonnull String fileName) {
+        // Lucene 4.0 kept its norms and doc values in compound files of their own.
+        if (fileName.contains("_nrm.")) {
+            return NORMS;
+        }
+        if (fileName.contains("_dv.")) {
+            return DOC_VALUES;
+        }
+
+        String extension = fileName.substring(fileName.lastIndexOf('.') + 1).toLowerCase(Locale.ROOT);
+        switch (extension) {
+            case "tim": case "tip": case "doc": case "pos": case "pay":
+            case "frq": case "prx": case "tis": case "tii":
+                return POSTINGS;
+            case "fdt": case "fdx": case "fdm":
+                return STORED_FIELDS;
+            case "dvd": case "dvm":
+                return DOC_VALUES;
+            case "nvd": case "nvm": case "nrm":
+                return NORMS;
+            case "dim": case "dii":
+                return POINTS;
+            case "tvd": case "tvx": case "tvf":
+                return TERM_VECTORS;
+            default:
+                // Lucene 3 wrote norms changed after the segment was written to .s0, .s1 and so on.
+                return extension.matches("s\\d+") ? NORMS : OTHER;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package org.trypticon.luceneupgrader;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Splits an index into one index per segment, and joins such indexes back together,
+ * for a single version of Lucene. Also describes and removes individual segments.
+ */
+public interface IndexSplitter {
+
+    /**
+     * Splits an index into one index per segment. The segment files are hard-linked into the
+     * new indexes where possible, so the original index is left as it was.
+     *
+     * @param path the directory containing the index.
+     * @param workPath a directory to create the new indexes under.
+     * @return the directories containing the new indexes, in segment order.
+     * @throws IOException if an error occurs reading or writing.
+     */
+    @Nonnull
+    List<Path> split(@Nonnull Path path, @Nonnull Path workPath) throws IOException;
+
+    /**
+     * Joins indexes back together into a single index, keeping the documents in order.
+     *
+     * @param partPaths the directories containing the indexes to join.
+     * @param path the directory to write the joined index to. Created if it doesn't exist,
+     *             and should be empty if it does.
+     * @param userData the user data to commit the joined index with, usually that of the
+     *                 index which was split.
+     * @throws IOException if an error occurs reading or writing.
+     */
+    void join(@Nonnull List<Path> partPaths, @Nonnull Path path, @Nonnull Map<String, String> userData)
+            throws IOException;
+
+    /**
+     * Gets the user data of the latest commit of an index.
+     *
+     * @param path the directory containing the index.
+     * @return the user data, which is empty if there is none.
+     * @throws IOException if an error occurs reading the index.
+     */
+    @Nonnull
+    Map<String, String> commitUserData(@Nonnull Path path) throws IOException;
+
+    /**
+     * Lists the segments in an index.
+     *
+     * @param path the directory containing the index.
+     * @return the names of the segments, in segment order.
+     * @throws IOException if an error occurs reading the index.
+     */
+    @Nonnull
+    List<String> segmentNames(@Nonnull Path path) throws IOException;
+
+    /**
+     * Describes each segment in an index.
+     *
+     * @param path the directory containing the index.
+     * @return the descriptions, in segment order.
+     * @throws IOException if an error occurs reading the index.
+     */
+    @Nonnull
+    List<SegmentDescription> describeSegments(@Nonnull Path path) throws IOException;
+
+    /**
+     * Removes a segment from an index. The index is committed without the segment, and only
+     * then are the files which only that segment used deleted.
+     *
+     * @param path the directory containing the index.
+     * @param segmentName the name of the segment to remove.
+     * @throws IOException if an error occurs reading or writing.
+     */
+    void removeSegment(@Nonnull Path path, @Nonnull String segmentName) throws IOException;
+}
@@ -3,6 +3,8 @@ package org.trypticon.luceneupgrader;
 import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Upgrades an index to a newer version.
@@ -15,6 +17,9 @@ public class IndexUpgrader {
     @Nonnull
     private final InfoStream infoStream;
 
+    @Nonnull
+    private final IndexUpgraderConfig config;
+
     @Nonnull
     private LuceneVersion version;
 
@@ -23,10 +28,31 @@ public class IndexUpgrader {
     }
 
     public IndexUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream) throws IOException {
+        this(directory, infoStream, new IndexUpgraderConfig());
+    }
+
+    public IndexUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream,
+                         @Nonnull IndexUpgraderConfig config) throws IOException {
         this.directory = directory;
         this.infoStream = infoStream;
+        this.config = config;
 
-        version = new VersionGuesser().guess(directory);
+        if (isJournalled()) {
+            UpgradeJournal journal = UpgradeJournal.load(directory);
+            if (journal.finishInterruptedReplace(directory)) {
+                journal.delete();
+            }
+            version = new VersionGuesser().guess(directory);
+
+            // Steps which upgrade in place commit as they go, so the index can already look like it's
+            // at the step's version when it's actually only part of the way through.
+            LuceneVersion step = journal.getStep();
+            if (step != null && !version.isOlderThan(step)) {
+                version = versionBefore(step);
+            }
+        } else {
+            version = new VersionGuesser().guess(directory);
+        }
     }
 
     /**
@@ -36,13 +62,94 @@ public class IndexUpgrader {
      * @throws IOException if an error occurs reading or writing.
      */
     public void upgradeTo(LuceneVersion destinationVersion) throws IOException {
-        while (version.isOlderThan(destinationVersion)) {
-            upgradeOneStepTo(versionAfter(version));
+        // Staging only pays off when there are intermediate steps to keep off the disk.
+        if (config.getStagingDirectory() != null && !config.isCheckpointing() && !config.isLowDiskUsage() &&
+                hasSeveralStepsTo(destinationVersion)) {
+            if (new StagedUpgrader(directory, infoStream, config).upgrade(destinationVersion)) {
+                version = destinationVersion;
+                return;
+            }
         }
+
+        upgradeUnstagedTo(destinationVersion);
+    }
+
+    /**
+     * Upgrades to a specific version of Lucene, writing the upgraded index to another directory and
+     * leaving the original untouched. With the destination on another disk, reading and writing
+     * don't compete. Indexes in between steps go in the
+     * {@link IndexUpgraderConfig#setScratchDirectory(Path) scratch directory} if there is one.
+     * Checkpointing isn't supported, and pipelining and staging are not used.
+     *
+     * @param destinationVersion the destination version.
+     * @param destinationDirectory the directory to write the upgraded index to, which must not exist yet.
+     * @throws IOException if an error occurs reading or writing.
+     */
+    public void upgradeTo(LuceneVersion destinationVersion, Path destinationDirectory) throws IOException {
+        if (config.isCheckpointing()) {
+            throw new IllegalStateException("Checkpointing isn't supported when upgrading to another directory");
+        }
+        new OutOfPlaceUpgrader(directory, infoStream, config).upgrade(version, destinationVersion, destinationDirectory);
+    }
+
+    /**
+     * Upgrades to a specific version of Lucene, working on the index where it is.
+     *
+     * @param destinationVersion the destination version.
+     * @throws IOException if an error occurs reading or writing.
+     */
+    void upgradeUnstagedTo(LuceneVersion destinationVersion) throws IOException {
+        // Pipelining only pays off when there are at least two steps to overlap.
+        if (config.isPipelined() && !config.isCheckpointing() && !config.isLowDiskUsage() &&
+                !version.isOlderThan(LuceneVersion.VERSION_3) && hasSeveralStepsTo(destinationVersion)) {
+            if (new PipelinedUpgrader(directory, infoStream, config).upgrade(version, destinationVersion)) {
+                version = destinationVersion;
+                return;
+            }
+        }
+
+        List<LuceneVersion> steps = stepsTo(version, destinationVersion, config);
+        long previousStepsNanos = 0;
+        for (int i = 0; i < steps.size(); i++) {
+            previousStepsNanos += upgradeOneStepTo(steps.get(i), i + 1, steps.size(), previousStepsNanos);
+        }
+    }
+
+    /**
+     * Works out whether the step in progress is recorded in a journal. Steps which upgrade in place
+     * commit one segment at a time when checkpointing or keeping disk usage down, so the index can't
+     * be relied on to say what version it's at if one of them is interrupted.
+     */
+    private boolean isJournalled() {
+        return config.isCheckpointing() || config.isLowDiskUsage();
     }
 
-    private void upgradeOneStepTo(LuceneVersion version) throws IOException {
-        version.createUpgrader(directory, infoStream).upgrade();
+    private boolean hasSeveralStepsTo(LuceneVersion destinationVersion) {
+        return version.isOlderThan(destinationVersion) &&
+               nextStep(version, destinationVersion, config).isOlderThan(destinationVersion);
+    }
+
+    /**
+     * Performs one step of the upgrade.
+     *
+     * @param version the version to upgrade to.
+     * @param stepNumber which step this is, counting from 1.
+     * @param stepCount how many steps there are.
+     * @param previousStepsNanos how long the steps before this one took.
+     * @return how long the step took, in nanoseconds.
+     * @throws IOException if an error occurs reading or writing.
+     */
+    private long upgradeOneStepTo(LuceneVersion version, int stepNumber, int stepCount,
+                                  long previousStepsNanos) throws IOException {
+        UpgradeJournal journal = null;
+        if (isJournalled()) {
+            journal = UpgradeJournal.load(directory);
+            journal.beginStep(version);
+        }
+
+        UpgradeProgress progress = UpgradeProgress.start(config, directory, version, stepNumber, stepCount,
+                                                         previousStepsNanos);
+        progress.upgrade(version.createUpgrader(directory, infoStream, config));
 
         // Sanity check.
         LuceneVersion actualVersion = new VersionGuesser().guess(directory);
@@ -52,10 +159,48 @@ public class IndexUpgrader {
         }
 
         this.version = version;
+
+        if (journal != null) {
+            journal.delete();
+        }
+
+        new IndexVerifier(infoStream, config).verifyStep(directory, version, stepNumber == stepCount);
+        return progress.getElapsedNanos();
+    }
+
+    /**
+     * Works out the versions each step should upgrade to, in order.
+     */
+    static List<LuceneVersion> stepsTo(LuceneVersion version, LuceneVersion destinationVersion,
+                                       IndexUpgraderConfig config) {
+        List<LuceneVersion> steps = new ArrayList<>();
+        while (version.isOlderThan(destinationVersion)) {
+            version = nextStep(version, destinationVersion, config);
+            steps.add(version);
+        }
+        return steps;
+    }
+
+    /**
+     * Works out the version the next step should upgrade to. That's usually the next version, but
+     * Lucene 8 can read a Lucene 6 index through Lucene 7's codecs, so the Lucene 7 step can be skipped.
+     */
+    static LuceneVersion nextStep(LuceneVersion version, LuceneVersion destinationVersion,
+                                  IndexUpgraderConfig config) {
+        LuceneVersion step = versionAfter(version);
+        if (config.isSkipLucene7() && step == LuceneVersion.VERSION_7 && destinationVersion == LuceneVersion.VERSION_8) {
+            step = LuceneVersion.VERSION_8;
+        }
+        return step;
     }
 
     private static LuceneVersion versionAfter(LuceneVersion version) {
         // we know this only gets called when we have checked that version is older.
         return LuceneVersion.values()[version.ordinal() + 1];
     }
+
+    private static LuceneVersion versionBefore(LuceneVersion version) {
+        // steps are only ever recorded for versions we can upgrade to, so there is always one before.
+        return LuceneVersion.values()[version.ordinal() - 1];
+    }
 }
@@ -0,0 +1,595 @@
+package org.trypticon.luceneupgrader;
+
+import org.apache.lucene.util.IOUtils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Holds the settings which control how {@link IndexUpgrader} performs each upgrade step.
+ * The defaults give the same behaviour as upgrading without a config.
+ */
+public class IndexUpgraderConfig implements Cloneable {
+
+    /**
+     * Value for the merge thread count which means to pick one from the number of available
+     * cores and whether the index appears to be on a spinning disk.
+     */
+    public static final int AUTO_DETECT_MERGE_THREADS = -1;
+
+    /**
+     * Default for the largest index which is staged, 1 GiB.
+     */
+    public static final long DEFAULT_MAX_STAGED_INDEX_SIZE = 1L << 30;
+
+    private int mergeThreadCount = 1;
+
+    private boolean splitSegments;
+
+    private int mergeComponentThreadCount = 1;
+
+    private boolean checkpointing;
+
+    private boolean reuseUnchangedFiles;
+
+    private int maxSegmentsPerMerge = 10;
+
+    private boolean pipelined;
+
+    private boolean skipLucene7;
+
+    @Nullable
+    private Path stagingDirectory;
+
+    private long maxStagedIndexSize = DEFAULT_MAX_STAGED_INDEX_SIZE;
+
+    private boolean deferredSync;
+
+    private boolean disposableIndex;
+
+    @Nullable
+    private Path scratchDirectory;
+
+    private boolean lowDiskUsage;
+
+    private boolean fusedChecksums;
+
+    @Nonnull
+    private VerificationMode verificationMode = VerificationMode.NONE;
+
+    private int verificationThreadCount = Runtime.getRuntime().availableProcessors();
+
+    @Nullable
+    private Consumer<VerificationReport> verificationListener;
+
+    @Nullable
+    private IoThrottle ioThrottle;
+
+    @Nullable
+    private UpgradeListener upgradeListener;
+
+    /**
+     * Sets the number of threads used to rewrite segments.
+     * When more than one thread is used, each old segment is rewritten by its own merge
+     * and the merges run concurrently, instead of everything going through a single merge.
+     *
+     * @param mergeThreadCount the number of threads, or {@link #AUTO_DETECT_MERGE_THREADS}.
+     * @return this config.
+     */
+    public IndexUpgraderConfig setMergeThreadCount(int mergeThreadCount) {
+        if (mergeThreadCount < 1 && mergeThreadCount != AUTO_DETECT_MERGE_THREADS) {
+            throw new IllegalArgumentException("mergeThreadCount must be at least 1, or AUTO_DETECT_MERGE_THREADS: " +
+                                               mergeThreadCount);
+        }
+        this.mergeThreadCount = mergeThreadCount;
+        return this;
+    }
+
+    /**
+     * Gets the number of threads used to rewrite segments.
+     *
+     * @return the number of threads, or {@link #AUTO_DETECT_MERGE_THREADS}.
+     */
+    public int getMergeThreadCount() {
+        return mergeThreadCount;
+    }
+
+    /**
+     * Sets whether segments may be split into ranges of documents so that a single large
+     * segment can be rewritten by several threads. Only used by the steps which add the
+     * old segments into a new index (Lucene 7 and 8), and only when there are fewer
+     * segments than merge threads. Each range becomes its own segment in the output,
+     * and every range still has to scan the whole of the segment's postings.
+     *
+     * @param splitSegments {@code true} to split segments.
+     * @return this config.
+     */
+    public IndexUpgraderConfig setSplitSegments(boolean splitSegments) {
+        this.splitSegments = splitSegments;
+        return this;
+    }
+
+    /**
+     * Gets whether segments may be split into ranges of documents.
+     *
+     * @return {@code true} if segments may be split.
+     */
+    public boolean isSplitSegments() {
+        return splitSegments;
+    }
+
+    /**
+     * Sets the number of threads used inside a single merge to write the different parts
+     * of the new segment (stored fields, postings, doc values, norms, term vectors, and so
+     * on) at the same time. Only used by the Lucene 4 to 7 steps. The threads share any
+     * {@link #setIoThrottle(IoThrottle) I/O throttle}, like the rest of the upgrade.
+     * This can be combined with {@link #setMergeThreadCount(int)}, in which case each of
+     * the concurrent merges uses this many threads, and the threads of a merge also share
+     * its merge rate limit.
+     *
+     * @param mergeComponentThreadCount the number of threads.
+     * @return this config.
+     */
+    public IndexUpgraderConfig setMergeComponentThreadCount(int mergeComponentThreadCount) {
+        if (mergeComponentThreadCount < 1) {
+            throw new IllegalArgumentException("mergeComponentThreadCount must be at least 1: " +
+                                               mergeComponentThreadCount);
+        }
+        this.mergeComponentThreadCount = mergeComponentThreadCount;
+        return this;
+    }
+
+    /**
+     * Gets the number of threads used inside a single merge.
+     *
+     * @return the number of threads.
+     */
+    public int getMergeComponentThreadCount() {
+        return mergeComponentThreadCount;
+    }
+
+    /**
+     * Sets whether to checkpoint the upgrade, so that an upgrade which was interrupted can
+     * be resumed by running it again with the same settings. Progress is committed after
+     * each segment is rewritten, and an {@link UpgradeJournal} next to the index records
+     * which step was in progress.
+     * The Lucene 3 to 6 steps then rewrite each old segment separately, one at a time,
+     * instead of merging them all into one.
+     *
+     * @param checkpointing {@code true} to checkpoint the upgrade.
+     * @return this config.
+     */
+    public IndexUpgraderConfig setCheckpointing(boolean checkpointing) {
+        this.checkpointing = checkpointing;
+        return this;
+    }
+
+    /**
+     * Gets whether to checkpoint the upgrade.
+     *
+     * @return {@code true} if the upgrade is checkpointed.
+     */
+    public boolean isCheckpointing() {
+        return checkpointing;
+    }
+
+    /**
+     * Sets whether to reuse the files of old segments whose format didn't change, instead of
+     * re-encoding them. Only used by the steps which add the old segments into a new index
+     * (Lucene 7 and 8). Each old segment which can be reused becomes its own segment in the
+     * new index, with its stored fields and term vectors (and its points, when upgrading to
+     * Lucene 8) hard-linked from the old segment, or copied if the file system can't link them.
+     * Deleted documents in those segments are kept as deletions rather than being dropped.
+     *
+     * @param reuseUnchangedFiles {@code true} to reuse unchanged files.
+     * @return this config.
+     */
+    public IndexUpgraderConfig setReuseUnchangedFiles(boolean reuseUnchangedFiles) {
+        this.reuseUnchangedFiles = reuseUnchangedFiles;
+        return this;
+    }
+
+    /**
+     * Gets whether to reuse the files of old segments whose format didn't change.
+     *
+     * @return {@code true} if unchanged files are reused.
+     */
+    public boolean isReuseUnchangedFiles() {
+        return reuseUnchangedFiles;
+    }
+
+    /**
+     * Sets the most old segments merged together by one merge in the Lucene 3 to 6 steps,
+     * when they merge on a single thread without checkpointing. Each document is rewritten
+     * once per step either way, but the step leaves one segment per merge, so an index of
+     * 300 segments comes out of each step as 30 segments with the default of 10.
+     * Setting this to at least the number of segments merges the whole index into one segment
+     * in a single pass, at the cost of holding every segment's files open at the same time.
+     *
+     * @param maxSegmentsPerMerge the maximum number of segments per merge.
+     * @return this config.
+     */
+    public IndexUpgraderConfig setMaxSegmentsPerMerge(int maxSegmentsPerMerge) {
+        if (maxSegmentsPerMerge < 2) {
+            throw new IllegalArgumentException("maxSegmentsPerMerge must be at least 2: " + maxSegmentsPerMerge);
+        }
+        this.maxSegmentsPerMerge = maxSegmentsPerMerge;
+        return this;
+    }
+
+    /**
+     * Gets the most old segments merged together by one merge.
+     *
+     * @return the maximum number of segments per merge.
+     */
+    public int getMaxSegmentsPerMerge() {
+        return maxSegmentsPerMerge;
+    }
+
+    /**
+     * Sets whether to pipeline an upgrade which goes through more than one step. The index is
+     * split into one index per segment, and each of those goes through the steps on its own,
+     * with every step running on its own thread and taking segments from the step before as
+     * soon as they are ready. Each old segment becomes its own segment in the new index.
+     * Not used when checkpointing, or for indexes older than Lucene 3.
+     *
+     * @param pipelined {@code true} to pipeline the upgrade.
+     * @return this config.
+     */
+    public IndexUpgraderConfig setPipelined(boolean pipelined) {
+        this.pipelined = pipelined;
+        return this;
+    }
+
+    /**
+     * Gets whether to pipeline an upgrade which goes through more than one step.
+     *
+     * @return {@code true} if the upgrade is pipelined.
+     */
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    /**
+     * Sets whether to skip the Lucene 7 step when upgrading to Lucene 8. A Lucene 6 index is
+     * then read through Lucene 7's codecs and written straight out in Lucene 8 format, so the
+     * Lucene 7 copy of the index is never written.
+     *
+     * @param skipLucene7 {@code true} to skip the Lucene 7 step.
+     * @return this config.
+     */
+    public IndexUpgraderConfig setSkipLucene7(boolean skipLucene7) {
+        this.skipLucene7 = skipLucene7;
+        return this;
+    }
+
+    /**
+     * Gets whether to skip the Lucene 7 step when upgrading to Lucene 8.
+     *
+     * @return {@code true} if the Lucene 7 step is skipped.
+     */
+    public boolean isSkipLucene7() {
+        return skipLucene7;
+    }
+
+    /**
+     * Sets a directory to stage upgrades in, which should be on a file system held in memory,
+     * such as {@code /dev/shm} or another tmpfs mount. An upgrade which goes through more than
+     * one step copies the index there, runs every step there, then copies the result back,
+     * so only the final index is written to the index's own disk. Indexes bigger than
+     * {@link #setMaxStagedIndexSize(long) the maximum staged index size} are upgraded in place
+     * as usual, as are checkpointed upgrades, whose progress wouldn't survive in memory anyway.
+     *
+     * @param stagingDirectory the directory to stage upgrades in, or {@code null} to not stage them.
+     * @return this config.
+     */
+    public IndexUpgraderConfig setStagingDirectory(@Nullable Path stagingDirectory) {
+        this.stagingDirectory = stagingDirectory;
+        return this;
+    }
+
+    /**
+     * Gets the directory to stage upgrades in.
+     *
+     * @return the directory, or {@code null} if upgrades are not staged.
+     */
+    @Nullable
+    public Path getStagingDirectory() {
+        return stagingDirectory;
+    }
+
+    /**
+     * Sets the largest index which is staged. A step can need room for the old and new copies of
+     * the index at the same time, so the staging directory can briefly hold up to about three
+     * times this much.
+     *
+     * @param maxStagedIndexSize the maximum size in bytes.
+     * @return this config.
+     */
+    public IndexUpgraderConfig setMaxStagedIndexSize(long maxStagedIndexSize) {
+        if (maxStagedIndexSize < 0) {
+            throw new IllegalArgumentException("maxStagedIndexSize must not be negative: " + maxStagedIndexSize);
+        }
+        this.maxStagedIndexSize = maxStagedIndexSize;
+        return this;
+    }
+
+    /**
+     * Gets the largest index which is staged.
+     *
+     * @return the maximum size in bytes.
+     */
+    public long getMaxStagedIndexSize() {
+        return maxStagedIndexSize;
+    }
+
+    /**
+     * Sets whether to defer syncing files to disk until the upgrade has finished. Normally every
+     * commit of every step syncs every file it wrote, even though an index which only exists
+     * part of the way through an upgrade is thrown away if the upgrade dies anyway. With this
+     * set, the steps don't sync the copies which are thrown away like that: the indexes in between
+     * steps and the destination when {@link IndexUpgrader#upgradeTo(LuceneVersion, Path) upgrading
+     * to another directory}, the staged copy when {@link #setStagingDirectory(Path) staging}, and
+     * the single-segment indexes when {@link #setPipelined(boolean) pipelining}. The finished index
+     * is synced once at the end. Steps working on the index in place always sync as they go, since
+     * the original is gone once they commit.
+     *
+     * @param deferredSync {@code true} to sync only the finished index.
+     * @return this config.
+     */
+    public IndexUpgraderConfig setDeferredSync(boolean deferredSync) {
+        this.deferredSync = deferredSync;
+        return this;
+    }
+
+    /**
+     * Gets whether to defer syncing files to disk until the upgrade has finished.
+     *
+     * @return {@code true} if only the finished index is synced.
+     */
+    public boolean isDeferredSync() {
+        return deferredSync;
+    }
+
+    /**
+     * Sets a directory for scratch files, which can be on a different disk to the index. Temporary
+     * files written by the Lucene 6-8 steps, such as the ones written while sorting points, go there.
+     * When {@link IndexUpgrader#upgradeTo(LuceneVersion, Path) upgrading to another directory},
+     * the indexes in between steps go there too.
+     *
+     * @param scratchDirectory the directory for scratch files, or {@code null} to keep them with the index.
+     * @return this config.
+     */
+    public IndexUpgraderConfig setScratchDirectory(@Nullable Path scratchDirectory) {
+        this.scratchDirectory = scratchDirectory;
+        return this;
+    }
+
+    /**
+     * Gets the directory for scratch files.
+     *
+     * @return the directory, or {@code null} if scratch files are kept with the index.
+     */
+    @Nullable
+    public Path getScratchDirectory() {
+        return scratchDirectory;
+    }
+
+    /**
+     * Sets whether to keep the extra disk space needed during the upgrade down to about the size
+     * of the largest segment, instead of the size of the whole index. Segments are rewritten one
+     * at a time, and each commit deletes the files of the segment it replaced. The Lucene 7 and 8
+     * steps move each segment out of the original index into the new one as they go. Like with
+     * checkpointing, a journal is kept next to the index, and an interrupted upgrade must be run
+     * again with this set to finish it. Merge threads, staging and pipelining are not used, and
+     * the upgraded index keeps the same segments as the original.
+     *
+     * @param lowDiskUsage {@code true} to keep the extra disk space needed down.
+     * @return this config.
+     */
+    public IndexUpgraderConfig setLowDiskUsage(boolean lowDiskUsage) {
+        this.lowDiskUsage = lowDiskUsage;
+        return this;
+    }
+
+    /**
+     * Gets whether to keep the extra disk space needed during the upgrade down.
+     *
+     * @return {@code true} if segments are rewritten one at a time.
+     */
+    public boolean isLowDiskUsage() {
+        return lowDiskUsage;
+    }
+
+    /**
+     * Sets whether to check the checksums of the files being merged from the bytes the merge reads
+     * anyway. Normally every file is read end to end to check its checksum before the merge reads it
+     * again. With this set, the Lucene 4-7 steps only note which files to check, keep a running
+     * checksum as the merge reads them, and read whatever the merge skipped before committing. A
+     * checksum which doesn't match still fails the step before anything written from the file is
+     * committed. Lucene 3 files have no checksums, and the Lucene 8 step's codecs check their own.
+     *
+     * @param fusedChecksums {@code true} to check checksums as the merge reads the files.
+     * @return this config.
+     */
+    public IndexUpgraderConfig setFusedChecksums(boolean fusedChecksums) {
+        this.fusedChecksums = fusedChecksums;
+        return this;
+    }
+
+    /**
+     * Gets whether to check checksums as the merge reads the files.
+     *
+     * @return {@code true} if checksums are checked as the merge reads the files.
+     */
+    public boolean isFusedChecksums() {
+        return fusedChecksums;
+    }
+
+    /**
+     * Sets when to check the upgraded index for corruption with Lucene's {@code CheckIndex}.
+     * Segments are checked concurrently, and a segment too big to be checked in its share of the
+     * time has its parts, like postings and stored fields, checked concurrently instead. The
+     * report goes to the info stream and the {@link #setVerificationListener(Consumer) listener},
+     * and if any problems were found, the upgrade fails with an {@link IndexVerificationException}.
+     *
+     * @param verificationMode when to check the index.
+     * @return this config.
+     */
+    public IndexUpgraderConfig setVerificationMode(@Nonnull VerificationMode verificationMode) {
+        this.verificationMode = verificationMode;
+        return this;
+    }
+
+    /**
+     * Gets when to check the upgraded index for corruption.
+     *
+     * @return when to check the index.
+     */
+    @Nonnull
+    public VerificationMode getVerificationMode() {
+        return verificationMode;
+    }
+
+    /**
+     * Sets the number of threads used to check the index. Defaults to the number of available cores.
+     *
+     * @param verificationThreadCount the number of threads, at least 1.
+     * @return this config.
+     */
+    public IndexUpgraderConfig setVerificationThreadCount(int verificationThreadCount) {
+        if (verificationThreadCount < 1) {
+            throw new IllegalArgumentException("verificationThreadCount must be at least 1: " +
+                                               verificationThreadCount);
+        }
+        this.verificationThreadCount = verificationThreadCount;
+        return this;
+    }
+
+    /**
+     * Gets the number of threads used to check the index.
+     *
+     * @return the number of threads.
+     */
+    public int getVerificationThreadCount() {
+        return verificationThreadCount;
+    }
+
+    /**
+     * Sets a listener which is given the report each time the index is checked, whether or not
+     * any problems were found.
+     *
+     * @param verificationListener the listener, or {@code null} for none.
+     * @return this config.
+     */
+    public IndexUpgraderConfig setVerificationListener(@Nullable Consumer<VerificationReport> verificationListener) {
+        this.verificationListener = verificationListener;
+        return this;
+    }
+
+    /**
+     * Gets the listener which is given each verification report.
+     *
+     * @return the listener, or {@code null} if there is none.
+     */
+    @Nullable
+    public Consumer<VerificationReport> getVerificationListener() {
+        return verificationListener;
+    }
+
+    /**
+     * Sets a throttle to limit how fast every step reads and writes the index, including
+     * copies of the whole index. The throttle's rates can be changed while the upgrade runs.
+     * Reads and writes which the throttle sees are slower than otherwise even when it has no
+     * limits set, so don't set one unless it may be needed.
+     *
+     * @param ioThrottle the throttle, or {@code null} for no limits.
+     * @return this config.
+     */
+    public IndexUpgraderConfig setIoThrottle(@Nullable IoThrottle ioThrottle) {
+        this.ioThrottle = ioThrottle;
+        return this;
+    }
+
+    /**
+     * Gets the throttle limiting how fast the steps read and write.
+     *
+     * @return the throttle, or {@code null} if there are no limits.
+     */
+    @Nullable
+    public IoThrottle getIoThrottle() {
+        return ioThrottle;
+    }
+
+    /**
+     * Sets a listener to be told how the upgrade is progressing, step by step and segment by
+     * segment. Reads and writes are counted when there is a listener, which costs a little.
+     *
+     * @param upgradeListener the listener, or {@code null} for no listener.
+     * @return this config.
+     */
+    public IndexUpgraderConfig setUpgradeListener(@Nullable UpgradeListener upgradeListener) {
+        this.upgradeListener = upgradeListener;
+        return this;
+    }
+
+    /**
+     * Gets the listener which is told how the upgrade is progressing.
+     *
+     * @return the listener, or {@code null} if there is none.
+     */
+    @Nullable
+    public UpgradeListener getUpgradeListener() {
+        return upgradeListener;
+    }
+
+    /**
+     * Works out whether the steps should skip syncing, which they only do when it was asked for,
+     * the index is one which is thrown away if the upgrade dies, and nothing relies on each commit
+     * being durable.
+     *
+     * @return {@code true} if the steps should skip syncing.
+     */
+    public boolean resolveDeferredSync() {
+        return deferredSync && disposableIndex && !checkpointing && !lowDiskUsage;
+    }
+
+    /**
+     * Copies this config for upgrading a copy of an index which is thrown away if the upgrade dies,
+     * which is the only kind of index whose syncs are deferred.
+     *
+     * @return the copy.
+     */
+    IndexUpgraderConfig forDisposableIndex() {
+        try {
+            IndexUpgraderConfig copy = (IndexUpgraderConfig) clone();
+            copy.disposableIndex = true;
+            return copy;
+        } catch (CloneNotSupportedException e) {
+            throw new AssertionError("Cloneable but couldn't be cloned", e);
+        }
+    }
+
+    /**
+     * Works out the actual number of merge threads to use for an index.
+     *
+     * @param directory the directory containing the index.
+     * @return the number of threads to use, always at least 1.
+     * @throws IOException if an error occurs checking the storage the index lives on.
+     */
+    public int resolveMergeThreadCount(@Nonnull Path directory) throws IOException {
+        if (mergeThreadCount != AUTO_DETECT_MERGE_THREADS) {
+            return mergeThreadCount;
+        }
+
+        // Concurrent merges on a spinning disk just fight over the head.
+        if (IOUtils.spins(directory)) {
+            return 1;
+        }
+
+        return Runtime.getRuntime().availableProcessors();
+    }
+}
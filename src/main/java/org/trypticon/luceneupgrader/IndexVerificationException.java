@@ -0,0 +1,32 @@
+package org.trypticon.luceneupgrader;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+
+/**
+ * Thrown when checking an upgraded index finds problems.
+ */
+public class IndexVerificationException extends IOException {
+    @Nonnull
+    private final VerificationReport report;
+
+    public IndexVerificationException(@Nonnull VerificationReport report) {
+        super(report.toString());
+        this.report = report;
+        for (SegmentCheck check : report.getFailures()) {
+            if (check.getFailure() != null) {
+                addSuppressed(check.getFailure());
+            }
+        }
+    }
+
+    /**
+     * Gets the report of the checks which were made.
+     *
+     * @return the report.
+     */
+    @Nonnull
+    public VerificationReport getReport() {
+        return report;
+    }
+}
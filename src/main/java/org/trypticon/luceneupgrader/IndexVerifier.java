@@ -0,0 +1,134 @@
+package org.trypticon.luceneupgrader;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Checks an index for corruption, checking segments concurrently. A segment too big to be
+ * checked within its share of the time has its parts checked concurrently instead, so one
+ * huge segment doesn't leave the other threads idle.
+ */
+class IndexVerifier {
+
+    @Nonnull
+    private final InfoStream infoStream;
+
+    @Nonnull
+    private final IndexUpgraderConfig config;
+
+    IndexVerifier(@Nonnull InfoStream infoStream, @Nonnull IndexUpgraderConfig config) {
+        this.infoStream = infoStream;
+        this.config = config;
+    }
+
+    /**
+     * Checks an index after a step, if the config asks for it to be checked then.
+     *
+     * @param path the directory containing the index.
+     * @param version the version the step upgraded to.
+     * @param lastStep {@code true} if this was the last step of the upgrade.
+     * @throws IndexVerificationException if problems are found.
+     * @throws IOException if an error occurs reading.
+     */
+    void verifyStep(@Nonnull Path path, @Nonnull LuceneVersion version, boolean lastStep) throws IOException {
+        VerificationMode mode = config.getVerificationMode();
+        if (mode == VerificationMode.EVERY_STEP || (mode == VerificationMode.FINAL_STEP && lastStep)) {
+            verify(path, version);
+        }
+    }
+
+    /**
+     * Checks an index.
+     *
+     * @param path the directory containing the index.
+     * @param version the version the index is at.
+     * @return the report, which is also logged and passed to the config's listener.
+     * @throws IndexVerificationException if problems are found.
+     * @throws IOException if an error occurs reading.
+     */
+    @Nonnull
+    VerificationReport verify(@Nonnull Path path, @Nonnull LuceneVersion version) throws IOException {
+        long startNanos = System.nanoTime();
+        int threadCount = config.getVerificationThreadCount();
+        List<SegmentDescription> segments = version.createSplitter().describeSegments(path);
+        long totalSize = 0;
+        for (SegmentDescription segment : segments) {
+            totalSize += segment.getSizeInBytes();
+        }
+
+        SegmentCheck[] checks;
+        try (IndexChecker checker = version.createChecker(path)) {
+            List<String> components = checker.getComponents();
+            List<SegmentDescription> checkSegments = new ArrayList<>();
+            List<String> checkComponents = new ArrayList<>();
+            for (SegmentDescription segment : segments) {
+                if (!components.isEmpty() && threadCount > 1 && segment.getSizeInBytes() * threadCount > totalSize) {
+                    for (String component : components) {
+                        checkSegments.add(segment);
+                        checkComponents.add(component);
+                    }
+                } else {
+                    checkSegments.add(segment);
+                    checkComponents.add(null);
+                }
+            }
+
+            // Biggest segments first, so that none of them is left until the end while the other threads sit idle.
+            checks = new SegmentCheck[checkSegments.size()];
+            Integer[] order = new Integer[checks.length];
+            Arrays.setAll(order, i -> i);
+            Arrays.sort(order, Comparator.comparingLong(i -> -checkSegments.get(i).getSizeInBytes()));
+            List<ParallelUtils.IOTask> tasks = new ArrayList<>(checks.length);
+            for (int i : order) {
+                tasks.add(() -> checks[i] = check(checker, checkSegments.get(i), checkComponents.get(i)));
+            }
+            ParallelUtils.runAll(threadCount, "verify", tasks);
+        }
+
+        VerificationReport report = new VerificationReport(path, version, Arrays.asList(checks),
+                                                           System.nanoTime() - startNanos);
+        if (infoStream.isEnabled("VERIFY")) {
+            for (String line : report.toString().split("\n")) {
+                infoStream.message("VERIFY", line);
+            }
+        }
+        Consumer<VerificationReport> listener = config.getVerificationListener();
+        if (listener != null) {
+            listener.accept(report);
+        }
+        if (!report.isClean()) {
+            throw new IndexVerificationException(report);
+        }
+        return report;
+    }
+
+    /**
+     * Makes a single check, catching whatever problem it finds.
+     *
+     * @param checker the checker.
+     * @param segment the segment to check.
+     * @param component the part of the segment to check, or {@code null} to check the whole segment.
+     * @return the result.
+     */
+    private static SegmentCheck check(IndexChecker checker, SegmentDescription segment, @Nullable String component) {
+        long startNanos = System.nanoTime();
+        Throwable failure = null;
+        try {
+            if (component == null) {
+                checker.checkSegment(segment.getName());
+            } else {
+                checker.checkComponent(segment.getName(), component);
+            }
+        } catch (IOException | RuntimeException | AssertionError e) {
+            failure = e;
+        }
+        return new SegmentCheck(segment, component, System.nanoTime() - startNanos, failure);
+    }
+}
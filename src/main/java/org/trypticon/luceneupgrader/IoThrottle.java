@@ -0,0 +1,145 @@
+package org.trypticon.luceneupgrader;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how fast an upgrade reads and writes, so that it can run on a disk which is also
+ * serving searches without saturating it. The limits are shared by every step and every
+ * thread using the throttle, so one throttle set on several upgrades limits them all
+ * together, and they can be changed while the upgrades are running.
+ */
+public class IoThrottle {
+
+    /**
+     * How many bytes can be read or written between checks of the rate. Big enough that the
+     * checks cost nothing, small enough that a changed rate takes effect straight away.
+     */
+    public static final int MIN_PAUSE_CHECK_BYTES = 64 * 1024;
+
+    private final Rate readRate = new Rate();
+
+    private final Rate writeRate = new Rate();
+
+    /**
+     * Sets the most to read per second.
+     *
+     * @param mbPerSec the rate in MiB per second, or {@link Double#POSITIVE_INFINITY} for no limit.
+     * @return this throttle.
+     */
+    public IoThrottle setMaxReadMBPerSec(double mbPerSec) {
+        readRate.setMBPerSec(mbPerSec);
+        return this;
+    }
+
+    /**
+     * Gets the most to read per second.
+     *
+     * @return the rate in MiB per second, or {@link Double#POSITIVE_INFINITY} if there is no limit.
+     */
+    public double getMaxReadMBPerSec() {
+        return readRate.mbPerSec;
+    }
+
+    /**
+     * Sets the most to write per second.
+     *
+     * @param mbPerSec the rate in MiB per second, or {@link Double#POSITIVE_INFINITY} for no limit.
+     * @return this throttle.
+     */
+    public IoThrottle setMaxWriteMBPerSec(double mbPerSec) {
+        writeRate.setMBPerSec(mbPerSec);
+        return this;
+    }
+
+    /**
+     * Gets the most to write per second.
+     *
+     * @return the rate in MiB per second, or {@link Double#POSITIVE_INFINITY} if there is no limit.
+     */
+    public double getMaxWriteMBPerSec() {
+        return writeRate.mbPerSec;
+    }
+
+    /**
+     * Called after reading, to wait for as long as it takes to keep to the read rate.
+     *
+     * @param bytes the number of bytes read.
+     * @return the time spent waiting, in nanoseconds.
+     * @throws InterruptedIOException if the thread is interrupted while waiting.
+     */
+    public long pauseForRead(long bytes) throws InterruptedIOException {
+        return readRate.pause(bytes);
+    }
+
+    /**
+     * Called after writing, to wait for as long as it takes to keep to the write rate.
+     *
+     * @param bytes the number of bytes written.
+     * @return the time spent waiting, in nanoseconds.
+     * @throws InterruptedIOException if the thread is interrupted while waiting.
+     */
+    public long pauseForWrite(long bytes) throws InterruptedIOException {
+        return writeRate.pause(bytes);
+    }
+
+    /**
+     * A limit on the rate of one kind of I/O, shared by all the threads doing it.
+     */
+    private static class Rate {
+
+        /**
+         * Waits shorter than this are put off until the debt builds up, since sleeping for less
+         * than about a millisecond isn't accurate.
+         */
+        private static final long MIN_PAUSE_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+        private volatile double mbPerSec = Double.POSITIVE_INFINITY;
+
+        /**
+         * The time by which everything done so far would have been done at the current rate.
+         */
+        private long nextNanos = System.nanoTime();
+
+        private void setMBPerSec(double mbPerSec) {
+            if (!(mbPerSec > 0)) {
+                throw new IllegalArgumentException("mbPerSec must be positive: " + mbPerSec);
+            }
+            this.mbPerSec = mbPerSec;
+        }
+
+        private long pause(long bytes) throws InterruptedIOException {
+            double mbPerSec = this.mbPerSec;
+            if (mbPerSec == Double.POSITIVE_INFINITY) {
+                return 0;
+            }
+
+            long startNanos = System.nanoTime();
+            long targetNanos;
+            synchronized (this) {
+                // Time spent idle doesn't build up into a burst later. The times are compared by
+                // their difference, since nanoTime() can have any origin and even overflow.
+                if (nextNanos - startNanos < 0) {
+                    nextNanos = startNanos;
+                }
+                nextNanos += (long) (bytes / (mbPerSec * 1024 * 1024) * 1e9);
+                targetNanos = nextNanos;
+            }
+            if (targetNanos - startNanos < MIN_PAUSE_NANOS) {
+                return 0;
+            }
+
+            long nowNanos = startNanos;
+            try {
+                while (targetNanos - nowNanos > 0) {
+                    TimeUnit.NANOSECONDS.sleep(targetNanos - nowNanos);
+                    nowNanos = System.nanoTime();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for the I/O rate limit");
+            }
+            return nowNanos - startNanos;
+        }
+    }
+}
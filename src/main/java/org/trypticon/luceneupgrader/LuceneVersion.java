@@ -1,13 +1,26 @@
 package org.trypticon.luceneupgrader;
 
+import org.trypticon.luceneupgrader.lucene3.IndexChecker3;
+import org.trypticon.luceneupgrader.lucene3.IndexSplitter3;
 import org.trypticon.luceneupgrader.lucene3.VersionUpgrader3;
+import org.trypticon.luceneupgrader.lucene4.IndexChecker4;
+import org.trypticon.luceneupgrader.lucene4.IndexSplitter4;
 import org.trypticon.luceneupgrader.lucene4.VersionUpgrader4;
+import org.trypticon.luceneupgrader.lucene5.IndexChecker5;
+import org.trypticon.luceneupgrader.lucene5.IndexSplitter5;
 import org.trypticon.luceneupgrader.lucene5.VersionUpgrader5;
+import org.trypticon.luceneupgrader.lucene6.IndexChecker6;
+import org.trypticon.luceneupgrader.lucene6.IndexSplitter6;
 import org.trypticon.luceneupgrader.lucene6.VersionUpgrader6;
+import org.trypticon.luceneupgrader.lucene7.IndexChecker7;
+import org.trypticon.luceneupgrader.lucene7.IndexSplitter7;
 import org.trypticon.luceneupgrader.lucene7.VersionUpgrader7;
+import org.trypticon.luceneupgrader.lucene8.IndexChecker8;
+import org.trypticon.luceneupgrader.lucene8.IndexSplitter8;
 import org.trypticon.luceneupgrader.lucene8.VersionUpgrader8;
 
 import javax.annotation.Nonnull;
+import java.io.IOException;
 import java.nio.file.Path;
 
 /**
@@ -17,57 +30,147 @@ public enum LuceneVersion {
 
     VERSION_1 {
         @Override
-        protected VersionUpgrader createUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream) {
+        protected VersionUpgrader createUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream,
+                                                 @Nonnull IndexUpgraderConfig config) {
             throw new UnsupportedOperationException("Upgrade from what?");
         }
     },
 
     VERSION_2 {
         @Override
-        protected VersionUpgrader createUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream) {
+        protected VersionUpgrader createUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream,
+                                                 @Nonnull IndexUpgraderConfig config) {
             throw new UnsupportedOperationException("TODO");
         }
     },
 
     VERSION_3 {
         @Override
-        protected VersionUpgrader createUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream) {
-            return new VersionUpgrader3(directory, infoStream);
+        protected VersionUpgrader createUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream,
+                                                 @Nonnull IndexUpgraderConfig config) {
+            return new VersionUpgrader3(directory, infoStream, config);
+        }
+
+        @Override
+        protected IndexSplitter createSplitter() {
+            return new IndexSplitter3();
+        }
+
+        @Override
+        protected IndexChecker createChecker(@Nonnull Path directory) throws IOException {
+            return new IndexChecker3(directory);
         }
     },
 
     VERSION_4 {
         @Override
-        protected VersionUpgrader createUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream) {
-            return new VersionUpgrader4(directory, infoStream);
+        protected VersionUpgrader createUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream,
+                                                 @Nonnull IndexUpgraderConfig config) {
+            return new VersionUpgrader4(directory, infoStream, config);
+        }
+
+        @Override
+        protected IndexSplitter createSplitter() {
+            return new IndexSplitter4();
+        }
+
+        @Override
+        protected IndexChecker createChecker(@Nonnull Path directory) throws IOException {
+            return new IndexChecker4(directory);
         }
     },
 
     VERSION_5 {
         @Override
-        protected VersionUpgrader createUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream) {
-            return new VersionUpgrader5(directory, infoStream);
+        protected VersionUpgrader createUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream,
+                                                 @Nonnull IndexUpgraderConfig config) {
+            return new VersionUpgrader5(directory, infoStream, config);
+        }
+
+        @Override
+        protected IndexSplitter createSplitter() {
+            return new IndexSplitter5();
+        }
+
+        @Override
+        protected IndexChecker createChecker(@Nonnull Path directory) throws IOException {
+            return new IndexChecker5(directory);
         }
     },
 
     VERSION_6 {
         @Override
-        protected VersionUpgrader createUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream) {
-            return new VersionUpgrader6(directory, infoStream);
+        protected VersionUpgrader createUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream,
+                                                 @Nonnull IndexUpgraderConfig config) {
+            return new VersionUpgrader6(directory, infoStream, config);
+        }
+
+        @Override
+        protected IndexSplitter createSplitter() {
+            return new IndexSplitter6();
+        }
+
+        @Override
+        protected IndexChecker createChecker(@Nonnull Path directory) throws IOException {
+            return new IndexChecker6(directory);
         }
     },
 
     VERSION_7 {
         @Override
-        protected VersionUpgrader createUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream) {
-            return new VersionUpgrader7(directory, infoStream);
+        protected VersionUpgrader createUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream,
+                                                 @Nonnull IndexUpgraderConfig config) {
+            return new VersionUpgrader7(directory, infoStream, config);
+        }
+
+        @Override
+        protected boolean upgradesInPlace() {
+            return false;
+        }
+
+        @Override
+        protected VersionUpgrader createUpgrader(@Nonnull Path directory, @Nonnull Path destinationDirectory,
+                                                 @Nonnull InfoStream infoStream, @Nonnull IndexUpgraderConfig config) {
+            return new VersionUpgrader7(directory, destinationDirectory, infoStream, config);
+        }
+
+        @Override
+        protected IndexSplitter createSplitter() {
+            return new IndexSplitter7();
+        }
+
+        @Override
+        protected IndexChecker createChecker(@Nonnull Path directory) throws IOException {
+            return new IndexChecker7(directory);
         }
     },
 
     VERSION_8 {
         @Override
-        protected VersionUpgrader createUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream) {
-            return new VersionUpgrader8(directory, infoStream);
+        protected VersionUpgrader createUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream,
+                                                 @Nonnull IndexUpgraderConfig config) {
+            return new VersionUpgrader8(directory, infoStream, config);
+        }
+
+        @Override
+        protected boolean upgradesInPlace() {
+            return false;
+        }
+
+        @Override
+        protected VersionUpgrader createUpgrader(@Nonnull Path directory, @Nonnull Path destinationDirectory,
+                                                 @Nonnull InfoStream infoStream, @Nonnull IndexUpgraderConfig config) {
+            return new VersionUpgrader8(directory, destinationDirectory, infoStream, config);
+        }
+
+        @Override
+        protected IndexSplitter createSplitter() {
+            return new IndexSplitter8();
+        }
+
+        @Override
+        protected IndexChecker createChecker(@Nonnull Path directory) throws IOException {
+            return new IndexChecker8(directory);
         }
     };
 
@@ -82,12 +185,59 @@ public enum LuceneVersion {
         return compareTo(version) < 0; // because we order them in the enum
     }
 
+    /**
+     * Overridden for each version which can be split to create a splitter for indexes of that version.
+     *
+     * @return the splitter.
+     */
+    protected IndexSplitter createSplitter() {
+        throw new UnsupportedOperationException("Splitting not supported for " + this);
+    }
+
+    /**
+     * Overridden for each version which can be checked to create a checker for an index of that version.
+     *
+     * @param directory a directory containing the index.
+     * @return the checker.
+     * @throws IOException if an error occurs opening the index.
+     */
+    protected IndexChecker createChecker(@Nonnull Path directory) throws IOException {
+        throw new UnsupportedOperationException("Checking not supported for " + this);
+    }
+
     /**
      * Overridden for each version to create an upgrader suitable for upgrading to that version.
      *
      * @param directory a directory containing the index.
      * @param infoStream an info stream to log to.
+     * @param config the config controlling how the upgrade is performed.
+     * @return the upgrader.
+     */
+    protected abstract VersionUpgrader createUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream,
+                                                      @Nonnull IndexUpgraderConfig config);
+
+    /**
+     * Overridden for each version whose upgrader writes the upgraded index to a new directory
+     * instead of rewriting it in place.
+     *
+     * @return {@code true} if upgrades to this version are done in place.
+     */
+    protected boolean upgradesInPlace() {
+        return true;
+    }
+
+    /**
+     * Overridden for each version which doesn't upgrade in place to create an upgrader which
+     * writes the upgraded index to another directory, leaving the original untouched.
+     *
+     * @param directory a directory containing the index.
+     * @param destinationDirectory the directory to write the upgraded index to.
+     * @param infoStream an info stream to log to.
+     * @param config the config controlling how the upgrade is performed.
      * @return the upgrader.
      */
-    protected abstract VersionUpgrader createUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream);
+    protected VersionUpgrader createUpgrader(@Nonnull Path directory, @Nonnull Path destinationDirectory,
+                                             @Nonnull InfoStream infoStream, @Nonnull IndexUpgraderConfig config) {
+        throw new UnsupportedOperationException("Upgrades to " + this + " are done in place");
+    }
 }
@@ -0,0 +1,134 @@
+package org.trypticon.luceneupgrader;
+
+import org.apache.lucene.util.IOUtils;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Upgrades an index by writing the upgraded index to another directory, leaving the original
+ * untouched. Steps which don't upgrade in place read from one directory and write to another,
+ * so when the directories are on different disks, reading and writing don't compete.
+ * Steps which do upgrade in place work on a copy.
+ */
+class OutOfPlaceUpgrader {
+
+    @Nonnull
+    private final Path directory;
+
+    @Nonnull
+    private final InfoStream infoStream;
+
+    @Nonnull
+    private final IndexUpgraderConfig config;
+
+    OutOfPlaceUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream, @Nonnull IndexUpgraderConfig config) {
+        this.directory = directory;
+        this.infoStream = infoStream;
+        this.config = config;
+    }
+
+    /**
+     * Upgrades the index.
+     *
+     * @param sourceVersion the version the index is currently at.
+     * @param destinationVersion the version to upgrade to.
+     * @param destinationDirectory the directory to write the upgraded index to, which must not exist yet.
+     * @throws IOException if an error occurs reading or writing.
+     */
+    void upgrade(@Nonnull LuceneVersion sourceVersion, @Nonnull LuceneVersion destinationVersion,
+                 @Nonnull Path destinationDirectory) throws IOException {
+        if (Files.exists(destinationDirectory)) {
+            throw new FileAlreadyExistsException(destinationDirectory.toString());
+        }
+
+        List<LuceneVersion> steps = IndexUpgrader.stepsTo(sourceVersion, destinationVersion, config);
+
+        // The steps only ever write to copies which are deleted if the upgrade dies, and the destination
+        // is synced once it's finished, so their syncs can be deferred.
+        IndexUpgraderConfig stepConfig = config.forDisposableIndex();
+        List<Path> intermediatePaths = new ArrayList<>();
+        boolean success = false;
+        try {
+            Path current = directory;
+            long previousStepsNanos = 0;
+            for (int i = 0; i < steps.size(); i++) {
+                LuceneVersion step = steps.get(i);
+                UpgradeProgress progress;
+                if (step.upgradesInPlace()) {
+                    if (current == directory) {
+                        // Only the steps after this one can take the index somewhere else, so if they
+                        // all upgrade in place too, the copy may as well go straight to the destination.
+                        boolean restInPlace = steps.subList(i, steps.size()).stream()
+                            .allMatch(LuceneVersion::upgradesInPlace);
+                        Path copyPath = restInPlace ? destinationDirectory : createIntermediate(destinationDirectory, intermediatePaths);
+                        FileUtils.copyDirectory(current, copyPath, config.getIoThrottle());
+                        current = copyPath;
+                    }
+                    progress = UpgradeProgress.start(config, current, step, i + 1, steps.size(), previousStepsNanos);
+                    progress.upgrade(step.createUpgrader(current, infoStream, stepConfig));
+                } else {
+                    Path targetPath = i == steps.size() - 1 ? destinationDirectory : createIntermediate(destinationDirectory, intermediatePaths);
+                    progress = UpgradeProgress.start(config, current, step, i + 1, steps.size(), previousStepsNanos);
+                    progress.upgrade(step.createUpgrader(current, targetPath, infoStream, stepConfig));
+                    if (current != directory) {
+                        // Free up the space as soon as the next copy exists.
+                        FileUtils.insecureRecursiveDelete(current);
+                    }
+                    current = targetPath;
+                }
+
+                // Sanity check.
+                LuceneVersion actualVersion = new VersionGuesser().guess(current);
+                if (actualVersion != step) {
+                    throw new IllegalStateException("We tried to upgrade to " + step + ", but it didn't actually happen");
+                }
+
+                new IndexVerifier(infoStream, config).verifyStep(current, step, i == steps.size() - 1);
+                previousStepsNanos += progress.getElapsedNanos();
+            }
+
+            // Either there was nothing to upgrade, or the last step left it somewhere else.
+            if (!current.equals(destinationDirectory)) {
+                FileUtils.copyDirectory(current, destinationDirectory, config.getIoThrottle());
+            }
+
+            FileUtils.syncDirectory(destinationDirectory);
+            IOUtils.fsync(destinationDirectory.toAbsolutePath().getParent(), true);
+            success = true;
+        } finally {
+            for (Path intermediatePath : intermediatePaths) {
+                FileUtils.insecureRecursiveDelete(intermediatePath);
+            }
+            if (!success) {
+                FileUtils.insecureRecursiveDelete(destinationDirectory);
+            }
+        }
+    }
+
+    /**
+     * Creates a directory to hold the index in between steps, in the scratch directory if there
+     * is one, or next to the destination otherwise.
+     *
+     * @param destinationDirectory the directory the upgraded index is being written to.
+     * @param intermediatePaths the list to add the new directory to, so it gets cleaned up.
+     * @return the new directory.
+     * @throws IOException if an error occurs creating the directory.
+     */
+    private Path createIntermediate(Path destinationDirectory, List<Path> intermediatePaths) throws IOException {
+        Path parent = config.getScratchDirectory();
+        if (parent == null) {
+            parent = destinationDirectory.toAbsolutePath().getParent();
+        } else {
+            Files.createDirectories(parent);
+        }
+        Path intermediatePath = Files.createTempDirectory(parent, destinationDirectory.getFileName().toString());
+        intermediatePaths.add(intermediatePath);
+        return intermediatePath;
+    }
+}
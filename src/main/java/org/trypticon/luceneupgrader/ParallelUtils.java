@@ -0,0 +1,159 @@
+package org.trypticon.luceneupgrader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToLongFunction;
+
+/**
+ * Utilities for splitting upgrade work up and running the pieces on several threads.
+ */
+public class ParallelUtils {
+
+    /**
+     * Splits a list into contiguous groups of roughly equal total weight.
+     * Order is preserved both within and across the groups, so concatenating the groups
+     * gives back the original list.
+     *
+     * @param items the items to split.
+     * @param maxGroupCount the maximum number of groups to create.
+     * @param weight function giving the weight of each item.
+     * @param <T> the type of item.
+     * @return the groups. Never contains an empty group.
+     */
+    public static <T> List<List<T>> partition(List<T> items, int maxGroupCount, ToLongFunction<T> weight) {
+        long totalWeight = 0;
+        for (T item : items) {
+            totalWeight += weight.applyAsLong(item);
+        }
+
+        int groupCount = Math.max(1, Math.min(maxGroupCount, items.size()));
+        List<List<T>> groups = new ArrayList<>(groupCount);
+        List<T> group = new ArrayList<>();
+        long weightSoFar = 0;
+        for (int i = 0; i < items.size(); i++) {
+            T item = items.get(i);
+            group.add(item);
+            weightSoFar += weight.applyAsLong(item);
+
+            // Close off the group once it reaches its share of the total, but never leave
+            // fewer items than there are groups still to fill.
+            int groupsLeft = groupCount - groups.size() - 1;
+            int itemsLeft = items.size() - i - 1;
+            if (groupsLeft > 0 && (itemsLeft == groupsLeft ||
+                                   weightSoFar * groupCount >= totalWeight * (groups.size() + 1))) {
+                groups.add(group);
+                group = new ArrayList<>();
+            }
+        }
+        if (!group.isEmpty()) {
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    /**
+     * Runs a number of tasks, using up to the given number of threads.
+     * If any task fails, the remaining tasks are cancelled and the first failure is rethrown.
+     *
+     * @param threadCount the maximum number of threads to use.
+     * @param threadNamePrefix the prefix used when naming the threads.
+     * @param tasks the tasks to run.
+     * @throws IOException if any of the tasks fails.
+     */
+    public static void runAll(int threadCount, String threadNamePrefix, List<IOTask> tasks) throws IOException {
+        if (threadCount <= 1 || tasks.size() <= 1) {
+            for (IOTask task : tasks) {
+                task.run();
+            }
+            return;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, tasks.size()),
+                                                                new NamedThreadFactory(threadNamePrefix));
+        try {
+            // Results are taken as tasks finish rather than in order, so a failure is noticed straight
+            // away even if an earlier task is waiting on something the failed one will never do.
+            CompletionService<Void> completionService = new ExecutorCompletionService<>(executor);
+            for (IOTask task : tasks) {
+                completionService.submit(() -> {
+                    task.run();
+                    return null;
+                });
+            }
+            for (int i = 0; i < tasks.size(); i++) {
+                completionService.take().get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for upgrade tasks", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        } finally {
+            // Don't return while a failed sibling's tasks could still be writing files.
+            executor.shutdownNow();
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    if (executor.awaitTermination(1, TimeUnit.SECONDS)) {
+                        break;
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * A piece of work which can fail with an I/O error.
+     */
+    @FunctionalInterface
+    public interface IOTask {
+        /**
+         * Runs the task.
+         *
+         * @throws IOException if an error occurs.
+         */
+        void run() throws IOException;
+    }
+
+    /**
+     * Thread factory giving the threads recognisable names.
+     */
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        private NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
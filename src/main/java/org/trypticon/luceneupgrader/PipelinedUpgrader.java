@@ -0,0 +1,160 @@
+package org.trypticon.luceneupgrader;
+
+import org.apache.lucene.util.IOUtils;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Upgrades an index through several versions by splitting it into one index per segment
+ * and passing each of those through the steps on its own. Every step runs on its own
+ * thread, so while one step is upgrading a segment, the next step can already be
+ * upgrading the segment before it.
+ */
+class PipelinedUpgrader {
+
+    /**
+     * How many segments a step can get ahead of the step after it. Keeping this small
+     * stops a fast early step from filling the disk with segments the later steps haven't
+     * caught up with.
+     */
+    private static final int QUEUE_CAPACITY = 1;
+
+    /**
+     * Marker passed down the queues after the last segment.
+     */
+    private static final Path END = Paths.get("");
+
+    @Nonnull
+    private final Path directory;
+
+    @Nonnull
+    private final InfoStream infoStream;
+
+    @Nonnull
+    private final IndexUpgraderConfig config;
+
+    PipelinedUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream, @Nonnull IndexUpgraderConfig config) {
+        this.directory = directory;
+        this.infoStream = infoStream;
+        this.config = config;
+    }
+
+    /**
+     * Upgrades the index.
+     *
+     * @param sourceVersion the version the index is currently at.
+     * @param destinationVersion the version to upgrade to.
+     * @return {@code true} if the index was upgraded, {@code false} if the index has too few
+     *         segments for pipelining to help, in which case it is left as it was.
+     * @throws IOException if an error occurs reading or writing.
+     */
+    boolean upgrade(@Nonnull LuceneVersion sourceVersion, @Nonnull LuceneVersion destinationVersion)
+            throws IOException {
+        Path workPath = directory.resolveSibling(directory.getFileName() + ".pipeline");
+        Path joinedPath = workPath.resolve("joined");
+        Path oldPath = directory.resolveSibling(directory.getFileName() + ".old");
+
+        FileUtils.insecureRecursiveDelete(workPath);
+        try {
+            // The joined index is committed from scratch, so the commit's user data is carried over by hand.
+            IndexSplitter sourceSplitter = sourceVersion.createSplitter();
+            Map<String, String> userData = sourceSplitter.commitUserData(directory);
+            List<Path> partPaths = sourceSplitter.split(directory, workPath);
+            if (partPaths.size() < 2) {
+                return false;
+            }
+
+            List<LuceneVersion> steps = IndexUpgrader.stepsTo(sourceVersion, destinationVersion, config);
+
+            // Segments go through each step in order, so they come out of the last step in the same order.
+            List<BlockingQueue<Path>> queues = new ArrayList<>(steps.size());
+            queues.add(new LinkedBlockingQueue<>(partPaths));
+            queues.get(0).add(END);
+            for (int i = 1; i < steps.size(); i++) {
+                queues.add(new ArrayBlockingQueue<>(QUEUE_CAPACITY));
+            }
+
+            List<ParallelUtils.IOTask> tasks = new ArrayList<>(steps.size());
+            for (int i = 0; i < steps.size(); i++) {
+                LuceneVersion step = steps.get(i);
+                int stepNumber = i + 1;
+                BlockingQueue<Path> input = queues.get(i);
+                BlockingQueue<Path> output = i + 1 < queues.size() ? queues.get(i + 1) : null;
+                tasks.add(() -> runStep(step, stepNumber, steps.size(), input, output));
+            }
+            ParallelUtils.runAll(tasks.size(), "pipeline", tasks);
+
+            destinationVersion.createSplitter().join(partPaths, joinedPath, userData);
+
+            // Sanity check.
+            LuceneVersion actualVersion = new VersionGuesser().guess(joinedPath);
+            if (actualVersion != destinationVersion) {
+                throw new IllegalStateException("We tried to upgrade from " + sourceVersion + " to " +
+                                                destinationVersion + ", but it didn't actually happen");
+            }
+
+            Files.move(directory, oldPath);
+            Files.move(joinedPath, directory);
+            IOUtils.fsync(directory.toAbsolutePath().getParent(), true);
+            FileUtils.insecureRecursiveDelete(oldPath);
+            return true;
+        } finally {
+            FileUtils.insecureRecursiveDelete(workPath);
+        }
+    }
+
+    /**
+     * Runs one step, upgrading each segment taken from the input queue and passing it on.
+     *
+     * @param step the version being upgraded to.
+     * @param stepNumber which step this is, counting from 1.
+     * @param stepCount how many steps there are.
+     * @param input the queue of segments to upgrade.
+     * @param output the queue to pass upgraded segments to, or {@code null} for the last step.
+     * @throws IOException if an error occurs reading or writing.
+     */
+    private void runStep(LuceneVersion step, int stepNumber, int stepCount, BlockingQueue<Path> input,
+                         BlockingQueue<Path> output) throws IOException {
+        // The progress covers every part, measured against the whole index. The steps all run at once,
+        // so the ones before this say nothing about how long it will take.
+        UpgradeProgress progress = UpgradeProgress.start(config, directory, step, stepNumber, stepCount, -1);
+        try {
+            while (true) {
+                Path partPath = input.take();
+                if (partPath != END) {
+                    // The parts are deleted once they're joined into a new index, which syncs its own files.
+                    step.createUpgrader(partPath, infoStream, config.forDisposableIndex()).upgrade(progress);
+                    new IndexVerifier(infoStream, config).verifyStep(partPath, step, output == null);
+                }
+                if (output != null) {
+                    output.put(partPath);
+                }
+                if (partPath == END) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            // Another step failed, so the upgrade is being abandoned.
+            Thread.currentThread().interrupt();
+            InterruptedIOException failure =
+                new InterruptedIOException("Interrupted waiting for segments to upgrade to " + step);
+            progress.finish(failure);
+            throw failure;
+        } catch (Throwable t) {
+            progress.finish(t);
+            throw t;
+        }
+        progress.finish(null);
+    }
+}
@@ -0,0 +1,49 @@
+package org.trypticon.luceneupgrader;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Describes each segment of an index, which can show how much of an index is already
+ * at a newer version than {@link VersionGuesser} reports for the index as a whole.
+ */
+public class SegmentCensus {
+
+    /**
+     * Describes each segment of an index.
+     * The index is read by the version of Lucene {@link VersionGuesser} reports for it, but an
+     * index which a newer version has already written segments into can only be read by that
+     * newer version, so each newer version is tried in turn if the older ones can't read it.
+     *
+     * @param path the directory containing the index.
+     * @return the descriptions, in segment order.
+     * @throws IOException if an error occurs reading the index.
+     */
+    @Nonnull
+    public List<SegmentDescription> take(@Nonnull Path path) throws IOException {
+        LuceneVersion version = new VersionGuesser().guess(path);
+        if (version.isOlderThan(LuceneVersion.VERSION_3)) {
+            version = LuceneVersion.VERSION_3;
+        }
+
+        Exception failure = null;
+        for (int i = version.ordinal(); i < LuceneVersion.values().length; i++) {
+            try {
+                return LuceneVersion.values()[i].createSplitter().describeSegments(path);
+            } catch (IOException | IllegalArgumentException e) {
+                // Segments written by a newer version of Lucene, or by a codec this version doesn't have.
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure instanceof IOException) {
+            throw (IOException) failure;
+        }
+        throw (IllegalArgumentException) failure;
+    }
+}
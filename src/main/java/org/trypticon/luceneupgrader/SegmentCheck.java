@@ -0,0 +1,83 @@
+package org.trypticon.luceneupgrader;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The result of checking a single segment of an index, or a single part of a segment.
+ */
+public class SegmentCheck {
+    @Nonnull
+    private final SegmentDescription segment;
+
+    @Nullable
+    private final String component;
+
+    private final long elapsedNanos;
+
+    @Nullable
+    private final Throwable failure;
+
+    public SegmentCheck(@Nonnull SegmentDescription segment, @Nullable String component,
+                        long elapsedNanos, @Nullable Throwable failure) {
+        this.segment = segment;
+        this.component = component;
+        this.elapsedNanos = elapsedNanos;
+        this.failure = failure;
+    }
+
+    /**
+     * Gets the segment which was checked.
+     *
+     * @return the segment.
+     */
+    @Nonnull
+    public SegmentDescription getSegment() {
+        return segment;
+    }
+
+    /**
+     * Gets the part of the segment which was checked.
+     *
+     * @return the part, like {@code postings}, or {@code null} if the whole segment was checked.
+     */
+    @Nullable
+    public String getComponent() {
+        return component;
+    }
+
+    /**
+     * Gets how long the check took.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * Gets the problem the check found.
+     *
+     * @return the problem, or {@code null} if none was found.
+     */
+    @Nullable
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * Tests whether the check found no problems.
+     *
+     * @return {@code true} if no problems were found.
+     */
+    public boolean isClean() {
+        return failure == null;
+    }
+
+    @Override
+    public String toString() {
+        return segment.getName() + (component == null ? "" : " " + component) + ": " +
+               (failure == null ? "OK" : "FAILED " + failure) + " [took " + getElapsedMillis() + " ms]";
+    }
+}
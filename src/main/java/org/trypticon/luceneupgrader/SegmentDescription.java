@@ -0,0 +1,134 @@
+package org.trypticon.luceneupgrader;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+
+/**
+ * Description of a single segment of an index.
+ */
+public class SegmentDescription {
+    @Nonnull
+    private final String name;
+
+    @Nullable
+    private final String version;
+
+    @Nullable
+    private final String minVersion;
+
+    @Nullable
+    private final String codec;
+
+    private final int docCount;
+
+    private final int deletedDocCount;
+
+    private final long sizeInBytes;
+
+    public SegmentDescription(@Nonnull String name, @Nullable String version, @Nullable String minVersion,
+                              @Nullable String codec, int docCount, int deletedDocCount, long sizeInBytes) {
+        this.name = name;
+        this.version = version;
+        this.minVersion = minVersion;
+        this.codec = codec;
+        this.docCount = docCount;
+        this.deletedDocCount = deletedDocCount;
+        this.sizeInBytes = sizeInBytes;
+    }
+
+    /**
+     * Gets the name of the segment.
+     *
+     * @return the name, like {@code _0}.
+     */
+    @Nonnull
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets the version of Lucene which wrote the segment.
+     *
+     * @return the version, like {@code 6.6.0}, or {@code null} for segments from before Lucene 3,
+     *         which didn't record it.
+     */
+    @Nullable
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the oldest version of Lucene which wrote any of the documents in the segment. A segment
+     * merged by a newer version can still hold documents written by an older one.
+     *
+     * @return the version, or {@code null} if the segment was written before Lucene 7, which is
+     *         when this started being recorded.
+     */
+    @Nullable
+    public String getMinVersion() {
+        return minVersion;
+    }
+
+    /**
+     * Gets the name of the codec the segment was written with.
+     *
+     * @return the codec name, like {@code Lucene62}, or {@code null} for segments read by
+     *         Lucene 3, which had no codecs.
+     */
+    @Nullable
+    public String getCodec() {
+        return codec;
+    }
+
+    /**
+     * Gets the number of documents in the segment, including deleted ones.
+     *
+     * @return the number of documents.
+     */
+    public int getDocCount() {
+        return docCount;
+    }
+
+    /**
+     * Gets the number of deleted documents in the segment.
+     *
+     * @return the number of deleted documents.
+     */
+    public int getDeletedDocCount() {
+        return deletedDocCount;
+    }
+
+    /**
+     * Gets the total size of the segment's files.
+     *
+     * @return the size in bytes.
+     */
+    public long getSizeInBytes() {
+        return sizeInBytes;
+    }
+
+    /**
+     * Tests whether every document in the segment was written by the given version of Lucene
+     * or a newer one, which is what an index created by that version requires of its segments.
+     *
+     * @param luceneVersion the version to test against.
+     * @return {@code true} if the segment is at the given version or newer.
+     */
+    public boolean isAtLeast(@Nonnull LuceneVersion luceneVersion) {
+        // Only the minimum version says which version wrote the oldest documents.
+        // Versions are in order in the enum, starting from 1.
+        return minVersion != null && majorVersion(minVersion) >= luceneVersion.ordinal() + 1;
+    }
+
+    private static int majorVersion(String version) {
+        int dot = version.indexOf('.');
+        return Integer.parseInt(dot < 0 ? version : version.substring(0, dot));
+    }
+
+    @Override
+    public String toString() {
+        return name + "(version=" + version + ", minVersion=" + minVersion + ", codec=" + codec +
+               ", docCount=" + docCount + ", deletedDocCount=" + deletedDocCount +
+               ", sizeInBytes=" + sizeInBytes + ")";
+    }
+}
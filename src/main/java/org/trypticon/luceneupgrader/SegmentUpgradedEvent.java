@@ -0,0 +1,148 @@
+package org.trypticon.luceneupgrader;
+
+import javax.annotation.Nonnull;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event for a step of an upgrade having written a segment.
+ */
+public class SegmentUpgradedEvent {
+    @Nonnull
+    private final Path path;
+
+    @Nonnull
+    private final LuceneVersion version;
+
+    @Nonnull
+    private final String segmentName;
+
+    private final int docCount;
+
+    @Nonnull
+    private final List<ComponentStats> components;
+
+    private final long elapsedNanos;
+
+    private final double stepProgress;
+
+    private final long estimatedRemainingNanos;
+
+    public SegmentUpgradedEvent(@Nonnull Path path, @Nonnull LuceneVersion version, @Nonnull String segmentName,
+                                int docCount, @Nonnull List<ComponentStats> components, long elapsedNanos,
+                                double stepProgress, long estimatedRemainingNanos) {
+        this.path = path;
+        this.version = version;
+        this.segmentName = segmentName;
+        this.docCount = docCount;
+        this.components = Collections.unmodifiableList(new ArrayList<>(components));
+        this.elapsedNanos = elapsedNanos;
+        this.stepProgress = stepProgress;
+        this.estimatedRemainingNanos = estimatedRemainingNanos;
+    }
+
+    /**
+     * Gets the directory containing the index being upgraded.
+     *
+     * @return the directory.
+     */
+    @Nonnull
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the version the step upgrades to.
+     *
+     * @return the version.
+     */
+    @Nonnull
+    public LuceneVersion getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the name of the segment which was written. Steps which write a new index name their
+     * segments afresh, so this is the name in the index being written, not the one being read.
+     *
+     * @return the segment name.
+     */
+    @Nonnull
+    public String getSegmentName() {
+        return segmentName;
+    }
+
+    /**
+     * Gets how many documents were rewritten into the segment, counting deleted ones.
+     *
+     * @return the number of documents.
+     */
+    public int getDocCount() {
+        return docCount;
+    }
+
+    /**
+     * Gets how much each component took to write, for the components the segment has.
+     *
+     * @return the statistics, in component order.
+     */
+    @Nonnull
+    public List<ComponentStats> getComponents() {
+        return components;
+    }
+
+    /**
+     * Gets how much was read to write the segment.
+     *
+     * @return the number of bytes.
+     */
+    public long getBytesRead() {
+        return components.stream().mapToLong(ComponentStats::getBytesRead).sum();
+    }
+
+    /**
+     * Gets how much was written for the segment.
+     *
+     * @return the number of bytes.
+     */
+    public long getBytesWritten() {
+        return components.stream().mapToLong(ComponentStats::getBytesWritten).sum();
+    }
+
+    /**
+     * Gets how long the segment took to write.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * Gets how far through the step the upgrade is, by the documents rewritten so far.
+     *
+     * @return the fraction done, from 0 to 1.
+     */
+    public double getStepProgress() {
+        return stepProgress;
+    }
+
+    /**
+     * Gets roughly how long the rest of the upgrade will take, assuming the rest of this step
+     * goes at the same rate and the steps after it take as long as this one.
+     *
+     * @return the time in milliseconds, or {@code -1} if there's nothing to go by yet.
+     */
+    public long getEstimatedRemainingMillis() {
+        return estimatedRemainingNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(estimatedRemainingNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "Segment " + segmentName + " upgraded to " + version + " in " + path + " [" + docCount + " docs, read " +
+               getBytesRead() + " bytes, wrote " + getBytesWritten() + " bytes, took " + getElapsedMillis() + " ms]";
+    }
+}
@@ -0,0 +1,78 @@
+package org.trypticon.luceneupgrader;
+
+import org.apache.lucene.util.IOUtils;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Upgrades an index in a staging directory, which is expected to be held in memory, so that
+ * the steps in between never touch the index's own disk. The index is read from disk once at
+ * the start and the final index is written back once at the end.
+ */
+class StagedUpgrader {
+
+    @Nonnull
+    private final Path directory;
+
+    @Nonnull
+    private final InfoStream infoStream;
+
+    @Nonnull
+    private final IndexUpgraderConfig config;
+
+    StagedUpgrader(@Nonnull Path directory, @Nonnull InfoStream infoStream, @Nonnull IndexUpgraderConfig config) {
+        this.directory = directory;
+        this.infoStream = infoStream;
+        this.config = config;
+    }
+
+    /**
+     * Upgrades the index.
+     *
+     * @param destinationVersion the version to upgrade to.
+     * @return {@code true} if the index was upgraded, {@code false} if it is too big to stage,
+     *         in which case it is left as it was.
+     * @throws IOException if an error occurs reading or writing.
+     */
+    boolean upgrade(@Nonnull LuceneVersion destinationVersion) throws IOException {
+        Path stagingDirectory = config.getStagingDirectory();
+        if (stagingDirectory == null) {
+            return false;
+        }
+
+        long size = FileUtils.directorySize(directory);
+        Files.createDirectories(stagingDirectory);
+        if (size > config.getMaxStagedIndexSize() ||
+                size * 3 > Files.getFileStore(stagingDirectory).getUsableSpace()) {
+            return false;
+        }
+
+        Path stagePath = Files.createTempDirectory(stagingDirectory, directory.getFileName().toString());
+        Path stagedIndexPath = stagePath.resolve("index");
+        Path copiedPath = directory.resolveSibling(directory.getFileName() + ".staged");
+        Path oldPath = directory.resolveSibling(directory.getFileName() + ".old");
+        try {
+            FileUtils.copyDirectory(directory, stagedIndexPath, config.getIoThrottle());
+            // Nothing in the stage survives the upgrade dying, so its syncs can be deferred.
+            new IndexUpgrader(stagedIndexPath, infoStream, config.forDisposableIndex())
+                .upgradeUnstagedTo(destinationVersion);
+
+            // The copy back is the only write to the index's own disk, so it's the only one which has to be durable.
+            FileUtils.insecureRecursiveDelete(copiedPath);
+            FileUtils.copyDirectory(stagedIndexPath, copiedPath, config.getIoThrottle());
+            FileUtils.syncDirectory(copiedPath);
+
+            Files.move(directory, oldPath);
+            Files.move(copiedPath, directory);
+            IOUtils.fsync(directory.toAbsolutePath().getParent(), true);
+            FileUtils.insecureRecursiveDelete(oldPath);
+            return true;
+        } finally {
+            FileUtils.insecureRecursiveDelete(stagePath);
+            FileUtils.insecureRecursiveDelete(copiedPath);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package org.trypticon.luceneupgrader;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event for a step of an upgrade finishing, whether it succeeded or not.
+ */
+public class StepFinishedEvent {
+    @Nonnull
+    private final Path path;
+
+    @Nonnull
+    private final LuceneVersion version;
+
+    private final int stepNumber;
+
+    private final int stepCount;
+
+    private final int segmentCount;
+
+    private final long docCount;
+
+    @Nonnull
+    private final List<ComponentStats> components;
+
+    private final long elapsedNanos;
+
+    private final long gcCount;
+
+    private final long gcMillis;
+
+    private final long peakHeapBytes;
+
+    @Nullable
+    private final Throwable failure;
+
+    public StepFinishedEvent(@Nonnull Path path, @Nonnull LuceneVersion version, int stepNumber, int stepCount,
+                             int segmentCount, long docCount, @Nonnull List<ComponentStats> components,
+                             long elapsedNanos, long gcCount, long gcMillis, long peakHeapBytes,
+                             @Nullable Throwable failure) {
+        this.path = path;
+        this.version = version;
+        this.stepNumber = stepNumber;
+        this.stepCount = stepCount;
+        this.segmentCount = segmentCount;
+        this.docCount = docCount;
+        this.components = Collections.unmodifiableList(new ArrayList<>(components));
+        this.elapsedNanos = elapsedNanos;
+        this.gcCount = gcCount;
+        this.gcMillis = gcMillis;
+        this.peakHeapBytes = peakHeapBytes;
+        this.failure = failure;
+    }
+
+    /**
+     * Gets the directory containing the index being upgraded.
+     *
+     * @return the directory.
+     */
+    @Nonnull
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the version the step upgrades to.
+     *
+     * @return the version.
+     */
+    @Nonnull
+    public LuceneVersion getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets which step this is.
+     *
+     * @return the step number, counting from 1.
+     */
+    public int getStepNumber() {
+        return stepNumber;
+    }
+
+    /**
+     * Gets how many steps the upgrade takes.
+     *
+     * @return the number of steps.
+     */
+    public int getStepCount() {
+        return stepCount;
+    }
+
+    /**
+     * Gets how many segments the step wrote.
+     *
+     * @return the number of segments.
+     */
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    /**
+     * Gets how many documents the step rewrote, counting deleted ones.
+     *
+     * @return the number of documents.
+     */
+    public long getDocCount() {
+        return docCount;
+    }
+
+    /**
+     * Gets how much each component took over the whole step. The I/O includes everything the
+     * step did, like writing commits and copying finished segments, not just writing segments.
+     *
+     * @return the statistics, in component order.
+     */
+    @Nonnull
+    public List<ComponentStats> getComponents() {
+        return components;
+    }
+
+    /**
+     * Gets how much the step read.
+     *
+     * @return the number of bytes.
+     */
+    public long getBytesRead() {
+        return components.stream().mapToLong(ComponentStats::getBytesRead).sum();
+    }
+
+    /**
+     * Gets how much the step wrote.
+     *
+     * @return the number of bytes.
+     */
+    public long getBytesWritten() {
+        return components.stream().mapToLong(ComponentStats::getBytesWritten).sum();
+    }
+
+    /**
+     * Gets how long the step took.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    /**
+     * Gets how many garbage collections there were while the step ran. These are counted for
+     * the whole JVM, so they include collections caused by anything else running at the time.
+     *
+     * @return the number of collections.
+     */
+    public long getGcCount() {
+        return gcCount;
+    }
+
+    /**
+     * Gets how long garbage collection took while the step ran, for the whole JVM.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getGcMillis() {
+        return gcMillis;
+    }
+
+    /**
+     * Gets the most heap seen in use while the step ran. The heap is sampled as files and
+     * segments are finished, so a short spike in between can be missed.
+     *
+     * @return the heap in use, in bytes.
+     */
+    public long getPeakHeapBytes() {
+        return peakHeapBytes;
+    }
+
+    /**
+     * Gets what made the step fail.
+     *
+     * @return the failure, or {@code null} if the step succeeded.
+     */
+    @Nullable
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return "Step " + stepNumber + "/" + stepCount + " to " + version + " " + (failure == null ? "finished" : "FAILED") +
+               " for " + path + " [" + segmentCount + " segments, " + docCount + " docs, read " + getBytesRead() +
+               " bytes, wrote " + getBytesWritten() + " bytes, took " + getElapsedMillis() + " ms, GC " + gcCount +
+               " times for " + gcMillis + " ms, peak heap " + peakHeapBytes + " bytes]";
+    }
+}
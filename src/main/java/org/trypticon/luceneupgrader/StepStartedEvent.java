@@ -0,0 +1,97 @@
+package org.trypticon.luceneupgrader;
+
+import javax.annotation.Nonnull;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event for a step of an upgrade starting.
+ */
+public class StepStartedEvent {
+    @Nonnull
+    private final Path path;
+
+    @Nonnull
+    private final LuceneVersion version;
+
+    private final int stepNumber;
+
+    private final int stepCount;
+
+    private final long docCount;
+
+    private final long estimatedRemainingNanos;
+
+    public StepStartedEvent(@Nonnull Path path, @Nonnull LuceneVersion version, int stepNumber, int stepCount,
+                            long docCount, long estimatedRemainingNanos) {
+        this.path = path;
+        this.version = version;
+        this.stepNumber = stepNumber;
+        this.stepCount = stepCount;
+        this.docCount = docCount;
+        this.estimatedRemainingNanos = estimatedRemainingNanos;
+    }
+
+    /**
+     * Gets the directory containing the index being upgraded.
+     *
+     * @return the directory.
+     */
+    @Nonnull
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the version the step upgrades to.
+     *
+     * @return the version.
+     */
+    @Nonnull
+    public LuceneVersion getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets which step this is.
+     *
+     * @return the step number, counting from 1.
+     */
+    public int getStepNumber() {
+        return stepNumber;
+    }
+
+    /**
+     * Gets how many steps the upgrade takes.
+     *
+     * @return the number of steps.
+     */
+    public int getStepCount() {
+        return stepCount;
+    }
+
+    /**
+     * Gets how many documents the step has to rewrite, counting deleted ones, which is what
+     * its progress is measured against.
+     *
+     * @return the number of documents.
+     */
+    public long getDocCount() {
+        return docCount;
+    }
+
+    /**
+     * Gets roughly how long the rest of the upgrade will take, going by the steps before this one.
+     *
+     * @return the time in milliseconds, or {@code -1} if there's nothing to go by yet.
+     */
+    public long getEstimatedRemainingMillis() {
+        return estimatedRemainingNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(estimatedRemainingNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "Step " + stepNumber + "/" + stepCount + " to " + version + " started for " + path +
+               " [" + docCount + " docs]";
+    }
+}
@@ -0,0 +1,182 @@
+package org.trypticon.luceneupgrader;
+
+import org.apache.lucene.util.IOUtils;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * Journal kept next to an index while it is being upgraded with checkpointing or low disk usage turned on,
+ * recording which step is in progress and enough state for the step to carry on from
+ * where it stopped if the process dies.
+ */
+public class UpgradeJournal {
+
+    private static final String STEP = "step";
+    private static final String SWAP_TEMP = "swap.temp";
+    private static final String SWAP_OLD = "swap.old";
+
+    @Nonnull
+    private final Path journalPath;
+
+    @Nonnull
+    private final Properties properties = new Properties();
+
+    private UpgradeJournal(@Nonnull Path journalPath) {
+        this.journalPath = journalPath;
+    }
+
+    /**
+     * Loads the journal for an index. If there is no journal yet, an empty one is returned.
+     *
+     * @param directory the directory containing the index.
+     * @return the journal.
+     * @throws IOException if an error occurs reading the journal.
+     */
+    public static UpgradeJournal load(@Nonnull Path directory) throws IOException {
+        UpgradeJournal journal = new UpgradeJournal(directory.resolveSibling(directory.getFileName() + ".upgrade-journal"));
+        if (Files.exists(journal.journalPath)) {
+            try (InputStream stream = Files.newInputStream(journal.journalPath)) {
+                journal.properties.load(stream);
+            }
+        }
+        return journal;
+    }
+
+    /**
+     * Gets the step which was in progress.
+     *
+     * @return the version being upgraded to, or {@code null} if no step was in progress.
+     */
+    @Nullable
+    public LuceneVersion getStep() {
+        String step = properties.getProperty(STEP);
+        return step == null ? null : LuceneVersion.valueOf(step);
+    }
+
+    /**
+     * Records that a step is starting. If the same step was already in progress, the state
+     * recorded for it is kept so that it can be resumed.
+     *
+     * @param step the version being upgraded to.
+     * @throws IOException if an error occurs writing the journal.
+     */
+    public void beginStep(@Nonnull LuceneVersion step) throws IOException {
+        if (step != getStep()) {
+            properties.clear();
+            properties.setProperty(STEP, step.name());
+            save();
+        }
+    }
+
+    /**
+     * Gets a value recorded by the current step.
+     *
+     * @param key the key.
+     * @return the value, or {@code null} if there is none.
+     */
+    @Nullable
+    public String get(@Nonnull String key) {
+        return properties.getProperty(key);
+    }
+
+    /**
+     * Records a value for the current step. The value is not durable until {@link #save()} is called.
+     *
+     * @param key the key.
+     * @param value the value.
+     */
+    public void put(@Nonnull String key, @Nonnull String value) {
+        properties.setProperty(key, value);
+    }
+
+    /**
+     * Durably writes the journal. The old journal is replaced atomically, so a crash leaves
+     * either the old journal or the new one.
+     *
+     * @throws IOException if an error occurs writing the journal.
+     */
+    public void save() throws IOException {
+        Path tempPath = journalPath.resolveSibling(journalPath.getFileName() + ".tmp");
+        try (OutputStream stream = Files.newOutputStream(tempPath)) {
+            properties.store(stream, null);
+        }
+        IOUtils.fsync(tempPath, false);
+        Files.move(tempPath, journalPath, StandardCopyOption.ATOMIC_MOVE);
+        IOUtils.fsync(journalPath.getParent(), true);
+    }
+
+    /**
+     * Deletes the journal, once the step is complete.
+     *
+     * @throws IOException if an error occurs deleting the journal.
+     */
+    public void delete() throws IOException {
+        properties.clear();
+        Files.deleteIfExists(journalPath);
+    }
+
+    /**
+     * Replaces an index directory with a completely written new one, in a way which
+     * {@link #finishInterruptedReplace(Path)} can finish if the process dies part way through.
+     *
+     * @param path the directory containing the index.
+     * @param tempPath the directory containing the new index.
+     * @param oldPath the path to move the existing index to before deleting it.
+     * @throws IOException if an error occurs moving or deleting files.
+     */
+    public void replaceDirectory(@Nonnull Path path, @Nonnull Path tempPath, @Nonnull Path oldPath) throws IOException {
+        beginReplace(tempPath, oldPath);
+        finishInterruptedReplace(path);
+    }
+
+    /**
+     * Durably records that an index directory is about to be replaced, before anything is moved.
+     *
+     * @param tempPath the directory containing the new index.
+     * @param oldPath the path to move the existing index to before deleting it.
+     * @throws IOException if an error occurs writing the journal.
+     */
+    void beginReplace(@Nonnull Path tempPath, @Nonnull Path oldPath) throws IOException {
+        put(SWAP_TEMP, tempPath.toString());
+        put(SWAP_OLD, oldPath.toString());
+        save();
+    }
+
+    /**
+     * Finishes replacing an index directory if a previous run died while doing it.
+     * Does nothing if no replacement was in progress.
+     *
+     * @param path the directory containing the index.
+     * @return {@code true} if a replacement was finished, which means the step is complete.
+     * @throws IOException if an error occurs moving or deleting files.
+     */
+    public boolean finishInterruptedReplace(@Nonnull Path path) throws IOException {
+        String temp = get(SWAP_TEMP);
+        String old = get(SWAP_OLD);
+        if (temp == null || old == null) {
+            return false;
+        }
+
+        Path tempPath = Paths.get(temp);
+        Path oldPath = Paths.get(old);
+        if (Files.exists(tempPath)) {
+            if (Files.exists(path)) {
+                // Nothing has been moved yet, so anything already at the old path is left over from before.
+                FileUtils.insecureRecursiveDelete(oldPath);
+                Files.move(path, oldPath);
+            }
+            Files.move(tempPath, path);
+        }
+        FileUtils.insecureRecursiveDelete(oldPath);
+        return true;
+    }
+}
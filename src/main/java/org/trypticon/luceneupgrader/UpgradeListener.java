@@ -0,0 +1,35 @@
+package org.trypticon.luceneupgrader;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Listener for the progress of an upgrade. Events can come from several threads at once when
+ * segments are upgraded concurrently or steps are pipelined, and the upgrade waits for each
+ * call to return, so listeners should be quick.
+ */
+public interface UpgradeListener {
+
+    /**
+     * Called when a step starts.
+     *
+     * @param event the event.
+     */
+    default void stepStarted(@Nonnull StepStartedEvent event) {
+    }
+
+    /**
+     * Called each time a step has written a segment.
+     *
+     * @param event the event.
+     */
+    default void segmentUpgraded(@Nonnull SegmentUpgradedEvent event) {
+    }
+
+    /**
+     * Called when a step finishes, including when it fails.
+     *
+     * @param event the event.
+     */
+    default void stepFinished(@Nonnull StepFinishedEvent event) {
+    }
+}
@@ -0,0 +1,493 @@
+package org.trypticon.luceneupgrader;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks the progress of one step of an upgrade, passing events to the
+ * {@link IndexUpgraderConfig#setUpgradeListener(UpgradeListener) upgrade listener} and to the
+ * JDK Flight Recorder when it's recording. The step's upgrader reports each segment it writes,
+ * and the directories it opens report what they read and write. Whatever is read and written on
+ * a thread while it's writing a segment, or on a thread started by it, counts towards that segment.
+ */
+public class UpgradeProgress {
+
+    /**
+     * Progress which goes nowhere, for when there is no listener.
+     */
+    public static final UpgradeProgress NONE = new UpgradeProgress(null, false, Paths.get(""), LuceneVersion.VERSION_1,
+                                                                   0, 0, 0, -1);
+
+    private static final MemoryMXBean memoryMXBean = ManagementFactory.getMemoryMXBean();
+
+    @Nullable
+    private final UpgradeListener listener;
+
+    private final boolean recording;
+
+    private final boolean enabled;
+
+    @Nonnull
+    private final Path path;
+
+    @Nonnull
+    private final LuceneVersion version;
+
+    private final int stepNumber;
+
+    private final int stepCount;
+
+    private final long docCount;
+
+    private final long startNanos = System.nanoTime();
+
+    private final long gcCountAtStart;
+
+    private final long gcMillisAtStart;
+
+    private final Counters counters = new Counters();
+
+    private final LongAdder[] componentNanos = newAdders();
+
+    private final AtomicInteger segmentsDone = new AtomicInteger();
+
+    private final AtomicLong docsDone = new AtomicLong();
+
+    private final AtomicLong peakHeapBytes = new AtomicLong();
+
+    private final ThreadLocal<Segment> currentSegment = new InheritableThreadLocal<>();
+
+    @Nullable
+    private final Object stepRecording;
+
+    private UpgradeProgress(@Nullable UpgradeListener listener, boolean recording, @Nonnull Path path,
+                            @Nonnull LuceneVersion version, int stepNumber, int stepCount, long docCount,
+                            long previousStepsNanos) {
+        this.listener = listener;
+        this.recording = recording;
+        this.path = path;
+        this.version = version;
+        this.stepNumber = stepNumber;
+        this.stepCount = stepCount;
+        this.docCount = docCount;
+        enabled = listener != null || recording;
+        stepRecording = recording ? FlightRecording.beginStep() : null;
+
+        long[] gcTotals = enabled ? gcTotals() : new long[2];
+        gcCountAtStart = gcTotals[0];
+        gcMillisAtStart = gcTotals[1];
+
+        if (listener != null) {
+            sampleHeap();
+
+            // Until this step has something to go by, the steps before it are the best guess.
+            long estimatedRemainingNanos = -1;
+            if (stepNumber > 1 && previousStepsNanos >= 0) {
+                estimatedRemainingNanos = previousStepsNanos / (stepNumber - 1) * (stepCount - stepNumber + 1);
+            }
+            listener.stepStarted(new StepStartedEvent(path, version, stepNumber, stepCount, docCount,
+                                                      estimatedRemainingNanos));
+        }
+    }
+
+    /**
+     * Starts tracking a step, if there is a listener to tell.
+     *
+     * @param config the config, which holds the listener.
+     * @param path the directory containing the index.
+     * @param version the version the step upgrades to.
+     * @param stepNumber which step this is, counting from 1.
+     * @param stepCount how many steps the upgrade takes.
+     * @param previousStepsNanos how long the steps before this one took in total, or {@code -1}
+     *                           if that doesn't say anything about how long the rest will take.
+     * @return the progress, or {@link #NONE} if there is no listener and nothing is recording.
+     * @throws IOException if an error occurs reading the index.
+     */
+    @Nonnull
+    static UpgradeProgress start(@Nonnull IndexUpgraderConfig config, @Nonnull Path path,
+                                 @Nonnull LuceneVersion version, int stepNumber, int stepCount,
+                                 long previousStepsNanos) throws IOException {
+        UpgradeListener listener = config.getUpgradeListener();
+        boolean recording = FlightRecording.isRecording();
+        if (listener == null && !recording) {
+            return NONE;
+        }
+
+        // Segments already at the version are left alone, so they're no part of the step's work.
+        long docCount = 0;
+        for (SegmentDescription segment : new SegmentCensus().take(path)) {
+            if (!segment.isAtLeast(version)) {
+                docCount += segment.getDocCount();
+            }
+        }
+        return new UpgradeProgress(listener, recording, path, version, stepNumber, stepCount, docCount,
+                                   previousStepsNanos);
+    }
+
+    /**
+     * Tests whether anything is listening or recording, which is when directories are worth
+     * wrapping to report what they read and write.
+     *
+     * @return {@code true} if there is a listener or a flight recording.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Called after reading from a file.
+     *
+     * @param fileName the name of the file.
+     * @param bytes the number of bytes read.
+     */
+    public void read(@Nonnull String fileName, long bytes) {
+        if (!enabled) {
+            return;
+        }
+        IndexComponent component = IndexComponent.forFileName(fileName);
+        counters.read(component, bytes);
+        Segment segment = currentSegment.get();
+        if (segment != null) {
+            segment.counters.read(component, bytes);
+        }
+    }
+
+    /**
+     * Called when a file is created to be written.
+     *
+     * @param fileName the name of the file.
+     * @return the time the file was created, by {@link System#nanoTime()}.
+     */
+    public long opened(@Nonnull String fileName) {
+        if (recording) {
+            Segment segment = currentSegment.get();
+            if (segment != null) {
+                segment.opened(IndexComponent.forFileName(fileName));
+            }
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * Called after closing a file which was written.
+     *
+     * @param fileName the name of the file.
+     * @param bytes the number of bytes written.
+     * @param openedNanos when the file was created, by {@link System#nanoTime()}.
+     */
+    public void written(@Nonnull String fileName, long bytes, long openedNanos) {
+        if (!enabled) {
+            return;
+        }
+        long closedNanos = System.nanoTime();
+        IndexComponent component = IndexComponent.forFileName(fileName);
+        counters.written(component, bytes, openedNanos, closedNanos);
+        Segment segment = currentSegment.get();
+        if (segment != null) {
+            segment.counters.written(component, bytes, openedNanos, closedNanos);
+            segment.noteFile(fileName, component, openedNanos);
+        }
+        sampleHeap();
+    }
+
+    /**
+     * Starts writing a segment on the current thread. The segment should be closed once it's
+     * done with, whether it was finished or not.
+     *
+     * @return the segment.
+     */
+    @Nonnull
+    public Segment startSegment() {
+        return new Segment();
+    }
+
+    /**
+     * Performs the step, finishing tracking it whether it succeeds or fails.
+     *
+     * @param upgrader the upgrader for the step.
+     * @throws IOException if an error occurs performing the upgrade.
+     */
+    void upgrade(@Nonnull VersionUpgrader upgrader) throws IOException {
+        try {
+            upgrader.upgrade(this);
+        } catch (Throwable t) {
+            finish(t);
+            throw t;
+        }
+        finish(null);
+    }
+
+    /**
+     * Finishes tracking the step.
+     *
+     * @param failure what made the step fail, or {@code null} if it succeeded.
+     */
+    void finish(@Nullable Throwable failure) {
+        if (!enabled) {
+            return;
+        }
+        if (recording) {
+            FlightRecording.commitStep(stepRecording, path, version, stepNumber, stepCount, segmentsDone.get(),
+                                       docsDone.get(), sum(counters.bytesRead), sum(counters.bytesWritten),
+                                       failure != null);
+        }
+        if (listener == null) {
+            return;
+        }
+        sampleHeap();
+        long[] gcTotals = gcTotals();
+        List<ComponentStats> components = new ArrayList<>();
+        for (IndexComponent component : IndexComponent.values()) {
+            long bytesRead = counters.bytesRead[component.ordinal()].sum();
+            long bytesWritten = counters.bytesWritten[component.ordinal()].sum();
+            if (bytesRead > 0 || bytesWritten > 0) {
+                components.add(new ComponentStats(component, bytesRead, bytesWritten,
+                                                  componentNanos[component.ordinal()].sum()));
+            }
+        }
+        listener.stepFinished(new StepFinishedEvent(path, version, stepNumber, stepCount, segmentsDone.get(),
+                                                    docsDone.get(), components, getElapsedNanos(),
+                                                    gcTotals[0] - gcCountAtStart, gcTotals[1] - gcMillisAtStart,
+                                                    peakHeapBytes.get(), failure));
+    }
+
+    /**
+     * Gets how long the step has been running.
+     *
+     * @return the time in nanoseconds.
+     */
+    long getElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    private void sampleHeap() {
+        peakHeapBytes.accumulateAndGet(memoryMXBean.getHeapMemoryUsage().getUsed(), Math::max);
+    }
+
+    private static long[] gcTotals() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            // Either can be -1 if the collector doesn't keep track.
+            count += Math.max(0, bean.getCollectionCount());
+            millis += Math.max(0, bean.getCollectionTime());
+        }
+        return new long[] { count, millis };
+    }
+
+    private static long sum(LongAdder[] adders) {
+        long sum = 0;
+        for (LongAdder adder : adders) {
+            sum += adder.sum();
+        }
+        return sum;
+    }
+
+    private static LongAdder[] newAdders() {
+        LongAdder[] adders = new LongAdder[IndexComponent.values().length];
+        for (int i = 0; i < adders.length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Works out the segment a file belongs to, like {@code _5} for {@code _5_Lucene50_0.doc}.
+     */
+    private static String segmentName(String fileName) {
+        int end = fileName.indexOf('.');
+        if (end < 0) {
+            end = fileName.length();
+        }
+        int underscore = fileName.indexOf('_', 1);
+        if (underscore >= 0 && underscore < end) {
+            end = underscore;
+        }
+        return fileName.substring(0, end);
+    }
+
+    /**
+     * A segment being written.
+     */
+    public class Segment implements Closeable {
+        @Nullable
+        private final Segment previous;
+
+        private final long startNanos = System.nanoTime();
+
+        private final Counters counters = new Counters();
+
+        @Nullable
+        private String infoFileName;
+
+        @Nullable
+        private String firstFileName;
+
+        private long firstOpenedNanos = Long.MAX_VALUE;
+
+        @Nullable
+        private final Object segmentRecording;
+
+        private final Object[] phaseRecordings = new Object[IndexComponent.values().length];
+
+        private Segment() {
+            segmentRecording = recording ? FlightRecording.beginSegment() : null;
+            if (!enabled) {
+                previous = null;
+                return;
+            }
+            previous = currentSegment.get();
+            currentSegment.set(this);
+        }
+
+        /**
+         * Starts recording a component as soon as the first of its files is created.
+         */
+        private synchronized void opened(IndexComponent component) {
+            if (phaseRecordings[component.ordinal()] == null) {
+                phaseRecordings[component.ordinal()] = FlightRecording.beginPhase();
+            }
+        }
+
+        private synchronized void noteFile(String fileName, IndexComponent component, long openedNanos) {
+            // The component is done as far as anyone can tell once its last file is closed.
+            FlightRecording.endPhase(phaseRecordings[component.ordinal()]);
+            if (!fileName.startsWith("_")) {
+                return;
+            }
+            // Lucene 4 and later write the segment info last, after any files it was copied from.
+            if (fileName.endsWith(".si")) {
+                infoFileName = fileName;
+            }
+            if (openedNanos < firstOpenedNanos) {
+                firstOpenedNanos = openedNanos;
+                firstFileName = fileName;
+            }
+        }
+
+        /**
+         * Called once the segment has been written.
+         *
+         * @param docCount the number of documents rewritten into the segment, counting deleted ones.
+         */
+        public void finished(int docCount) {
+            if (!enabled) {
+                return;
+            }
+            String fileName;
+            Object[] phaseRecordings;
+            synchronized (this) {
+                fileName = infoFileName != null ? infoFileName : firstFileName;
+                phaseRecordings = this.phaseRecordings.clone();
+            }
+            if (fileName == null) {
+                // Nothing was written, so there's no segment to report.
+                return;
+            }
+
+            long elapsedNanos = System.nanoTime() - startNanos;
+            List<ComponentStats> components = new ArrayList<>();
+            for (IndexComponent component : IndexComponent.values()) {
+                long bytesRead = counters.bytesRead[component.ordinal()].sum();
+                long bytesWritten = counters.bytesWritten[component.ordinal()].sum();
+                if (bytesRead > 0 || bytesWritten > 0) {
+                    long componentNanos = counters.writingNanos(component);
+                    UpgradeProgress.this.componentNanos[component.ordinal()].add(componentNanos);
+                    components.add(new ComponentStats(component, bytesRead, bytesWritten, componentNanos));
+                }
+            }
+            segmentsDone.incrementAndGet();
+            long stepDocs = docsDone.addAndGet(docCount);
+
+            String segmentName = segmentName(fileName);
+            if (recording) {
+                for (IndexComponent component : IndexComponent.values()) {
+                    Object phaseRecording = phaseRecordings[component.ordinal()];
+                    if (phaseRecording != null) {
+                        FlightRecording.commitPhase(phaseRecording, version, segmentName, component,
+                                                    counters.bytesRead[component.ordinal()].sum(),
+                                                    counters.bytesWritten[component.ordinal()].sum());
+                    }
+                }
+                FlightRecording.commitSegment(segmentRecording, path, version, segmentName, docCount,
+                                              sum(counters.bytesRead), sum(counters.bytesWritten));
+            }
+            if (listener == null) {
+                return;
+            }
+            sampleHeap();
+
+            long stepDocCount = UpgradeProgress.this.docCount;
+            double stepProgress = stepDocCount == 0 ? 0 : Math.min(1.0, (double) stepDocs / stepDocCount);
+            long estimatedRemainingNanos = -1;
+            if (stepProgress > 0) {
+                long stepElapsedNanos = getElapsedNanos();
+                long stepNanos = (long) (stepElapsedNanos / stepProgress);
+                estimatedRemainingNanos = stepNanos - stepElapsedNanos + stepNanos * (stepCount - stepNumber);
+            }
+            listener.segmentUpgraded(new SegmentUpgradedEvent(path, version, segmentName, docCount,
+                                                              components, elapsedNanos, stepProgress,
+                                                              estimatedRemainingNanos));
+        }
+
+        /**
+         * Stops counting what the current thread does towards the segment.
+         */
+        @Override
+        public void close() {
+            if (!enabled) {
+                return;
+            }
+            currentSegment.set(previous);
+        }
+    }
+
+    /**
+     * Counts what was read and written for each component.
+     */
+    private static class Counters {
+        private final LongAdder[] bytesRead = newAdders();
+        private final LongAdder[] bytesWritten = newAdders();
+        private final AtomicLong[] firstOpenedNanos = new AtomicLong[IndexComponent.values().length];
+        private final AtomicLong[] lastClosedNanos = new AtomicLong[IndexComponent.values().length];
+
+        private Counters() {
+            for (int i = 0; i < firstOpenedNanos.length; i++) {
+                firstOpenedNanos[i] = new AtomicLong(Long.MAX_VALUE);
+                lastClosedNanos[i] = new AtomicLong(Long.MIN_VALUE);
+            }
+        }
+
+        private void read(IndexComponent component, long bytes) {
+            bytesRead[component.ordinal()].add(bytes);
+        }
+
+        private void written(IndexComponent component, long bytes, long openedNanos, long closedNanos) {
+            bytesWritten[component.ordinal()].add(bytes);
+            firstOpenedNanos[component.ordinal()].accumulateAndGet(openedNanos, Math::min);
+            lastClosedNanos[component.ordinal()].accumulateAndGet(closedNanos, Math::max);
+        }
+
+        /**
+         * Works out how long the component's files were being written for, from the first one
+         * being opened to the last one being closed.
+         */
+        private long writingNanos(IndexComponent component) {
+            long first = firstOpenedNanos[component.ordinal()].get();
+            long last = lastClosedNanos[component.ordinal()].get();
+            return first == Long.MAX_VALUE ? 0 : last - first;
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package org.trypticon.luceneupgrader;
+
+/**
+ * Enumeration of when an upgraded index is checked for corruption. When pipelining, each
+ * segment's index is checked on its own instead of the index as a whole.
+ */
+public enum VerificationMode {
+
+    /**
+     * The index isn't checked.
+     */
+    NONE,
+
+    /**
+     * The index is checked once, after the last step.
+     */
+    FINAL_STEP,
+
+    /**
+     * The index is checked after every step, so that corruption is caught at the step which
+     * caused it.
+     */
+    EVERY_STEP
+}
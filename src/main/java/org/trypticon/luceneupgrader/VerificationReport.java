@@ -0,0 +1,109 @@
+package org.trypticon.luceneupgrader;
+
+import javax.annotation.Nonnull;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Report of checking an index for corruption, with the result of each check which was made.
+ */
+public class VerificationReport {
+    @Nonnull
+    private final Path path;
+
+    @Nonnull
+    private final LuceneVersion version;
+
+    @Nonnull
+    private final List<SegmentCheck> checks;
+
+    private final long elapsedNanos;
+
+    public VerificationReport(@Nonnull Path path, @Nonnull LuceneVersion version,
+                              @Nonnull List<SegmentCheck> checks, long elapsedNanos) {
+        this.path = path;
+        this.version = version;
+        this.checks = Collections.unmodifiableList(new ArrayList<>(checks));
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Gets the directory containing the index which was checked.
+     *
+     * @return the directory.
+     */
+    @Nonnull
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the version the index was checked as.
+     *
+     * @return the version.
+     */
+    @Nonnull
+    public LuceneVersion getVersion() {
+        return version;
+    }
+
+    /**
+     * Gets the result of each check, in segment order. A segment is either checked as a whole,
+     * or each of its parts is checked separately.
+     *
+     * @return the results.
+     */
+    @Nonnull
+    public List<SegmentCheck> getChecks() {
+        return checks;
+    }
+
+    /**
+     * Gets the checks which found problems.
+     *
+     * @return the failed checks, in segment order.
+     */
+    @Nonnull
+    public List<SegmentCheck> getFailures() {
+        List<SegmentCheck> failures = new ArrayList<>();
+        for (SegmentCheck check : checks) {
+            if (!check.isClean()) {
+                failures.add(check);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Tests whether no problems were found.
+     *
+     * @return {@code true} if every check passed.
+     */
+    public boolean isClean() {
+        return getFailures().isEmpty();
+    }
+
+    /**
+     * Gets how long checking the index took altogether.
+     *
+     * @return the time in milliseconds.
+     */
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Checked ").append(path).append(" as ").append(version).append(": ")
+               .append(isClean() ? "clean" : getFailures().size() + " of " + checks.size() + " checks failed")
+               .append(" [took ").append(getElapsedMillis()).append(" ms]");
+        for (SegmentCheck check : checks) {
+            builder.append('\n').append("  ").append(check);
+        }
+        return builder.toString();
+    }
+}
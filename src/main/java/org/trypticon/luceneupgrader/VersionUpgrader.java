@@ -1,5 +1,6 @@
 package org.trypticon.luceneupgrader;
 
+import javax.annotation.Nonnull;
 import java.io.IOException;
 
 /**
@@ -13,4 +14,14 @@ public interface VersionUpgrader {
      * @throws IOException if an error occurs performing the upgrade.
      */
     void upgrade() throws IOException;
+
+    /**
+     * Performs the upgrade, reporting its progress.
+     *
+     * @param progress the progress of the step.
+     * @throws IOException if an error occurs performing the upgrade.
+     */
+    default void upgrade(@Nonnull UpgradeProgress progress) throws IOException {
+        upgrade();
+    }
 }
@@ -0,0 +1,57 @@
+package org.trypticon.luceneupgrader.lucene3;
+
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.index.CheckIndex;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.index.CorruptIndexException;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.Directory;
+import org.trypticon.luceneupgrader.lucene3.internal.lucenesupport.PathFSDirectory3;
+import org.trypticon.luceneupgrader.IndexChecker;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Checks Lucene 3 indexes.
+ */
+public class IndexChecker3 implements IndexChecker {
+
+    private final Directory directory;
+
+    public IndexChecker3(@Nonnull Path path) throws IOException {
+        directory = PathFSDirectory3.open(path);
+    }
+
+    @Nonnull
+    @Override
+    public List<String> getComponents() {
+        // Lucene 3's CheckIndex only checks whole segments.
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void checkSegment(@Nonnull String segmentName) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        CheckIndex checkIndex = new CheckIndex(directory);
+        checkIndex.setInfoStream(new PrintStream(output, true, StandardCharsets.UTF_8.name()));
+        CheckIndex.Status status = checkIndex.checkIndex(Collections.singletonList(segmentName));
+        if (!status.clean) {
+            throw new CorruptIndexException("CheckIndex found problems in " + segmentName + ":\n" +
+                                            output.toString(StandardCharsets.UTF_8.name()));
+        }
+    }
+
+    @Override
+    public void checkComponent(@Nonnull String segmentName, @Nonnull String component) {
+        throw new IllegalArgumentException("Unknown component: " + component);
+    }
+
+    @Override
+    public void close() throws IOException {
+        directory.close();
+    }
+}
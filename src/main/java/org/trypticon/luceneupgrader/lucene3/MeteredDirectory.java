@@ -0,0 +1,232 @@
+package org.trypticon.luceneupgrader.lucene3;
+
+import org.trypticon.luceneupgrader.UpgradeProgress;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.BufferedIndexInput;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.Directory;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.IndexInput;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.IndexOutput;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.Lock;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.LockFactory;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Directory which tells an {@link UpgradeProgress} how much is read from and written to each
+ * file. Writes are counted when each file is closed, and reads each time an input fills its
+ * buffer. Lucene 3 has no {@code FilterDirectory}, so this delegates everything itself.
+ */
+class MeteredDirectory extends Directory {
+
+    private static final int BUFFER_SIZE = 16384;
+
+    private final Directory in;
+
+    private final UpgradeProgress progress;
+
+    MeteredDirectory(Directory in, UpgradeProgress progress) {
+        this.in = in;
+        this.progress = progress;
+    }
+
+    @Override
+    public String[] listAll() throws IOException {
+        return in.listAll();
+    }
+
+    @Override
+    public boolean fileExists(String name) throws IOException {
+        return in.fileExists(name);
+    }
+
+    @Override
+    @Deprecated
+    public long fileModified(String name) throws IOException {
+        return in.fileModified(name);
+    }
+
+    @Override
+    @Deprecated
+    public void touchFile(String name) throws IOException {
+        in.touchFile(name);
+    }
+
+    @Override
+    public void deleteFile(String name) throws IOException {
+        in.deleteFile(name);
+    }
+
+    @Override
+    public long fileLength(String name) throws IOException {
+        return in.fileLength(name);
+    }
+
+    @Override
+    public IndexOutput createOutput(String name) throws IOException {
+        return new MeteredIndexOutput(in.createOutput(name), name, progress);
+    }
+
+    @Override
+    @Deprecated
+    public void sync(String name) throws IOException {
+        in.sync(name);
+    }
+
+    @Override
+    public void sync(Collection<String> names) throws IOException {
+        in.sync(names);
+    }
+
+    @Override
+    public IndexInput openInput(String name) throws IOException {
+        return new MeteredIndexInput(in.openInput(name), name, progress);
+    }
+
+    @Override
+    public IndexInput openInput(String name, int bufferSize) throws IOException {
+        return new MeteredIndexInput(in.openInput(name, bufferSize), name, progress);
+    }
+
+    @Override
+    public Lock makeLock(String name) {
+        return in.makeLock(name);
+    }
+
+    @Override
+    public void clearLock(String name) throws IOException {
+        in.clearLock(name);
+    }
+
+    @Override
+    public void setLockFactory(LockFactory lockFactory) throws IOException {
+        in.setLockFactory(lockFactory);
+    }
+
+    @Override
+    public LockFactory getLockFactory() {
+        return in.getLockFactory();
+    }
+
+    @Override
+    public String getLockID() {
+        return in.getLockID();
+    }
+
+    @Override
+    public void close() throws IOException {
+        isOpen = false;
+        in.close();
+    }
+
+    @Override
+    public String toString() {
+        return "MeteredDirectory(" + in + ")";
+    }
+
+    /**
+     * Output which reports how much was written to it once it's closed.
+     */
+    private static class MeteredIndexOutput extends IndexOutput {
+        private final IndexOutput delegate;
+        private final String fileName;
+        private final UpgradeProgress progress;
+        private final long openedNanos;
+        private long length;
+
+        private MeteredIndexOutput(IndexOutput delegate, String fileName, UpgradeProgress progress) {
+            this.delegate = delegate;
+            this.fileName = fileName;
+            this.progress = progress;
+            openedNanos = progress.opened(fileName);
+        }
+
+        @Override
+        public void writeByte(byte b) throws IOException {
+            delegate.writeByte(b);
+        }
+
+        @Override
+        public void writeBytes(byte[] b, int offset, int length) throws IOException {
+            delegate.writeBytes(b, offset, length);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            long bytes = Math.max(length, delegate.getFilePointer());
+            delegate.close();
+            progress.written(fileName, bytes, openedNanos);
+        }
+
+        @Override
+        public long getFilePointer() {
+            return delegate.getFilePointer();
+        }
+
+        @Override
+        public void seek(long pos) throws IOException {
+            // Headers are written by seeking back, so the end might be behind the file pointer.
+            length = Math.max(length, delegate.getFilePointer());
+            delegate.seek(pos);
+        }
+
+        @Override
+        public long length() throws IOException {
+            return delegate.length();
+        }
+
+        @Override
+        public void setLength(long length) throws IOException {
+            delegate.setLength(length);
+        }
+    }
+
+    /**
+     * Input which reports everything it reads.
+     */
+    private static class MeteredIndexInput extends BufferedIndexInput {
+        private IndexInput delegate;
+        private final String fileName;
+        private final UpgradeProgress progress;
+
+        private MeteredIndexInput(IndexInput delegate, String fileName, UpgradeProgress progress) {
+            super(delegate.toString(), BUFFER_SIZE);
+            this.delegate = delegate;
+            this.fileName = fileName;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void readInternal(byte[] b, int offset, int length) throws IOException {
+            delegate.seek(getFilePointer());
+            delegate.readBytes(b, offset, length, false);
+            progress.read(fileName, length);
+        }
+
+        @Override
+        protected void seekInternal(long pos) {
+            // Reads seek the delegate themselves.
+        }
+
+        @Override
+        public long length() {
+            return delegate.length();
+        }
+
+        @Override
+        public Object clone() {
+            MeteredIndexInput clone = (MeteredIndexInput) super.clone();
+            clone.delegate = (IndexInput) delegate.clone();
+            return clone;
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
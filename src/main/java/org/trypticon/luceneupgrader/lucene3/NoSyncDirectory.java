@@ -0,0 +1,117 @@
+package org.trypticon.luceneupgrader.lucene3;
+
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.Directory;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.IndexInput;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.IndexOutput;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.Lock;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.LockFactory;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Directory which never syncs files to disk, for indexes which are only an intermediate step,
+ * where the final index gets synced once at the end instead.
+ * Lucene 3 has no {@code FilterDirectory}, so this delegates everything itself.
+ */
+class NoSyncDirectory extends Directory {
+    private final Directory in;
+
+    NoSyncDirectory(Directory in) {
+        this.in = in;
+    }
+
+    @Override
+    public String[] listAll() throws IOException {
+        return in.listAll();
+    }
+
+    @Override
+    public boolean fileExists(String name) throws IOException {
+        return in.fileExists(name);
+    }
+
+    @Override
+    @Deprecated
+    public long fileModified(String name) throws IOException {
+        return in.fileModified(name);
+    }
+
+    @Override
+    @Deprecated
+    public void touchFile(String name) throws IOException {
+        in.touchFile(name);
+    }
+
+    @Override
+    public void deleteFile(String name) throws IOException {
+        in.deleteFile(name);
+    }
+
+    @Override
+    public long fileLength(String name) throws IOException {
+        return in.fileLength(name);
+    }
+
+    @Override
+    public IndexOutput createOutput(String name) throws IOException {
+        return in.createOutput(name);
+    }
+
+    @Override
+    @Deprecated
+    public void sync(String name) {
+        // Deliberately not syncing.
+    }
+
+    @Override
+    public void sync(Collection<String> names) {
+        // Deliberately not syncing.
+    }
+
+    @Override
+    public IndexInput openInput(String name) throws IOException {
+        return in.openInput(name);
+    }
+
+    @Override
+    public IndexInput openInput(String name, int bufferSize) throws IOException {
+        return in.openInput(name, bufferSize);
+    }
+
+    @Override
+    public Lock makeLock(String name) {
+        return in.makeLock(name);
+    }
+
+    @Override
+    public void clearLock(String name) throws IOException {
+        in.clearLock(name);
+    }
+
+    @Override
+    public void setLockFactory(LockFactory lockFactory) throws IOException {
+        in.setLockFactory(lockFactory);
+    }
+
+    @Override
+    public LockFactory getLockFactory() {
+        return in.getLockFactory();
+    }
+
+    @Override
+    public String getLockID() {
+        return in.getLockID();
+    }
+
+    @Override
+    public void close() throws IOException {
+        isOpen = false;
+        in.close();
+    }
+
+    @Override
+    public String toString() {
+        return "NoSyncDirectory(" + in + ")";
+    }
+}
@@ -0,0 +1,231 @@
+package org.trypticon.luceneupgrader.lucene3;
+
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.BufferedIndexInput;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.Directory;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.IndexInput;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.IndexOutput;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.Lock;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.LockFactory;
+import org.trypticon.luceneupgrader.IoThrottle;
+
+import java.io.IOException;
+import java.util.Collection;
+
+/**
+ * Directory which keeps its reads and writes to the rates of an {@link IoThrottle}.
+ * Lucene 3 has no {@code FilterDirectory} or rate limiter, so this does it all itself.
+ */
+class ThrottledDirectory extends Directory {
+
+    private static final int BUFFER_SIZE = 16384;
+
+    private final Directory in;
+
+    private final IoThrottle ioThrottle;
+
+    ThrottledDirectory(Directory in, IoThrottle ioThrottle) {
+        this.in = in;
+        this.ioThrottle = ioThrottle;
+    }
+
+    @Override
+    public String[] listAll() throws IOException {
+        return in.listAll();
+    }
+
+    @Override
+    public boolean fileExists(String name) throws IOException {
+        return in.fileExists(name);
+    }
+
+    @Override
+    @Deprecated
+    public long fileModified(String name) throws IOException {
+        return in.fileModified(name);
+    }
+
+    @Override
+    @Deprecated
+    public void touchFile(String name) throws IOException {
+        in.touchFile(name);
+    }
+
+    @Override
+    public void deleteFile(String name) throws IOException {
+        in.deleteFile(name);
+    }
+
+    @Override
+    public long fileLength(String name) throws IOException {
+        return in.fileLength(name);
+    }
+
+    @Override
+    public IndexOutput createOutput(String name) throws IOException {
+        return new ThrottledIndexOutput(in.createOutput(name), ioThrottle);
+    }
+
+    @Override
+    @Deprecated
+    public void sync(String name) throws IOException {
+        in.sync(name);
+    }
+
+    @Override
+    public void sync(Collection<String> names) throws IOException {
+        in.sync(names);
+    }
+
+    @Override
+    public IndexInput openInput(String name) throws IOException {
+        return new ThrottledIndexInput(in.openInput(name), ioThrottle);
+    }
+
+    @Override
+    public IndexInput openInput(String name, int bufferSize) throws IOException {
+        return new ThrottledIndexInput(in.openInput(name, bufferSize), ioThrottle);
+    }
+
+    @Override
+    public Lock makeLock(String name) {
+        return in.makeLock(name);
+    }
+
+    @Override
+    public void clearLock(String name) throws IOException {
+        in.clearLock(name);
+    }
+
+    @Override
+    public void setLockFactory(LockFactory lockFactory) throws IOException {
+        in.setLockFactory(lockFactory);
+    }
+
+    @Override
+    public LockFactory getLockFactory() {
+        return in.getLockFactory();
+    }
+
+    @Override
+    public String getLockID() {
+        return in.getLockID();
+    }
+
+    @Override
+    public void close() throws IOException {
+        isOpen = false;
+        in.close();
+    }
+
+    @Override
+    public String toString() {
+        return "ThrottledDirectory(" + in + ")";
+    }
+
+    /**
+     * Output which waits on the throttle's write rate every so often.
+     */
+    private static class ThrottledIndexOutput extends IndexOutput {
+        private final IndexOutput delegate;
+        private final IoThrottle ioThrottle;
+        private long bytesSinceLastPause;
+
+        private ThrottledIndexOutput(IndexOutput delegate, IoThrottle ioThrottle) {
+            this.delegate = delegate;
+            this.ioThrottle = ioThrottle;
+        }
+
+        @Override
+        public void writeByte(byte b) throws IOException {
+            delegate.writeByte(b);
+            wrote(1);
+        }
+
+        @Override
+        public void writeBytes(byte[] b, int offset, int length) throws IOException {
+            delegate.writeBytes(b, offset, length);
+            wrote(length);
+        }
+
+        private void wrote(long bytes) throws IOException {
+            bytesSinceLastPause += bytes;
+            if (bytesSinceLastPause >= IoThrottle.MIN_PAUSE_CHECK_BYTES) {
+                ioThrottle.pauseForWrite(bytesSinceLastPause);
+                bytesSinceLastPause = 0;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            delegate.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public long getFilePointer() {
+            return delegate.getFilePointer();
+        }
+
+        @Override
+        public void seek(long pos) throws IOException {
+            delegate.seek(pos);
+        }
+
+        @Override
+        public long length() throws IOException {
+            return delegate.length();
+        }
+
+        @Override
+        public void setLength(long length) throws IOException {
+            delegate.setLength(length);
+        }
+    }
+
+    /**
+     * Input which waits on the throttle's read rate for everything it reads.
+     */
+    private static class ThrottledIndexInput extends BufferedIndexInput {
+        private IndexInput delegate;
+        private final IoThrottle ioThrottle;
+
+        private ThrottledIndexInput(IndexInput delegate, IoThrottle ioThrottle) {
+            super(delegate.toString(), BUFFER_SIZE);
+            this.delegate = delegate;
+            this.ioThrottle = ioThrottle;
+        }
+
+        @Override
+        protected void readInternal(byte[] b, int offset, int length) throws IOException {
+            delegate.seek(getFilePointer());
+            delegate.readBytes(b, offset, length, false);
+            ioThrottle.pauseForRead(length);
+        }
+
+        @Override
+        protected void seekInternal(long pos) {
+            // Reads seek the delegate themselves.
+        }
+
+        @Override
+        public long length() {
+            return delegate.length();
+        }
+
+        @Override
+        public Object clone() {
+            ThrottledIndexInput clone = (ThrottledIndexInput) super.clone();
+            clone.delegate = (IndexInput) delegate.clone();
+            return clone;
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -1,10 +1,18 @@
 package org.trypticon.luceneupgrader.lucene3;
 
+import org.trypticon.luceneupgrader.IndexUpgraderConfig;
 import org.trypticon.luceneupgrader.InfoStream;
+import org.trypticon.luceneupgrader.IoThrottle;
+import org.trypticon.luceneupgrader.UpgradeProgress;
 import org.trypticon.luceneupgrader.VersionUpgrader;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.index.ConcurrentMergeScheduler;
 import org.trypticon.luceneupgrader.lucene3.internal.lucene.index.IndexUpgrader;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.index.IndexWriter;
 import org.trypticon.luceneupgrader.lucene3.internal.lucene.index.IndexWriterConfig;
 import org.trypticon.luceneupgrader.lucene3.internal.lucene.index.LogByteSizeMergePolicy;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.index.MergePolicy;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.index.SegmentInfo;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.index.SegmentInfos;
 import org.trypticon.luceneupgrader.lucene3.internal.lucene.index.SerialMergeScheduler;
 import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.Directory;
 import org.trypticon.luceneupgrader.lucene3.internal.lucene.util.Version;
@@ -17,6 +25,9 @@ import java.io.OutputStream;
 import java.io.PrintStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * Upgrades an index to Lucene 3 format.
@@ -29,23 +40,73 @@ public class VersionUpgrader3 implements VersionUpgrader {
     @Nonnull
     private final InfoStream infoStream;
 
+    @Nonnull
+    private final IndexUpgraderConfig config;
+
+    @Nonnull
+    private UpgradeProgress progress = UpgradeProgress.NONE;
+
     public VersionUpgrader3(@Nonnull Path path, @Nonnull InfoStream infoStream) {
+        this(path, infoStream, new IndexUpgraderConfig());
+    }
+
+    public VersionUpgrader3(@Nonnull Path path, @Nonnull InfoStream infoStream, @Nonnull IndexUpgraderConfig config) {
         this.path = path;
         this.infoStream = infoStream;
+        this.config = config;
     }
 
     @Override
     public void upgrade() throws IOException {
-        try (Directory directory = PathFSDirectory3.open(path)) {
-            PrintStream printStream = new PrintStream(new InfoStreamOutputStream(infoStream));
+        upgrade(UpgradeProgress.NONE);
+    }
+
+    @Override
+    public void upgrade(@Nonnull UpgradeProgress progress) throws IOException {
+        this.progress = progress;
+        try (Directory directory = openDirectory()) {
+            // Lucene 3 formats every message whenever it has a stream, so it only gets one if it will be used.
+            PrintStream printStream = infoStream.isEnabled("-") ?
+                    new PrintStream(new InfoStreamOutputStream(infoStream)) : null;
             IndexWriterConfig indexWriterConfig = new IndexWriterConfig(Version.LUCENE_36, null);
-            indexWriterConfig.setMergePolicy(new LogByteSizeMergePolicy());
-            indexWriterConfig.setMergeScheduler(new SerialMergeScheduler());
+            int mergeThreadCount = config.resolveMergeThreadCount(path);
+            if (config.isCheckpointing() || config.isLowDiskUsage()) {
+                // Committing from merge threads can deadlock against closing the writer, so checkpointed
+                // upgrades rewrite the segments one at a time on this thread. Each commit also lets the
+                // files of the segment just rewritten be deleted, which is what low disk usage relies on.
+                indexWriterConfig.setMergePolicy(new SegmentAtATimeMergePolicy());
+                indexWriterConfig.setMergeScheduler(new CommittingSerialMergeScheduler());
+            } else if (mergeThreadCount > 1) {
+                ConcurrentMergeScheduler mergeScheduler = new ReportingConcurrentMergeScheduler();
+                mergeScheduler.setMaxMergeCount(mergeThreadCount);
+                mergeScheduler.setMaxThreadCount(mergeThreadCount);
+                indexWriterConfig.setMergePolicy(new SegmentAtATimeMergePolicy());
+                indexWriterConfig.setMergeScheduler(mergeScheduler);
+            } else {
+                // Only old segments are force merged, so each document is rewritten once, but the
+                // merge factor decides how many segments that leaves.
+                LogByteSizeMergePolicy mergePolicy = new LogByteSizeMergePolicy();
+                mergePolicy.setMergeFactor(config.getMaxSegmentsPerMerge());
+                indexWriterConfig.setMergePolicy(mergePolicy);
+                indexWriterConfig.setMergeScheduler(new ReportingSerialMergeScheduler());
+            }
             IndexUpgrader upgrader = new IndexUpgrader(directory, indexWriterConfig, printStream, true);
             upgrader.upgrade();
         }
     }
 
+    private Directory openDirectory() throws IOException {
+        Directory directory = PathFSDirectory3.open(path);
+        IoThrottle ioThrottle = config.getIoThrottle();
+        if (ioThrottle != null) {
+            directory = new ThrottledDirectory(directory, ioThrottle);
+        }
+        if (progress.isEnabled()) {
+            directory = new MeteredDirectory(directory, progress);
+        }
+        return config.resolveDeferredSync() ? new NoSyncDirectory(directory) : directory;
+    }
+
     /**
      * Poor adapter to redirect a stream to the info stream.
      */
@@ -60,11 +121,107 @@ public class VersionUpgrader3 implements VersionUpgrader {
         @Override
         public void write(int b) throws IOException {
             if (b == '\n') {
-                infoStream.message("-", buffer.toString(StandardCharsets.UTF_8.name()));
-                buffer.reset();
+                flushLine();
             } else {
                 buffer.write(b);
             }
         }
+
+        @Override
+        public void write(byte[] b, int offset, int length) throws IOException {
+            // PrintStream writes whole messages at once, so copy up to each line break in one go.
+            int end = offset + length;
+            int start = offset;
+            for (int i = offset; i < end; i++) {
+                if (b[i] == '\n') {
+                    buffer.write(b, start, i - start);
+                    flushLine();
+                    start = i + 1;
+                }
+            }
+            buffer.write(b, start, end - start);
+        }
+
+        private void flushLine() throws IOException {
+            infoStream.message("-", buffer.toString(StandardCharsets.UTF_8.name()));
+            buffer.reset();
+        }
+    }
+
+    /**
+     * Performs a merge, reporting the segment it writes.
+     */
+    private void merge(IndexWriter writer, MergePolicy.OneMerge merge) throws IOException {
+        try (UpgradeProgress.Segment segment = progress.startSegment()) {
+            writer.merge(merge);
+            segment.finished(merge.totalDocCount);
+        }
+    }
+
+    /**
+     * Merge policy which rewrites each segment in its own merge, so that the merges can run
+     * concurrently. Each merged segment takes the place of the original, so document order
+     * is preserved.
+     */
+    private static class SegmentAtATimeMergePolicy extends LogByteSizeMergePolicy {
+        @Override
+        public MergeSpecification findForcedMerges(SegmentInfos segmentInfos, int maxSegmentCount,
+                                                   Map<SegmentInfo, Boolean> segmentsToMerge) {
+            Collection<SegmentInfo> mergingSegments = writer.get().getMergingSegments();
+            MergeSpecification spec = null;
+            for (SegmentInfo info : segmentInfos) {
+                if (segmentsToMerge.containsKey(info) && !mergingSegments.contains(info)) {
+                    if (spec == null) {
+                        spec = new MergeSpecification();
+                    }
+                    spec.add(new OneMerge(Collections.singletonList(info)));
+                }
+            }
+            return spec;
+        }
+    }
+
+    /**
+     * Serial merge scheduler which reports each segment it writes.
+     */
+    private class ReportingSerialMergeScheduler extends SerialMergeScheduler {
+        @Override
+        public synchronized void merge(IndexWriter writer) throws IOException {
+            while (true) {
+                MergePolicy.OneMerge merge = writer.getNextMerge();
+                if (merge == null) {
+                    break;
+                }
+                VersionUpgrader3.this.merge(writer, merge);
+            }
+        }
+    }
+
+    /**
+     * Concurrent merge scheduler which reports each segment it writes.
+     */
+    private class ReportingConcurrentMergeScheduler extends ConcurrentMergeScheduler {
+        @Override
+        protected void doMerge(MergePolicy.OneMerge merge) throws IOException {
+            VersionUpgrader3.this.merge(writer, merge);
+        }
+    }
+
+    /**
+     * Serial merge scheduler which commits after each merge, so that the segments rewritten
+     * so far survive the process dying.
+     */
+    private class CommittingSerialMergeScheduler extends SerialMergeScheduler {
+        @Override
+        public synchronized void merge(IndexWriter writer) throws IOException {
+            while (true) {
+                MergePolicy.OneMerge merge = writer.getNextMerge();
+                if (merge == null) {
+                    break;
+                }
+                VersionUpgrader3.this.merge(writer, merge);
+                writer.commit();
+            }
+        }
     }
 }
@@ -756,7 +756,7 @@ public final class SegmentInfos implements Cloneable, Iterable<SegmentInfo> {
   }
 
 
-  final void commit(Directory dir) throws IOException {
+  public final void commit(Directory dir) throws IOException {
     prepareCommit(dir);
     finishCommit(dir);
   }
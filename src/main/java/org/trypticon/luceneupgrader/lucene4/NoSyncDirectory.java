@@ -0,0 +1,21 @@
+package org.trypticon.luceneupgrader.lucene4;
+
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.store.Directory;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.store.FilterDirectory;
+
+import java.util.Collection;
+
+/**
+ * Directory which never syncs files to disk, for indexes which are only an intermediate step,
+ * where the final index gets synced once at the end instead.
+ */
+class NoSyncDirectory extends FilterDirectory {
+    NoSyncDirectory(Directory in) {
+        super(in);
+    }
+
+    @Override
+    public void sync(Collection<String> names) {
+        // Deliberately not syncing.
+    }
+}
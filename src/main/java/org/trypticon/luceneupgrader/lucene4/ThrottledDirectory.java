@@ -0,0 +1,140 @@
+package org.trypticon.luceneupgrader.lucene4;
+
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.store.BufferedIndexInput;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.store.Directory;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.store.FilterDirectory;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.store.IOContext;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.store.IndexInput;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.store.IndexOutput;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.store.RateLimitedDirectoryWrapper;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.store.RateLimiter;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.util.ThreadInterruptedException;
+import org.trypticon.luceneupgrader.IoThrottle;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Directory which keeps its reads and writes to the rates of an {@link IoThrottle}. Writes go
+ * through Lucene's own {@link RateLimitedDirectoryWrapper}, and reads through an input which
+ * waits on the throttle each time it fills its buffer.
+ */
+class ThrottledDirectory extends FilterDirectory {
+
+    private static final int BUFFER_SIZE = 16384;
+
+    private final IoThrottle ioThrottle;
+
+    /**
+     * Only used for its outputs. Never closed, because that would close the directory
+     * this one delegates to.
+     */
+    private final RateLimitedDirectoryWrapper rateLimitedDirectory;
+
+    ThrottledDirectory(Directory in, IoThrottle ioThrottle) {
+        super(in);
+        this.ioThrottle = ioThrottle;
+        rateLimitedDirectory = new RateLimitedDirectoryWrapper(in);
+        RateLimiter writeRateLimiter = new WriteRateLimiter(ioThrottle);
+        for (IOContext.Context context : IOContext.Context.values()) {
+            rateLimitedDirectory.setRateLimiter(writeRateLimiter, context);
+        }
+    }
+
+    @Override
+    public IndexOutput createOutput(String name, IOContext context) throws IOException {
+        return rateLimitedDirectory.createOutput(name, context);
+    }
+
+    @Override
+    public IndexInput openInput(String name, IOContext context) throws IOException {
+        return new ThrottledIndexInput(in.openInput(name, context), ioThrottle);
+    }
+
+    /**
+     * Rate limiter which waits on the throttle's write rate, so that every output shares it.
+     */
+    private static class WriteRateLimiter extends RateLimiter {
+        private final IoThrottle ioThrottle;
+
+        private WriteRateLimiter(IoThrottle ioThrottle) {
+            this.ioThrottle = ioThrottle;
+        }
+
+        @Override
+        public void setMbPerSec(double mbPerSec) {
+            ioThrottle.setMaxWriteMBPerSec(mbPerSec);
+        }
+
+        @Override
+        public double getMbPerSec() {
+            return ioThrottle.getMaxWriteMBPerSec();
+        }
+
+        @Override
+        public long pause(long bytes) {
+            // Lucene 4's rate limiters can't throw IOException, so interruption is reported
+            // the same way its own rate limiter reports it.
+            try {
+                return ioThrottle.pauseForWrite(bytes);
+            } catch (InterruptedIOException e) {
+                InterruptedException interrupted = new InterruptedException(e.getMessage());
+                interrupted.initCause(e);
+                throw new ThreadInterruptedException(interrupted);
+            }
+        }
+
+        @Override
+        public long getMinPauseCheckBytes() {
+            return IoThrottle.MIN_PAUSE_CHECK_BYTES;
+        }
+    }
+
+    /**
+     * Input which waits on the throttle's read rate for everything it reads.
+     */
+    private static class ThrottledIndexInput extends BufferedIndexInput {
+        private IndexInput delegate;
+        private final IoThrottle ioThrottle;
+
+        private ThrottledIndexInput(IndexInput delegate, IoThrottle ioThrottle) {
+            super(delegate.toString(), BUFFER_SIZE);
+            this.delegate = delegate;
+            this.ioThrottle = ioThrottle;
+        }
+
+        @Override
+        protected void readInternal(byte[] b, int offset, int length) throws IOException {
+            delegate.seek(getFilePointer());
+            delegate.readBytes(b, offset, length, false);
+            ioThrottle.pauseForRead(length);
+        }
+
+        @Override
+        protected void seekInternal(long pos) {
+            // Reads seek the delegate themselves.
+        }
+
+        @Override
+        public long length() {
+            return delegate.length();
+        }
+
+        @Override
+        public ThrottledIndexInput clone() {
+            ThrottledIndexInput clone = (ThrottledIndexInput) super.clone();
+            clone.delegate = delegate.clone();
+            return clone;
+        }
+
+        @Override
+        public IndexInput slice(String sliceDescription, long offset, long length) throws IOException {
+            return new ThrottledIndexInput(delegate.slice(sliceDescription, offset, length), ioThrottle);
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -1,10 +1,19 @@
 package org.trypticon.luceneupgrader.lucene4;
 
+import org.trypticon.luceneupgrader.IndexUpgraderConfig;
 import org.trypticon.luceneupgrader.InfoStream;
+import org.trypticon.luceneupgrader.IoThrottle;
+import org.trypticon.luceneupgrader.UpgradeProgress;
 import org.trypticon.luceneupgrader.VersionUpgrader;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.index.ConcurrentMergeScheduler;
 import org.trypticon.luceneupgrader.lucene4.internal.lucene.index.IndexUpgrader;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.index.IndexWriter;
 import org.trypticon.luceneupgrader.lucene4.internal.lucene.index.IndexWriterConfig;
 import org.trypticon.luceneupgrader.lucene4.internal.lucene.index.LogByteSizeMergePolicy;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.index.MergePolicy;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.index.MergeTrigger;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.index.SegmentCommitInfo;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.index.SegmentInfos;
 import org.trypticon.luceneupgrader.lucene4.internal.lucene.index.SerialMergeScheduler;
 import org.trypticon.luceneupgrader.lucene4.internal.lucene.store.Directory;
 import org.trypticon.luceneupgrader.lucene4.internal.lucene.util.Version;
@@ -13,6 +22,9 @@ import org.trypticon.luceneupgrader.lucene4.internal.lucenesupport.PathFSDirecto
 import javax.annotation.Nonnull;
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * Upgrades an index to Lucene 4 format.
@@ -25,22 +37,91 @@ public class VersionUpgrader4 implements VersionUpgrader {
     @Nonnull
     private final InfoStream infoStream;
 
+    @Nonnull
+    private final IndexUpgraderConfig config;
+
+    @Nonnull
+    private UpgradeProgress progress = UpgradeProgress.NONE;
+
     public VersionUpgrader4(@Nonnull Path path, @Nonnull InfoStream infoStream) {
+        this(path, infoStream, new IndexUpgraderConfig());
+    }
+
+    public VersionUpgrader4(@Nonnull Path path, @Nonnull InfoStream infoStream, @Nonnull IndexUpgraderConfig config) {
         this.path = path;
         this.infoStream = infoStream;
+        this.config = config;
     }
 
     @Override
     public void upgrade() throws IOException {
-        try (Directory directory = PathFSDirectory4.open(path)) {
+        upgrade(UpgradeProgress.NONE);
+    }
+
+    @Override
+    public void upgrade(@Nonnull UpgradeProgress progress) throws IOException {
+        this.progress = progress;
+        try (Directory directory = openDirectory()) {
             org.trypticon.luceneupgrader.lucene4.internal.lucene.util.InfoStream adaptedInfoStream =
                     new AdaptedInfoStream(infoStream);
             IndexWriterConfig indexWriterConfig = new IndexWriterConfig(Version.LUCENE_4_10_4, null);
-            indexWriterConfig.setMergePolicy(new LogByteSizeMergePolicy());
-            indexWriterConfig.setMergeScheduler(new SerialMergeScheduler());
+            int mergeThreadCount = config.resolveMergeThreadCount(path);
+            if (config.isCheckpointing() || config.isLowDiskUsage()) {
+                // Committing from merge threads can deadlock against closing the writer, so checkpointed
+                // upgrades rewrite the segments one at a time on this thread. Each commit also lets the
+                // files of the segment just rewritten be deleted, which is what low disk usage relies on.
+                indexWriterConfig.setMergePolicy(new SegmentAtATimeMergePolicy());
+                indexWriterConfig.setMergeScheduler(new CommittingSerialMergeScheduler());
+            } else if (mergeThreadCount > 1) {
+                ConcurrentMergeScheduler mergeScheduler = new ReportingConcurrentMergeScheduler();
+                mergeScheduler.setMaxMergesAndThreads(mergeThreadCount, mergeThreadCount);
+                indexWriterConfig.setMergePolicy(new SegmentAtATimeMergePolicy());
+                indexWriterConfig.setMergeScheduler(mergeScheduler);
+            } else {
+                // Only old segments are force merged, so each document is rewritten once, but the
+                // merge factor decides how many segments that leaves.
+                LogByteSizeMergePolicy mergePolicy = new LogByteSizeMergePolicy();
+                mergePolicy.setMergeFactor(config.getMaxSegmentsPerMerge());
+                indexWriterConfig.setMergePolicy(mergePolicy);
+                indexWriterConfig.setMergeScheduler(new ReportingSerialMergeScheduler());
+            }
             indexWriterConfig.setInfoStream(adaptedInfoStream);
+            indexWriterConfig.setMergeComponentThreadCount(config.getMergeComponentThreadCount());
             IndexUpgrader upgrader = new IndexUpgrader(directory, indexWriterConfig, true);
-            upgrader.upgrade();
+            try {
+                upgrader.upgrade();
+            } catch (Throwable t) {
+                if (directory instanceof ChecksumVerifyingDirectory) {
+                    ((ChecksumVerifyingDirectory) directory).verifyAfterFailure(t);
+                }
+                throw t;
+            }
+        }
+    }
+
+    private Directory openDirectory() throws IOException {
+        Directory directory = PathFSDirectory4.open(path);
+        IoThrottle ioThrottle = config.getIoThrottle();
+        if (ioThrottle != null) {
+            directory = new ThrottledDirectory(directory, ioThrottle);
+        }
+        if (progress.isEnabled()) {
+            directory = new MeteredDirectory(directory, progress);
+        }
+        if (config.resolveDeferredSync()) {
+            directory = new NoSyncDirectory(directory);
+        }
+        // Outermost, so that checksums are verified before every sync, even a skipped one.
+        return config.isFusedChecksums() ? new ChecksumVerifyingDirectory(directory) : directory;
+    }
+
+    /**
+     * Performs a merge, reporting the segment it writes.
+     */
+    private void merge(IndexWriter writer, MergePolicy.OneMerge merge) throws IOException {
+        try (UpgradeProgress.Segment segment = progress.startSegment()) {
+            writer.merge(merge);
+            segment.finished(merge.totalDocCount);
         }
     }
 
@@ -69,4 +150,72 @@ public class VersionUpgrader4 implements VersionUpgrader {
             //
         }
     }
+
+    /**
+     * Merge policy which rewrites each segment in its own merge, so that the merges can run
+     * concurrently. Each merged segment takes the place of the original, so document order
+     * is preserved.
+     */
+    private static class SegmentAtATimeMergePolicy extends LogByteSizeMergePolicy {
+        @Override
+        public MergeSpecification findForcedMerges(SegmentInfos segmentInfos, int maxSegmentCount,
+                                                   Map<SegmentCommitInfo, Boolean> segmentsToMerge,
+                                                   IndexWriter writer) {
+            Collection<SegmentCommitInfo> mergingSegments = writer.getMergingSegments();
+            MergeSpecification spec = null;
+            for (SegmentCommitInfo info : segmentInfos) {
+                if (segmentsToMerge.containsKey(info) && !mergingSegments.contains(info)) {
+                    if (spec == null) {
+                        spec = new MergeSpecification();
+                    }
+                    spec.add(new OneMerge(Collections.singletonList(info)));
+                }
+            }
+            return spec;
+        }
+    }
+
+    /**
+     * Serial merge scheduler which reports each segment it writes.
+     */
+    private class ReportingSerialMergeScheduler extends SerialMergeScheduler {
+        @Override
+        public synchronized void merge(IndexWriter writer, MergeTrigger trigger, boolean newMergesFound) throws IOException {
+            while (true) {
+                MergePolicy.OneMerge merge = writer.getNextMerge();
+                if (merge == null) {
+                    break;
+                }
+                VersionUpgrader4.this.merge(writer, merge);
+            }
+        }
+    }
+
+    /**
+     * Concurrent merge scheduler which reports each segment it writes.
+     */
+    private class ReportingConcurrentMergeScheduler extends ConcurrentMergeScheduler {
+        @Override
+        protected void doMerge(MergePolicy.OneMerge merge) throws IOException {
+            VersionUpgrader4.this.merge(writer, merge);
+        }
+    }
+
+    /**
+     * Serial merge scheduler which commits after each merge, so that the segments rewritten
+     * so far survive the process dying.
+     */
+    private class CommittingSerialMergeScheduler extends SerialMergeScheduler {
+        @Override
+        public synchronized void merge(IndexWriter writer, MergeTrigger trigger, boolean newMergesFound) throws IOException {
+            while (true) {
+                MergePolicy.OneMerge merge = writer.getNextMerge();
+                if (merge == null) {
+                    break;
+                }
+                VersionUpgrader4.this.merge(writer, merge);
+                writer.commit();
+            }
+        }
+    }
 }
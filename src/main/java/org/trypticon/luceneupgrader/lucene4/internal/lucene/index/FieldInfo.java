@@ -211,7 +211,7 @@ public final class FieldInfo {
     return storeTermVector;
   }
   
-  public String getAttribute(String key) {
+  public synchronized String getAttribute(String key) {
     if (attributes == null) {
       return null;
     } else {
@@ -219,7 +219,7 @@ public final class FieldInfo {
     }
   }
   
-  public String putAttribute(String key, String value) {
+  public synchronized String putAttribute(String key, String value) {
     if (attributes == null) {
       attributes = new HashMap<>();
     }
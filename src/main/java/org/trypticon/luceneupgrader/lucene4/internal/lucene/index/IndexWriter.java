@@ -1834,6 +1834,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
       SegmentMerger merger = new SegmentMerger(mergeReaders, info, infoStream, trackingDir, config.getTermIndexInterval(),
                                                MergeState.CheckAbort.NONE, globalFieldNumberMap, 
                                                context, config.getCheckIntegrityAtMerge());
+      merger.setThreadCount(config.getMergeComponentThreadCount());
       
       if (!merger.shouldMerge()) {
         return;
@@ -3234,6 +3235,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
           merge.info.info, infoStream, dirWrapper, config.getTermIndexInterval(),
           checkAbort, globalFieldNumberMap, 
           context, config.getCheckIntegrityAtMerge());
+      merger.setThreadCount(config.getMergeComponentThreadCount());
 
       merge.checkAborted(directory);
 
@@ -73,6 +73,8 @@ public class LiveIndexWriterConfig {
   
   protected volatile boolean checkIntegrityAtMerge = IndexWriterConfig.DEFAULT_CHECK_INTEGRITY_AT_MERGE;
 
+  protected volatile int mergeComponentThreadCount = 1;
+
   // used by IndexWriterConfig
   LiveIndexWriterConfig(Analyzer analyzer, Version matchVersion) {
     this.analyzer = analyzer;
@@ -269,6 +271,10 @@ public class LiveIndexWriterConfig {
     return checkIntegrityAtMerge;
   }
   
+  public int getMergeComponentThreadCount() {
+    return mergeComponentThreadCount;
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder();
@@ -296,6 +302,7 @@ public class LiveIndexWriterConfig {
     sb.append("perThreadHardLimitMB=").append(getRAMPerThreadHardLimitMB()).append("\n");
     sb.append("useCompoundFile=").append(getUseCompoundFile()).append("\n");
     sb.append("checkIntegrityAtMerge=").append(getCheckIntegrityAtMerge()).append("\n");
+    sb.append("mergeComponentThreadCount=").append(getMergeComponentThreadCount()).append("\n");
     return sb.toString();
   }
 
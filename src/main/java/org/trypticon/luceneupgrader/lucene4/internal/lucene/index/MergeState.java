@@ -155,7 +155,7 @@ public class MergeState {
       this.dir = dir;
     }
 
-    public void work(double units) throws MergePolicy.MergeAbortedException {
+    public synchronized void work(double units) throws MergePolicy.MergeAbortedException {
       workCount += units;
       if (workCount >= 10000.0) {
         merge.checkAborted(dir);
@@ -211,7 +211,7 @@ public final class SegmentInfo {
   }
     
   @Deprecated
-  public String getAttribute(String key) {
+  public synchronized String getAttribute(String key) {
     if (attributes == null) {
       return null;
     } else {
@@ -220,7 +220,7 @@ public final class SegmentInfo {
   }
   
   @Deprecated
-  public String putAttribute(String key, String value) {
+  public synchronized String putAttribute(String key, String value) {
     if (attributes == null) {
       attributes = new HashMap<>();
     }
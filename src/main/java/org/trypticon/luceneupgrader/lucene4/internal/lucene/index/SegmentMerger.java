@@ -19,6 +19,14 @@ package org.trypticon.luceneupgrader.lucene4.internal.lucene.index;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.trypticon.luceneupgrader.lucene4.internal.lucene.codecs.Codec;
 import org.trypticon.luceneupgrader.lucene4.internal.lucene.codecs.FieldInfosWriter;
@@ -32,6 +40,7 @@ import org.trypticon.luceneupgrader.lucene4.internal.lucene.store.IOContext;
 import org.trypticon.luceneupgrader.lucene4.internal.lucene.util.Bits;
 import org.trypticon.luceneupgrader.lucene4.internal.lucene.util.IOUtils;
 import org.trypticon.luceneupgrader.lucene4.internal.lucene.util.InfoStream;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.util.ThreadInterruptedException;
 
 final class SegmentMerger {
   private final Directory directory;
@@ -44,6 +53,8 @@ final class SegmentMerger {
   private final MergeState mergeState;
   private final FieldInfos.Builder fieldInfosBuilder;
 
+  private int threadCount = 1;
+
   // note, just like in codec apis Directory 'dir' is NOT the same as segmentInfo.dir!!
   SegmentMerger(List<AtomicReader> readers, SegmentInfo segmentInfo, InfoStream infoStream, Directory dir, int termIndexInterval,
                 MergeState.CheckAbort checkAbort, FieldInfos.FieldNumbers fieldNumbers, IOContext context, boolean validate) throws IOException {
@@ -62,6 +73,10 @@ final class SegmentMerger {
     mergeState.segmentInfo.setDocCount(setDocMaps());
   }
   
+  void setThreadCount(int threadCount) {
+    this.threadCount = threadCount;
+  }
+
   boolean shouldMerge() {
     return mergeState.segmentInfo.getDocCount() > 0;
   }
@@ -78,6 +93,9 @@ final class SegmentMerger {
     // threads.
     mergeFieldInfos();
     setMatchingSegmentReaders();
+    if (threadCount > 1) {
+      return mergeConcurrently();
+    }
     long t0 = 0;
     if (mergeState.infoStream.isEnabled("SM")) {
       t0 = System.nanoTime();
@@ -141,6 +159,106 @@ final class SegmentMerger {
     return mergeState;
   }
 
+  // Merges the independent parts of the segment (stored fields, postings, doc values and so on)
+  // at the same time, each one writing its own files. An upgrade usually ends in one big forced
+  // merge, which would otherwise keep a single core busy while the rest sit idle. The parts only
+  // read from the merge state, and the codecs used by this step don't change it while merging,
+  // so the phases can all share it.
+  private MergeState mergeConcurrently() throws IOException {
+    final SegmentWriteState segmentWriteState = new SegmentWriteState(mergeState.infoStream, directory, mergeState.segmentInfo,
+                                                                      mergeState.fieldInfos, termIndexInterval, null, context);
+
+    List<Callable<Void>> phases = new ArrayList<>();
+    phases.add(timed("stored fields", () -> {
+      int numMerged = mergeFields();
+      assert numMerged == mergeState.segmentInfo.getDocCount();
+    }));
+    phases.add(timed("postings", () -> mergeTerms(segmentWriteState)));
+    if (mergeState.fieldInfos.hasDocValues()) {
+      phases.add(timed("doc values", () -> mergeDocValues(segmentWriteState)));
+    }
+    if (mergeState.fieldInfos.hasNorms()) {
+      phases.add(timed("norms", () -> mergeNorms(segmentWriteState)));
+    }
+    if (mergeState.fieldInfos.hasVectors()) {
+      phases.add(timed("vectors", () -> {
+        int numMerged = mergeVectors();
+        assert numMerged == mergeState.segmentInfo.getDocCount();
+      }));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, phases.size()),
+                                                            newPhaseThreadFactory());
+    try {
+      List<Future<Void>> futures = new ArrayList<>(phases.size());
+      for (Callable<Void> phase : phases) {
+        futures.add(executor.submit(phase));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      throw new ThreadInterruptedException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      } else {
+        throw new RuntimeException(cause);
+      }
+    } finally {
+      // don't let the caller clean up files which a failed merge's other phases are still writing
+      executor.shutdownNow();
+      try {
+        while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+          // keep waiting
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    // write the merged infos
+    FieldInfosWriter fieldInfosWriter = codec.fieldInfosFormat().getFieldInfosWriter();
+    fieldInfosWriter.write(directory, mergeState.segmentInfo.name, "", mergeState.fieldInfos, context);
+
+    return mergeState;
+  }
+
+  // names the threads after the segment, and doesn't let them keep the JVM alive if the merge is abandoned
+  private ThreadFactory newPhaseThreadFactory() {
+    final String prefix = "merge-" + mergeState.segmentInfo.name + "-";
+    final AtomicInteger threadNumber = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(runnable, prefix + threadNumber.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private interface MergePhase {
+    void merge() throws IOException;
+  }
+
+  private Callable<Void> timed(String name, MergePhase phase) {
+    return () -> {
+      long t0 = 0;
+      if (mergeState.infoStream.isEnabled("SM")) {
+        t0 = System.nanoTime();
+      }
+      phase.merge();
+      if (mergeState.infoStream.isEnabled("SM")) {
+        long t1 = System.nanoTime();
+        mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge " + name + " [" + mergeState.segmentInfo.getDocCount() + " docs]");
+      }
+      return null;
+    };
+  }
+
   private void mergeDocValues(SegmentWriteState segmentWriteState) throws IOException {
     DocValuesConsumer consumer = codec.docValuesFormat().fieldsConsumer(segmentWriteState);
     boolean success = false;
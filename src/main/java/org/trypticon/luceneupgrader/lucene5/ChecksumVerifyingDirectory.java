@@ -0,0 +1,316 @@
+package org.trypticon.luceneupgrader.lucene5;
+
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.codecs.CodecUtil;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.index.CorruptIndexException;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.index.IndexFileNames;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.store.BufferedIndexInput;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.store.Directory;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.store.FilterDirectory;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.store.IOContext;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.store.IndexInput;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.util.IOUtils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * Directory which checks the checksums of files being merged from the bytes the merge reads anyway,
+ * instead of each file being read end to end up front and then read again by the merge. When a file's
+ * checksum is asked to be checked, it's only noted, and from then on reads of the file add to a running
+ * checksum. Whatever the merge didn't read is read when the checksums are verified, which happens
+ * before anything written from those files is synced, so a corrupt file fails the commit.
+ */
+class ChecksumVerifyingDirectory extends FilterDirectory {
+
+    /**
+     * How far a read can skip ahead of what has been checksummed and still have the bytes in between
+     * read straight away to keep the checksum going, at most, and as a fraction of the file. Merges
+     * skip over small things like skip data, but bigger jumps are usually to something like the root
+     * of a tree which was written last, and the merge comes back for the bytes in between later.
+     */
+    private static final int MAX_GAP = 1 << 20;
+    private static final int MAX_GAP_FRACTION = 16;
+
+    private static final int BUFFER_SIZE = 16384;
+
+    private final Map<String, TrackedFile> files = new ConcurrentHashMap<>();
+
+    ChecksumVerifyingDirectory(Directory in) {
+        super(in);
+    }
+
+    @Override
+    public IndexInput openInput(String name, IOContext context) throws IOException {
+        TrackedFile file = files.computeIfAbsent(name, TrackedFile::new);
+        return new TrackingIndexInput(in.openInput(name, context), file, 0);
+    }
+
+    @Override
+    public void sync(Collection<String> names) throws IOException {
+        // Nothing written from a corrupt file can be allowed into a commit.
+        verify();
+        super.sync(names);
+    }
+
+    /**
+     * Verifies the checksums of all files which were asked to be checked.
+     *
+     * @throws CorruptIndexException if a checksum doesn't match.
+     * @throws IOException if an error occurs reading.
+     */
+    void verify() throws IOException {
+        verify(name -> true);
+    }
+
+    /**
+     * Verifies the checksums of the files of some segments which were asked to be checked.
+     *
+     * @param segmentNames the names of the segments.
+     * @throws CorruptIndexException if a checksum doesn't match.
+     * @throws IOException if an error occurs reading.
+     */
+    void verifySegments(Collection<String> segmentNames) throws IOException {
+        verify(name -> segmentNames.contains(IndexFileNames.parseSegmentName(name)));
+    }
+
+    /**
+     * Checks whether something failing while reading the files was down to one of them being corrupt,
+     * since a corrupt file can make a merge fail in all sorts of ways before its checksum is verified.
+     * If a checksum doesn't match, that is thrown instead, with the original failure attached.
+     *
+     * @param failure the original failure.
+     * @throws CorruptIndexException if a checksum doesn't match.
+     */
+    void verifyAfterFailure(Throwable failure) throws CorruptIndexException {
+        try {
+            verify();
+        } catch (CorruptIndexException e) {
+            e.addSuppressed(failure);
+            throw e;
+        } catch (IOException | RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    private void verify(Predicate<String> fileFilter) throws IOException {
+        for (TrackedFile file : files.values()) {
+            if (fileFilter.test(file.name)) {
+                file.verify();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            IOUtils.close(files.values());
+        } finally {
+            super.close();
+        }
+    }
+
+    /**
+     * A file which has been opened, along with the parts of it whose checksums are being checked.
+     * For a compound file, each file inside it has its own checksum.
+     */
+    private class TrackedFile implements Closeable {
+        private final String name;
+        private final List<Region> regions = new CopyOnWriteArrayList<>();
+        private final Object fillLock = new Object();
+        private IndexInput fillInput;
+
+        private TrackedFile(String name) {
+            this.name = name;
+        }
+
+        private synchronized void addRegion(long start, long length) {
+            for (Region region : regions) {
+                if (region.start == start && region.length == length) {
+                    return;
+                }
+            }
+            regions.add(new Region(this, start, length));
+        }
+
+        private void update(long position, byte[] bytes, int offset, int length) throws IOException {
+            for (Region region : regions) {
+                region.update(position, bytes, offset, length);
+            }
+        }
+
+        private synchronized void verify() throws IOException {
+            List<Region> verified = new ArrayList<>();
+            try {
+                for (Region region : regions) {
+                    region.verify();
+                    verified.add(region);
+                }
+            } finally {
+                // A region which failed is kept, so that trying to commit again fails again.
+                regions.removeAll(verified);
+                if (regions.isEmpty()) {
+                    close();
+                }
+            }
+        }
+
+        /**
+         * Reads part of the file directly, for the parts which the merge didn't read in order.
+         */
+        private void read(long position, byte[] bytes, int length) throws IOException {
+            synchronized (fillLock) {
+                IndexInput input = fillInput();
+                input.seek(position);
+                input.readBytes(bytes, 0, length);
+            }
+        }
+
+        private long retrieveChecksum(long start, long length) throws IOException {
+            synchronized (fillLock) {
+                return CodecUtil.retrieveChecksum(fillInput().slice("footer", start, length));
+            }
+        }
+
+        private IndexInput fillInput() throws IOException {
+            if (fillInput == null) {
+                fillInput = in.openInput(name, IOContext.READONCE);
+            }
+            return fillInput;
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (fillLock) {
+                if (fillInput != null) {
+                    fillInput.close();
+                    fillInput = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * A part of a file which has its own checksum, with the checksum of as much of it as has been read in order.
+     */
+    private static class Region {
+        private final TrackedFile file;
+        private final long start;
+        private final long length;
+        private final long checksummedEnd;
+        private final CRC32 crc = new CRC32();
+        private long checksummedUpTo;
+
+        private Region(TrackedFile file, long start, long length) {
+            this.file = file;
+            this.start = start;
+            this.length = length;
+            // The checksum covers everything up to the checksum itself, which is the last thing in the file.
+            this.checksummedEnd = start + length - Long.BYTES;
+            this.checksummedUpTo = start;
+        }
+
+        private synchronized void update(long position, byte[] bytes, int offset, int count) throws IOException {
+            long end = Math.min(position + count, checksummedEnd);
+            if (position >= end || end <= checksummedUpTo) {
+                return;
+            }
+            if (position > checksummedUpTo) {
+                if (position - checksummedUpTo > Math.min(MAX_GAP, length / MAX_GAP_FRACTION)) {
+                    return;
+                }
+                fill(position);
+            }
+            int skip = (int) (checksummedUpTo - position);
+            crc.update(bytes, offset + skip, (int) (end - checksummedUpTo));
+            checksummedUpTo = end;
+        }
+
+        private void fill(long upTo) throws IOException {
+            byte[] buffer = new byte[(int) Math.min(BUFFER_SIZE, upTo - checksummedUpTo)];
+            while (checksummedUpTo < upTo) {
+                int count = (int) Math.min(buffer.length, upTo - checksummedUpTo);
+                file.read(checksummedUpTo, buffer, count);
+                crc.update(buffer, 0, count);
+                checksummedUpTo += count;
+            }
+        }
+
+        private synchronized void verify() throws IOException {
+            long expected = file.retrieveChecksum(start, length);
+            fill(checksummedEnd);
+            long actual = crc.getValue();
+            if (expected != actual) {
+                throw new CorruptIndexException("checksum failed (hardware problem?) : expected=" +
+                                                Long.toHexString(expected) + " actual=" + Long.toHexString(actual),
+                                                file.name + " [offset=" + start + ", length=" + length + "]");
+            }
+        }
+    }
+
+    /**
+     * Input which passes everything it reads on to the file's running checksums.
+     */
+    private static class TrackingIndexInput extends BufferedIndexInput implements CodecUtil.ChecksumDeferringInput {
+        private IndexInput delegate;
+        private final TrackedFile file;
+        private final long offset;
+
+        private TrackingIndexInput(IndexInput delegate, TrackedFile file, long offset) {
+            super(delegate.toString(), BUFFER_SIZE);
+            this.delegate = delegate;
+            this.file = file;
+            this.offset = offset;
+        }
+
+        @Override
+        protected void readInternal(byte[] b, int offset, int length) throws IOException {
+            long position = getFilePointer();
+            delegate.seek(position);
+            delegate.readBytes(b, offset, length, false);
+            file.update(this.offset + position, b, offset, length);
+        }
+
+        @Override
+        protected void seekInternal(long pos) {
+            // Reads seek the delegate themselves.
+        }
+
+        @Override
+        public long length() {
+            return delegate.length();
+        }
+
+        @Override
+        public long deferChecksum() throws IOException {
+            long length = delegate.length();
+            long checksum = file.retrieveChecksum(offset, length);
+            file.addRegion(offset, length);
+            return checksum;
+        }
+
+        @Override
+        public TrackingIndexInput clone() {
+            TrackingIndexInput clone = (TrackingIndexInput) super.clone();
+            clone.delegate = delegate.clone();
+            return clone;
+        }
+
+        @Override
+        public IndexInput slice(String sliceDescription, long offset, long length) throws IOException {
+            return new TrackingIndexInput(delegate.slice(sliceDescription, offset, length), file, this.offset + offset);
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.trypticon.luceneupgrader.lucene5;
+
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.index.IndexWriter;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.index.IndexWriterConfig;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.index.NoMergePolicy;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.index.SegmentCommitInfo;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.index.SegmentInfos;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.store.Directory;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.store.FSDirectory;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.util.IOUtils;
+import org.trypticon.luceneupgrader.FileUtils;
+import org.trypticon.luceneupgrader.IndexSplitter;
+import org.trypticon.luceneupgrader.SegmentDescription;
+
+import javax.annotation.Nonnull;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Splits and joins Lucene 5 indexes.
+ */
+public class IndexSplitter5 implements IndexSplitter {
+
+    @Nonnull
+    @Override
+    public List<Path> split(@Nonnull Path path, @Nonnull Path workPath) throws IOException {
+        List<Path> partPaths = new ArrayList<>();
+        try (Directory directory = FSDirectory.open(path)) {
+            SegmentInfos segmentInfos = SegmentInfos.readLatestCommit(directory);
+            for (int i = 0; i < segmentInfos.size(); i++) {
+                SegmentCommitInfo info = segmentInfos.info(i);
+                Path partPath = workPath.resolve(Integer.toString(i));
+                Files.createDirectories(partPath);
+                for (String file : info.files()) {
+                    FileUtils.linkOrCopy(path.resolve(file), partPath.resolve(file));
+                }
+
+                SegmentInfos partSegmentInfos = segmentInfos.clone();
+                partSegmentInfos.clear();
+                partSegmentInfos.add(info);
+                try (Directory partDirectory = FSDirectory.open(partPath)) {
+                    partSegmentInfos.commit(partDirectory);
+                }
+                partPaths.add(partPath);
+            }
+        }
+        return partPaths;
+    }
+
+    @Override
+    public void join(@Nonnull List<Path> partPaths, @Nonnull Path path, @Nonnull Map<String, String> userData)
+            throws IOException {
+        // Nothing is analysed when adding whole indexes, so no analyser is needed.
+        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(null);
+        indexWriterConfig.setMergePolicy(NoMergePolicy.INSTANCE);
+        Files.createDirectories(path);
+        try (Directory directory = FSDirectory.open(path);
+             IndexWriter writer = new IndexWriter(directory, indexWriterConfig)) {
+            Directory[] partDirectories = new Directory[partPaths.size()];
+            try {
+                for (int i = 0; i < partDirectories.length; i++) {
+                    partDirectories[i] = FSDirectory.open(partPaths.get(i));
+                }
+                writer.addIndexes(partDirectories);
+            } finally {
+                IOUtils.close(partDirectories);
+            }
+            writer.setCommitData(userData);
+            writer.commit();
+        }
+    }
+
+    @Nonnull
+    @Override
+    public Map<String, String> commitUserData(@Nonnull Path path) throws IOException {
+        try (Directory directory = FSDirectory.open(path)) {
+            SegmentInfos segmentInfos = SegmentInfos.readLatestCommit(directory);
+            return new HashMap<>(segmentInfos.getUserData());
+        }
+    }
+
+    @Nonnull
+    @Override
+    public List<String> segmentNames(@Nonnull Path path) throws IOException {
+        List<String> segmentNames = new ArrayList<>();
+        try (Directory directory = FSDirectory.open(path)) {
+            SegmentInfos segmentInfos = SegmentInfos.readLatestCommit(directory);
+            for (SegmentCommitInfo info : segmentInfos) {
+                segmentNames.add(info.info.name);
+            }
+        }
+        return segmentNames;
+    }
+
+    @Nonnull
+    @Override
+    public List<SegmentDescription> describeSegments(@Nonnull Path path) throws IOException {
+        List<SegmentDescription> descriptions = new ArrayList<>();
+        try (Directory directory = FSDirectory.open(path)) {
+            SegmentInfos segmentInfos = SegmentInfos.readLatestCommit(directory);
+            for (SegmentCommitInfo info : segmentInfos) {
+                descriptions.add(new SegmentDescription(info.info.name, versionString(info.info.getVersion()), null,
+                                                        info.info.getCodec().getName(), info.info.maxDoc(),
+                                                        info.getDelCount(), info.sizeInBytes()));
+            }
+        }
+        return descriptions;
+    }
+
+    @Override
+    public void removeSegment(@Nonnull Path path, @Nonnull String segmentName) throws IOException {
+        try (Directory directory = FSDirectory.open(path)) {
+            SegmentInfos segmentInfos = SegmentInfos.readLatestCommit(directory);
+            Set<String> oldFiles = new HashSet<>(segmentInfos.files(true));
+            for (SegmentCommitInfo info : new ArrayList<>(segmentInfos.asList())) {
+                if (info.info.name.equals(segmentName)) {
+                    segmentInfos.remove(info);
+                }
+            }
+            segmentInfos.commit(directory);
+
+            oldFiles.removeAll(segmentInfos.files(true));
+            for (String file : oldFiles) {
+                directory.deleteFile(file);
+            }
+        }
+    }
+
+    private static String versionString(Object version) {
+        return version == null ? null : version.toString();
+    }
+}
@@ -0,0 +1,38 @@
+package org.trypticon.luceneupgrader.lucene5;
+
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.store.Directory;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.store.FSDirectory;
+import org.trypticon.luceneupgrader.lucene5.internal.lucene.store.FilterDirectory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+
+/**
+ * Directory which never syncs files to disk, for indexes which are only an intermediate step,
+ * where the final index gets synced once at the end instead.
+ */
+class NoSyncDirectory extends FilterDirectory {
+    NoSyncDirectory(Directory in) {
+        super(in);
+    }
+
+    @Override
+    public void sync(Collection<String> names) {
+        // Deliberately not syncing.
+    }
+
+    @Override
+    public void renameFile(String source, String dest) throws IOException {
+        // Lucene 5's FSDirectory syncs the directory after every rename, so the file is moved here instead.
+        Directory unwrapped = FilterDirectory.unwrap(in);
+        if (unwrapped instanceof FSDirectory) {
+            Path directory = ((FSDirectory) unwrapped).getDirectory();
+            Files.move(directory.resolve(source), directory.resolve(dest), StandardCopyOption.ATOMIC_MOVE);
+        } else {
+            in.renameFile(source, dest);
+        }
+    }
+}
@@ -221,6 +221,9 @@ public final class CodecUtil {
   
 
   public static long checksumEntireFile(IndexInput input) throws IOException {
+    if (input instanceof ChecksumDeferringInput) {
+      return ((ChecksumDeferringInput) input).deferChecksum();
+    }
     IndexInput clone = input.clone();
     clone.seek(0);
     ChecksumIndexInput in = new BufferedChecksumIndexInput(clone);
@@ -244,4 +247,10 @@ public final class CodecUtil {
     }
     output.writeLong(value);
   }
+
+  // Implemented by inputs which check their checksum from the bytes read from them later on,
+  // so that checksumEntireFile doesn't have to read the whole file up front.
+  public interface ChecksumDeferringInput {
+    long deferChecksum() throws IOException;
+  }
 }
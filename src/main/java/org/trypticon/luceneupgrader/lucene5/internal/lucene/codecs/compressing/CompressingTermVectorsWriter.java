@@ -746,19 +746,12 @@ public final class CompressingTermVectorsWriter extends TermVectorsWriter {
           matchingVectorsReader.getVersion() == VERSION_CURRENT && 
           matchingVectorsReader.getPackedIntsVersion() == PackedInts.VERSION_CURRENT &&
           BULK_MERGE_ENABLED &&
-          liveDocs == null &&
           !tooDirty(matchingVectorsReader)) {
         // optimized merge, raw byte copy
-        // its not worth fine-graining this if there are deletions.
+        // chunks with deleted docs fall back to the naive merge, the rest are still copied raw.
         
         matchingVectorsReader.checkIntegrity();
         
-        // flush any pending chunks
-        if (!pendingDocs.isEmpty()) {
-          flush();
-          numDirtyChunks++; // incomplete: we had to force this flush
-        }
-        
         // iterate over each chunk. we use the vectors index to find chunk boundaries,
         // read the docstart + doccount from the chunk header (we write a new header, since doc numbers will change),
         // and just copy the bytes directly.
@@ -766,6 +759,7 @@ public final class CompressingTermVectorsWriter extends TermVectorsWriter {
         CompressingStoredFieldsIndexReader index = matchingVectorsReader.getIndexReader();
         rawDocs.seek(index.getStartPointer(0));
         int docID = 0;
+        long copiedChunks = 0;
         while (docID < maxDoc) {
           // read header
           int base = rawDocs.readVInt();
@@ -773,38 +767,59 @@ public final class CompressingTermVectorsWriter extends TermVectorsWriter {
             throw new CorruptIndexException("invalid state: base=" + base + ", docID=" + docID, rawDocs);
           }
           int bufferedDocs = rawDocs.readVInt();
+          int chunkEnd = docID + bufferedDocs;
           
-          // write a new index entry and new header for this chunk.
-          indexWriter.writeIndex(bufferedDocs, vectorsStream.getFilePointer());
-          vectorsStream.writeVInt(docCount); // rebase
-          vectorsStream.writeVInt(bufferedDocs);
-          docID += bufferedDocs;
-          docCount += bufferedDocs;
-          numDocs += bufferedDocs;
-          
-          if (docID > maxDoc) {
+          if (chunkEnd > maxDoc) {
             throw new CorruptIndexException("invalid state: base=" + base + ", count=" + bufferedDocs + ", maxDoc=" + maxDoc, rawDocs);
           }
           
-          // copy bytes until the next chunk boundary (or end of chunk data).
           // using the stored fields index for this isn't the most efficient, but fast enough
           // and is a source of redundancy for detecting bad things.
           final long end;
-          if (docID == maxDoc) {
+          if (chunkEnd == maxDoc) {
             end = matchingVectorsReader.getMaxPointer();
           } else {
-            end = index.getStartPointer(docID);
+            end = index.getStartPointer(chunkEnd);
           }
-          vectorsStream.copyBytes(rawDocs, end - rawDocs.getFilePointer());
+          
+          if (allLive(liveDocs, docID, chunkEnd)) {
+            // flush any pending chunks
+            if (!pendingDocs.isEmpty()) {
+              flush();
+              numDirtyChunks++; // incomplete: we had to force this flush
+            }
+            
+            // write a new index entry and new header for this chunk.
+            indexWriter.writeIndex(bufferedDocs, vectorsStream.getFilePointer());
+            vectorsStream.writeVInt(docCount); // rebase
+            vectorsStream.writeVInt(bufferedDocs);
+            docCount += bufferedDocs;
+            numDocs += bufferedDocs;
+            
+            // copy bytes until the next chunk boundary (or end of chunk data).
+            vectorsStream.copyBytes(rawDocs, end - rawDocs.getFilePointer());
+            copiedChunks++;
+          } else {
+            for (int chunkDocID = docID; chunkDocID < chunkEnd; chunkDocID++) {
+              if (liveDocs.get(chunkDocID) == false) {
+                continue;
+              }
+              addAllDocVectors(matchingVectorsReader.get(chunkDocID), mergeState);
+              ++docCount;
+            }
+            // reading the docs moves the same stream, so skip to the next chunk explicitly.
+            rawDocs.seek(end);
+          }
+          docID = chunkEnd;
         }
                
         if (rawDocs.getFilePointer() != matchingVectorsReader.getMaxPointer()) {
           throw new CorruptIndexException("invalid state: pos=" + rawDocs.getFilePointer() + ", max=" + matchingVectorsReader.getMaxPointer(), rawDocs);
         }
         
-        // since we bulk merged all chunks, we inherit any dirty ones from this segment.
-        numChunks += matchingVectorsReader.getNumChunks();
-        numDirtyChunks += matchingVectorsReader.getNumDirtyChunks();
+        // we inherit any dirty chunks from this segment, but only the chunks we copied can be dirty.
+        numChunks += copiedChunks;
+        numDirtyChunks += Math.min(matchingVectorsReader.getNumDirtyChunks(), copiedChunks);
       } else {        
         // naive merge...
         if (vectorsReader != null) {
@@ -835,4 +850,16 @@ public final class CompressingTermVectorsWriter extends TermVectorsWriter {
     return candidate.getNumDirtyChunks() > 1024 || 
            candidate.getNumDirtyChunks() * 100 > candidate.getNumChunks();
   }
+
+  private static boolean allLive(Bits liveDocs, int startDoc, int endDoc) {
+    if (liveDocs == null) {
+      return true;
+    }
+    for (int docID = startDoc; docID < endDoc; docID++) {
+      if (liveDocs.get(docID) == false) {
+        return false;
+      }
+    }
+    return true;
+  }
 }
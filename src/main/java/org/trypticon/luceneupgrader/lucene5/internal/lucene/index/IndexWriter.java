@@ -1888,6 +1888,9 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
                                                context);
       
       rateLimiters.set(new MergeRateLimiter(null));
+      final MergeRateLimiter mergeRateLimiter = rateLimiters.get();
+      merger.setThreadCount(config.getMergeComponentThreadCount());
+      merger.setThreadInitializer(() -> rateLimiters.set(mergeRateLimiter));
 
       if (!merger.shouldMerge()) {
         return;
@@ -3222,6 +3225,9 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
                                                      merge.info.info, infoStream, dirWrapper,
                                                      globalFieldNumberMap, 
                                                      context);
+      final MergeRateLimiter mergeRateLimiter = rateLimiters.get();
+      merger.setThreadCount(config.getMergeComponentThreadCount());
+      merger.setThreadInitializer(() -> rateLimiters.set(mergeRateLimiter));
 
       merge.rateLimiter.checkAbort();
 
@@ -306,6 +306,14 @@ public final class IndexWriterConfig extends LiveIndexWriterConfig {
     return this;
   }
 
+  public IndexWriterConfig setMergeComponentThreadCount(int mergeComponentThreadCount) {
+    if (mergeComponentThreadCount < 1) {
+      throw new IllegalArgumentException("mergeComponentThreadCount must be at least 1; got: " + mergeComponentThreadCount);
+    }
+    this.mergeComponentThreadCount = mergeComponentThreadCount;
+    return this;
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder(super.toString());
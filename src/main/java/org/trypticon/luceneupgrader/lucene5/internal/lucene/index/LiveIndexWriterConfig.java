@@ -71,6 +71,8 @@ public class LiveIndexWriterConfig {
   
   protected boolean commitOnClose = IndexWriterConfig.DEFAULT_COMMIT_ON_CLOSE;
 
+  protected volatile int mergeComponentThreadCount = 1;
+
   // used by IndexWriterConfig
   LiveIndexWriterConfig(Analyzer analyzer) {
     this.analyzer = analyzer;
@@ -234,6 +236,10 @@ public class LiveIndexWriterConfig {
     return commitOnClose;
   }
 
+  public int getMergeComponentThreadCount() {
+    return mergeComponentThreadCount;
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder();
@@ -258,6 +264,7 @@ public class LiveIndexWriterConfig {
     sb.append("perThreadHardLimitMB=").append(getRAMPerThreadHardLimitMB()).append("\n");
     sb.append("useCompoundFile=").append(getUseCompoundFile()).append("\n");
     sb.append("commitOnClose=").append(getCommitOnClose()).append("\n");
+    sb.append("mergeComponentThreadCount=").append(getMergeComponentThreadCount()).append("\n");
     return sb.toString();
   }
 }
@@ -68,8 +68,9 @@ public class MergeRateLimiter extends RateLimiter {
     return totalBytesWritten;
   }
 
+  // synchronized because the merge's limiter is shared by the threads merging its parts concurrently
   @Override
-  public long pause(long bytes) throws MergePolicy.MergeAbortedException {
+  public synchronized long pause(long bytes) throws MergePolicy.MergeAbortedException {
 
     totalBytesWritten += bytes;
 
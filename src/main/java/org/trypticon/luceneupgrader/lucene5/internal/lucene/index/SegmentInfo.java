@@ -227,11 +227,11 @@ public final class SegmentInfo {
     return name + IndexFileNames.stripSegmentName(file);
   }
   
-  public String getAttribute(String key) {
+  public synchronized String getAttribute(String key) {
     return attributes.get(key);
   }
   
-  public String putAttribute(String key, String value) {
+  public synchronized String putAttribute(String key, String value) {
     return attributes.put(key, value);
   }
   
@@ -0,0 +1,138 @@
+package org.trypticon.luceneupgrader.lucene6;
+
+import org.trypticon.luceneupgrader.UpgradeProgress;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.BufferedIndexInput;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.Directory;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.FilterDirectory;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.IOContext;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.IndexInput;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.IndexOutput;
+
+import java.io.IOException;
+
+/**
+ * Directory which tells an {@link UpgradeProgress} how much is read from and written to each
+ * file. Writes are counted when each file is closed, and reads each time an input fills its
+ * buffer.
+ */
+class MeteredDirectory extends FilterDirectory {
+
+    private static final int BUFFER_SIZE = 16384;
+
+    private final UpgradeProgress progress;
+
+    MeteredDirectory(Directory in, UpgradeProgress progress) {
+        super(in);
+        this.progress = progress;
+    }
+
+    @Override
+    public IndexOutput createOutput(String name, IOContext context) throws IOException {
+        return new MeteredIndexOutput(in.createOutput(name, context), progress);
+    }
+
+    @Override
+    public IndexOutput createTempOutput(String prefix, String suffix, IOContext context) throws IOException {
+        return new MeteredIndexOutput(in.createTempOutput(prefix, suffix, context), progress);
+    }
+
+    @Override
+    public IndexInput openInput(String name, IOContext context) throws IOException {
+        return new MeteredIndexInput(in.openInput(name, context), name, progress);
+    }
+
+    /**
+     * Output which reports how much was written to it once it's closed.
+     */
+    private static class MeteredIndexOutput extends IndexOutput {
+        private final IndexOutput delegate;
+        private final UpgradeProgress progress;
+        private final long openedNanos;
+
+        private MeteredIndexOutput(IndexOutput delegate, UpgradeProgress progress) {
+            super(delegate.toString(), delegate.getName());
+            this.delegate = delegate;
+            this.progress = progress;
+            openedNanos = progress.opened(getName());
+        }
+
+        @Override
+        public void writeByte(byte b) throws IOException {
+            delegate.writeByte(b);
+        }
+
+        @Override
+        public void writeBytes(byte[] b, int offset, int length) throws IOException {
+            delegate.writeBytes(b, offset, length);
+        }
+
+        @Override
+        public long getFilePointer() {
+            return delegate.getFilePointer();
+        }
+
+        @Override
+        public long getChecksum() throws IOException {
+            return delegate.getChecksum();
+        }
+
+        @Override
+        public void close() throws IOException {
+            long bytes = delegate.getFilePointer();
+            delegate.close();
+            progress.written(getName(), bytes, openedNanos);
+        }
+    }
+
+    /**
+     * Input which reports everything it reads.
+     */
+    private static class MeteredIndexInput extends BufferedIndexInput {
+        private IndexInput delegate;
+        private final String fileName;
+        private final UpgradeProgress progress;
+
+        private MeteredIndexInput(IndexInput delegate, String fileName, UpgradeProgress progress) {
+            super(delegate.toString(), BUFFER_SIZE);
+            this.delegate = delegate;
+            this.fileName = fileName;
+            this.progress = progress;
+        }
+
+        @Override
+        protected void readInternal(byte[] b, int offset, int length) throws IOException {
+            delegate.seek(getFilePointer());
+            delegate.readBytes(b, offset, length, false);
+            progress.read(fileName, length);
+        }
+
+        @Override
+        protected void seekInternal(long pos) {
+            // Reads seek the delegate themselves.
+        }
+
+        @Override
+        public long length() {
+            return delegate.length();
+        }
+
+        @Override
+        public MeteredIndexInput clone() {
+            MeteredIndexInput clone = (MeteredIndexInput) super.clone();
+            clone.delegate = delegate.clone();
+            return clone;
+        }
+
+        @Override
+        public IndexInput slice(String sliceDescription, long offset, long length) throws IOException {
+            // Compound files slice out each file under its own name.
+            String sliceFileName = sliceDescription.startsWith("_") ? sliceDescription : fileName;
+            return new MeteredIndexInput(delegate.slice(sliceDescription, offset, length), sliceFileName, progress);
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
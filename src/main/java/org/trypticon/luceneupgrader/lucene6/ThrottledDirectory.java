@@ -0,0 +1,127 @@
+package org.trypticon.luceneupgrader.lucene6;
+
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.BufferedIndexInput;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.Directory;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.FilterDirectory;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.IOContext;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.IndexInput;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.IndexOutput;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.RateLimitedIndexOutput;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.RateLimiter;
+import org.trypticon.luceneupgrader.IoThrottle;
+
+import java.io.IOException;
+
+/**
+ * Directory which keeps its reads and writes to the rates of an {@link IoThrottle}. Writes go
+ * through Lucene's own {@link RateLimitedIndexOutput}, and reads through an input which waits
+ * on the throttle each time it fills its buffer.
+ */
+class ThrottledDirectory extends FilterDirectory {
+
+    private static final int BUFFER_SIZE = 16384;
+
+    private final IoThrottle ioThrottle;
+
+    private final RateLimiter writeRateLimiter;
+
+    ThrottledDirectory(Directory in, IoThrottle ioThrottle) {
+        super(in);
+        this.ioThrottle = ioThrottle;
+        writeRateLimiter = new WriteRateLimiter(ioThrottle);
+    }
+
+    @Override
+    public IndexOutput createOutput(String name, IOContext context) throws IOException {
+        return new RateLimitedIndexOutput(writeRateLimiter, in.createOutput(name, context));
+    }
+
+    @Override
+    public IndexOutput createTempOutput(String prefix, String suffix, IOContext context) throws IOException {
+        return new RateLimitedIndexOutput(writeRateLimiter, in.createTempOutput(prefix, suffix, context));
+    }
+
+    @Override
+    public IndexInput openInput(String name, IOContext context) throws IOException {
+        return new ThrottledIndexInput(in.openInput(name, context), ioThrottle);
+    }
+
+    /**
+     * Rate limiter which waits on the throttle's write rate, so that every output shares it.
+     */
+    private static class WriteRateLimiter extends RateLimiter {
+        private final IoThrottle ioThrottle;
+
+        private WriteRateLimiter(IoThrottle ioThrottle) {
+            this.ioThrottle = ioThrottle;
+        }
+
+        @Override
+        public void setMBPerSec(double mbPerSec) {
+            ioThrottle.setMaxWriteMBPerSec(mbPerSec);
+        }
+
+        @Override
+        public double getMBPerSec() {
+            return ioThrottle.getMaxWriteMBPerSec();
+        }
+
+        @Override
+        public long pause(long bytes) throws IOException {
+            return ioThrottle.pauseForWrite(bytes);
+        }
+
+        @Override
+        public long getMinPauseCheckBytes() {
+            return IoThrottle.MIN_PAUSE_CHECK_BYTES;
+        }
+    }
+
+    /**
+     * Input which waits on the throttle's read rate for everything it reads.
+     */
+    private static class ThrottledIndexInput extends BufferedIndexInput {
+        private IndexInput delegate;
+        private final IoThrottle ioThrottle;
+
+        private ThrottledIndexInput(IndexInput delegate, IoThrottle ioThrottle) {
+            super(delegate.toString(), BUFFER_SIZE);
+            this.delegate = delegate;
+            this.ioThrottle = ioThrottle;
+        }
+
+        @Override
+        protected void readInternal(byte[] b, int offset, int length) throws IOException {
+            delegate.seek(getFilePointer());
+            delegate.readBytes(b, offset, length, false);
+            ioThrottle.pauseForRead(length);
+        }
+
+        @Override
+        protected void seekInternal(long pos) {
+            // Reads seek the delegate themselves.
+        }
+
+        @Override
+        public long length() {
+            return delegate.length();
+        }
+
+        @Override
+        public ThrottledIndexInput clone() {
+            ThrottledIndexInput clone = (ThrottledIndexInput) super.clone();
+            clone.delegate = delegate.clone();
+            return clone;
+        }
+
+        @Override
+        public IndexInput slice(String sliceDescription, long offset, long length) throws IOException {
+            return new ThrottledIndexInput(delegate.slice(sliceDescription, offset, length), ioThrottle);
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+    }
+}
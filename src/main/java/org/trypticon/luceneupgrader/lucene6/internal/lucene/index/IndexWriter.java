@@ -2008,6 +2008,7 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
       SegmentMerger merger = new SegmentMerger(Arrays.asList(readers), info, infoStream, trackingDir,
                                                globalFieldNumberMap, 
                                                context);
+      merger.setThreadCount(config.getMergeComponentThreadCount());
 
       if (!merger.shouldMerge()) {
         return docWriter.deleteQueue.getNextSequenceNumber();
@@ -3400,6 +3401,10 @@ public class IndexWriter implements Closeable, TwoPhaseCommit, Accountable {
                                                      merge.info.info, infoStream, dirWrapper,
                                                      globalFieldNumberMap, 
                                                      context);
+      merger.setThreadCount(config.getMergeComponentThreadCount());
+      // the merge scheduler's rate limiter checks that it's only used by threads working on this merge
+      final MergePolicy.OneMergeProgress mergeProgress = merge.getMergeProgress();
+      merger.setThreadInitializer(() -> mergeProgress.addComponentThread(Thread.currentThread()));
 
       merge.checkAborted();
 
@@ -74,6 +74,8 @@ public class LiveIndexWriterConfig {
 
   protected Set<String> indexSortFields = Collections.emptySet();
 
+  protected volatile int mergeComponentThreadCount = 1;
+
   // used by IndexWriterConfig
   LiveIndexWriterConfig(Analyzer analyzer) {
     this.analyzer = analyzer;
@@ -239,6 +241,10 @@ public class LiveIndexWriterConfig {
     return indexSortFields;
   }
 
+  public int getMergeComponentThreadCount() {
+    return mergeComponentThreadCount;
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder();
@@ -262,6 +268,7 @@ public class LiveIndexWriterConfig {
     sb.append("useCompoundFile=").append(getUseCompoundFile()).append("\n");
     sb.append("commitOnClose=").append(getCommitOnClose()).append("\n");
     sb.append("indexSort=").append(getIndexSort()).append("\n");
+    sb.append("mergeComponentThreadCount=").append(getMergeComponentThreadCount()).append("\n");
     return sb.toString();
   }
 }
@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
@@ -51,6 +52,9 @@ public abstract class MergePolicy {
 
     private Thread owner;
 
+    // threads merging parts of the segment for the owner, which are paused as if they were the owner
+    private final Set<Thread> componentThreads = ConcurrentHashMap.newKeySet();
+
     public OneMergeProgress() {
       // Place all the pause reasons in there immediately so that we can simply update values.
       pauseTimesNS = new EnumMap<PauseReason,AtomicLong>(PauseReason.class);
@@ -69,8 +73,8 @@ public abstract class MergePolicy {
     }
 
     public void pauseNanos(long pauseNanos, PauseReason reason, BooleanSupplier condition) throws InterruptedException {
-      if (Thread.currentThread() != owner) {
-        throw new RuntimeException("Only the merge owner thread can call pauseNanos(). This thread: "
+      if (!isMergeThread(Thread.currentThread())) {
+        throw new RuntimeException("Only the merge owner thread or its component threads can call pauseNanos(). This thread: "
             + Thread.currentThread().getName() + ", owner thread: "
             + owner);
       }
@@ -109,6 +113,14 @@ public abstract class MergePolicy {
       assert this.owner == null;
       this.owner = owner;
     }
+
+    final void addComponentThread(Thread thread) {
+      componentThreads.add(thread);
+    }
+
+    boolean isMergeThread(Thread thread) {
+      return thread == owner || componentThreads.contains(thread);
+    }
   }
 
 
@@ -68,6 +68,26 @@ public class MergeState {
 
   public boolean needsIndexSort;
 
+  // Copies another merge state, so that a consumer which narrows the field infos and
+  // producers while it runs doesn't affect consumers merging other parts at the same time.
+  MergeState(MergeState other) {
+    docMaps = other.docMaps;
+    leafDocMaps = other.leafDocMaps;
+    segmentInfo = other.segmentInfo;
+    mergeFieldInfos = other.mergeFieldInfos;
+    storedFieldsReaders = other.storedFieldsReaders;
+    termVectorsReaders = other.termVectorsReaders;
+    normsProducers = other.normsProducers;
+    docValuesProducers = other.docValuesProducers.clone();
+    fieldInfos = other.fieldInfos.clone();
+    liveDocs = other.liveDocs;
+    fieldsProducers = other.fieldsProducers.clone();
+    pointsReaders = other.pointsReaders;
+    maxDocs = other.maxDocs;
+    infoStream = other.infoStream;
+    needsIndexSort = other.needsIndexSort;
+  }
+
   MergeState(List<CodecReader> originalReaders, SegmentInfo segmentInfo, InfoStream infoStream) throws IOException {
 
     this.infoStream = infoStream;
@@ -19,6 +19,15 @@ package org.trypticon.luceneupgrader.lucene6.internal.lucene.index;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.trypticon.luceneupgrader.lucene6.internal.lucene.codecs.Codec;
 import org.trypticon.luceneupgrader.lucene6.internal.lucene.codecs.DocValuesConsumer;
@@ -30,6 +39,7 @@ import org.trypticon.luceneupgrader.lucene6.internal.lucene.codecs.TermVectorsWr
 import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.Directory;
 import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.IOContext;
 import org.trypticon.luceneupgrader.lucene6.internal.lucene.util.InfoStream;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.util.ThreadInterruptedException;
 
 final class SegmentMerger {
   private final Directory directory;
@@ -41,6 +51,10 @@ final class SegmentMerger {
   final MergeState mergeState;
   private final FieldInfos.Builder fieldInfosBuilder;
 
+  private int threadCount = 1;
+
+  private Runnable threadInitializer;
+
   // note, just like in codec apis Directory 'dir' is NOT the same as segmentInfo.dir!!
   SegmentMerger(List<CodecReader> readers, SegmentInfo segmentInfo, InfoStream infoStream, Directory dir,
                 FieldInfos.FieldNumbers fieldNumbers, IOContext context) throws IOException {
@@ -59,6 +73,14 @@ final class SegmentMerger {
     }
   }
   
+  void setThreadCount(int threadCount) {
+    this.threadCount = threadCount;
+  }
+
+  void setThreadInitializer(Runnable threadInitializer) {
+    this.threadInitializer = threadInitializer;
+  }
+
   boolean shouldMerge() {
     return mergeState.segmentInfo.maxDoc() > 0;
   }
@@ -68,6 +90,9 @@ final class SegmentMerger {
       throw new IllegalStateException("Merge would result in 0 document segment");
     }
     mergeFieldInfos();
+    if (threadCount > 1) {
+      return mergeConcurrently();
+    }
     long t0 = 0;
     if (mergeState.infoStream.isEnabled("SM")) {
       t0 = System.nanoTime();
@@ -148,6 +173,122 @@ final class SegmentMerger {
     return mergeState;
   }
 
+  // Merges the independent parts of the segment (stored fields, postings, doc values and so on)
+  // at the same time, each one writing its own files. An upgrade usually ends in one big forced
+  // merge, which would otherwise keep a single core busy while the rest sit idle. The merge
+  // scheduler's rate limiter belongs to the merging thread, so every phase thread is registered
+  // with the merge before it starts, and the phases all count against the same limit.
+  private MergeState mergeConcurrently() throws IOException {
+    final SegmentWriteState segmentWriteState = new SegmentWriteState(mergeState.infoStream, directory, mergeState.segmentInfo,
+                                                                      mergeState.mergeFieldInfos, null, context);
+
+    List<Callable<Void>> phases = new ArrayList<>();
+    phases.add(timed("stored fields", () -> {
+      int numMerged = mergeFields();
+      assert numMerged == mergeState.segmentInfo.maxDoc();
+    }));
+    // the per-field formats narrow the merge state while they run, so they each get their own copy
+    phases.add(timed("postings", () -> {
+      try (FieldsConsumer consumer = codec.postingsFormat().fieldsConsumer(segmentWriteState)) {
+        consumer.merge(new MergeState(mergeState));
+      }
+    }));
+    if (mergeState.mergeFieldInfos.hasDocValues()) {
+      phases.add(timed("doc values", () -> {
+        try (DocValuesConsumer consumer = codec.docValuesFormat().fieldsConsumer(segmentWriteState)) {
+          consumer.merge(new MergeState(mergeState));
+        }
+      }));
+    }
+    if (mergeState.mergeFieldInfos.hasPointValues()) {
+      phases.add(timed("points", () -> mergePoints(segmentWriteState)));
+    }
+    if (mergeState.mergeFieldInfos.hasNorms()) {
+      phases.add(timed("norms", () -> mergeNorms(segmentWriteState)));
+    }
+    if (mergeState.mergeFieldInfos.hasVectors()) {
+      phases.add(timed("vectors", () -> {
+        int numMerged = mergeVectors();
+        assert numMerged == mergeState.segmentInfo.maxDoc();
+      }));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, phases.size()),
+                                                            newPhaseThreadFactory());
+    try {
+      List<Future<Void>> futures = new ArrayList<>(phases.size());
+      for (Callable<Void> phase : phases) {
+        futures.add(executor.submit(phase));
+      }
+      for (Future<Void> future : futures) {
+        future.get();
+      }
+    } catch (InterruptedException e) {
+      throw new ThreadInterruptedException(e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      } else {
+        throw new RuntimeException(cause);
+      }
+    } finally {
+      // don't let the caller clean up files which a failed merge's other phases are still writing
+      executor.shutdownNow();
+      try {
+        while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+          // keep waiting
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    // write the merged infos
+    codec.fieldInfosFormat().write(directory, mergeState.segmentInfo, "", mergeState.mergeFieldInfos, context);
+
+    return mergeState;
+  }
+
+  // names the threads after the segment, and doesn't let them keep the JVM alive if the merge is abandoned
+  private ThreadFactory newPhaseThreadFactory() {
+    final String prefix = "merge-" + mergeState.segmentInfo.name + "-";
+    final AtomicInteger threadNumber = new AtomicInteger();
+    return runnable -> {
+      Thread thread = new Thread(() -> {
+        if (threadInitializer != null) {
+          threadInitializer.run();
+        }
+        runnable.run();
+      }, prefix + threadNumber.getAndIncrement());
+      thread.setDaemon(true);
+      return thread;
+    };
+  }
+
+  private interface MergePhase {
+    void merge() throws IOException;
+  }
+
+  private Callable<Void> timed(String name, MergePhase phase) {
+    return () -> {
+      long t0 = 0;
+      if (mergeState.infoStream.isEnabled("SM")) {
+        t0 = System.nanoTime();
+      }
+      phase.merge();
+      if (mergeState.infoStream.isEnabled("SM")) {
+        long t1 = System.nanoTime();
+        mergeState.infoStream.message("SM", ((t1-t0)/1000000) + " msec to merge " + name + " [" + mergeState.segmentInfo.maxDoc() + " docs]");
+      }
+      return null;
+    };
+  }
+
   private void mergeDocValues(SegmentWriteState segmentWriteState) throws IOException {
     try (DocValuesConsumer consumer = codec.docValuesFormat().fieldsConsumer(segmentWriteState)) {
       consumer.merge(mergeState);
@@ -0,0 +1,136 @@
+package org.trypticon.luceneupgrader.lucene7;
+
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.index.CheckIndex;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.index.CorruptIndexException;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.index.DirectoryReader;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.index.IndexWriter;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.index.LeafReaderContext;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.index.SegmentReader;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.Directory;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.FSDirectory;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.Lock;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.util.IOUtils;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.util.Version;
+import org.trypticon.luceneupgrader.IndexChecker;
+
+import javax.annotation.Nonnull;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Checks Lucene 7 indexes.
+ */
+public class IndexChecker7 implements IndexChecker {
+
+    private static final List<String> COMPONENTS = Collections.unmodifiableList(Arrays.asList(
+        "integrity", "live docs", "field infos", "norms", "postings", "stored fields", "term vectors",
+        "doc values", "points", "index sort"));
+
+    private final Directory directory;
+
+    private final Lock writeLock;
+
+    private DirectoryReader reader;
+
+    public IndexChecker7(@Nonnull Path path) throws IOException {
+        directory = FSDirectory.open(path);
+        try {
+            // Taken once and shared, since each CheckIndex would otherwise try to take it for itself.
+            writeLock = directory.obtainLock(IndexWriter.WRITE_LOCK_NAME);
+        } catch (IOException | RuntimeException e) {
+            IOUtils.closeWhileHandlingException(directory);
+            throw e;
+        }
+    }
+
+    @Nonnull
+    @Override
+    public List<String> getComponents() {
+        return COMPONENTS;
+    }
+
+    @Override
+    public void checkSegment(@Nonnull String segmentName) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        // Not closed, since that would release the shared lock.
+        CheckIndex checkIndex = new CheckIndex(directory, writeLock);
+        checkIndex.setInfoStream(new PrintStream(output, true, StandardCharsets.UTF_8.name()));
+        CheckIndex.Status status = checkIndex.checkIndex(Collections.singletonList(segmentName));
+        if (!status.clean) {
+            throw new CorruptIndexException("CheckIndex found problems:\n" +
+                                            output.toString(StandardCharsets.UTF_8.name()), segmentName);
+        }
+    }
+
+    @Override
+    public void checkComponent(@Nonnull String segmentName, @Nonnull String component) throws IOException {
+        SegmentReader segmentReader = segmentReader(segmentName);
+        Version version = segmentReader.getSegmentInfo().info.getVersion();
+        switch (component) {
+            case "integrity":
+                segmentReader.checkIntegrity();
+                break;
+            case "live docs":
+                CheckIndex.testLiveDocs(segmentReader, null, true);
+                break;
+            case "field infos":
+                CheckIndex.testFieldInfos(segmentReader, null, true);
+                break;
+            case "norms":
+                CheckIndex.testFieldNorms(segmentReader, null, true);
+                break;
+            case "postings":
+                CheckIndex.testPostings(segmentReader, null, false, true, version);
+                break;
+            case "stored fields":
+                CheckIndex.testStoredFields(segmentReader, null, true);
+                break;
+            case "term vectors":
+                CheckIndex.testTermVectors(segmentReader, null, false, false, true, version);
+                break;
+            case "doc values":
+                CheckIndex.testDocValues(segmentReader, null, true);
+                break;
+            case "points":
+                CheckIndex.testPoints(segmentReader, null, true);
+                break;
+            case "index sort":
+                CheckIndex.testSort(segmentReader, segmentReader.getSegmentInfo().info.getIndexSort(), null, true);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown component: " + component);
+        }
+    }
+
+    /**
+     * Gets the reader for a segment. The index is only opened the first time, and the readers
+     * are shared by all the checks, which read them the same way searches would.
+     *
+     * @param segmentName the name of the segment.
+     * @return the reader.
+     * @throws IOException if an error occurs opening the index.
+     */
+    private synchronized SegmentReader segmentReader(String segmentName) throws IOException {
+        if (reader == null) {
+            reader = DirectoryReader.open(directory);
+        }
+        for (LeafReaderContext context : reader.leaves()) {
+            SegmentReader segmentReader = (SegmentReader) context.reader();
+            if (segmentReader.getSegmentName().equals(segmentName)) {
+                return segmentReader;
+            }
+        }
+        throw new IllegalArgumentException("No such segment: " + segmentName);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        IOUtils.close(reader, writeLock, directory);
+    }
+}
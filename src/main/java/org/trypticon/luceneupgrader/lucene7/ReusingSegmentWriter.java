@@ -0,0 +1,221 @@
+package org.trypticon.luceneupgrader.lucene7;
+
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.Codec;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.DocValuesConsumer;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.FieldsConsumer;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.NormsConsumer;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.PointsWriter;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.lucene50.Lucene50StoredFieldsFormat;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.lucene50.Lucene50TermVectorsFormat;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.perfield.PerFieldDocValuesFormat;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.perfield.PerFieldPostingsFormat;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.index.*;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.Directory;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.IOContext;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.TrackingDirectoryWrapper;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.util.InfoStream;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.util.Version;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes a Lucene 7 segment for a Lucene 6 segment without re-encoding the parts whose
+ * on-disk format is the same in both versions. Stored fields and term vectors are linked
+ * into the new segment as they are. Doc values and norms changed format in Lucene 7 so
+ * are written out again. Postings and points are also written out again, even though
+ * Lucene 7 could read them, because Lucene 8 can't read the older versions of the terms
+ * index and points formats which Lucene 6 wrote.
+ */
+class ReusingSegmentWriter {
+
+    /**
+     * Extensions of the files which are reused as they are.
+     */
+    private static final Set<String> REUSED_EXTENSIONS = new HashSet<>(Arrays.asList(
+        "fdt", "fdx", // stored fields
+        "tvd", "tvx"  // term vectors
+    ));
+
+    private static final String LIVE_DOCS_EXTENSION = "liv";
+
+    private static final String SEGMENT_NAME = "_0";
+
+    /**
+     * Tests whether a reader is a segment which can be written this way.
+     *
+     * @param reader the reader.
+     * @return {@code true} if it can be written this way.
+     */
+    static boolean canReuse(CodecReader reader) {
+        if (!(reader instanceof SegmentReader)) {
+            return false;
+        }
+        SegmentCommitInfo commitInfo = ((SegmentReader) reader).getSegmentInfo();
+        SegmentInfo info = commitInfo.info;
+        Codec codec = info.getCodec();
+        if (info.getIndexSort() != null || commitInfo.getSoftDelCount() != 0 ||
+            info.getVersion().major < 6 ||
+            !(codec.storedFieldsFormat() instanceof Lucene50StoredFieldsFormat) ||
+            !(codec.termVectorsFormat() instanceof Lucene50TermVectorsFormat)) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes a new index containing just the new segment.
+     *
+     * @param reader the reader for the old segment.
+     * @param directory the directory to write the new index to. Should be empty.
+     * @throws IOException if an error occurs reading or writing.
+     */
+    static void write(SegmentReader reader, Directory directory) throws IOException {
+        SegmentCommitInfo oldCommitInfo = reader.getSegmentInfo();
+        SegmentInfo oldInfo = oldCommitInfo.info;
+        Codec codec = Codec.getDefault();
+
+        // Keeping the segment ID matters, because it's written into the header of every file.
+        // The min version is 7.0.0 even though Lucene 6 wrote the reused files. That's safe because
+        // canReuse only lets through segments Lucene 6 wrote, which always wrote version 1 of the
+        // compressing stored fields and term vectors formats, and that is the version Lucene 7 writes
+        // too. Readers go by the version in each file's header, not the min version, which only
+        // decides whether the next major version opens the segment at all.
+        SegmentInfo newInfo = new SegmentInfo(directory, Version.LATEST, Version.fromBits(7, 0, 0), SEGMENT_NAME,
+                                              oldInfo.maxDoc(), false, codec, new HashMap<>(oldInfo.getDiagnostics()),
+                                              oldInfo.getId(), new HashMap<>(oldInfo.getAttributes()), null);
+        TrackingDirectoryWrapper trackingDirectory = new TrackingDirectoryWrapper(directory);
+
+        Directory oldDirectory = oldInfo.getUseCompoundFile()
+            ? oldInfo.getCodec().compoundFormat().getCompoundReader(oldInfo.dir, oldInfo, IOContext.READONCE)
+            : oldInfo.dir;
+        try {
+            Collection<String> oldFiles = oldInfo.getUseCompoundFile()
+                ? Arrays.asList(oldDirectory.listAll())
+                : oldInfo.files();
+            for (String oldFile : oldFiles) {
+                if (REUSED_EXTENSIONS.contains(IndexFileNames.getExtension(oldFile))) {
+                    trackingDirectory.copyFrom(oldDirectory, oldFile,
+                                               SEGMENT_NAME + IndexFileNames.stripSegmentName(oldFile), IOContext.DEFAULT);
+                }
+            }
+        } finally {
+            if (oldDirectory != oldInfo.dir) {
+                oldDirectory.close();
+            }
+        }
+
+        // Live docs are tracked by the commit rather than the segment.
+        if (oldCommitInfo.hasDeletions()) {
+            long delGen = oldCommitInfo.getDelGen();
+            directory.copyFrom(oldInfo.dir,
+                               IndexFileNames.fileNameFromGeneration(oldInfo.name, LIVE_DOCS_EXTENSION, delGen),
+                               IndexFileNames.fileNameFromGeneration(SEGMENT_NAME, LIVE_DOCS_EXTENSION, delGen),
+                               IOContext.DEFAULT);
+        }
+
+        FieldInfos fieldInfos = copyFieldInfos(reader.getFieldInfos());
+        SegmentWriteState writeState = new SegmentWriteState(InfoStream.NO_OUTPUT, trackingDirectory, newInfo,
+                                                             fieldInfos, null, IOContext.DEFAULT);
+
+        if (reader.getPostingsReader() != null) {
+            try (FieldsConsumer consumer = codec.postingsFormat().fieldsConsumer(writeState)) {
+                consumer.write(reader.getPostingsReader());
+            }
+        }
+
+        if (fieldInfos.hasDocValues()) {
+            try (DocValuesConsumer consumer = codec.docValuesFormat().fieldsConsumer(writeState)) {
+                writeDocValues(consumer, fieldInfos, reader);
+            }
+        }
+
+        if (fieldInfos.hasNorms()) {
+            try (NormsConsumer consumer = codec.normsFormat().normsConsumer(writeState)) {
+                for (FieldInfo fieldInfo : fieldInfos) {
+                    if (fieldInfo.hasNorms()) {
+                        consumer.addNormsField(fieldInfo, reader.getNormsReader());
+                    }
+                }
+            }
+        }
+
+        if (fieldInfos.hasPointValues()) {
+            try (PointsWriter writer = codec.pointsFormat().fieldsWriter(writeState)) {
+                for (FieldInfo fieldInfo : fieldInfos) {
+                    if (fieldInfo.getPointDataDimensionCount() != 0) {
+                        writer.writeField(fieldInfo, reader.getPointsReader());
+                    }
+                }
+                writer.finish();
+            }
+        }
+
+        // Written last, because the doc values format records which files it used in the field attributes.
+        codec.fieldInfosFormat().write(trackingDirectory, newInfo, "", fieldInfos, IOContext.DEFAULT);
+
+        newInfo.setFiles(new HashSet<>(trackingDirectory.getCreatedFiles()));
+        codec.segmentInfoFormat().write(directory, newInfo, IOContext.DEFAULT);
+
+        SegmentInfos segmentInfos = new SegmentInfos(7);
+        segmentInfos.add(new SegmentCommitInfo(newInfo, oldCommitInfo.getDelCount(), 0,
+                                               oldCommitInfo.getDelGen(), -1, -1));
+        segmentInfos.commit(directory);
+    }
+
+    /**
+     * Copies field infos, dropping any doc values updates and the old choice of doc values and
+     * postings formats, as the doc values and postings are all written out again into the segment itself.
+     * Field numbers are kept, as the reused files refer to fields by number.
+     */
+    private static FieldInfos copyFieldInfos(FieldInfos oldFieldInfos) {
+        FieldInfo[] fieldInfos = new FieldInfo[oldFieldInfos.size()];
+        int i = 0;
+        for (FieldInfo oldFieldInfo : oldFieldInfos) {
+            Map<String, String> attributes = new HashMap<>(oldFieldInfo.attributes());
+            attributes.remove(PerFieldDocValuesFormat.PER_FIELD_FORMAT_KEY);
+            attributes.remove(PerFieldDocValuesFormat.PER_FIELD_SUFFIX_KEY);
+            attributes.remove(PerFieldPostingsFormat.PER_FIELD_FORMAT_KEY);
+            attributes.remove(PerFieldPostingsFormat.PER_FIELD_SUFFIX_KEY);
+            fieldInfos[i++] = new FieldInfo(oldFieldInfo.name, oldFieldInfo.number, oldFieldInfo.hasVectors(),
+                                            oldFieldInfo.omitsNorms(), oldFieldInfo.hasPayloads(),
+                                            oldFieldInfo.getIndexOptions(), oldFieldInfo.getDocValuesType(), -1,
+                                            attributes, oldFieldInfo.getPointDataDimensionCount(),
+                                            oldFieldInfo.getPointIndexDimensionCount(), oldFieldInfo.getPointNumBytes(),
+                                            oldFieldInfo.isSoftDeletesField());
+        }
+        return new FieldInfos(fieldInfos);
+    }
+
+    private static void writeDocValues(DocValuesConsumer consumer, FieldInfos fieldInfos,
+                                       CodecReader reader) throws IOException {
+        for (FieldInfo fieldInfo : fieldInfos) {
+            switch (fieldInfo.getDocValuesType()) {
+                case NONE:
+                    break;
+                case NUMERIC:
+                    consumer.addNumericField(fieldInfo, reader.getDocValuesReader());
+                    break;
+                case BINARY:
+                    consumer.addBinaryField(fieldInfo, reader.getDocValuesReader());
+                    break;
+                case SORTED:
+                    consumer.addSortedField(fieldInfo, reader.getDocValuesReader());
+                    break;
+                case SORTED_NUMERIC:
+                    consumer.addSortedNumericField(fieldInfo, reader.getDocValuesReader());
+                    break;
+                case SORTED_SET:
+                    consumer.addSortedSetField(fieldInfo, reader.getDocValuesReader());
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected doc values type: " + fieldInfo.getDocValuesType());
+            }
+        }
+    }
+}
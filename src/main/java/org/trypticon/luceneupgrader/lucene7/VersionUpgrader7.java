@@ -4,62 +4,624 @@ import org.trypticon.luceneupgrader.lucene7.internal.lucene.analysis.Analyzer;
 import org.trypticon.luceneupgrader.lucene7.internal.lucene.index.*;
 import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.Directory;
 import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.FSDirectory;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.IOContext;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.util.Bits;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.util.IOUtils;
 import org.trypticon.luceneupgrader.lucene7.internal.lucene.util.Version;
 import org.trypticon.luceneupgrader.FileUtils;
+import org.trypticon.luceneupgrader.IndexSplitter;
+import org.trypticon.luceneupgrader.IndexUpgraderConfig;
 import org.trypticon.luceneupgrader.InfoStream;
+import org.trypticon.luceneupgrader.IoThrottle;
+import org.trypticon.luceneupgrader.ParallelUtils;
+import org.trypticon.luceneupgrader.UpgradeJournal;
+import org.trypticon.luceneupgrader.UpgradeProgress;
 import org.trypticon.luceneupgrader.VersionUpgrader;
+import org.trypticon.luceneupgrader.lucene6.IndexSplitter6;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * Upgrades an index to Lucene 7 format.
  */
 public class VersionUpgrader7 implements VersionUpgrader {
 
+    private static final String LAYOUT = "layout";
+    private static final String COMPLETE = "complete";
+    private static final String READERS_DONE = "luceneupgrader.readersDone";
+    private static final String SEGMENT_MOVED = "luceneupgrader.segmentMoved";
+
     @Nonnull
     private final Path path;
 
+    @Nullable
+    private final Path destinationPath;
+
     @Nonnull
     private final InfoStream infoStream;
 
+    @Nonnull
+    private final IndexUpgraderConfig config;
+
+    @Nonnull
+    private UpgradeProgress progress = UpgradeProgress.NONE;
+
     public VersionUpgrader7(@Nonnull Path path, @Nonnull InfoStream infoStream) {
+        this(path, infoStream, new IndexUpgraderConfig());
+    }
+
+    public VersionUpgrader7(@Nonnull Path path, @Nonnull InfoStream infoStream, @Nonnull IndexUpgraderConfig config) {
+        this(path, null, infoStream, config);
+    }
+
+    /**
+     * Creates an upgrader which writes the upgraded index to another directory, leaving the original
+     * untouched. The destination may be on another disk, so that reading and writing don't compete.
+     *
+     * @param path the directory containing the index.
+     * @param destinationPath the directory to write the upgraded index to. Anything already in it is deleted.
+     * @param infoStream the info stream.
+     * @param config the config.
+     */
+    public VersionUpgrader7(@Nonnull Path path, @Nullable Path destinationPath, @Nonnull InfoStream infoStream,
+                            @Nonnull IndexUpgraderConfig config) {
         this.path = path;
+        this.destinationPath = destinationPath;
         this.infoStream = infoStream;
+        this.config = config;
     }
 
     @Override
     public void upgrade() throws IOException {
+        upgrade(UpgradeProgress.NONE);
+    }
+
+    @Override
+    public void upgrade(@Nonnull UpgradeProgress progress) throws IOException {
+        this.progress = progress;
+        if (bumpCreatedVersion()) {
+            return;
+        }
+
+        if (destinationPath != null) {
+            // Nothing is written next to the original, so there's nothing to journal or swap.
+            write(destinationPath, null);
+            return;
+        }
+
         Path oldPath = path.resolveSibling(path.getFileName() + ".old");
         Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
 
-        FileUtils.insecureRecursiveDelete(tempPath);
-        Files.createDirectory(tempPath);
+        // Segments already moved out of the original only exist in the new index, so an interrupted
+        // low disk usage upgrade has to be finished the same way.
+        if (config.isLowDiskUsage() || hasMovedSegments(tempPath)) {
+            moveSegments(tempPath);
+            clearProgress(tempPath);
 
-        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(new FailAnalyzer());
-        indexWriterConfig.setMergePolicy(new LogByteSizeMergePolicy());
-        indexWriterConfig.setMergeScheduler(new SerialMergeScheduler());
-        indexWriterConfig.setInfoStream(new AdaptedInfoStream(infoStream));
-        indexWriterConfig.setIndexCreatedVersionMajor(7);
+            // The original has already lost its segments, so the swap has to be able to finish if interrupted.
+            UpgradeJournal.load(path).replaceDirectory(path, tempPath, oldPath);
+            return;
+        }
 
-        try (Directory sourceDirectory = FSDirectory.open(path);
-             Directory destinationDirectory = FSDirectory.open(tempPath);
-             IndexReader reader = DirectoryReader.open(sourceDirectory);
-             IndexWriter writer = new IndexWriter(destinationDirectory, indexWriterConfig)) {
+        UpgradeJournal journal = config.isCheckpointing() ? UpgradeJournal.load(path) : null;
 
-            CodecReader[] codecReaders = reader.leaves().stream()
-                .map(context -> new VersionOverridingCodecReader((CodecReader) context.reader()))
-                .toArray(CodecReader[]::new);
+        if (journal == null || journal.get(COMPLETE) == null) {
+            write(tempPath, journal);
+            if (journal != null) {
+                journal.put(COMPLETE, "true");
+                journal.save();
+                clearProgress(tempPath);
+            }
+        }
+
+        if (journal != null) {
+            journal.replaceDirectory(path, tempPath, oldPath);
+        } else {
+            Files.move(path, oldPath);
+            Files.move(tempPath, path);
+            FileUtils.insecureRecursiveDelete(oldPath);
+        }
+    }
+
+    /**
+     * Upgrades the index by writing a new commit alone, if every segment is already in Lucene 7 format
+     * and it's only the index's created version which is older. The segment files are left exactly as
+     * they are, so this takes time in proportion to the number of segments rather than their size.
+     *
+     * @return {@code true} if the index was upgraded this way, {@code false} if it needs rewriting.
+     * @throws IOException if an error occurs reading or writing.
+     */
+    private boolean bumpCreatedVersion() throws IOException {
+        // A rewrite which was already started has to be finished.
+        Path tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+        if (destinationPath == null && Files.exists(tempPath)) {
+            return false;
+        }
+
+        try (Directory directory = openDirectory(path)) {
+            for (SegmentCommitInfo info : SegmentInfos.readLatestCommit(directory)) {
+                Version minVersion = info.info.getMinVersion();
+                if (minVersion == null || minVersion.major < Version.LATEST.major) {
+                    return false;
+                }
+            }
+        }
+
+        Path indexPath = path;
+        if (destinationPath != null) {
+            FileUtils.insecureRecursiveDelete(destinationPath);
+            FileUtils.copyDirectory(path, destinationPath, config.getIoThrottle());
+            indexPath = destinationPath;
+        }
+
+        try (Directory directory = config.resolveDeferredSync() ? new NoSyncDirectory(openDirectory(indexPath))
+                                                                : openDirectory(indexPath)) {
+            SegmentInfos segmentInfos = SegmentInfos.readLatestCommit(directory);
+            SegmentInfos upgradedInfos = new SegmentInfos(Version.LATEST.major);
+            upgradedInfos.updateGeneration(segmentInfos);
+            upgradedInfos.counter = segmentInfos.counter;
+            upgradedInfos.setUserData(segmentInfos.getUserData(), false);
+            for (SegmentCommitInfo info : segmentInfos) {
+                upgradedInfos.add(info.clone());
+            }
+            upgradedInfos.commit(directory);
+            directory.deleteFile(segmentInfos.getSegmentsFileName());
+        }
+        return true;
+    }
+
+    /**
+     * Writes the upgraded index.
+     *
+     * @param tempPath the directory to write the upgraded index to.
+     * @param journal the journal to record progress in, or {@code null} if not checkpointing.
+     * @throws IOException if an error occurs reading or writing.
+     */
+    private void write(Path tempPath, @Nullable UpgradeJournal journal) throws IOException {
+        int mergeThreadCount = config.resolveMergeThreadCount(path);
+
+        try (Directory sourceDirectory = openSourceDirectory();
+             DirectoryReader reader = DirectoryReader.open(sourceDirectory)) {
+
+            List<CodecReader> codecReaders = reader.leaves().stream()
+                .map(context -> (CodecReader) context.reader())
+                .collect(Collectors.toList());
+
+            if (config.isSplitSegments() && codecReaders.size() < mergeThreadCount) {
+                codecReaders = splitIntoRanges(codecReaders, mergeThreadCount);
+            }
+
+            codecReaders = codecReaders.stream()
+                .map(VersionOverridingCodecReader::new)
+                .collect(Collectors.toList());
+
+            List<List<CodecReader>> groups = ParallelUtils.partition(codecReaders, mergeThreadCount,
+                                                                     CodecReader::numDocs);
+
+            // Work left behind can only be carried on with if it was split up the same way.
+            String layout = reader.getIndexCommit().getGeneration() + "/" + codecReaders.size() + "/" + groups.size();
+            boolean resuming = journal != null && layout.equals(journal.get(LAYOUT));
+            if (!resuming) {
+                FileUtils.insecureRecursiveDelete(tempPath);
+                Files.createDirectory(tempPath);
+                if (journal != null) {
+                    journal.put(LAYOUT, layout);
+                    journal.save();
+                }
+            }
+
+            if (groups.size() <= 1) {
+                addIndexes(tempPath, codecReaders);
+            } else {
+                addIndexesConcurrently(tempPath, groups, resuming);
+            }
+        }
+    }
+
+    private void addIndexes(Path destinationPath, List<CodecReader> codecReaders) throws IOException {
+        Path scratchPath = destinationPath.resolveSibling(destinationPath.getFileName() + ".reuse");
+        try (Directory destinationDirectory = openDestination(destinationPath);
+             IndexWriter writer = new IndexWriter(destinationDirectory, createIndexWriterConfig())) {
+            if (config.isCheckpointing()) {
+                // Commit after each reader, recording how far we got as part of the same commit.
+                for (int i = readersDone(writer); i < codecReaders.size(); i++) {
+                    addIndexes(writer, codecReaders.subList(i, i + 1), scratchPath);
+                    writer.setLiveCommitData(Collections.singletonMap(READERS_DONE, String.valueOf(i + 1)).entrySet());
+                    writer.commit();
+                }
+            } else {
+                addIndexes(writer, codecReaders, scratchPath);
+                writer.commit();
+            }
+        } finally {
+            FileUtils.insecureRecursiveDelete(scratchPath);
+        }
+    }
+
+    /**
+     * Adds readers to a writer, verifying the checksums of the segments behind them afterwards if
+     * they're being checked as the merges read them. Everything added from the readers is only
+     * committed afterwards, so a corrupt segment fails the step while the original index is intact.
+     *
+     * @param writer the writer.
+     * @param codecReaders the readers to add.
+     * @param scratchPath the path to use for the scratch index.
+     * @throws IOException if an error occurs reading or writing.
+     */
+    private void addIndexes(IndexWriter writer, List<CodecReader> codecReaders, Path scratchPath) throws IOException {
+        try {
+            addSegments(writer, codecReaders, scratchPath);
+        } catch (Throwable t) {
+            for (CodecReader codecReader : codecReaders) {
+                SegmentReader segmentReader = segmentReader(codecReader);
+                if (segmentReader != null && segmentReader.directory() instanceof ChecksumVerifyingDirectory) {
+                    ((ChecksumVerifyingDirectory) segmentReader.directory()).verifyAfterFailure(t);
+                }
+            }
+            throw t;
+        }
+        for (CodecReader codecReader : codecReaders) {
+            SegmentReader segmentReader = segmentReader(codecReader);
+            if (segmentReader != null && segmentReader.directory() instanceof ChecksumVerifyingDirectory) {
+                ((ChecksumVerifyingDirectory) segmentReader.directory()).verifySegments(
+                        Collections.singleton(segmentReader.getSegmentName()));
+            }
+        }
+    }
+
+    /**
+     * Adds readers to a writer. Segments which are already in Lucene 7 format are added as they are,
+     * and when reusing unchanged files, each segment which can be reused is written by
+     * {@link ReusingSegmentWriter}. Either way, the segment goes into a scratch index and is added
+     * from there with its files linked, and the readers in between are added together as usual,
+     * so documents keep their order.
+     *
+     * @param writer the writer.
+     * @param codecReaders the readers to add.
+     * @param scratchPath the path to use for the scratch index.
+     * @throws IOException if an error occurs reading or writing.
+     */
+    private void addSegments(IndexWriter writer, List<CodecReader> codecReaders, Path scratchPath) throws IOException {
+        List<CodecReader> pending = new ArrayList<>();
+        for (CodecReader codecReader : codecReaders) {
+            CodecReader segmentReader = ((FilterCodecReader) codecReader).getDelegate();
+            boolean current = isCurrent(segmentReader);
+            if (!current && !(config.isReuseUnchangedFiles() && ReusingSegmentWriter.canReuse(segmentReader))) {
+                pending.add(codecReader);
+                continue;
+            }
+
+            if (!pending.isEmpty()) {
+                addReaders(writer, pending);
+                pending.clear();
+            }
+
+            FileUtils.insecureRecursiveDelete(scratchPath);
+            Files.createDirectory(scratchPath);
+            try (Directory scratchDirectory = new LinkingDirectory(openDirectory(scratchPath))) {
+                if (current) {
+                    copySegment((SegmentReader) segmentReader, scratchDirectory);
+                    writer.addIndexes(scratchDirectory);
+                } else {
+                    try (UpgradeProgress.Segment segment = progress.startSegment()) {
+                        ReusingSegmentWriter.write((SegmentReader) segmentReader, scratchDirectory);
+                        writer.addIndexes(scratchDirectory);
+                        segment.finished(segmentReader.maxDoc());
+                    }
+                }
+            }
+        }
+        if (!pending.isEmpty()) {
+            addReaders(writer, pending);
+        }
+    }
+
+    /**
+     * Adds readers to a writer, which merges them into one new segment, and reports the segment.
+     *
+     * @param writer the writer.
+     * @param codecReaders the readers to add.
+     * @throws IOException if an error occurs reading or writing.
+     */
+    private void addReaders(IndexWriter writer, List<CodecReader> codecReaders) throws IOException {
+        try (UpgradeProgress.Segment segment = progress.startSegment()) {
+            writer.addIndexes(codecReaders.toArray(new CodecReader[0]));
+            int docCount = 0;
+            for (CodecReader codecReader : codecReaders) {
+                CodecReader reader = ((FilterCodecReader) codecReader).getDelegate();
+                docCount += reader instanceof DocRangeCodecReader ? ((DocRangeCodecReader) reader).rangeDocCount
+                                                                   : reader.maxDoc();
+            }
+            segment.finished(docCount);
+        }
+    }
+
+    /**
+     * Gets the name of the segment a reader reads, seeing through any filters.
+     *
+     * @param codecReader the reader.
+     * @return the name, or {@code null} if the reader doesn't read a segment.
+     */
+    @Nullable
+    private static String segmentName(CodecReader codecReader) {
+        SegmentReader segmentReader = segmentReader(codecReader);
+        return segmentReader == null ? null : segmentReader.getSegmentInfo().info.name;
+    }
+
+    /**
+     * Gets the segment reader underneath a reader.
+     *
+     * @param codecReader the reader.
+     * @return the segment reader, or {@code null} if it isn't reading a segment.
+     */
+    @Nullable
+    private static SegmentReader segmentReader(CodecReader codecReader) {
+        while (codecReader instanceof FilterCodecReader) {
+            codecReader = ((FilterCodecReader) codecReader).getDelegate();
+        }
+        return codecReader instanceof SegmentReader ? (SegmentReader) codecReader : null;
+    }
 
-            writer.addIndexes(codecReaders);
+    /**
+     * Tests whether a segment is already in Lucene 7 format. Segments merged by Lucene 7 can still
+     * hold documents written by an older version, so it's the oldest version which counts.
+     *
+     * @param segmentReader the reader for the segment.
+     * @return {@code true} if the segment can be added as it is.
+     */
+    private static boolean isCurrent(CodecReader segmentReader) {
+        if (!(segmentReader instanceof SegmentReader)) {
+            return false;
+        }
+        Version minVersion = ((SegmentReader) segmentReader).getSegmentInfo().info.getMinVersion();
+        return minVersion != null && minVersion.major >= 7;
+    }
+
+    /**
+     * Writes a scratch index holding just one segment, with the segment's files linked from the original.
+     *
+     * @param segmentReader the reader for the segment.
+     * @param scratchDirectory the directory to write the scratch index to.
+     * @throws IOException if an error occurs reading or writing.
+     */
+    private static void copySegment(SegmentReader segmentReader, Directory scratchDirectory) throws IOException {
+        SegmentCommitInfo info = segmentReader.getSegmentInfo();
+        for (String file : info.files()) {
+            scratchDirectory.copyFrom(segmentReader.directory(), file, file, IOContext.DEFAULT);
+        }
+        SegmentInfos segmentInfos = new SegmentInfos(Version.LATEST.major);
+        segmentInfos.add(info.clone());
+        segmentInfos.commit(scratchDirectory);
+    }
+
+    private Directory openDirectory(Path directoryPath) throws IOException {
+        Directory directory = FSDirectory.open(directoryPath);
+        IoThrottle ioThrottle = config.getIoThrottle();
+        if (ioThrottle != null) {
+            directory = new ThrottledDirectory(directory, ioThrottle);
+        }
+        return progress.isEnabled() ? new MeteredDirectory(directory, progress) : directory;
+    }
+
+    private Directory openSourceDirectory() throws IOException {
+        Directory directory = openDirectory(path);
+        return config.isFusedChecksums() ? new ChecksumVerifyingDirectory(directory) : directory;
+    }
+
+    private Directory openDestination(Path destinationPath) throws IOException {
+        Directory directory = openDirectory(destinationPath);
+        Path scratchPath = config.getScratchDirectory();
+        if (scratchPath != null) {
+            Files.createDirectories(scratchPath);
+            directory = new ScratchTempDirectory(directory, openDirectory(scratchPath));
+        }
+        if (config.resolveDeferredSync()) {
+            directory = new NoSyncDirectory(directory);
+        }
+        return new LinkingDirectory(directory);
+    }
+
+    /**
+     * Moves the segments into the new index one at a time, in order. Each segment is removed from
+     * the original index as soon as the new index has been committed with its replacement, so only
+     * about the size of the largest segment is needed in extra disk space. Each commit records which
+     * segment it moved, so an interrupted upgrade can tell whether the segment at the front of the
+     * original index was already moved.
+     *
+     * @param tempPath the directory to write the new index to.
+     * @throws IOException if an error occurs reading or writing.
+     */
+    private void moveSegments(Path tempPath) throws IOException {
+        IndexSplitter sourceSplitter = new IndexSplitter6();
+        Path scratchPath = tempPath.resolveSibling(tempPath.getFileName() + ".reuse");
+        Files.createDirectories(tempPath);
+        try (Directory destinationDirectory = openDestination(tempPath);
+             IndexWriter writer = new IndexWriter(destinationDirectory, createIndexWriterConfig())) {
+            List<String> segmentNames = sourceSplitter.segmentNames(path);
+            if (!segmentNames.isEmpty() && segmentNames.get(0).equals(segmentMoved(writer))) {
+                sourceSplitter.removeSegment(path, segmentNames.get(0));
+                segmentNames = segmentNames.subList(1, segmentNames.size());
+            }
+
+            for (String segmentName : segmentNames) {
+                try (Directory sourceDirectory = openSourceDirectory();
+                     DirectoryReader reader = DirectoryReader.open(sourceDirectory)) {
+                    CodecReader codecReader = (CodecReader) reader.leaves().get(0).reader();
+                    // The segment is deleted from the original index once it's been moved, so it had
+                    // better be the one which was added.
+                    String readerSegmentName = segmentName(codecReader);
+                    if (!segmentName.equals(readerSegmentName)) {
+                        throw new IllegalStateException("Expected to move segment " + segmentName +
+                                                        ", but the first segment read was " + readerSegmentName);
+                    }
+                    addIndexes(writer, Collections.singletonList(new VersionOverridingCodecReader(codecReader)),
+                               scratchPath);
+                }
+                writer.setLiveCommitData(Collections.singletonMap(SEGMENT_MOVED, segmentName).entrySet());
+                writer.commit();
+                sourceSplitter.removeSegment(path, segmentName);
+            }
+
+            // Makes sure there's a commit even if there were no segments.
+            writer.commit();
+        } finally {
+            FileUtils.insecureRecursiveDelete(scratchPath);
+        }
+    }
+
+    private static boolean hasMovedSegments(Path tempPath) throws IOException {
+        if (!Files.isDirectory(tempPath)) {
+            return false;
+        }
+        try (Directory directory = FSDirectory.open(tempPath)) {
+            return DirectoryReader.indexExists(directory) &&
+                   SegmentInfos.readLatestCommit(directory).getUserData().containsKey(SEGMENT_MOVED);
+        }
+    }
+
+    private static String segmentMoved(IndexWriter writer) {
+        for (Map.Entry<String, String> entry : writer.getLiveCommitData()) {
+            if (SEGMENT_MOVED.equals(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static int readersDone(IndexWriter writer) {
+        for (Map.Entry<String, String> entry : writer.getLiveCommitData()) {
+            if (READERS_DONE.equals(entry.getKey())) {
+                return Integer.parseInt(entry.getValue());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Removes the progress recorded in the commit data, once the new index is complete.
+     *
+     * @param destinationPath the path the new index was written to.
+     * @throws IOException if an error occurs reading or writing.
+     */
+    private void clearProgress(Path destinationPath) throws IOException {
+        try (Directory destinationDirectory = openDirectory(destinationPath);
+             IndexWriter writer = new IndexWriter(destinationDirectory, createIndexWriterConfig())) {
+            writer.setLiveCommitData(Collections.<String, String>emptyMap().entrySet());
             writer.commit();
         }
+    }
+
+    /**
+     * Writes each group of readers into its own partial index on its own thread, then
+     * combines the partial indexes. The partial segments are added in group order,
+     * so documents keep their original order.
+     *
+     * @param destinationPath the path to write the new index to.
+     * @param groups the groups of readers to add.
+     * @param resuming whether partial indexes written by an earlier run should be kept.
+     * @throws IOException if an error occurs reading or writing.
+     */
+    private void addIndexesConcurrently(Path destinationPath, List<List<CodecReader>> groups,
+                                        boolean resuming) throws IOException {
+        List<Path> partPaths = new ArrayList<>(groups.size());
+        boolean success = false;
+        try {
+            List<ParallelUtils.IOTask> tasks = new ArrayList<>(groups.size());
+            for (List<CodecReader> group : groups) {
+                Path partPath = destinationPath.resolveSibling(destinationPath.getFileName() + "." + partPaths.size());
+                if (!resuming) {
+                    FileUtils.insecureRecursiveDelete(partPath);
+                }
+                Files.createDirectories(partPath);
+                partPaths.add(partPath);
+                tasks.add(() -> addIndexes(partPath, group));
+            }
+            ParallelUtils.runAll(groups.size(), "upgrade-7", tasks);
+
+            // An earlier run may have died part way through combining.
+            FileUtils.insecureRecursiveDelete(destinationPath);
+            Files.createDirectory(destinationPath);
+
+            IndexWriterConfig indexWriterConfig = createIndexWriterConfig();
+            indexWriterConfig.setMergePolicy(NoMergePolicy.INSTANCE);
+            try (Directory destinationDirectory = openDestination(destinationPath);
+                 IndexWriter writer = new IndexWriter(destinationDirectory, indexWriterConfig)) {
+                Directory[] partDirectories = new Directory[partPaths.size()];
+                try {
+                    for (int i = 0; i < partDirectories.length; i++) {
+                        partDirectories[i] = openDirectory(partPaths.get(i));
+                    }
+                    writer.addIndexes(partDirectories);
+                } finally {
+                    IOUtils.close(partDirectories);
+                }
+                writer.commit();
+            }
+            success = true;
+        } finally {
+            // When checkpointing, partial indexes are kept after a failure so the next run can carry on.
+            if (success || !config.isCheckpointing()) {
+                for (Path partPath : partPaths) {
+                    FileUtils.insecureRecursiveDelete(partPath);
+                }
+            }
+        }
+    }
 
-        Files.move(path, oldPath);
-        Files.move(tempPath, path);
-        FileUtils.insecureRecursiveDelete(oldPath);
+    /**
+     * Splits readers into ranges of documents, giving each reader a number of ranges
+     * in proportion to its share of the documents.
+     *
+     * @param codecReaders the readers to split.
+     * @param rangeCount the total number of ranges wanted.
+     * @return the ranges, in document order.
+     */
+    private static List<CodecReader> splitIntoRanges(List<CodecReader> codecReaders, int rangeCount) {
+        long totalDocs = 0;
+        for (CodecReader codecReader : codecReaders) {
+            totalDocs += codecReader.numDocs();
+        }
+
+        List<CodecReader> ranges = new ArrayList<>();
+        for (CodecReader codecReader : codecReaders) {
+            int maxDoc = codecReader.maxDoc();
+            int readerRangeCount = totalDocs == 0 ? 1 : (int) (rangeCount * codecReader.numDocs() / totalDocs);
+            readerRangeCount = Math.max(1, Math.min(readerRangeCount, maxDoc));
+            if (readerRangeCount == 1) {
+                ranges.add(codecReader);
+                continue;
+            }
+            for (int i = 0; i < readerRangeCount; i++) {
+                int startDoc = (int) ((long) maxDoc * i / readerRangeCount);
+                int endDoc = (int) ((long) maxDoc * (i + 1) / readerRangeCount);
+                ranges.add(new DocRangeCodecReader(codecReader, startDoc, endDoc));
+            }
+        }
+        return ranges;
+    }
+
+    private IndexWriterConfig createIndexWriterConfig() {
+        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(new FailAnalyzer());
+        // Merging would rewrite the segments whose files were reused. When checkpointing or moving segments,
+        // each reader is added on its own, and merging those segments as they pile up would rewrite them
+        // over and over.
+        indexWriterConfig.setMergePolicy(config.isReuseUnchangedFiles() || config.isCheckpointing() ||
+                                         config.isLowDiskUsage() ? NoMergePolicy.INSTANCE
+                                                                 : new LogByteSizeMergePolicy());
+        indexWriterConfig.setMergeScheduler(new SerialMergeScheduler());
+        indexWriterConfig.setInfoStream(new AdaptedInfoStream(infoStream));
+        indexWriterConfig.setMergeComponentThreadCount(config.getMergeComponentThreadCount());
+        indexWriterConfig.setIndexCreatedVersionMajor(7);
+        return indexWriterConfig;
     }
 
     /**
@@ -114,6 +676,63 @@ public class VersionUpgrader7 implements VersionUpgrader {
         }
     }
 
+    /**
+     * Exposes only a range of the documents in a reader, by treating all other documents as deleted.
+     * The merge then drops them, so adding the ranges of a reader in order gives the same
+     * documents in the same order as adding the reader itself.
+     */
+    private static class DocRangeCodecReader extends FilterCodecReader {
+        private final Bits liveDocs;
+        private final int numDocs;
+        private final int rangeDocCount;
+
+        private DocRangeCodecReader(CodecReader in, int startDoc, int endDoc) {
+            super(in);
+            rangeDocCount = endDoc - startDoc;
+
+            Bits inLiveDocs = in.getLiveDocs();
+            liveDocs = new Bits() {
+                @Override
+                public boolean get(int index) {
+                    return index >= startDoc && index < endDoc && (inLiveDocs == null || inLiveDocs.get(index));
+                }
+
+                @Override
+                public int length() {
+                    return in.maxDoc();
+                }
+            };
+
+            int count = 0;
+            for (int doc = startDoc; doc < endDoc; doc++) {
+                if (inLiveDocs == null || inLiveDocs.get(doc)) {
+                    count++;
+                }
+            }
+            numDocs = count;
+        }
+
+        @Override
+        public Bits getLiveDocs() {
+            return liveDocs;
+        }
+
+        @Override
+        public int numDocs() {
+            return numDocs;
+        }
+
+        @Override
+        public CacheHelper getReaderCacheHelper() {
+            return null;
+        }
+
+        @Override
+        public CacheHelper getCoreCacheHelper() {
+            return null;
+        }
+    }
+
     /**
      * An analyser which deliberately fails, because we don't want to be analysing text at all.
      */
@@ -493,21 +493,14 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
       } else if (matchingFieldsReader.getCompressionMode() == compressionMode && 
                  matchingFieldsReader.getChunkSize() == chunkSize && 
                  matchingFieldsReader.getPackedIntsVersion() == PackedInts.VERSION_CURRENT &&
-                 liveDocs == null &&
                  !tooDirty(matchingFieldsReader)) { 
         // optimized merge, raw byte copy
-        // its not worth fine-graining this if there are deletions.
+        // chunks with deleted docs fall back to copying serialized docs, the rest are still copied raw.
         
         // if the format is older, its always handled by the naive merge case above
         assert matchingFieldsReader.getVersion() == VERSION_CURRENT;        
         matchingFieldsReader.checkIntegrity();
         
-        // flush any pending chunks
-        if (numBufferedDocs > 0) {
-          flush();
-          numDirtyChunks++; // incomplete: we had to force this flush
-        }
-        
         // iterate over each chunk. we use the stored fields index to find chunk boundaries,
         // read the docstart + doccount from the chunk header (we write a new header, since doc numbers will change),
         // and just copy the bytes directly.
@@ -515,6 +508,7 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
         CompressingStoredFieldsIndexReader index = matchingFieldsReader.getIndexReader();
         rawDocs.seek(index.getStartPointer(0));
         int docID = 0;
+        long copiedChunks = 0;
         while (docID < maxDoc) {
           // read header
           int base = rawDocs.readVInt();
@@ -522,39 +516,64 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
             throw new CorruptIndexException("invalid state: base=" + base + ", docID=" + docID, rawDocs);
           }
           int code = rawDocs.readVInt();
+          int chunkDocs = code >>> 1;
+          int chunkEnd = docID + chunkDocs;
           
-          // write a new index entry and new header for this chunk.
-          int bufferedDocs = code >>> 1;
-          indexWriter.writeIndex(bufferedDocs, fieldsStream.getFilePointer());
-          fieldsStream.writeVInt(docBase); // rebase
-          fieldsStream.writeVInt(code);
-          docID += bufferedDocs;
-          docBase += bufferedDocs;
-          docCount += bufferedDocs;
-          
-          if (docID > maxDoc) {
-            throw new CorruptIndexException("invalid state: base=" + base + ", count=" + bufferedDocs + ", maxDoc=" + maxDoc, rawDocs);
+          if (chunkEnd > maxDoc) {
+            throw new CorruptIndexException("invalid state: base=" + base + ", count=" + chunkDocs + ", maxDoc=" + maxDoc, rawDocs);
           }
           
-          // copy bytes until the next chunk boundary (or end of chunk data).
           // using the stored fields index for this isn't the most efficient, but fast enough
           // and is a source of redundancy for detecting bad things.
           final long end;
-          if (docID == maxDoc) {
+          if (chunkEnd == maxDoc) {
             end = matchingFieldsReader.getMaxPointer();
           } else {
-            end = index.getStartPointer(docID);
+            end = index.getStartPointer(chunkEnd);
+          }
+          
+          if (allLive(liveDocs, docID, chunkEnd)) {
+            // flush any pending chunks
+            if (numBufferedDocs > 0) {
+              flush();
+              numDirtyChunks++; // incomplete: we had to force this flush
+            }
+            
+            // write a new index entry and new header for this chunk.
+            indexWriter.writeIndex(chunkDocs, fieldsStream.getFilePointer());
+            fieldsStream.writeVInt(docBase); // rebase
+            fieldsStream.writeVInt(code);
+            docBase += chunkDocs;
+            docCount += chunkDocs;
+            
+            // copy bytes until the next chunk boundary (or end of chunk data).
+            fieldsStream.copyBytes(rawDocs, end - rawDocs.getFilePointer());
+            copiedChunks++;
+          } else {
+            for (int chunkDocID = docID; chunkDocID < chunkEnd; chunkDocID++) {
+              if (liveDocs.get(chunkDocID) == false) {
+                continue;
+              }
+              SerializedDocument doc = matchingFieldsReader.document(chunkDocID);
+              startDocument();
+              bufferedDocs.copyBytes(doc.in, doc.length);
+              numStoredFieldsInDoc = doc.numStoredFields;
+              finishDocument();
+              ++docCount;
+            }
+            // reading the docs moves the same stream, so skip to the next chunk explicitly.
+            rawDocs.seek(end);
           }
-          fieldsStream.copyBytes(rawDocs, end - rawDocs.getFilePointer());
+          docID = chunkEnd;
         }
                
         if (rawDocs.getFilePointer() != matchingFieldsReader.getMaxPointer()) {
           throw new CorruptIndexException("invalid state: pos=" + rawDocs.getFilePointer() + ", max=" + matchingFieldsReader.getMaxPointer(), rawDocs);
         }
         
-        // since we bulk merged all chunks, we inherit any dirty ones from this segment.
-        numChunks += matchingFieldsReader.getNumChunks();
-        numDirtyChunks += matchingFieldsReader.getNumDirtyChunks();
+        // we inherit any dirty chunks from this segment, but only the chunks we copied can be dirty.
+        numChunks += copiedChunks;
+        numDirtyChunks += Math.min(matchingFieldsReader.getNumDirtyChunks(), copiedChunks);
       } else {
         // optimized merge, we copy serialized (but decompressed) bytes directly
         // even on simple docs (1 stored field), it seems to help by about 20%
@@ -586,6 +605,18 @@ public final class CompressingStoredFieldsWriter extends StoredFieldsWriter {
            candidate.getNumDirtyChunks() * 100 > candidate.getNumChunks();
   }
 
+  private static boolean allLive(Bits liveDocs, int startDoc, int endDoc) {
+    if (liveDocs == null) {
+      return true;
+    }
+    for (int docID = startDoc; docID < endDoc; docID++) {
+      if (liveDocs.get(docID) == false) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   private static class CompressingStoredFieldsMergeSub extends DocIDMerger.Sub {
     private final CompressingStoredFieldsReader reader;
     private final int maxDoc;
@@ -131,7 +131,8 @@ public class Lucene60PointsWriter extends PointsWriter implements Closeable {
   @Override
   public void merge(MergeState mergeState) throws IOException {
     for(PointsReader reader : mergeState.pointsReaders) {
-      if (reader instanceof Lucene60PointsReader == false) {
+      // Segments without points have no reader, which shouldn't stop the others being bulk merged:
+      if (reader != null && reader instanceof Lucene60PointsReader == false) {
         // We can only bulk merge when all to-be-merged segments use our format:
         super.merge(mergeState);
         return;
@@ -196,8 +196,9 @@ public class ConcurrentMergeScheduler extends MergeScheduler {
         assert context.context == IOContext.Context.MERGE: "got context=" + context.context;
         
         // Because rateLimiter is bound to a particular merge thread, this method should
-        // always be called from that context. Verify this.
-        assert mergeThread == Thread.currentThread() : "Not the same merge thread, current="
+        // always be called from that context, or from a thread merging part of the segment
+        // on its behalf. Verify this.
+        assert merge.getMergeProgress().isMergeThread(Thread.currentThread()) : "Not the same merge thread, current="
           + Thread.currentThread() + ", expected=" + mergeThread;
 
         return new RateLimitedIndexOutput(rateLimiter, in.createOutput(name, context));
@@ -80,6 +80,8 @@ public class LiveIndexWriterConfig {
 
   protected String softDeletesField = null;
 
+  protected volatile int mergeComponentThreadCount = 1;
+
   // used by IndexWriterConfig
   LiveIndexWriterConfig(Analyzer analyzer) {
     this.analyzer = analyzer;
@@ -248,6 +250,10 @@ public class LiveIndexWriterConfig {
     return softDeletesField;
   }
 
+  public int getMergeComponentThreadCount() {
+    return mergeComponentThreadCount;
+  }
+
   @Override
   public String toString() {
     StringBuilder sb = new StringBuilder();
@@ -272,6 +278,7 @@ public class LiveIndexWriterConfig {
     sb.append("indexSort=").append(getIndexSort()).append("\n");
     sb.append("checkPendingFlushOnUpdate=").append(isCheckPendingFlushOnUpdate()).append("\n");
     sb.append("softDeletesField=").append(getSoftDeletesField()).append("\n");
+    sb.append("mergeComponentThreadCount=").append(getMergeComponentThreadCount()).append("\n");
     return sb.toString();
   }
 }
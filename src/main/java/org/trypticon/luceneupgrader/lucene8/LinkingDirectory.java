@@ -0,0 +1,38 @@
+package org.trypticon.luceneupgrader.lucene8;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.IOContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Directory which copies files from another file system directory by hard-linking them
+ * instead of copying their contents. Falls back to copying when the file system can't
+ * link between the two directories.
+ * Lucene never modifies a file once it has been written, so sharing the file between
+ * two indexes is safe.
+ */
+class LinkingDirectory extends FilterDirectory {
+    LinkingDirectory(Directory in) {
+        super(in);
+    }
+
+    @Override
+    public void copyFrom(Directory from, String src, String dest, IOContext context) throws IOException {
+        Directory fromDirectory = FilterDirectory.unwrap(from);
+        Directory toDirectory = FilterDirectory.unwrap(in);
+        if (fromDirectory instanceof FSDirectory && toDirectory instanceof FSDirectory) {
+            try {
+                Files.createLink(((FSDirectory) toDirectory).getDirectory().resolve(dest),
+                                 ((FSDirectory) fromDirectory).getDirectory().resolve(src));
+                return;
+            } catch (IOException | UnsupportedOperationException e) {
+                // Different file systems, or links aren't supported. Copy instead.
+            }
+        }
+        super.copyFrom(from, src, dest, context);
+    }
+}
@@ -0,0 +1,1007 @@
+package org.trypticon.luceneupgrader.lucene8;
+
+import org.apache.lucene.codecs.DocValuesProducer;
+import org.apache.lucene.codecs.FieldsProducer;
+import org.apache.lucene.codecs.NormsProducer;
+import org.apache.lucene.codecs.PointsReader;
+import org.apache.lucene.codecs.StoredFieldsReader;
+import org.apache.lucene.codecs.TermVectorsReader;
+import org.apache.lucene.index.BaseTermsEnum;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.CodecReader;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.Fields;
+import org.apache.lucene.index.ImpactsEnum;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.LeafMetaData;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SlowImpactsEnum;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.StoredFieldVisitor;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.Version;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Iterator;
+
+/**
+ * Presents a segment read by Lucene 7 as a Lucene 8 {@link CodecReader}, so that Lucene 8 can
+ * merge it without it first being written out in Lucene 7 format. Lucene 7's codecs can read
+ * Lucene 6 segments, so this lets a Lucene 6 index go straight to Lucene 8.
+ * Only what merging uses is passed through. Lucene 7's objects are wrapped as they are asked
+ * for, and byte arrays are shared rather than copied.
+ */
+class Lucene7CodecReader extends CodecReader {
+    private final org.trypticon.luceneupgrader.lucene7.internal.lucene.index.CodecReader in;
+    private final FieldInfos fieldInfos;
+    private final LeafMetaData metaData;
+    private final Bits liveDocs;
+
+    Lucene7CodecReader(org.trypticon.luceneupgrader.lucene7.internal.lucene.index.CodecReader in) {
+        this.in = in;
+
+        org.trypticon.luceneupgrader.lucene7.internal.lucene.index.FieldInfos inFieldInfos = in.getFieldInfos();
+        FieldInfo[] infos = new FieldInfo[inFieldInfos.size()];
+        int i = 0;
+        for (org.trypticon.luceneupgrader.lucene7.internal.lucene.index.FieldInfo inInfo : inFieldInfos) {
+            infos[i++] = new FieldInfo(inInfo.name, inInfo.number, inInfo.hasVectors(), inInfo.omitsNorms(),
+                                       inInfo.hasPayloads(), IndexOptions.valueOf(inInfo.getIndexOptions().name()),
+                                       DocValuesType.valueOf(inInfo.getDocValuesType().name()),
+                                       inInfo.getDocValuesGen(), new HashMap<>(inInfo.attributes()),
+                                       inInfo.getPointDataDimensionCount(), inInfo.getPointIndexDimensionCount(),
+                                       inInfo.getPointNumBytes(), inInfo.isSoftDeletesField());
+        }
+        fieldInfos = new FieldInfos(infos);
+
+        org.trypticon.luceneupgrader.lucene7.internal.lucene.index.LeafMetaData inMetaData = in.getMetaData();
+        Version minVersion = null;
+        if (inMetaData.getMinVersion() != null) {
+            try {
+                minVersion = Version.parse(inMetaData.getMinVersion().toString());
+            } catch (ParseException e) {
+                throw new IllegalStateException("Lucene 8 can't parse a Lucene 7 version: " +
+                                                inMetaData.getMinVersion(), e);
+            }
+        }
+        // The writer has no index sort, so the segments it writes have none either way.
+        metaData = new LeafMetaData(inMetaData.getCreatedVersionMajor(), minVersion, null);
+
+        org.trypticon.luceneupgrader.lucene7.internal.lucene.util.Bits inLiveDocs = in.getLiveDocs();
+        liveDocs = inLiveDocs == null ? null : new Bits() {
+            @Override
+            public boolean get(int index) {
+                return inLiveDocs.get(index);
+            }
+
+            @Override
+            public int length() {
+                return inLiveDocs.length();
+            }
+        };
+    }
+
+    @Override
+    public StoredFieldsReader getFieldsReader() {
+        org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.StoredFieldsReader reader = in.getFieldsReader();
+        return reader == null ? null : new AdaptedStoredFieldsReader(reader);
+    }
+
+    @Override
+    public TermVectorsReader getTermVectorsReader() {
+        org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.TermVectorsReader reader = in.getTermVectorsReader();
+        return reader == null ? null : new AdaptedTermVectorsReader(reader);
+    }
+
+    @Override
+    public NormsProducer getNormsReader() {
+        org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.NormsProducer producer = in.getNormsReader();
+        return producer == null ? null : new AdaptedNormsProducer(producer);
+    }
+
+    @Override
+    public DocValuesProducer getDocValuesReader() {
+        org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.DocValuesProducer producer = in.getDocValuesReader();
+        return producer == null ? null : new AdaptedDocValuesProducer(producer);
+    }
+
+    @Override
+    public FieldsProducer getPostingsReader() {
+        org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.FieldsProducer producer = in.getPostingsReader();
+        return producer == null ? null : new AdaptedFieldsProducer(producer);
+    }
+
+    @Override
+    public PointsReader getPointsReader() {
+        org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.PointsReader reader = in.getPointsReader();
+        return reader == null ? null : new AdaptedPointsReader(reader);
+    }
+
+    @Override
+    public FieldInfos getFieldInfos() {
+        return fieldInfos;
+    }
+
+    @Override
+    public Bits getLiveDocs() {
+        return liveDocs;
+    }
+
+    @Override
+    public LeafMetaData getMetaData() {
+        return metaData;
+    }
+
+    @Override
+    public int numDocs() {
+        return in.numDocs();
+    }
+
+    @Override
+    public int maxDoc() {
+        return in.maxDoc();
+    }
+
+    @Override
+    public CacheHelper getCoreCacheHelper() {
+        return null;
+    }
+
+    @Override
+    public CacheHelper getReaderCacheHelper() {
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return "Lucene7CodecReader(" + in + ")";
+    }
+
+    /**
+     * Gets the name of the segment being read.
+     *
+     * @return the name, or {@code null} if the reader being adapted doesn't read a segment.
+     */
+    String getSegmentName() {
+        org.trypticon.luceneupgrader.lucene7.internal.lucene.index.CodecReader reader = in;
+        while (reader instanceof org.trypticon.luceneupgrader.lucene7.internal.lucene.index.FilterCodecReader) {
+            reader = ((org.trypticon.luceneupgrader.lucene7.internal.lucene.index.FilterCodecReader) reader).getDelegate();
+        }
+        return reader instanceof org.trypticon.luceneupgrader.lucene7.internal.lucene.index.SegmentReader
+               ? ((org.trypticon.luceneupgrader.lucene7.internal.lucene.index.SegmentReader) reader).getSegmentInfo().info.name
+               : null;
+    }
+
+    private org.trypticon.luceneupgrader.lucene7.internal.lucene.index.FieldInfo inFieldInfo(FieldInfo fieldInfo) {
+        return in.getFieldInfos().fieldInfo(fieldInfo.number);
+    }
+
+    private static BytesRef adapt(org.trypticon.luceneupgrader.lucene7.internal.lucene.util.BytesRef bytes,
+                                  BytesRef scratch) {
+        if (bytes == null) {
+            return null;
+        }
+        scratch.bytes = bytes.bytes;
+        scratch.offset = bytes.offset;
+        scratch.length = bytes.length;
+        return scratch;
+    }
+
+    private static org.trypticon.luceneupgrader.lucene7.internal.lucene.util.BytesRef unadapt(BytesRef bytes) {
+        return new org.trypticon.luceneupgrader.lucene7.internal.lucene.util.BytesRef(bytes.bytes, bytes.offset,
+                                                                                      bytes.length);
+    }
+
+    private class AdaptedStoredFieldsReader extends StoredFieldsReader {
+        private final org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.StoredFieldsReader in;
+
+        private AdaptedStoredFieldsReader(org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.StoredFieldsReader in) {
+            this.in = in;
+        }
+
+        @Override
+        public void visitDocument(int docID, StoredFieldVisitor visitor) throws IOException {
+            in.visitDocument(docID, new org.trypticon.luceneupgrader.lucene7.internal.lucene.index.StoredFieldVisitor() {
+                @Override
+                public Status needsField(org.trypticon.luceneupgrader.lucene7.internal.lucene.index.FieldInfo fieldInfo) throws IOException {
+                    return Status.valueOf(visitor.needsField(fieldInfos.fieldInfo(fieldInfo.number)).name());
+                }
+
+                @Override
+                public void binaryField(org.trypticon.luceneupgrader.lucene7.internal.lucene.index.FieldInfo fieldInfo, byte[] value) throws IOException {
+                    visitor.binaryField(fieldInfos.fieldInfo(fieldInfo.number), value);
+                }
+
+                @Override
+                public void stringField(org.trypticon.luceneupgrader.lucene7.internal.lucene.index.FieldInfo fieldInfo, byte[] value) throws IOException {
+                    visitor.stringField(fieldInfos.fieldInfo(fieldInfo.number), value);
+                }
+
+                @Override
+                public void intField(org.trypticon.luceneupgrader.lucene7.internal.lucene.index.FieldInfo fieldInfo, int value) throws IOException {
+                    visitor.intField(fieldInfos.fieldInfo(fieldInfo.number), value);
+                }
+
+                @Override
+                public void longField(org.trypticon.luceneupgrader.lucene7.internal.lucene.index.FieldInfo fieldInfo, long value) throws IOException {
+                    visitor.longField(fieldInfos.fieldInfo(fieldInfo.number), value);
+                }
+
+                @Override
+                public void floatField(org.trypticon.luceneupgrader.lucene7.internal.lucene.index.FieldInfo fieldInfo, float value) throws IOException {
+                    visitor.floatField(fieldInfos.fieldInfo(fieldInfo.number), value);
+                }
+
+                @Override
+                public void doubleField(org.trypticon.luceneupgrader.lucene7.internal.lucene.index.FieldInfo fieldInfo, double value) throws IOException {
+                    visitor.doubleField(fieldInfos.fieldInfo(fieldInfo.number), value);
+                }
+            });
+        }
+
+        @Override
+        public StoredFieldsReader clone() {
+            return new AdaptedStoredFieldsReader(in.clone());
+        }
+
+        @Override
+        public StoredFieldsReader getMergeInstance() {
+            try {
+                return new AdaptedStoredFieldsReader(in.getMergeInstance());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void checkIntegrity() throws IOException {
+            in.checkIntegrity();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            return in.ramBytesUsed();
+        }
+    }
+
+    private static class AdaptedTermVectorsReader extends TermVectorsReader {
+        private final org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.TermVectorsReader in;
+
+        private AdaptedTermVectorsReader(org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.TermVectorsReader in) {
+            this.in = in;
+        }
+
+        @Override
+        public Fields get(int doc) throws IOException {
+            org.trypticon.luceneupgrader.lucene7.internal.lucene.index.Fields fields = in.get(doc);
+            return fields == null ? null : new AdaptedFields(fields);
+        }
+
+        @Override
+        public TermVectorsReader clone() {
+            return new AdaptedTermVectorsReader(in.clone());
+        }
+
+        @Override
+        public TermVectorsReader getMergeInstance() {
+            try {
+                return new AdaptedTermVectorsReader(in.getMergeInstance());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void checkIntegrity() throws IOException {
+            in.checkIntegrity();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            return in.ramBytesUsed();
+        }
+    }
+
+    private class AdaptedNormsProducer extends NormsProducer {
+        private final org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.NormsProducer in;
+
+        private AdaptedNormsProducer(org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.NormsProducer in) {
+            this.in = in;
+        }
+
+        @Override
+        public NumericDocValues getNorms(FieldInfo field) throws IOException {
+            return new AdaptedNumericDocValues(in.getNorms(inFieldInfo(field)));
+        }
+
+        @Override
+        public NormsProducer getMergeInstance() {
+            try {
+                return new AdaptedNormsProducer(in.getMergeInstance());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void checkIntegrity() throws IOException {
+            in.checkIntegrity();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            return in.ramBytesUsed();
+        }
+    }
+
+    private class AdaptedDocValuesProducer extends DocValuesProducer {
+        private final org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.DocValuesProducer in;
+
+        private AdaptedDocValuesProducer(org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.DocValuesProducer in) {
+            this.in = in;
+        }
+
+        @Override
+        public NumericDocValues getNumeric(FieldInfo field) throws IOException {
+            return new AdaptedNumericDocValues(in.getNumeric(inFieldInfo(field)));
+        }
+
+        @Override
+        public BinaryDocValues getBinary(FieldInfo field) throws IOException {
+            return new AdaptedBinaryDocValues(in.getBinary(inFieldInfo(field)));
+        }
+
+        @Override
+        public SortedDocValues getSorted(FieldInfo field) throws IOException {
+            return new AdaptedSortedDocValues(in.getSorted(inFieldInfo(field)));
+        }
+
+        @Override
+        public SortedNumericDocValues getSortedNumeric(FieldInfo field) throws IOException {
+            return new AdaptedSortedNumericDocValues(in.getSortedNumeric(inFieldInfo(field)));
+        }
+
+        @Override
+        public SortedSetDocValues getSortedSet(FieldInfo field) throws IOException {
+            return new AdaptedSortedSetDocValues(in.getSortedSet(inFieldInfo(field)));
+        }
+
+        @Override
+        public DocValuesProducer getMergeInstance() {
+            try {
+                return new AdaptedDocValuesProducer(in.getMergeInstance());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void checkIntegrity() throws IOException {
+            in.checkIntegrity();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            return in.ramBytesUsed();
+        }
+    }
+
+    private static class AdaptedFieldsProducer extends FieldsProducer {
+        private final org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.FieldsProducer in;
+
+        private AdaptedFieldsProducer(org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.FieldsProducer in) {
+            this.in = in;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return in.iterator();
+        }
+
+        @Override
+        public Terms terms(String field) throws IOException {
+            org.trypticon.luceneupgrader.lucene7.internal.lucene.index.Terms terms = in.terms(field);
+            return terms == null ? null : new AdaptedTerms(terms);
+        }
+
+        @Override
+        public int size() {
+            return in.size();
+        }
+
+        @Override
+        public FieldsProducer getMergeInstance() {
+            try {
+                return new AdaptedFieldsProducer(in.getMergeInstance());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void checkIntegrity() throws IOException {
+            in.checkIntegrity();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            return in.ramBytesUsed();
+        }
+    }
+
+    private static class AdaptedPointsReader extends PointsReader {
+        private final org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.PointsReader in;
+
+        private AdaptedPointsReader(org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.PointsReader in) {
+            this.in = in;
+        }
+
+        @Override
+        public PointValues getValues(String field) throws IOException {
+            org.trypticon.luceneupgrader.lucene7.internal.lucene.index.PointValues values = in.getValues(field);
+            return values == null ? null : new AdaptedPointValues(values);
+        }
+
+        @Override
+        public PointsReader getMergeInstance() {
+            try {
+                return new AdaptedPointsReader(in.getMergeInstance());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public void checkIntegrity() throws IOException {
+            in.checkIntegrity();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        @Override
+        public long ramBytesUsed() {
+            return in.ramBytesUsed();
+        }
+    }
+
+    private static class AdaptedFields extends Fields {
+        private final org.trypticon.luceneupgrader.lucene7.internal.lucene.index.Fields in;
+
+        private AdaptedFields(org.trypticon.luceneupgrader.lucene7.internal.lucene.index.Fields in) {
+            this.in = in;
+        }
+
+        @Override
+        public Iterator<String> iterator() {
+            return in.iterator();
+        }
+
+        @Override
+        public Terms terms(String field) throws IOException {
+            org.trypticon.luceneupgrader.lucene7.internal.lucene.index.Terms terms = in.terms(field);
+            return terms == null ? null : new AdaptedTerms(terms);
+        }
+
+        @Override
+        public int size() {
+            return in.size();
+        }
+    }
+
+    private static class AdaptedTerms extends Terms {
+        private final org.trypticon.luceneupgrader.lucene7.internal.lucene.index.Terms in;
+
+        private AdaptedTerms(org.trypticon.luceneupgrader.lucene7.internal.lucene.index.Terms in) {
+            this.in = in;
+        }
+
+        @Override
+        public TermsEnum iterator() throws IOException {
+            return new AdaptedTermsEnum(in.iterator());
+        }
+
+        @Override
+        public long size() throws IOException {
+            return in.size();
+        }
+
+        @Override
+        public long getSumTotalTermFreq() throws IOException {
+            return in.getSumTotalTermFreq();
+        }
+
+        @Override
+        public long getSumDocFreq() throws IOException {
+            return in.getSumDocFreq();
+        }
+
+        @Override
+        public int getDocCount() throws IOException {
+            return in.getDocCount();
+        }
+
+        @Override
+        public boolean hasFreqs() {
+            return in.hasFreqs();
+        }
+
+        @Override
+        public boolean hasOffsets() {
+            return in.hasOffsets();
+        }
+
+        @Override
+        public boolean hasPositions() {
+            return in.hasPositions();
+        }
+
+        @Override
+        public boolean hasPayloads() {
+            return in.hasPayloads();
+        }
+    }
+
+    private static class AdaptedTermsEnum extends BaseTermsEnum {
+        private final org.trypticon.luceneupgrader.lucene7.internal.lucene.index.TermsEnum in;
+        private final BytesRef term = new BytesRef();
+
+        private AdaptedTermsEnum(org.trypticon.luceneupgrader.lucene7.internal.lucene.index.TermsEnum in) {
+            this.in = in;
+        }
+
+        @Override
+        public boolean seekExact(BytesRef text) throws IOException {
+            return in.seekExact(unadapt(text));
+        }
+
+        @Override
+        public SeekStatus seekCeil(BytesRef text) throws IOException {
+            return SeekStatus.valueOf(in.seekCeil(unadapt(text)).name());
+        }
+
+        @Override
+        public void seekExact(long ord) throws IOException {
+            in.seekExact(ord);
+        }
+
+        @Override
+        public BytesRef next() throws IOException {
+            return adapt(in.next(), term);
+        }
+
+        @Override
+        public BytesRef term() throws IOException {
+            return adapt(in.term(), term);
+        }
+
+        @Override
+        public long ord() throws IOException {
+            return in.ord();
+        }
+
+        @Override
+        public int docFreq() throws IOException {
+            return in.docFreq();
+        }
+
+        @Override
+        public long totalTermFreq() throws IOException {
+            return in.totalTermFreq();
+        }
+
+        @Override
+        public PostingsEnum postings(PostingsEnum reuse, int flags) throws IOException {
+            // The flags have the same values in both versions.
+            if (reuse instanceof AdaptedPostingsEnum) {
+                AdaptedPostingsEnum adaptedReuse = (AdaptedPostingsEnum) reuse;
+                org.trypticon.luceneupgrader.lucene7.internal.lucene.index.PostingsEnum postings =
+                    in.postings(adaptedReuse.in, flags);
+                if (postings == adaptedReuse.in) {
+                    return adaptedReuse;
+                }
+                return new AdaptedPostingsEnum(postings);
+            }
+            return new AdaptedPostingsEnum(in.postings(null, flags));
+        }
+
+        @Override
+        public ImpactsEnum impacts(int flags) throws IOException {
+            return new SlowImpactsEnum(postings(null, flags));
+        }
+    }
+
+    private static class AdaptedPostingsEnum extends PostingsEnum {
+        private final org.trypticon.luceneupgrader.lucene7.internal.lucene.index.PostingsEnum in;
+        private final BytesRef payload = new BytesRef();
+
+        private AdaptedPostingsEnum(org.trypticon.luceneupgrader.lucene7.internal.lucene.index.PostingsEnum in) {
+            this.in = in;
+        }
+
+        @Override
+        public int freq() throws IOException {
+            return in.freq();
+        }
+
+        @Override
+        public int nextPosition() throws IOException {
+            return in.nextPosition();
+        }
+
+        @Override
+        public int startOffset() throws IOException {
+            return in.startOffset();
+        }
+
+        @Override
+        public int endOffset() throws IOException {
+            return in.endOffset();
+        }
+
+        @Override
+        public BytesRef getPayload() throws IOException {
+            return adapt(in.getPayload(), payload);
+        }
+
+        @Override
+        public int docID() {
+            return in.docID();
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+            return in.nextDoc();
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+            return in.advance(target);
+        }
+
+        @Override
+        public long cost() {
+            return in.cost();
+        }
+    }
+
+    private static class AdaptedNumericDocValues extends NumericDocValues {
+        private final org.trypticon.luceneupgrader.lucene7.internal.lucene.index.NumericDocValues in;
+
+        private AdaptedNumericDocValues(org.trypticon.luceneupgrader.lucene7.internal.lucene.index.NumericDocValues in) {
+            this.in = in;
+        }
+
+        @Override
+        public long longValue() throws IOException {
+            return in.longValue();
+        }
+
+        @Override
+        public boolean advanceExact(int target) throws IOException {
+            return in.advanceExact(target);
+        }
+
+        @Override
+        public int docID() {
+            return in.docID();
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+            return in.nextDoc();
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+            return in.advance(target);
+        }
+
+        @Override
+        public long cost() {
+            return in.cost();
+        }
+    }
+
+    private static class AdaptedBinaryDocValues extends BinaryDocValues {
+        private final org.trypticon.luceneupgrader.lucene7.internal.lucene.index.BinaryDocValues in;
+        private final BytesRef value = new BytesRef();
+
+        private AdaptedBinaryDocValues(org.trypticon.luceneupgrader.lucene7.internal.lucene.index.BinaryDocValues in) {
+            this.in = in;
+        }
+
+        @Override
+        public BytesRef binaryValue() throws IOException {
+            return adapt(in.binaryValue(), value);
+        }
+
+        @Override
+        public boolean advanceExact(int target) throws IOException {
+            return in.advanceExact(target);
+        }
+
+        @Override
+        public int docID() {
+            return in.docID();
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+            return in.nextDoc();
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+            return in.advance(target);
+        }
+
+        @Override
+        public long cost() {
+            return in.cost();
+        }
+    }
+
+    private static class AdaptedSortedDocValues extends SortedDocValues {
+        private final org.trypticon.luceneupgrader.lucene7.internal.lucene.index.SortedDocValues in;
+        private final BytesRef term = new BytesRef();
+
+        private AdaptedSortedDocValues(org.trypticon.luceneupgrader.lucene7.internal.lucene.index.SortedDocValues in) {
+            this.in = in;
+        }
+
+        @Override
+        public int ordValue() throws IOException {
+            return in.ordValue();
+        }
+
+        @Override
+        public BytesRef lookupOrd(int ord) throws IOException {
+            return adapt(in.lookupOrd(ord), term);
+        }
+
+        @Override
+        public int getValueCount() {
+            return in.getValueCount();
+        }
+
+        @Override
+        public boolean advanceExact(int target) throws IOException {
+            return in.advanceExact(target);
+        }
+
+        @Override
+        public int docID() {
+            return in.docID();
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+            return in.nextDoc();
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+            return in.advance(target);
+        }
+
+        @Override
+        public long cost() {
+            return in.cost();
+        }
+    }
+
+    private static class AdaptedSortedNumericDocValues extends SortedNumericDocValues {
+        private final org.trypticon.luceneupgrader.lucene7.internal.lucene.index.SortedNumericDocValues in;
+
+        private AdaptedSortedNumericDocValues(org.trypticon.luceneupgrader.lucene7.internal.lucene.index.SortedNumericDocValues in) {
+            this.in = in;
+        }
+
+        @Override
+        public long nextValue() throws IOException {
+            return in.nextValue();
+        }
+
+        @Override
+        public int docValueCount() {
+            return in.docValueCount();
+        }
+
+        @Override
+        public boolean advanceExact(int target) throws IOException {
+            return in.advanceExact(target);
+        }
+
+        @Override
+        public int docID() {
+            return in.docID();
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+            return in.nextDoc();
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+            return in.advance(target);
+        }
+
+        @Override
+        public long cost() {
+            return in.cost();
+        }
+    }
+
+    private static class AdaptedSortedSetDocValues extends SortedSetDocValues {
+        private final org.trypticon.luceneupgrader.lucene7.internal.lucene.index.SortedSetDocValues in;
+        private final BytesRef term = new BytesRef();
+
+        private AdaptedSortedSetDocValues(org.trypticon.luceneupgrader.lucene7.internal.lucene.index.SortedSetDocValues in) {
+            this.in = in;
+        }
+
+        @Override
+        public long nextOrd() throws IOException {
+            return in.nextOrd();
+        }
+
+        @Override
+        public BytesRef lookupOrd(long ord) throws IOException {
+            return adapt(in.lookupOrd(ord), term);
+        }
+
+        @Override
+        public long getValueCount() {
+            return in.getValueCount();
+        }
+
+        @Override
+        public boolean advanceExact(int target) throws IOException {
+            return in.advanceExact(target);
+        }
+
+        @Override
+        public int docID() {
+            return in.docID();
+        }
+
+        @Override
+        public int nextDoc() throws IOException {
+            return in.nextDoc();
+        }
+
+        @Override
+        public int advance(int target) throws IOException {
+            return in.advance(target);
+        }
+
+        @Override
+        public long cost() {
+            return in.cost();
+        }
+    }
+
+    private static class AdaptedPointValues extends PointValues {
+        private final org.trypticon.luceneupgrader.lucene7.internal.lucene.index.PointValues in;
+
+        private AdaptedPointValues(org.trypticon.luceneupgrader.lucene7.internal.lucene.index.PointValues in) {
+            this.in = in;
+        }
+
+        @Override
+        public void intersect(IntersectVisitor visitor) throws IOException {
+            in.intersect(new AdaptedIntersectVisitor(visitor));
+        }
+
+        @Override
+        public long estimatePointCount(IntersectVisitor visitor) {
+            return in.estimatePointCount(new AdaptedIntersectVisitor(visitor));
+        }
+
+        @Override
+        public byte[] getMinPackedValue() throws IOException {
+            return in.getMinPackedValue();
+        }
+
+        @Override
+        public byte[] getMaxPackedValue() throws IOException {
+            return in.getMaxPackedValue();
+        }
+
+        @Override
+        public int getNumDimensions() throws IOException {
+            return in.getNumDataDimensions();
+        }
+
+        @Override
+        public int getNumIndexDimensions() throws IOException {
+            return in.getNumIndexDimensions();
+        }
+
+        @Override
+        public int getBytesPerDimension() throws IOException {
+            return in.getBytesPerDimension();
+        }
+
+        @Override
+        public long size() {
+            return in.size();
+        }
+
+        @Override
+        public int getDocCount() {
+            return in.getDocCount();
+        }
+    }
+
+    private static class AdaptedIntersectVisitor
+        implements org.trypticon.luceneupgrader.lucene7.internal.lucene.index.PointValues.IntersectVisitor {
+        private final PointValues.IntersectVisitor visitor;
+
+        private AdaptedIntersectVisitor(PointValues.IntersectVisitor visitor) {
+            this.visitor = visitor;
+        }
+
+        @Override
+        public void visit(int docID) throws IOException {
+            visitor.visit(docID);
+        }
+
+        @Override
+        public void visit(int docID, byte[] packedValue) throws IOException {
+            visitor.visit(docID, packedValue);
+        }
+
+        @Override
+        public org.trypticon.luceneupgrader.lucene7.internal.lucene.index.PointValues.Relation compare(
+            byte[] minPackedValue, byte[] maxPackedValue) {
+            return org.trypticon.luceneupgrader.lucene7.internal.lucene.index.PointValues.Relation.valueOf(
+                visitor.compare(minPackedValue, maxPackedValue).name());
+        }
+
+        @Override
+        public void grow(int count) {
+            visitor.grow(count);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.trypticon.luceneupgrader.lucene8;
+
+import org.apache.lucene.index.BaseCompositeReader;
+import org.apache.lucene.index.CodecReader;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.index.DirectoryReader;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.index.LeafReaderContext;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.Directory;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.FSDirectory;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.util.IOUtils;
+import org.trypticon.luceneupgrader.lucene7.MeteredDirectory;
+import org.trypticon.luceneupgrader.lucene7.ThrottledDirectory;
+import org.trypticon.luceneupgrader.IoThrottle;
+import org.trypticon.luceneupgrader.UpgradeProgress;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Reader for an index which Lucene 8 can't read itself, reading it through Lucene 7 instead,
+ * with each segment presented as a {@link Lucene7CodecReader}.
+ */
+class Lucene7IndexReader extends BaseCompositeReader<CodecReader> {
+    private final Directory directory;
+    private final DirectoryReader reader;
+
+    private Lucene7IndexReader(Directory directory, DirectoryReader reader, CodecReader[] subReaders) throws IOException {
+        super(subReaders);
+        this.directory = directory;
+        this.reader = reader;
+    }
+
+    /**
+     * Opens the latest commit of an index.
+     *
+     * @param path the directory containing the index.
+     * @param ioThrottle the throttle to read through, or {@code null} to read at full speed.
+     * @param progress the progress to report reads to.
+     * @return the reader.
+     * @throws IOException if an error occurs reading the index.
+     */
+    static Lucene7IndexReader open(Path path, @Nullable IoThrottle ioThrottle, UpgradeProgress progress)
+            throws IOException {
+        Directory directory = FSDirectory.open(path);
+        if (ioThrottle != null) {
+            directory = new ThrottledDirectory(directory, ioThrottle);
+        }
+        if (progress.isEnabled()) {
+            directory = new MeteredDirectory(directory, progress);
+        }
+        DirectoryReader reader = null;
+        boolean success = false;
+        try {
+            reader = DirectoryReader.open(directory);
+            List<LeafReaderContext> leaves = reader.leaves();
+            CodecReader[] subReaders = new CodecReader[leaves.size()];
+            for (int i = 0; i < subReaders.length; i++) {
+                subReaders[i] = new Lucene7CodecReader(
+                    (org.trypticon.luceneupgrader.lucene7.internal.lucene.index.CodecReader) leaves.get(i).reader());
+            }
+            Lucene7IndexReader indexReader = new Lucene7IndexReader(directory, reader, subReaders);
+            success = true;
+            return indexReader;
+        } finally {
+            if (!success) {
+                IOUtils.closeWhileHandlingException(reader, directory);
+            }
+        }
+    }
+
+    /**
+     * Gets the generation of the commit being read.
+     *
+     * @return the generation.
+     * @throws IOException if an error occurs reading the index.
+     */
+    long getGeneration() throws IOException {
+        return reader.getIndexCommit().getGeneration();
+    }
+
+    @Override
+    protected void doClose() throws IOException {
+        IOUtils.close(reader, directory);
+    }
+
+    @Override
+    public CacheHelper getReaderCacheHelper() {
+        return null;
+    }
+}
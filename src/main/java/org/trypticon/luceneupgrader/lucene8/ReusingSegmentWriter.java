@@ -0,0 +1,228 @@
+package org.trypticon.luceneupgrader.lucene8;
+
+import org.apache.lucene.codecs.Codec;
+import org.apache.lucene.codecs.DocValuesConsumer;
+import org.apache.lucene.codecs.FieldsConsumer;
+import org.apache.lucene.codecs.NormsConsumer;
+import org.apache.lucene.codecs.PointsWriter;
+import org.apache.lucene.codecs.lucene50.Lucene50StoredFieldsFormat;
+import org.apache.lucene.codecs.lucene50.Lucene50TermVectorsFormat;
+import org.apache.lucene.codecs.lucene60.Lucene60PointsFormat;
+import org.apache.lucene.codecs.perfield.PerFieldDocValuesFormat;
+import org.apache.lucene.codecs.perfield.PerFieldPostingsFormat;
+import org.apache.lucene.index.*;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.TrackingDirectoryWrapper;
+import org.apache.lucene.util.InfoStream;
+import org.apache.lucene.util.Version;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes a Lucene 8 segment for a Lucene 7 segment without re-encoding the parts whose
+ * on-disk format is the same in both versions. Stored fields, term vectors and points
+ * are linked into the new segment as they are. Doc values, norms and postings changed
+ * format in Lucene 8 so are written out again.
+ */
+class ReusingSegmentWriter {
+
+    /**
+     * Extensions of the files which are reused as they are.
+     */
+    private static final Set<String> REUSED_EXTENSIONS = new HashSet<>(Arrays.asList(
+        "fdt", "fdx", // stored fields
+        "tvd", "tvx"  // term vectors
+    ));
+
+    /**
+     * Extensions of the points files, which are reused when the old segment used the same points format.
+     */
+    private static final Set<String> POINTS_EXTENSIONS = new HashSet<>(Arrays.asList("dim", "dii"));
+
+    private static final String LIVE_DOCS_EXTENSION = "liv";
+
+    private static final String SEGMENT_NAME = "_0";
+
+    /**
+     * Tests whether a reader is a segment which can be written this way.
+     *
+     * @param reader the reader.
+     * @return {@code true} if it can be written this way.
+     */
+    static boolean canReuse(CodecReader reader) {
+        if (!(reader instanceof SegmentReader)) {
+            return false;
+        }
+        SegmentCommitInfo commitInfo = ((SegmentReader) reader).getSegmentInfo();
+        SegmentInfo info = commitInfo.info;
+        Codec codec = info.getCodec();
+        if (info.getIndexSort() != null || commitInfo.getSoftDelCount() != 0 ||
+            info.getVersion().major < 7 ||
+            !(codec.storedFieldsFormat() instanceof Lucene50StoredFieldsFormat) ||
+            !(codec.termVectorsFormat() instanceof Lucene50TermVectorsFormat)) {
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Writes a new index containing just the new segment.
+     *
+     * @param reader the reader for the old segment.
+     * @param directory the directory to write the new index to. Should be empty.
+     * @throws IOException if an error occurs reading or writing.
+     */
+    static void write(SegmentReader reader, Directory directory) throws IOException {
+        SegmentCommitInfo oldCommitInfo = reader.getSegmentInfo();
+        SegmentInfo oldInfo = oldCommitInfo.info;
+        Codec codec = Codec.getDefault();
+        boolean reusePoints = oldInfo.getCodec().pointsFormat() instanceof Lucene60PointsFormat &&
+                              codec.pointsFormat() instanceof Lucene60PointsFormat;
+
+        // Keeping the segment ID matters, because it's written into the header of every file.
+        // The min version is 8.0.0 even though Lucene 7 wrote the reused files. That's safe because
+        // Lucene 8 still reads version 1 of the compressing stored fields and term vectors formats,
+        // the only one Lucene 7 wrote, through the same codec it writes with. Readers go by the version
+        // in each file's header, not the min version, which only decides whether the next major
+        // version opens the segment at all.
+        SegmentInfo newInfo = new SegmentInfo(directory, Version.LATEST, Version.fromBits(8, 0, 0), SEGMENT_NAME,
+                                              oldInfo.maxDoc(), false, codec, new HashMap<>(oldInfo.getDiagnostics()),
+                                              oldInfo.getId(), new HashMap<>(oldInfo.getAttributes()), null);
+        TrackingDirectoryWrapper trackingDirectory = new TrackingDirectoryWrapper(directory);
+
+        Directory oldDirectory = oldInfo.getUseCompoundFile()
+            ? oldInfo.getCodec().compoundFormat().getCompoundReader(oldInfo.dir, oldInfo, IOContext.READONCE)
+            : oldInfo.dir;
+        try {
+            Collection<String> oldFiles = oldInfo.getUseCompoundFile()
+                ? Arrays.asList(oldDirectory.listAll())
+                : oldInfo.files();
+            for (String oldFile : oldFiles) {
+                String extension = IndexFileNames.getExtension(oldFile);
+                if (REUSED_EXTENSIONS.contains(extension) || (reusePoints && POINTS_EXTENSIONS.contains(extension))) {
+                    trackingDirectory.copyFrom(oldDirectory, oldFile,
+                                               SEGMENT_NAME + IndexFileNames.stripSegmentName(oldFile), IOContext.DEFAULT);
+                }
+            }
+        } finally {
+            if (oldDirectory != oldInfo.dir) {
+                oldDirectory.close();
+            }
+        }
+
+        // Live docs are tracked by the commit rather than the segment.
+        if (oldCommitInfo.hasDeletions()) {
+            long delGen = oldCommitInfo.getDelGen();
+            directory.copyFrom(oldInfo.dir,
+                               IndexFileNames.fileNameFromGeneration(oldInfo.name, LIVE_DOCS_EXTENSION, delGen),
+                               IndexFileNames.fileNameFromGeneration(SEGMENT_NAME, LIVE_DOCS_EXTENSION, delGen),
+                               IOContext.DEFAULT);
+        }
+
+        FieldInfos fieldInfos = copyFieldInfos(reader.getFieldInfos());
+        SegmentWriteState writeState = new SegmentWriteState(InfoStream.NO_OUTPUT, trackingDirectory, newInfo,
+                                                             fieldInfos, null, IOContext.DEFAULT);
+
+        if (reader.getPostingsReader() != null) {
+            try (FieldsConsumer consumer = codec.postingsFormat().fieldsConsumer(writeState)) {
+                consumer.write(reader.getPostingsReader(), reader.getNormsReader());
+            }
+        }
+
+        if (fieldInfos.hasDocValues()) {
+            try (DocValuesConsumer consumer = codec.docValuesFormat().fieldsConsumer(writeState)) {
+                writeDocValues(consumer, fieldInfos, reader);
+            }
+        }
+
+        if (fieldInfos.hasNorms()) {
+            try (NormsConsumer consumer = codec.normsFormat().normsConsumer(writeState)) {
+                for (FieldInfo fieldInfo : fieldInfos) {
+                    if (fieldInfo.hasNorms()) {
+                        consumer.addNormsField(fieldInfo, reader.getNormsReader());
+                    }
+                }
+            }
+        }
+
+        if (fieldInfos.hasPointValues() && !reusePoints) {
+            try (PointsWriter writer = codec.pointsFormat().fieldsWriter(writeState)) {
+                for (FieldInfo fieldInfo : fieldInfos) {
+                    if (fieldInfo.getPointDimensionCount() != 0) {
+                        writer.writeField(fieldInfo, reader.getPointsReader());
+                    }
+                }
+                writer.finish();
+            }
+        }
+
+        // Written last, because the doc values format records which files it used in the field attributes.
+        codec.fieldInfosFormat().write(trackingDirectory, newInfo, "", fieldInfos, IOContext.DEFAULT);
+
+        newInfo.setFiles(new HashSet<>(trackingDirectory.getCreatedFiles()));
+        codec.segmentInfoFormat().write(directory, newInfo, IOContext.DEFAULT);
+
+        SegmentInfos segmentInfos = new SegmentInfos(8);
+        segmentInfos.add(new SegmentCommitInfo(newInfo, oldCommitInfo.getDelCount(), 0,
+                                               oldCommitInfo.getDelGen(), -1, -1));
+        segmentInfos.commit(directory);
+    }
+
+    /**
+     * Copies field infos, dropping any doc values updates and the old choice of doc values and
+     * postings formats, as the doc values and postings are all written out again into the segment itself.
+     * Field numbers are kept, as the reused files refer to fields by number.
+     */
+    private static FieldInfos copyFieldInfos(FieldInfos oldFieldInfos) {
+        FieldInfo[] fieldInfos = new FieldInfo[oldFieldInfos.size()];
+        int i = 0;
+        for (FieldInfo oldFieldInfo : oldFieldInfos) {
+            Map<String, String> attributes = new HashMap<>(oldFieldInfo.attributes());
+            attributes.remove(PerFieldDocValuesFormat.PER_FIELD_FORMAT_KEY);
+            attributes.remove(PerFieldDocValuesFormat.PER_FIELD_SUFFIX_KEY);
+            attributes.remove(PerFieldPostingsFormat.PER_FIELD_FORMAT_KEY);
+            attributes.remove(PerFieldPostingsFormat.PER_FIELD_SUFFIX_KEY);
+            fieldInfos[i++] = new FieldInfo(oldFieldInfo.name, oldFieldInfo.number, oldFieldInfo.hasVectors(),
+                                            oldFieldInfo.omitsNorms(), oldFieldInfo.hasPayloads(),
+                                            oldFieldInfo.getIndexOptions(), oldFieldInfo.getDocValuesType(), -1,
+                                            attributes, oldFieldInfo.getPointDimensionCount(),
+                                            oldFieldInfo.getPointIndexDimensionCount(), oldFieldInfo.getPointNumBytes(),
+                                            oldFieldInfo.isSoftDeletesField());
+        }
+        return new FieldInfos(fieldInfos);
+    }
+
+    private static void writeDocValues(DocValuesConsumer consumer, FieldInfos fieldInfos,
+                                       CodecReader reader) throws IOException {
+        for (FieldInfo fieldInfo : fieldInfos) {
+            switch (fieldInfo.getDocValuesType()) {
+                case NONE:
+                    break;
+                case NUMERIC:
+                    consumer.addNumericField(fieldInfo, reader.getDocValuesReader());
+                    break;
+                case BINARY:
+                    consumer.addBinaryField(fieldInfo, reader.getDocValuesReader());
+                    break;
+                case SORTED:
+                    consumer.addSortedField(fieldInfo, reader.getDocValuesReader());
+                    break;
+                case SORTED_NUMERIC:
+                    consumer.addSortedNumericField(fieldInfo, reader.getDocValuesReader());
+                    break;
+                case SORTED_SET:
+                    consumer.addSortedSetField(fieldInfo, reader.getDocValuesReader());
+                    break;
+                default:
+                    throw new IllegalStateException("Unexpected doc values type: " + fieldInfo.getDocValuesType());
+            }
+        }
+    }
+}
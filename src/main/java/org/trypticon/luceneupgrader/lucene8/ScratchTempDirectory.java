@@ -0,0 +1,60 @@
+package org.trypticon.luceneupgrader.lucene8;
+
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.store.IndexOutput;
+import org.apache.lucene.util.IOUtils;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Directory which keeps temporary files, like the ones written while sorting points,
+ * in a separate scratch directory, so that they can go on a different disk to the index.
+ * Temporary files are only ever opened and deleted by name, so the names handed out
+ * are remembered to know which directory each file is in.
+ */
+class ScratchTempDirectory extends FilterDirectory {
+    private final Directory scratchDirectory;
+    private final Set<String> tempFiles = ConcurrentHashMap.newKeySet();
+
+    ScratchTempDirectory(Directory in, Directory scratchDirectory) {
+        super(in);
+        this.scratchDirectory = scratchDirectory;
+    }
+
+    @Override
+    public IndexOutput createTempOutput(String prefix, String suffix, IOContext context) throws IOException {
+        IndexOutput output = scratchDirectory.createTempOutput(prefix, suffix, context);
+        tempFiles.add(output.getName());
+        return output;
+    }
+
+    @Override
+    public IndexInput openInput(String name, IOContext context) throws IOException {
+        return tempFiles.contains(name) ? scratchDirectory.openInput(name, context) : in.openInput(name, context);
+    }
+
+    @Override
+    public long fileLength(String name) throws IOException {
+        return tempFiles.contains(name) ? scratchDirectory.fileLength(name) : in.fileLength(name);
+    }
+
+    @Override
+    public void deleteFile(String name) throws IOException {
+        if (tempFiles.contains(name)) {
+            scratchDirectory.deleteFile(name);
+            tempFiles.remove(name);
+        } else {
+            in.deleteFile(name);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOUtils.close(in, scratchDirectory);
+    }
+}
@@ -0,0 +1,209 @@
+package org.trypticon.luceneupgrader;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.nio.file.Path;
+
+/**
+ * Emits JDK Flight Recorder events for each step, each segment it writes and each component of
+ * those segments. This is the version for Java 11 and later, which is in the multi-release part
+ * of the jar. Its methods have to stay the same as the Java 8 version's in {@code src/main/java}.
+ * Events which aren't enabled are never begun, so there's next to nothing to pay when the
+ * flight recorder isn't recording them.
+ */
+final class FlightRecording {
+    private static final EventType stepType = EventType.getEventType(StepEvent.class);
+    private static final EventType segmentType = EventType.getEventType(SegmentEvent.class);
+    private static final EventType phaseType = EventType.getEventType(PhaseEvent.class);
+
+    private FlightRecording() {
+    }
+
+    static boolean isRecording() {
+        return stepType.isEnabled() || segmentType.isEnabled() || phaseType.isEnabled();
+    }
+
+    @Nullable
+    static Object beginStep() {
+        return begin(new StepEvent());
+    }
+
+    static void commitStep(@Nullable Object event, @Nonnull Path path, @Nonnull LuceneVersion version,
+                           int stepNumber, int stepCount, int segmentCount, long docCount, long bytesRead,
+                           long bytesWritten, boolean failed) {
+        if (event == null) {
+            return;
+        }
+        StepEvent stepEvent = (StepEvent) event;
+        stepEvent.end();
+        if (stepEvent.shouldCommit()) {
+            stepEvent.path = path.toString();
+            stepEvent.version = version.name();
+            stepEvent.stepNumber = stepNumber;
+            stepEvent.stepCount = stepCount;
+            stepEvent.segmentCount = segmentCount;
+            stepEvent.docCount = docCount;
+            stepEvent.bytesRead = bytesRead;
+            stepEvent.bytesWritten = bytesWritten;
+            stepEvent.failed = failed;
+            stepEvent.commit();
+        }
+    }
+
+    @Nullable
+    static Object beginSegment() {
+        return begin(new SegmentEvent());
+    }
+
+    static void commitSegment(@Nullable Object event, @Nonnull Path path, @Nonnull LuceneVersion version,
+                              @Nonnull String segmentName, int docCount, long bytesRead, long bytesWritten) {
+        if (event == null) {
+            return;
+        }
+        SegmentEvent segmentEvent = (SegmentEvent) event;
+        segmentEvent.end();
+        if (segmentEvent.shouldCommit()) {
+            segmentEvent.path = path.toString();
+            segmentEvent.version = version.name();
+            segmentEvent.segmentName = segmentName;
+            segmentEvent.docCount = docCount;
+            segmentEvent.bytesRead = bytesRead;
+            segmentEvent.bytesWritten = bytesWritten;
+            segmentEvent.commit();
+        }
+    }
+
+    @Nullable
+    static Object beginPhase() {
+        return begin(new PhaseEvent());
+    }
+
+    static void endPhase(@Nullable Object event) {
+        if (event != null) {
+            ((PhaseEvent) event).end();
+        }
+    }
+
+    static void commitPhase(@Nullable Object event, @Nonnull LuceneVersion version, @Nonnull String segmentName,
+                            @Nonnull IndexComponent component, long bytesRead, long bytesWritten) {
+        if (event == null) {
+            return;
+        }
+        // Already ended when the component's last file was closed.
+        PhaseEvent phaseEvent = (PhaseEvent) event;
+        if (phaseEvent.shouldCommit()) {
+            phaseEvent.version = version.name();
+            phaseEvent.segmentName = segmentName;
+            phaseEvent.component = component.name();
+            phaseEvent.bytesRead = bytesRead;
+            phaseEvent.bytesWritten = bytesWritten;
+            phaseEvent.commit();
+        }
+    }
+
+    @Nullable
+    private static Event begin(Event event) {
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    @Name("org.trypticon.luceneupgrader.Step")
+    @Label("Upgrade Step")
+    @Description("One step of an index upgrade, which upgrades the index to the next version")
+    @Category("Lucene Upgrader")
+    @StackTrace(false)
+    static class StepEvent extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Version")
+        String version;
+
+        @Label("Step Number")
+        int stepNumber;
+
+        @Label("Step Count")
+        int stepCount;
+
+        @Label("Segments")
+        int segmentCount;
+
+        @Label("Documents")
+        long docCount;
+
+        @Label("Bytes Read")
+        @DataAmount
+        long bytesRead;
+
+        @Label("Bytes Written")
+        @DataAmount
+        long bytesWritten;
+
+        @Label("Failed")
+        boolean failed;
+    }
+
+    @Name("org.trypticon.luceneupgrader.Segment")
+    @Label("Segment Upgrade")
+    @Description("A merge or addIndexes call writing one segment during a step")
+    @Category("Lucene Upgrader")
+    @StackTrace(false)
+    static class SegmentEvent extends Event {
+        @Label("Path")
+        String path;
+
+        @Label("Version")
+        String version;
+
+        @Label("Segment")
+        String segmentName;
+
+        @Label("Documents")
+        int docCount;
+
+        @Label("Bytes Read")
+        @DataAmount
+        long bytesRead;
+
+        @Label("Bytes Written")
+        @DataAmount
+        long bytesWritten;
+    }
+
+    @Name("org.trypticon.luceneupgrader.Phase")
+    @Label("Segment Component")
+    @Description("Writing one component of a segment, like postings or stored fields, " +
+                 "from its first file being created to its last file being closed")
+    @Category("Lucene Upgrader")
+    @StackTrace(false)
+    static class PhaseEvent extends Event {
+        @Label("Version")
+        String version;
+
+        @Label("Segment")
+        String segmentName;
+
+        @Label("Component")
+        String component;
+
+        @Label("Bytes Read")
+        @DataAmount
+        long bytesRead;
+
+        @Label("Bytes Written")
+        @DataAmount
+        long bytesWritten;
+    }
+}
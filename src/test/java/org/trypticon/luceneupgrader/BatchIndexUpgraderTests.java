@@ -0,0 +1,69 @@
+package org.trypticon.luceneupgrader;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link BatchIndexUpgrader}.
+ */
+public class BatchIndexUpgraderTests {
+    private static final List<String> VERSIONS = Arrays.asList("3.6.2", "4.10.4", "5.5.5", "6.6.5", "7.7.3", "8.5.2");
+
+    private Path temp;
+
+    @Before
+    public void setUp() throws Exception {
+        temp = Files.createTempDirectory("test");
+    }
+
+    @Test
+    public void testUpgradesAll() throws Exception {
+        BatchIndexUpgrader upgrader = new BatchIndexUpgrader()
+                .setMaxConcurrentUpgrades(3)
+                .setMaxConcurrentBytes(1);
+        for (int i = 0; i < VERSIONS.size(); i++) {
+            Path directory = temp.resolve(VERSIONS.get(i));
+            TestIndices.explodeZip(VERSIONS.get(i), "nonempty", directory);
+            upgrader.add(directory, i % 2);
+        }
+
+        List<BatchIndexUpgrader.Result> results = upgrader.upgradeTo(LuceneVersion.VERSION_8);
+
+        assertThat(results.size(), is(VERSIONS.size()));
+        for (int i = 0; i < VERSIONS.size(); i++) {
+            BatchIndexUpgrader.Result result = results.get(i);
+            assertThat(result.getDirectory(), is(temp.resolve(VERSIONS.get(i))));
+            assertThat(result.getFailure(), is(nullValue()));
+            assertThat(result.isUpgraded(), is(result.getOriginalVersion() != LuceneVersion.VERSION_8));
+            assertThat(new VersionGuesser().guess(result.getDirectory()), is(LuceneVersion.VERSION_8));
+        }
+    }
+
+    @Test
+    public void testFailureDoesNotStopOthers() throws Exception {
+        Path broken = Files.createDirectory(temp.resolve("broken"));
+        Path good = temp.resolve("good");
+        TestIndices.explodeZip("5.5.5", "nonempty", good);
+
+        List<BatchIndexUpgrader.Result> results = new BatchIndexUpgrader()
+                .setMaxConcurrentUpgrades(2)
+                .add(broken)
+                .add(good)
+                .upgradeTo(LuceneVersion.VERSION_8);
+
+        assertThat(results.get(0).getFailure(), is(notNullValue()));
+        assertThat(results.get(0).isUpgraded(), is(false));
+        assertThat(results.get(1).getFailure(), is(nullValue()));
+        assertThat(results.get(1).isUpgraded(), is(true));
+    }
+}
@@ -0,0 +1,819 @@
+package org.trypticon.luceneupgrader;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.index.BinaryDocValues;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.Fields;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiBits;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.PointValues;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SegmentCommitInfo;
+import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.index.SortedSetDocValues;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.StringHelper;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.trypticon.luceneupgrader.lucene6.TestIndexGenerator6;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Tests for {@link IndexUpgrader} against indices generated by {@link TestIndexGenerator}, which have
+ * more documents, segments and deletions than the zipped indices.
+ */
+@RunWith(Parameterized.class)
+public class GeneratedIndexUpgraderTests {
+    private static final int DOC_COUNT = 2000;
+    private static final Set<String> STORED_FIELDS_AND_VECTORS_EXTENSIONS =
+        new HashSet<>(Arrays.asList("fdt", "fdx", "tvd", "tvx"));
+
+    private static final int CODEC_MAGIC = 0x3fd76c17;
+    private static final int FOOTER_MAGIC = ~CODEC_MAGIC;
+
+    private final LuceneVersion version;
+    private Path temp;
+
+    public GeneratedIndexUpgraderTests(LuceneVersion version) {
+        this.version = version;
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> data() {
+        List<Object[]> data = new ArrayList<>();
+        for (LuceneVersion version : LuceneVersion.values()) {
+            if (!version.isOlderThan(LuceneVersion.VERSION_3) && version.isOlderThan(LuceneVersion.VERSION_8)) {
+                data.add(new Object[] { version });
+            }
+        }
+        return data;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        temp = Files.createTempDirectory("test");
+    }
+
+    @Test
+    public void testDeletionsBetweenCleanChunks() throws Exception {
+        // Chunks hold at most 128 documents, and chunks are only copied raw from segments with at most
+        // 1% of them left incomplete by a flush, so it takes a big segment to copy any.
+        int docCount = 20_000;
+        TestIndexGenerator.forVersion(version).generate(temp, docCount, 1);
+        new IndexUpgrader(temp).upgradeTo(LuceneVersion.VERSION_8);
+
+        // The deleted documents are dropped as the chunks around them are copied.
+        try (Directory directory = FSDirectory.open(temp);
+             DirectoryReader reader = DirectoryReader.open(directory)) {
+            assertThat(reader.numDeletedDocs(), is(0));
+        }
+        assertUpgradedContents(temp, docCount, 1);
+    }
+
+    @Test
+    public void testMultipleSegmentsWithMultipleMergeThreads() throws Exception {
+        TestIndexGenerator.forVersion(version).generate(temp, DOC_COUNT, 6);
+        StepRecorder recorder = new StepRecorder();
+        IndexUpgraderConfig config = new IndexUpgraderConfig().setMergeThreadCount(4).setUpgradeListener(recorder);
+        new IndexUpgrader(temp, InfoStream.NO_OUTPUT, config).upgradeTo(LuceneVersion.VERSION_8);
+
+        for (LuceneVersion step : recorder.segmentCounts.keySet()) {
+            if (step.isOlderThan(LuceneVersion.VERSION_7)) {
+                // Each old segment gets a merge of its own.
+                assertThat(recorder.segmentCounts.get(step), is(6));
+            } else {
+                // Each group of segments is added as a partial index on its own thread, ending up
+                // as a segment of its own.
+                assertThat(recorder.segmentCounts.get(step), is(4));
+            }
+        }
+        assertThat(segmentCount(temp), is(4));
+        assertUpgradedContents(temp, 6);
+    }
+
+    @Test
+    public void testMultipleSegmentsWithMultipleMergeThreadsAndComponentThreads() throws Exception {
+        TestIndexGenerator.forVersion(version).generate(temp, DOC_COUNT, 6);
+        Set<String> stepsMergingConcurrently = ConcurrentHashMap.newKeySet();
+        InfoStream infoStream = new InfoStream() {
+            @Override
+            public void message(String component, String line) {
+                // The merge phases log from their own threads, named after the segment.
+                if (line.contains(" msec to merge ") && Thread.currentThread().getName().startsWith("merge-")) {
+                    for (StackTraceElement element : Thread.currentThread().getStackTrace()) {
+                        if (element.getClassName().endsWith(".internal.lucene.index.SegmentMerger")) {
+                            stepsMergingConcurrently.add(element.getClassName().split("\\.")[3]);
+                        }
+                    }
+                }
+            }
+
+            @Override
+            public boolean isEnabled(String component) {
+                return component.equals("SM");
+            }
+        };
+        IndexUpgraderConfig config = new IndexUpgraderConfig()
+            .setMergeThreadCount(4)
+            .setMergeComponentThreadCount(4);
+        new IndexUpgrader(temp, infoStream, config).upgradeTo(LuceneVersion.VERSION_8);
+
+        // The Lucene 6 step runs its merges on a concurrent merge scheduler, whose rate limiter
+        // has to let the component threads through.
+        if (version.isOlderThan(LuceneVersion.VERSION_6)) {
+            assertThat(stepsMergingConcurrently, hasItem("lucene6"));
+        }
+        assertThat(segmentCount(temp), is(greaterThan(1)));
+        assertUpgradedContents(temp, 6);
+    }
+
+    @Test
+    public void testMultipleSegmentsWithConcurrentComponentMergingAndIoThrottle() throws Exception {
+        TestIndexGenerator.forVersion(version).generate(temp, DOC_COUNT, 3);
+        AtomicLong bytesWritten = new AtomicLong();
+        IoThrottle ioThrottle = new IoThrottle() {
+            @Override
+            public long pauseForWrite(long bytes) throws InterruptedIOException {
+                bytesWritten.addAndGet(bytes);
+                return super.pauseForWrite(bytes);
+            }
+        };
+        ioThrottle.setMaxReadMBPerSec(20).setMaxWriteMBPerSec(2);
+        IndexUpgraderConfig config = new IndexUpgraderConfig()
+            .setMergeComponentThreadCount(4)
+            .setIoThrottle(ioThrottle);
+        long startNanos = System.nanoTime();
+        new IndexUpgrader(temp, InfoStream.NO_OUTPUT, config).upgradeTo(LuceneVersion.VERSION_8);
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        // The component threads write at the same time, but still can't beat the rate between them.
+        // The slack is for the last few writes, whose pause can be too short to bother with.
+        assertThat(bytesWritten.get(), is(greaterThan(0L)));
+        long expectedNanos = (long) (bytesWritten.get() / (2.0 * 1024 * 1024) * 1e9);
+        assertThat(elapsedNanos, is(greaterThan(expectedNanos * 9 / 10)));
+        assertUpgradedContents(temp, 3);
+    }
+
+    @Test
+    public void testReusedFiles() throws Exception {
+        TestIndexGenerator.forVersion(version).generate(temp, DOC_COUNT, 3);
+        IndexUpgraderConfig config = new IndexUpgraderConfig().setReuseUnchangedFiles(true);
+        IndexUpgrader upgrader = new IndexUpgrader(temp, InfoStream.NO_OUTPUT, config);
+
+        // The Lucene 7 step reuses files from segments Lucene 6 wrote, and the Lucene 8 step from
+        // segments Lucene 7 wrote, keeping each segment's ID.
+        if (version.isOlderThan(LuceneVersion.VERSION_7)) {
+            if (version.isOlderThan(LuceneVersion.VERSION_6)) {
+                upgrader.upgradeTo(LuceneVersion.VERSION_6);
+            }
+            Map<String, ByteBuffer> lucene6Files = TestIndexGenerator6.storedFieldsAndVectorsFiles(temp);
+            upgrader.upgradeTo(LuceneVersion.VERSION_7);
+            assertThat(storedFieldsAndVectorsFiles(temp), is(lucene6Files));
+        }
+        Map<String, ByteBuffer> lucene7Files = storedFieldsAndVectorsFiles(temp);
+        assertThat(lucene7Files.size(), is(4 * segmentCount(temp)));
+        upgrader.upgradeTo(LuceneVersion.VERSION_8);
+
+        assertThat(storedFieldsAndVectorsFiles(temp), is(lucene7Files));
+        assertThat(Files.exists(temp.resolveSibling(temp.getFileName() + ".tmp.reuse")), is(false));
+        assertUpgradedContents(temp, 3);
+    }
+
+    @Test
+    public void testFusedChecksumsWithCorruptStoredFields() throws Exception {
+        assertCorruptionFailsUpgrade("StoredFields", "Data");
+    }
+
+    @Test
+    public void testFusedChecksumsWithCorruptPostings() throws Exception {
+        assertCorruptionFailsUpgrade("Postings", "Doc");
+    }
+
+    /**
+     * Flips a byte in the middle of one file of a generated index and checks that upgrading it with
+     * fused checksums fails without committing anything.
+     *
+     * @param codecNamePart part of the codec name in the file's header.
+     * @param codecNameSuffix the end of the codec name in the file's header.
+     * @throws Exception if anything else goes wrong.
+     */
+    private void assertCorruptionFailsUpgrade(String codecNamePart, String codecNameSuffix) throws Exception {
+        // Lucene 3 files have no checksums.
+        assumeTrue(version != LuceneVersion.VERSION_3);
+        TestIndexGenerator.forVersion(version).generate(temp, DOC_COUNT, 3);
+        corruptFile(temp, codecNamePart, codecNameSuffix);
+        Map<String, ByteBuffer> corruptFiles = allFiles(temp);
+
+        IndexUpgraderConfig config = new IndexUpgraderConfig().setFusedChecksums(true);
+        try {
+            new IndexUpgrader(temp, InfoStream.NO_OUTPUT, config).upgradeTo(LuceneVersion.VERSION_8);
+            throw new AssertionError("Expected the upgrade to fail");
+        } catch (IOException e) {
+            // Each step has its own CorruptIndexException, so it's found by name.
+            Throwable cause = e;
+            while (cause != null && !cause.getClass().getSimpleName().equals("CorruptIndexException")) {
+                cause = cause.getCause();
+            }
+            if (cause == null) {
+                throw new AssertionError("Expected a CorruptIndexException", e);
+            }
+        }
+
+        // A failed merge can leave its own files behind for the next writer to delete, but the
+        // commit and everything in it must be untouched.
+        Map<String, ByteBuffer> files = allFiles(temp);
+        files.keySet().retainAll(corruptFiles.keySet());
+        assertThat(files, is(corruptFiles));
+        assertThat(SegmentInfos.getLastCommitSegmentsFileName(allFiles(temp).keySet().toArray(new String[0])),
+                   is(SegmentInfos.getLastCommitSegmentsFileName(corruptFiles.keySet().toArray(new String[0]))));
+        assertThat(new VersionGuesser().guess(temp), is(version));
+    }
+
+    /**
+     * Flips a byte in the middle of the first file found with a matching codec name in its header,
+     * whether the file is on its own or inside a compound file.
+     *
+     * @param index the index.
+     * @param codecNamePart part of the codec name.
+     * @param codecNameSuffix the end of the codec name.
+     * @throws IOException if an error occurs reading or writing the files.
+     */
+    private static void corruptFile(Path index, String codecNamePart, String codecNameSuffix) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(index)) {
+            stream.forEach(files::add);
+        }
+        Collections.sort(files);
+        for (Path file : files) {
+            byte[] bytes = Files.readAllBytes(file);
+            for (int start = 0; start + 5 < bytes.length; start++) {
+                if (readInt(bytes, start) != CODEC_MAGIC) {
+                    continue;
+                }
+                int nameLength = bytes[start + 4];
+                if (nameLength <= 0 || start + 5 + nameLength > bytes.length) {
+                    continue;
+                }
+                String name = new String(bytes, start + 5, nameLength, StandardCharsets.UTF_8);
+                if (!name.contains(codecNamePart) || !name.endsWith(codecNameSuffix)) {
+                    continue;
+                }
+                // The footer is the magic, a zero algorithm ID and a checksum which fits in an int.
+                for (int end = start + 5 + nameLength; end + 16 <= bytes.length; end++) {
+                    if (readInt(bytes, end) == FOOTER_MAGIC && readInt(bytes, end + 4) == 0 &&
+                        readInt(bytes, end + 8) == 0) {
+                        bytes[(start + end) / 2] ^= 0x5a;
+                        Files.write(file, bytes);
+                        return;
+                    }
+                }
+            }
+        }
+        throw new AssertionError("No file with a " + codecNamePart + "*" + codecNameSuffix + " header in " + index);
+    }
+
+    private static int readInt(byte[] bytes, int offset) {
+        return ByteBuffer.wrap(bytes, offset, Integer.BYTES).getInt();
+    }
+
+    /**
+     * Reads every file in an index, except the lock and the segments.gen hint which Lucene 4 writes
+     * and Lucene 5 deletes as soon as it opens the index.
+     *
+     * @param index the index.
+     * @return the contents of the files, keyed by name.
+     * @throws IOException if an error occurs reading the files.
+     */
+    private static Map<String, ByteBuffer> allFiles(Path index) throws IOException {
+        Map<String, ByteBuffer> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(index)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (!name.equals("write.lock") && !name.equals("segments.gen")) {
+                    files.put(name, ByteBuffer.wrap(Files.readAllBytes(file)));
+                }
+            }
+        }
+        return files;
+    }
+
+    @Test
+    public void testLucene7Skipped() throws Exception {
+        TestIndexGenerator.forVersion(version).generate(temp, DOC_COUNT, 3);
+        Path notSkipped = Files.createTempDirectory("notskipped");
+        FileUtils.copyDirectory(temp, notSkipped);
+
+        IndexUpgraderConfig config = new IndexUpgraderConfig().setSkipLucene7(true);
+        new IndexUpgrader(temp, InfoStream.NO_OUTPUT, config).upgradeTo(LuceneVersion.VERSION_8);
+        new IndexUpgrader(notSkipped, InfoStream.NO_OUTPUT).upgradeTo(LuceneVersion.VERSION_8);
+
+        // Reading the Lucene 6 index through Lucene 7's codecs gives the same index as writing it
+        // out with Lucene 7 first, down to the doc values, norms, points, payloads and term vectors.
+        List<String> contents = describeContents(temp);
+        assertThat(contents, is(describeContents(notSkipped)));
+        if (version == LuceneVersion.VERSION_6) {
+            for (String prefix : Arrays.asList("number=", "binary=", "sorted=", "sortedset=", "sortednumeric=",
+                                               "norm text=", "text:", "vector text:")) {
+                assertThat(prefix, contents.stream().anyMatch(line -> line.contains(" " + prefix)), is(true));
+            }
+        }
+        assertUpgradedContents(temp, 3);
+    }
+
+    @Test
+    public void testSinglePassMerge() throws Exception {
+        TestIndexGenerator.forVersion(version).generate(temp, DOC_COUNT, 30);
+        Path multiPass = Files.createTempDirectory("multipass");
+        FileUtils.copyDirectory(temp, multiPass);
+
+        StepRecorder recorder = new StepRecorder();
+        IndexUpgraderConfig config = new IndexUpgraderConfig()
+            .setMergeThreadCount(1)
+            .setMaxSegmentsPerMerge(Integer.MAX_VALUE)
+            .setUpgradeListener(recorder);
+        new IndexUpgrader(temp, InfoStream.NO_OUTPUT, config).upgradeTo(LuceneVersion.VERSION_8);
+        StepRecorder multiPassRecorder = new StepRecorder();
+        IndexUpgraderConfig multiPassConfig = new IndexUpgraderConfig()
+            .setMergeThreadCount(1)
+            .setUpgradeListener(multiPassRecorder);
+        new IndexUpgrader(multiPass, InfoStream.NO_OUTPUT, multiPassConfig).upgradeTo(LuceneVersion.VERSION_8);
+
+        // Every step leaves one segment, where the default of 10 segments per merge leaves the
+        // first of the Lucene 3 to 6 steps with three.
+        for (int segmentCount : recorder.segmentCounts.values()) {
+            assertThat(segmentCount, is(1));
+        }
+        if (version.isOlderThan(LuceneVersion.VERSION_6)) {
+            LuceneVersion firstStep = IndexUpgrader.stepsTo(version, LuceneVersion.VERSION_8, multiPassConfig).get(0);
+            assertThat(multiPassRecorder.segmentCounts.get(firstStep), is(3));
+        }
+        assertUpgradedContents(temp, 30);
+    }
+
+    @Test
+    public void testSplitSegments() throws Exception {
+        TestIndexGenerator.forVersion(version).generate(temp, DOC_COUNT, 1);
+        Path unsplit = Files.createTempDirectory("unsplit");
+        FileUtils.copyDirectory(temp, unsplit);
+
+        StepRecorder recorder = new StepRecorder();
+        IndexUpgraderConfig config = new IndexUpgraderConfig()
+            .setMergeThreadCount(4)
+            .setSplitSegments(true)
+            .setUpgradeListener(recorder);
+        new IndexUpgrader(temp, InfoStream.NO_OUTPUT, config).upgradeTo(LuceneVersion.VERSION_8);
+        IndexUpgraderConfig unsplitConfig = new IndexUpgraderConfig().setMergeThreadCount(1);
+        new IndexUpgrader(unsplit, InfoStream.NO_OUTPUT, unsplitConfig).upgradeTo(LuceneVersion.VERSION_8);
+
+        // The Lucene 7 and 8 steps split the one segment into a range per thread, and each range
+        // ends up as a segment of its own. The ranges are cut by document ID, so each one holds at
+        // most a quarter of the documents, less the deleted ones.
+        for (LuceneVersion step : Arrays.asList(LuceneVersion.VERSION_7, LuceneVersion.VERSION_8)) {
+            if (!version.isOlderThan(step)) {
+                continue;
+            }
+            assertThat(recorder.segmentCounts.get(step), is(4));
+            List<Integer> rangeDocCounts = recorder.segmentDocCounts.get(step);
+            assertThat(rangeDocCounts.size(), is(4));
+            for (int rangeDocCount : rangeDocCounts) {
+                assertThat(rangeDocCount, is(both(greaterThan(DOC_COUNT / 5)).and(lessThanOrEqualTo(DOC_COUNT / 4))));
+            }
+        }
+        assertThat(segmentCount(unsplit), is(1));
+        assertThat(segmentCount(temp), is(4));
+        assertThat(storedIds(temp), is(storedIds(unsplit)));
+        assertUpgradedContents(temp, 1);
+    }
+
+    /**
+     * Records how many segments each step left the index with, and how many documents went into
+     * each segment it wrote.
+     */
+    private static class StepRecorder implements UpgradeListener {
+        private final Map<LuceneVersion, Integer> segmentCounts = new ConcurrentHashMap<>();
+        private final Map<LuceneVersion, List<Integer>> segmentDocCounts = new ConcurrentHashMap<>();
+
+        @Override
+        public void segmentUpgraded(@Nonnull SegmentUpgradedEvent event) {
+            segmentDocCounts.computeIfAbsent(event.getVersion(), version -> new CopyOnWriteArrayList<>())
+                .add(event.getDocCount());
+        }
+
+        @Override
+        public void stepFinished(@Nonnull StepFinishedEvent event) {
+            segmentCounts.put(event.getVersion(), event.getSegmentCount());
+        }
+    }
+
+    /**
+     * Reads the stored fields and term vectors files of every segment in an index.
+     *
+     * @param index the index, written by Lucene 7 or 8.
+     * @return the contents of the files, keyed by segment ID and the file name without the segment name.
+     * @throws IOException if an error occurs reading the index.
+     */
+    private static Map<String, ByteBuffer> storedFieldsAndVectorsFiles(Path index) throws IOException {
+        Map<String, ByteBuffer> files = new TreeMap<>();
+        try (Directory directory = FSDirectory.open(index)) {
+            for (SegmentCommitInfo info : SegmentInfos.readLatestCommit(directory)) {
+                Directory segmentDirectory = info.info.getUseCompoundFile()
+                    ? info.info.getCodec().compoundFormat().getCompoundReader(directory, info.info, IOContext.READONCE)
+                    : directory;
+                try {
+                    Collection<String> segmentFiles = info.info.getUseCompoundFile()
+                        ? Arrays.asList(segmentDirectory.listAll())
+                        : info.files();
+                    for (String file : segmentFiles) {
+                        if (STORED_FIELDS_AND_VECTORS_EXTENSIONS.contains(IndexFileNames.getExtension(file))) {
+                            try (IndexInput input = segmentDirectory.openInput(file, IOContext.READONCE)) {
+                                byte[] bytes = new byte[(int) input.length()];
+                                input.readBytes(bytes, 0, bytes.length);
+                                files.put(StringHelper.idToString(info.info.getId()) + IndexFileNames.stripSegmentName(file),
+                                          ByteBuffer.wrap(bytes));
+                            }
+                        }
+                    }
+                } finally {
+                    if (segmentDirectory != directory) {
+                        segmentDirectory.close();
+                    }
+                }
+            }
+        }
+        return files;
+    }
+
+    private static int segmentCount(Path index) throws IOException {
+        try (Directory directory = FSDirectory.open(index);
+             DirectoryReader reader = DirectoryReader.open(directory)) {
+            return reader.leaves().size();
+        }
+    }
+
+    private static List<String> storedIds(Path index) throws IOException {
+        List<String> ids = new ArrayList<>();
+        try (Directory directory = FSDirectory.open(index);
+             DirectoryReader reader = DirectoryReader.open(directory)) {
+            Bits liveDocs = MultiBits.getLiveDocs(reader);
+            for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                if (liveDocs == null || liveDocs.get(doc)) {
+                    ids.add(reader.document(doc).get("id"));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static List<String> expectedIds(int docCount) {
+        List<String> ids = new ArrayList<>();
+        for (int id = 0; id < docCount; id++) {
+            if (!TestIndexGenerator.isDeleted(id)) {
+                ids.add(Integer.toString(id));
+            }
+        }
+        return ids;
+    }
+
+    private void assertUpgradedContents(Path index, int segmentCount) throws IOException {
+        assertUpgradedContents(index, DOC_COUNT, segmentCount);
+    }
+
+    /**
+     * Checks that an upgraded index has every document which wasn't deleted, in the original order,
+     * with its stored fields, term vectors and points intact.
+     *
+     * @param index the upgraded index.
+     * @param docCount the number of documents generated, counting the ones which were deleted.
+     * @param segmentCount the number of segments generated.
+     * @throws IOException if an error occurs reading the index.
+     */
+    private void assertUpgradedContents(Path index, int docCount, int segmentCount) throws IOException {
+        assertThat(storedIds(index), is(expectedIds(docCount)));
+        // Points came in with Lucene 6.
+        boolean generatedPoints = !version.isOlderThan(LuceneVersion.VERSION_6);
+        try (Directory directory = FSDirectory.open(index);
+             DirectoryReader reader = DirectoryReader.open(directory)) {
+            Map<Integer, Long> values = pointValues(reader, "value", LongPoint::decodeDimension);
+            Map<Integer, Long> partialValues = pointValues(reader, "partial",
+                                                           (packed, offset) -> (long) IntPoint.decodeDimension(packed, offset));
+            int expectedRangeCount = 0;
+            Bits liveDocs = MultiBits.getLiveDocs(reader);
+            for (int doc = 0; doc < reader.maxDoc(); doc++) {
+                if (liveDocs != null && !liveDocs.get(doc)) {
+                    continue;
+                }
+                Document document = reader.document(doc);
+                int id = Integer.parseInt(document.get("id"));
+                int segment = TestIndexGenerator.segment(id, docCount, segmentCount);
+                boolean hasPoints = generatedPoints && TestIndexGenerator.hasPoints(segment);
+                boolean hasPartialPoints = generatedPoints && TestIndexGenerator.hasPartialPoints(segment);
+                assertThat(values.get(doc), is(hasPoints ? Long.valueOf(id) : null));
+                assertThat(partialValues.get(doc), is(hasPartialPoints ? Long.valueOf(id) : null));
+                if (hasPoints && id >= docCount / 4 && id < docCount * 3 / 4) {
+                    expectedRangeCount++;
+                }
+
+                String[] words = TestIndexGenerator.words(id);
+                assertThat(Arrays.asList(document.getValues("body")), is(Arrays.asList(words)));
+
+                Map<String, Long> expectedFreqs = new TreeMap<>();
+                for (String word : words) {
+                    expectedFreqs.merge(word, 1L, Long::sum);
+                }
+                Map<String, Long> freqs = new TreeMap<>();
+                Terms vector = reader.getTermVector(doc, "body");
+                TermsEnum termsEnum = vector.iterator();
+                BytesRef term;
+                while ((term = termsEnum.next()) != null) {
+                    freqs.put(term.utf8ToString(), termsEnum.totalTermFreq());
+                }
+                assertThat(freqs, is(expectedFreqs));
+            }
+
+            // Searching goes through the trees rather than visiting every point.
+            IndexSearcher searcher = new IndexSearcher(reader);
+            int rangeCount = searcher.count(LongPoint.newRangeQuery("value", docCount / 4, docCount * 3 / 4 - 1));
+            assertThat(rangeCount, is(expectedRangeCount));
+        }
+    }
+
+    /**
+     * Describes everything in an index which isn't deleted, one line per value, so that two indexes
+     * can be compared. Documents are identified by their stored ID rather than by number.
+     *
+     * @param index the index, written by Lucene 8.
+     * @return the lines, sorted.
+     * @throws IOException if an error occurs reading the index.
+     */
+    private static List<String> describeContents(Path index) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (Directory directory = FSDirectory.open(index);
+             DirectoryReader reader = DirectoryReader.open(directory)) {
+            for (String field : Arrays.asList("value", "partial")) {
+                PointValues.IntersectVisitor visitor = null;
+                for (LeafReaderContext context : reader.leaves()) {
+                    LeafReader leaf = context.reader();
+                    PointValues pointValues = leaf.getPointValues(field);
+                    if (pointValues == null) {
+                        continue;
+                    }
+                    Bits liveDocs = leaf.getLiveDocs();
+                    pointValues.intersect(new PointValues.IntersectVisitor() {
+                        @Override
+                        public void visit(int docID) {
+                            throw new AssertionError("Every cell should be visited value by value");
+                        }
+
+                        @Override
+                        public void visit(int docID, byte[] packedValue) throws IOException {
+                            if (liveDocs == null || liveDocs.get(docID)) {
+                                lines.add(leaf.document(docID).get("id") + " point " + field + "=" +
+                                          new BytesRef(packedValue));
+                            }
+                        }
+
+                        @Override
+                        public PointValues.Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+                            return PointValues.Relation.CELL_CROSSES_QUERY;
+                        }
+                    });
+                }
+            }
+
+            for (LeafReaderContext context : reader.leaves()) {
+                LeafReader leaf = context.reader();
+                Bits liveDocs = leaf.getLiveDocs();
+                String[] ids = new String[leaf.maxDoc()];
+                for (int doc = 0; doc < leaf.maxDoc(); doc++) {
+                    ids[doc] = leaf.document(doc).get("id");
+                }
+
+                for (int doc = 0; doc < leaf.maxDoc(); doc++) {
+                    if (liveDocs != null && !liveDocs.get(doc)) {
+                        continue;
+                    }
+                    for (IndexableField field : leaf.document(doc)) {
+                        lines.add(ids[doc] + " stored " + field.name() + "=" + field.stringValue());
+                    }
+                    Fields vectors = leaf.getTermVectors(doc);
+                    if (vectors != null) {
+                        for (String field : vectors) {
+                            describeTerms(ids[doc] + " vector " + field + ":", vectors.terms(field), null, null, lines);
+                        }
+                    }
+                }
+
+                for (FieldInfo fieldInfo : leaf.getFieldInfos()) {
+                    String field = fieldInfo.name;
+                    if (fieldInfo.getIndexOptions() != IndexOptions.NONE) {
+                        describeTerms(" " + field + ":", leaf.terms(field), ids, liveDocs, lines);
+                    }
+                    if (fieldInfo.hasNorms()) {
+                        NumericDocValues norms = leaf.getNormValues(field);
+                        for (int doc = norms.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = norms.nextDoc()) {
+                            if (liveDocs == null || liveDocs.get(doc)) {
+                                lines.add(ids[doc] + " norm " + field + "=" + norms.longValue());
+                            }
+                        }
+                    }
+                    switch (fieldInfo.getDocValuesType()) {
+                        case NUMERIC:
+                            NumericDocValues numeric = leaf.getNumericDocValues(field);
+                            for (int doc = numeric.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = numeric.nextDoc()) {
+                                if (liveDocs == null || liveDocs.get(doc)) {
+                                    lines.add(ids[doc] + " " + field + "=" + numeric.longValue());
+                                }
+                            }
+                            break;
+                        case BINARY:
+                            BinaryDocValues binary = leaf.getBinaryDocValues(field);
+                            for (int doc = binary.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = binary.nextDoc()) {
+                                if (liveDocs == null || liveDocs.get(doc)) {
+                                    lines.add(ids[doc] + " " + field + "=" + binary.binaryValue().utf8ToString());
+                                }
+                            }
+                            break;
+                        case SORTED:
+                            SortedDocValues sorted = leaf.getSortedDocValues(field);
+                            for (int doc = sorted.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = sorted.nextDoc()) {
+                                if (liveDocs == null || liveDocs.get(doc)) {
+                                    lines.add(ids[doc] + " " + field + "=" + sorted.binaryValue().utf8ToString());
+                                }
+                            }
+                            break;
+                        case SORTED_SET:
+                            SortedSetDocValues sortedSet = leaf.getSortedSetDocValues(field);
+                            for (int doc = sortedSet.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = sortedSet.nextDoc()) {
+                                if (liveDocs == null || liveDocs.get(doc)) {
+                                    List<String> values = new ArrayList<>();
+                                    for (long ord = sortedSet.nextOrd(); ord != SortedSetDocValues.NO_MORE_ORDS; ord = sortedSet.nextOrd()) {
+                                        values.add(sortedSet.lookupOrd(ord).utf8ToString());
+                                    }
+                                    lines.add(ids[doc] + " " + field + "=" + values);
+                                }
+                            }
+                            break;
+                        case SORTED_NUMERIC:
+                            SortedNumericDocValues sortedNumeric = leaf.getSortedNumericDocValues(field);
+                            for (int doc = sortedNumeric.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = sortedNumeric.nextDoc()) {
+                                if (liveDocs == null || liveDocs.get(doc)) {
+                                    List<Long> values = new ArrayList<>();
+                                    for (int i = 0; i < sortedNumeric.docValueCount(); i++) {
+                                        values.add(sortedNumeric.nextValue());
+                                    }
+                                    lines.add(ids[doc] + " " + field + "=" + values);
+                                }
+                            }
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            }
+        }
+        Collections.sort(lines);
+        return lines;
+    }
+
+    /**
+     * Describes the terms of a field, with their postings.
+     *
+     * @param prefix the prefix for each line.
+     * @param terms the terms.
+     * @param ids the IDs of the documents, or {@code null} if the terms are a document's term vector.
+     * @param liveDocs the live documents, or {@code null} if they all are.
+     * @param lines the lines to add to.
+     * @throws IOException if an error occurs reading the index.
+     */
+    private static void describeTerms(String prefix, @Nullable Terms terms, @Nullable String[] ids,
+                                      @Nullable Bits liveDocs, List<String> lines) throws IOException {
+        if (terms == null) {
+            return;
+        }
+        TermsEnum termsEnum = terms.iterator();
+        PostingsEnum postings = null;
+        BytesRef term;
+        while ((term = termsEnum.next()) != null) {
+            postings = termsEnum.postings(postings, PostingsEnum.ALL);
+            for (int doc = postings.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postings.nextDoc()) {
+                if (liveDocs != null && !liveDocs.get(doc)) {
+                    continue;
+                }
+                StringBuilder line = new StringBuilder();
+                if (ids != null) {
+                    line.append(ids[doc]);
+                }
+                line.append(prefix).append(term.utf8ToString()).append(" freq=").append(postings.freq());
+                if (terms.hasPositions()) {
+                    for (int i = 0; i < postings.freq(); i++) {
+                        line.append(' ').append(postings.nextPosition());
+                        if (terms.hasOffsets()) {
+                            line.append('[').append(postings.startOffset()).append('-').append(postings.endOffset()).append(']');
+                        }
+                        BytesRef payload = postings.getPayload();
+                        if (payload != null) {
+                            line.append('/').append(payload.utf8ToString());
+                        }
+                    }
+                }
+                lines.add(line.toString());
+            }
+        }
+    }
+
+    /**
+     * Reads every point for a one-dimensional field.
+     *
+     * @param reader the reader.
+     * @param field the field.
+     * @param decoder decodes a value from its packed form.
+     * @return the values, keyed by document.
+     * @throws IOException if an error occurs reading the index.
+     */
+    private static Map<Integer, Long> pointValues(DirectoryReader reader, String field,
+                                                  PointDecoder decoder) throws IOException {
+        Map<Integer, Long> values = new HashMap<>();
+        for (LeafReaderContext context : reader.leaves()) {
+            PointValues pointValues = context.reader().getPointValues(field);
+            if (pointValues == null) {
+                continue;
+            }
+            long valuesBefore = values.size();
+            pointValues.intersect(new PointValues.IntersectVisitor() {
+                @Override
+                public void visit(int docID) {
+                    throw new AssertionError("Every cell should be visited value by value");
+                }
+
+                @Override
+                public void visit(int docID, byte[] packedValue) {
+                    Long old = values.put(context.docBase + docID, decoder.decode(packedValue, 0));
+                    assertThat("more than one value for document " + (context.docBase + docID), old, is(nullValue()));
+                }
+
+                @Override
+                public PointValues.Relation compare(byte[] minPackedValue, byte[] maxPackedValue) {
+                    return PointValues.Relation.CELL_CROSSES_QUERY;
+                }
+            });
+            assertThat(values.size() - valuesBefore, is(pointValues.size()));
+        }
+        return values;
+    }
+
+    private interface PointDecoder {
+        long decode(byte[] packedValue, int offset);
+    }
+}
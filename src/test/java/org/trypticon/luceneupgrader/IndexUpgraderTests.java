@@ -1,5 +1,13 @@
 package org.trypticon.luceneupgrader;
 
+import org.apache.lucene.document.Document;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexFileNames;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -7,9 +15,20 @@ import org.junit.runners.Parameterized;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assume.assumeTrue;
 
 /**
  * Tests for {@link IndexUpgrader} against indices created against various versions of Lucene.
@@ -55,4 +74,362 @@ public class IndexUpgraderTests {
         IndexUpgrader upgrader = new IndexUpgrader(temp);
         upgrader.upgradeTo(LuceneVersion.VERSION_8);
     }
+
+    @Test
+    public void testNonEmptyWithConcurrentComponentMerging() throws Exception {
+        TestIndices.explodeZip(version, "nonempty", temp);
+        IndexUpgraderConfig config = new IndexUpgraderConfig().setMergeComponentThreadCount(4);
+        IndexUpgrader upgrader = new IndexUpgrader(temp, InfoStream.NO_OUTPUT, config);
+        upgrader.upgradeTo(LuceneVersion.VERSION_8);
+    }
+
+    @Test
+    public void testNonEmptyWithCheckpointing() throws Exception {
+        TestIndices.explodeZip(version, "nonempty", temp);
+        IndexUpgraderConfig config = new IndexUpgraderConfig().setCheckpointing(true);
+        IndexUpgrader upgrader = new IndexUpgrader(temp, InfoStream.NO_OUTPUT, config);
+        upgrader.upgradeTo(LuceneVersion.VERSION_8);
+        assertThat(Files.exists(temp.resolveSibling(temp.getFileName() + ".upgrade-journal")), is(false));
+    }
+
+    @Test
+    public void testNonEmptyWithPipelining() throws Exception {
+        TestIndices.explodeZip(version, "nonempty", temp);
+        IndexUpgraderConfig config = new IndexUpgraderConfig().setPipelined(true);
+        IndexUpgrader upgrader = new IndexUpgrader(temp, InfoStream.NO_OUTPUT, config);
+        upgrader.upgradeTo(LuceneVersion.VERSION_8);
+        assertThat(Files.exists(temp.resolveSibling(temp.getFileName() + ".pipeline")), is(false));
+    }
+
+    @Test
+    public void testNonEmptyWithLucene7Skipped() throws Exception {
+        TestIndices.explodeZip(version, "nonempty", temp);
+        IndexUpgraderConfig config = new IndexUpgraderConfig().setSkipLucene7(true);
+        IndexUpgrader upgrader = new IndexUpgrader(temp, InfoStream.NO_OUTPUT, config);
+        upgrader.upgradeTo(LuceneVersion.VERSION_8);
+        assertThat(new VersionGuesser().guess(temp), is(LuceneVersion.VERSION_8));
+    }
+
+    @Test
+    public void testNonEmptyWithDeferredSync() throws Exception {
+        TestIndices.explodeZip(version, "nonempty", temp);
+        assumeTrue(new VersionGuesser().guess(temp).isOlderThan(LuceneVersion.VERSION_8));
+        SyncRecordingFS fileSystem = new SyncRecordingFS();
+        IndexUpgraderConfig config = new IndexUpgraderConfig().setDeferredSync(true);
+        IndexUpgrader upgrader = new IndexUpgrader(fileSystem.wrap(temp), InfoStream.NO_OUTPUT, config);
+        upgrader.upgradeTo(LuceneVersion.VERSION_8);
+        assertThat(new VersionGuesser().guess(temp), is(LuceneVersion.VERSION_8));
+
+        // Nothing in place can be thrown away, so the new index was synced before it replaced the old one.
+        // The commit is synced before it's renamed from its pending name.
+        Path tempPath = temp.toRealPath().resolveSibling(temp.getFileName() + ".tmp");
+        Map<Path, Integer> syncCounts = fileSystem.getSyncCounts();
+        try (Stream<Path> files = Files.list(temp)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                String name = file.getFileName().toString();
+                if (name.startsWith(IndexFileNames.SEGMENTS + "_")) {
+                    name = "pending_" + name;
+                }
+                if (!name.equals(IndexWriter.WRITE_LOCK_NAME)) {
+                    assertThat(name + " was synced", syncCounts.containsKey(tempPath.resolve(name)), is(true));
+                }
+            }
+        }
+        assertThat(syncCounts.containsKey(tempPath), is(true));
+    }
+
+    @Test
+    public void testNonEmptyToAnotherDirectoryWithDeferredSync() throws Exception {
+        TestIndices.explodeZip(version, "nonempty", temp);
+        Path destination = Files.createTempDirectory("destination").resolve("index");
+        SyncRecordingFS fileSystem = new SyncRecordingFS();
+        IndexUpgraderConfig config = new IndexUpgraderConfig().setDeferredSync(true);
+        IndexUpgrader upgrader = new IndexUpgrader(fileSystem.wrap(temp), InfoStream.NO_OUTPUT, config);
+        upgrader.upgradeTo(LuceneVersion.VERSION_8, fileSystem.wrap(destination));
+        assertThat(new VersionGuesser().guess(destination), is(LuceneVersion.VERSION_8));
+
+        // The steps synced nothing, and the finished index was synced once at the end.
+        Map<Path, Integer> expectedSyncCounts = new HashMap<>();
+        try (Stream<Path> files = Files.list(destination.toRealPath())) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                expectedSyncCounts.put(file, 1);
+            }
+        }
+        expectedSyncCounts.put(destination.toRealPath(), 1);
+        expectedSyncCounts.put(destination.toRealPath().getParent(), 1);
+        assertThat(fileSystem.getSyncCounts(), is(expectedSyncCounts));
+    }
+
+    @Test
+    public void testNonEmptyWithFusedChecksums() throws Exception {
+        TestIndices.explodeZip(version, "nonempty", temp);
+        IndexUpgraderConfig config = new IndexUpgraderConfig().setFusedChecksums(true);
+        IndexUpgrader upgrader = new IndexUpgrader(temp, InfoStream.NO_OUTPUT, config);
+        upgrader.upgradeTo(LuceneVersion.VERSION_8);
+        assertThat(new VersionGuesser().guess(temp), is(LuceneVersion.VERSION_8));
+    }
+
+    @Test
+    public void testNonEmptyWithVerification() throws Exception {
+        TestIndices.explodeZip(version, "nonempty", temp);
+        LuceneVersion sourceVersion = new VersionGuesser().guess(temp);
+        List<VerificationReport> reports = new ArrayList<>();
+        IndexUpgraderConfig config = new IndexUpgraderConfig()
+            .setVerificationMode(VerificationMode.EVERY_STEP)
+            .setVerificationThreadCount(4)
+            .setVerificationListener(reports::add);
+        IndexUpgrader upgrader = new IndexUpgrader(temp, InfoStream.NO_OUTPUT, config);
+        upgrader.upgradeTo(LuceneVersion.VERSION_8);
+        List<LuceneVersion> steps = IndexUpgrader.stepsTo(sourceVersion, LuceneVersion.VERSION_8, config);
+        assertThat(reports.stream().map(VerificationReport::getVersion).collect(Collectors.toList()), is(steps));
+        for (VerificationReport report : reports) {
+            assertThat(report.isClean(), is(true));
+            assertThat(report.getChecks().isEmpty(), is(false));
+        }
+    }
+
+    @Test
+    public void testNonEmptyWithIoThrottle() throws Exception {
+        TestIndices.explodeZip(version, "nonempty", temp);
+        IoThrottle ioThrottle = new IoThrottle().setMaxReadMBPerSec(100).setMaxWriteMBPerSec(100);
+        IndexUpgraderConfig config = new IndexUpgraderConfig().setIoThrottle(ioThrottle);
+        IndexUpgrader upgrader = new IndexUpgrader(temp, InfoStream.NO_OUTPUT, config);
+        upgrader.upgradeTo(LuceneVersion.VERSION_8);
+        assertThat(new VersionGuesser().guess(temp), is(LuceneVersion.VERSION_8));
+    }
+
+    @Test
+    public void testNonEmptyWithUpgradeListener() throws Exception {
+        TestIndices.explodeZip(version, "nonempty", temp);
+        LuceneVersion sourceVersion = new VersionGuesser().guess(temp);
+        List<LuceneVersion> startedVersions = new ArrayList<>();
+        List<StepFinishedEvent> finishedEvents = new ArrayList<>();
+        List<SegmentUpgradedEvent> segmentEvents = new ArrayList<>();
+        UpgradeListener listener = new UpgradeListener() {
+            @Override
+            public synchronized void stepStarted(StepStartedEvent event) {
+                startedVersions.add(event.getVersion());
+            }
+
+            @Override
+            public synchronized void segmentUpgraded(SegmentUpgradedEvent event) {
+                segmentEvents.add(event);
+            }
+
+            @Override
+            public synchronized void stepFinished(StepFinishedEvent event) {
+                finishedEvents.add(event);
+            }
+        };
+        IndexUpgraderConfig config = new IndexUpgraderConfig().setUpgradeListener(listener);
+        IndexUpgrader upgrader = new IndexUpgrader(temp, InfoStream.NO_OUTPUT, config);
+        upgrader.upgradeTo(LuceneVersion.VERSION_8);
+        assertThat(new VersionGuesser().guess(temp), is(LuceneVersion.VERSION_8));
+
+        List<LuceneVersion> steps = IndexUpgrader.stepsTo(sourceVersion, LuceneVersion.VERSION_8, config);
+        assertThat(startedVersions, is(steps));
+        assertThat(finishedEvents.size(), is(steps.size()));
+        for (StepFinishedEvent event : finishedEvents) {
+            assertThat(event.getFailure() == null, is(true));
+            assertThat(event.getBytesWritten() > 0, is(true));
+            long segmentDocs = segmentEvents.stream()
+                .filter(segmentEvent -> segmentEvent.getVersion() == event.getVersion())
+                .mapToLong(SegmentUpgradedEvent::getDocCount)
+                .sum();
+            assertThat(event.getDocCount(), is(segmentDocs));
+        }
+    }
+
+    @Test
+    public void testNonEmptyToAnotherDirectory() throws Exception {
+        TestIndices.explodeZip(version, "nonempty", temp);
+        LuceneVersion sourceVersion = new VersionGuesser().guess(temp);
+        long sourceSize = FileUtils.directorySize(temp);
+        Path destination = Files.createTempDirectory("destination").resolve("index");
+        Path scratch = Files.createTempDirectory("scratch");
+        IndexUpgraderConfig config = new IndexUpgraderConfig().setScratchDirectory(scratch);
+        IndexUpgrader upgrader = new IndexUpgrader(temp, InfoStream.NO_OUTPUT, config);
+        upgrader.upgradeTo(LuceneVersion.VERSION_8, destination);
+        assertThat(new VersionGuesser().guess(destination), is(LuceneVersion.VERSION_8));
+        assertThat(new VersionGuesser().guess(temp), is(sourceVersion));
+        assertThat(FileUtils.directorySize(temp), is(sourceSize));
+        try (Stream<Path> leftovers = Files.list(scratch)) {
+            assertThat(leftovers.count(), is(0L));
+        }
+    }
+
+    @Test
+    public void testNonEmptyWithStaging() throws Exception {
+        TestIndices.explodeZip(version, "nonempty", temp);
+        Path staging = Files.createTempDirectory("staging");
+        IndexUpgraderConfig config = new IndexUpgraderConfig().setStagingDirectory(staging);
+        IndexUpgrader upgrader = new IndexUpgrader(temp, InfoStream.NO_OUTPUT, config);
+        upgrader.upgradeTo(LuceneVersion.VERSION_8);
+        assertThat(new VersionGuesser().guess(temp), is(LuceneVersion.VERSION_8));
+        try (Stream<Path> leftovers = Files.list(staging)) {
+            assertThat(leftovers.count(), is(0L));
+        }
+        assertThat(Files.exists(temp.resolveSibling(temp.getFileName() + ".staged")), is(false));
+    }
+
+    @Test
+    public void testMultipleSegmentsWithPipelining() throws Exception {
+        Path first = Files.createTempDirectory("first");
+        Path second = Files.createTempDirectory("second");
+        TestIndices.explodeZip(version, "nonempty", first);
+        TestIndices.explodeZip(version, "nonempty", second);
+        LuceneVersion sourceVersion = new VersionGuesser().guess(first);
+        assumeTrue(!sourceVersion.isOlderThan(LuceneVersion.VERSION_3));
+
+        // Joining two copies gives an index with more than one segment to pipeline.
+        sourceVersion.createSplitter().join(Arrays.asList(first, second), temp, Collections.emptyMap());
+        IndexUpgraderConfig config = new IndexUpgraderConfig().setPipelined(true);
+        new IndexUpgrader(temp, InfoStream.NO_OUTPUT, config).upgradeTo(LuceneVersion.VERSION_8);
+        new IndexUpgrader(second).upgradeTo(LuceneVersion.VERSION_8);
+
+        assertThat(new VersionGuesser().guess(temp), is(LuceneVersion.VERSION_8));
+        try (Directory directory = FSDirectory.open(temp);
+             DirectoryReader reader = DirectoryReader.open(directory);
+             Directory expectedDirectory = FSDirectory.open(second);
+             DirectoryReader expectedReader = DirectoryReader.open(expectedDirectory)) {
+            assertThat(reader.numDocs(), is(expectedReader.numDocs() * 2));
+        }
+    }
+
+    @Test
+    public void testMultipleSegmentsWithPipeliningKeepsUserData() throws Exception {
+        Path first = Files.createTempDirectory("first");
+        Path second = Files.createTempDirectory("second");
+        TestIndices.explodeZip(version, "nonempty", first);
+        TestIndices.explodeZip(version, "nonempty", second);
+        LuceneVersion sourceVersion = new VersionGuesser().guess(first);
+        assumeTrue(sourceVersion == LuceneVersion.VERSION_4);
+
+        // Up to Lucene 6, every step rewrites the index in place, keeping the commit's user data,
+        // and so must the pipeline which joins the parts back together at the end.
+        Map<String, String> userData = Collections.singletonMap("key", "value");
+        sourceVersion.createSplitter().join(Arrays.asList(first, second), temp, userData);
+        IndexUpgraderConfig config = new IndexUpgraderConfig().setPipelined(true);
+        new IndexUpgrader(temp, InfoStream.NO_OUTPUT, config).upgradeTo(LuceneVersion.VERSION_6);
+
+        assertThat(new VersionGuesser().guess(temp), is(LuceneVersion.VERSION_6));
+        assertThat(LuceneVersion.VERSION_6.createSplitter().commitUserData(temp), is(userData));
+    }
+
+    @Test
+    public void testMultipleSegmentsWithLowDiskUsage() throws Exception {
+        Path first = Files.createTempDirectory("first");
+        Path second = Files.createTempDirectory("second");
+        TestIndices.explodeZip(version, "nonempty", first);
+        TestIndices.explodeZip(version, "nonempty", second);
+        LuceneVersion sourceVersion = new VersionGuesser().guess(first);
+        assumeTrue(!sourceVersion.isOlderThan(LuceneVersion.VERSION_3));
+
+        // Joining two copies gives an index with more than one segment to move.
+        sourceVersion.createSplitter().join(Arrays.asList(first, second), temp, Collections.emptyMap());
+        IndexUpgraderConfig config = new IndexUpgraderConfig().setLowDiskUsage(true);
+        new IndexUpgrader(temp, InfoStream.NO_OUTPUT, config).upgradeTo(LuceneVersion.VERSION_8);
+        new IndexUpgrader(second).upgradeTo(LuceneVersion.VERSION_8);
+
+        assertThat(new VersionGuesser().guess(temp), is(LuceneVersion.VERSION_8));
+        assertThat(Files.exists(temp.resolveSibling(temp.getFileName() + ".tmp")), is(false));
+        try (Directory directory = FSDirectory.open(temp);
+             DirectoryReader reader = DirectoryReader.open(directory);
+             Directory expectedDirectory = FSDirectory.open(second);
+             DirectoryReader expectedReader = DirectoryReader.open(expectedDirectory)) {
+            assertThat(reader.numDocs(), is(expectedReader.numDocs() * 2));
+            assertThat(reader.getIndexCommit().getUserData().isEmpty(), is(true));
+        }
+        assertThat(Files.exists(temp.resolveSibling(temp.getFileName() + ".upgrade-journal")), is(false));
+    }
+
+    @Test
+    public void testMultipleSegmentsWithLowDiskUsageAfterInterruptedSwap() throws Exception {
+        Path first = Files.createTempDirectory("first");
+        Path second = Files.createTempDirectory("second");
+        TestIndices.explodeZip(version, "nonempty", first);
+        TestIndices.explodeZip(version, "nonempty", second);
+        LuceneVersion sourceVersion = new VersionGuesser().guess(first);
+        assumeTrue(!sourceVersion.isOlderThan(LuceneVersion.VERSION_3));
+        assumeTrue(sourceVersion.isOlderThan(LuceneVersion.VERSION_8));
+        sourceVersion.createSplitter().join(Arrays.asList(first, second), temp, Collections.emptyMap());
+        new IndexUpgrader(temp).upgradeTo(LuceneVersion.VERSION_7);
+
+        // By the time of the swap, the last step has moved every segment into the new index.
+        Path tempPath = temp.resolveSibling(temp.getFileName() + ".tmp");
+        Path oldPath = temp.resolveSibling(temp.getFileName() + ".old");
+        FileUtils.copyDirectory(temp, tempPath);
+        new IndexUpgrader(tempPath).upgradeTo(LuceneVersion.VERSION_8);
+
+        // Dies after moving the original out of the way, before moving the new index into place.
+        UpgradeJournal journal = UpgradeJournal.load(temp);
+        journal.beginStep(LuceneVersion.VERSION_8);
+        journal.beginReplace(tempPath, oldPath);
+        Files.move(temp, oldPath);
+
+        IndexUpgraderConfig config = new IndexUpgraderConfig().setLowDiskUsage(true);
+        new IndexUpgrader(temp, InfoStream.NO_OUTPUT, config).upgradeTo(LuceneVersion.VERSION_8);
+        new IndexUpgrader(second).upgradeTo(LuceneVersion.VERSION_8);
+
+        assertThat(new VersionGuesser().guess(temp), is(LuceneVersion.VERSION_8));
+        assertThat(Files.exists(tempPath), is(false));
+        assertThat(Files.exists(oldPath), is(false));
+        assertThat(Files.exists(temp.resolveSibling(temp.getFileName() + ".upgrade-journal")), is(false));
+        try (Directory directory = FSDirectory.open(temp);
+             DirectoryReader reader = DirectoryReader.open(directory);
+             Directory expectedDirectory = FSDirectory.open(second);
+             DirectoryReader expectedReader = DirectoryReader.open(expectedDirectory)) {
+            assertThat(reader.numDocs(), is(expectedReader.numDocs() * 2));
+        }
+    }
+
+    @Test
+    public void testNonEmptyWithSegmentsAlreadyCurrent() throws Exception {
+        TestIndices.explodeZip(version, "nonempty", temp);
+        assumeTrue(new VersionGuesser().guess(temp).isOlderThan(LuceneVersion.VERSION_8));
+        new IndexUpgrader(temp).upgradeTo(LuceneVersion.VERSION_7);
+
+        // Lucene 8 can add to an index created by Lucene 7, giving a segment which is already current.
+        try (Directory directory = FSDirectory.open(temp);
+             IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig()
+                     .setMergePolicy(NoMergePolicy.INSTANCE))) {
+            writer.addDocument(new Document());
+        }
+        List<SegmentDescription> before = new SegmentCensus().take(temp);
+        assertThat(before.stream().filter(segment -> segment.isAtLeast(LuceneVersion.VERSION_8)).count(), is(1L));
+
+        new IndexUpgrader(temp).upgradeTo(LuceneVersion.VERSION_8);
+
+        List<SegmentDescription> after = new SegmentCensus().take(temp);
+        assertThat(after.stream().allMatch(segment -> segment.isAtLeast(LuceneVersion.VERSION_8)), is(true));
+        assertThat(after.stream().mapToInt(segment -> segment.getDocCount() - segment.getDeletedDocCount()).sum(),
+                   is(before.stream().mapToInt(segment -> segment.getDocCount() - segment.getDeletedDocCount()).sum()));
+    }
+
+    @Test
+    public void testNonEmptyWithOnlyCreatedVersionOld() throws Exception {
+        TestIndices.explodeZip(version, "nonempty", temp);
+        assumeTrue(new VersionGuesser().guess(temp).isOlderThan(LuceneVersion.VERSION_8));
+        new IndexUpgrader(temp).upgradeTo(LuceneVersion.VERSION_7);
+
+        // Replacing all the documents leaves segments which are all current in an index created by Lucene 7.
+        try (Directory directory = FSDirectory.open(temp);
+             IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig())) {
+            writer.deleteAll();
+            writer.addDocument(new Document());
+        }
+        List<SegmentDescription> before = new SegmentCensus().take(temp);
+
+        new IndexUpgrader(temp).upgradeTo(LuceneVersion.VERSION_8);
+
+        // Only the commit is written, so the segments keep their names.
+        List<SegmentDescription> after = new SegmentCensus().take(temp);
+        assertThat(after.stream().map(SegmentDescription::getName).collect(Collectors.toList()),
+                   is(before.stream().map(SegmentDescription::getName).collect(Collectors.toList())));
+        try (Directory directory = FSDirectory.open(temp);
+             DirectoryReader reader = DirectoryReader.open(directory)) {
+            assertThat(reader.getIndexCommit().getSegmentCount(), is(1));
+            assertThat(reader.numDocs(), is(1));
+        }
+    }
 }
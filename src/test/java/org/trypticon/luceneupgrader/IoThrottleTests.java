@@ -0,0 +1,97 @@
+package org.trypticon.luceneupgrader;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link IoThrottle}.
+ */
+public class IoThrottleTests {
+    private static final int MB = 1024 * 1024;
+
+    @Test
+    public void testUnlimitedDoesNotPause() throws Exception {
+        IoThrottle throttle = new IoThrottle();
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < 1024; i++) {
+            assertThat(throttle.pauseForWrite(MB), is(0L));
+        }
+        assertThat(System.nanoTime() - startNanos, is(lessThan(TimeUnit.SECONDS.toNanos(1))));
+    }
+
+    @Test
+    public void testFirstPauseIsForItsOwnBytes() throws Exception {
+        IoThrottle throttle = new IoThrottle().setMaxReadMBPerSec(4);
+        long startNanos = System.nanoTime();
+        throttle.pauseForRead(MB);
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        // 1 MiB at 4 MiB/s, no matter how far the clock's origin is from the time the throttle was made.
+        assertThat(elapsedNanos, is(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(240))));
+        assertThat(elapsedNanos, is(lessThan(TimeUnit.SECONDS.toNanos(5))));
+    }
+
+    @Test
+    public void testWritesKeepToRate() throws Exception {
+        IoThrottle throttle = new IoThrottle().setMaxWriteMBPerSec(4);
+        long startNanos = System.nanoTime();
+        for (int i = 0; i < 32; i++) {
+            throttle.pauseForWrite(IoThrottle.MIN_PAUSE_CHECK_BYTES);
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        // 2 MiB at 4 MiB/s.
+        assertThat(elapsedNanos, is(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(490))));
+    }
+
+    @Test
+    public void testThreadsShareRate() throws Exception {
+        IoThrottle throttle = new IoThrottle().setMaxWriteMBPerSec(4);
+        List<Thread> threads = new ArrayList<>();
+        List<Throwable> failures = new ArrayList<>();
+        long startNanos = System.nanoTime();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 8; i++) {
+                        throttle.pauseForWrite(IoThrottle.MIN_PAUSE_CHECK_BYTES);
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        // 2 MiB in total at 4 MiB/s, however it's spread over the threads.
+        assertThat(failures.isEmpty(), is(true));
+        assertThat(elapsedNanos, is(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(490))));
+    }
+
+    @Test
+    public void testIdleTimeDoesNotBuildUp() throws Exception {
+        IoThrottle throttle = new IoThrottle().setMaxWriteMBPerSec(4);
+        Thread.sleep(500);
+        long startNanos = System.nanoTime();
+        throttle.pauseForWrite(MB);
+        long elapsedNanos = System.nanoTime() - startNanos;
+
+        // The half second spent idle isn't spent on the next write.
+        assertThat(elapsedNanos, is(greaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(240))));
+    }
+}
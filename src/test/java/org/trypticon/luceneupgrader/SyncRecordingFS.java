@@ -0,0 +1,59 @@
+package org.trypticon.luceneupgrader;
+
+import org.apache.lucene.mockfile.FilterFileChannel;
+import org.apache.lucene.mockfile.FilterFileSystemProvider;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.OpenOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileAttribute;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * File system which counts how many times each file and directory is synced to disk, so that
+ * tests can check which syncs an upgrade made. Only paths from {@link #wrap(Path)} are counted.
+ * The Lucene 3 and 4 steps work with {@code File}s, so their syncs go around it.
+ */
+class SyncRecordingFS extends FilterFileSystemProvider {
+    private final Map<Path, Integer> syncCounts = new ConcurrentHashMap<>();
+
+    SyncRecordingFS() {
+        super("syncrecording://", FileSystems.getDefault());
+    }
+
+    /**
+     * Gets the same path on this file system.
+     *
+     * @param path a path on the default file system.
+     * @return the path on this file system.
+     */
+    Path wrap(Path path) {
+        return getFileSystem(null).getPath(path.toString());
+    }
+
+    /**
+     * Gets how many times each path has been synced.
+     *
+     * @return the counts, keyed by the real path on the default file system.
+     */
+    Map<Path, Integer> getSyncCounts() {
+        return syncCounts;
+    }
+
+    @Override
+    public FileChannel newFileChannel(Path path, Set<? extends OpenOption> options,
+                                      FileAttribute<?>... attrs) throws IOException {
+        Path delegatePath = toDelegate(path);
+        return new FilterFileChannel(super.newFileChannel(path, options, attrs)) {
+            @Override
+            public void force(boolean metaData) throws IOException {
+                syncCounts.merge(delegatePath.toRealPath(), 1, Integer::sum);
+                super.force(metaData);
+            }
+        };
+    }
+}
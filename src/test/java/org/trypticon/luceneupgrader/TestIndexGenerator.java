@@ -0,0 +1,139 @@
+package org.trypticon.luceneupgrader;
+
+import org.trypticon.luceneupgrader.lucene3.TestIndexGenerator3;
+import org.trypticon.luceneupgrader.lucene4.TestIndexGenerator4;
+import org.trypticon.luceneupgrader.lucene5.TestIndexGenerator5;
+import org.trypticon.luceneupgrader.lucene6.TestIndexGenerator6;
+import org.trypticon.luceneupgrader.lucene7.TestIndexGenerator7;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Generates indices in the format of one version of Lucene, for tests which need more than the
+ * zipped indices have: plenty of documents, several segments, deletions and points.
+ * <p>
+ * Document {@code n} has:
+ * <ul>
+ *     <li>{@code id}, holding {@code n}, stored and indexed as a single term.</li>
+ *     <li>{@code body}, holding the {@link #words(int) words} for {@code n}, each stored and indexed
+ *         as a single term, with term vectors.</li>
+ *     <li>From Lucene 6 on, {@code value}, holding {@code n} as a long point, if its segment
+ *         {@link #hasPoints(int) has points}, and {@code partial}, holding {@code n} as an int point,
+ *         if its segment {@link #hasPartialPoints(int) has those}.</li>
+ *     <li>In Lucene 6, which Lucene 8 can read through Lucene 7's codecs, {@code text}, holding the
+ *         same words as {@code body}, indexed with positions, offsets and norms, with payloads on
+ *         every other word, and with term vectors of all of those. Also, if the document
+ *         {@link #hasDocValues(int) has doc values}, a field for each type of doc value: {@code number},
+ *         {@code binary}, {@code sorted}, {@code sortedset} and {@code sortednumeric}.</li>
+ * </ul>
+ * Each segment is committed before the next one is started, and nothing is merged. Once every
+ * document has been added, the ones which are {@link #isDeleted(int) to be deleted} are deleted.
+ */
+public abstract class TestIndexGenerator {
+
+    /**
+     * Gets the generator for a version.
+     *
+     * @param version the version.
+     * @return the generator.
+     */
+    public static TestIndexGenerator forVersion(LuceneVersion version) {
+        switch (version) {
+            case VERSION_3:
+                return new TestIndexGenerator3();
+            case VERSION_4:
+                return new TestIndexGenerator4();
+            case VERSION_5:
+                return new TestIndexGenerator5();
+            case VERSION_6:
+                return new TestIndexGenerator6();
+            case VERSION_7:
+                return new TestIndexGenerator7();
+            default:
+                throw new IllegalArgumentException("Can't generate indices for " + version);
+        }
+    }
+
+    /**
+     * Generates an index.
+     *
+     * @param directory the directory to generate the index in.
+     * @param docCount the number of documents, counting the ones which get deleted.
+     * @param segmentCount the number of segments to split the documents between, in order.
+     * @throws IOException if an error occurs writing the index.
+     */
+    public abstract void generate(Path directory, int docCount, int segmentCount) throws IOException;
+
+    /**
+     * Works out which segment a document goes in.
+     *
+     * @param doc the document.
+     * @param docCount the number of documents.
+     * @param segmentCount the number of segments.
+     * @return the segment, counting from 0.
+     */
+    public static int segment(int doc, int docCount, int segmentCount) {
+        return (int) ((long) doc * segmentCount / docCount);
+    }
+
+    /**
+     * Gets the words in the body of a document. Different documents share some words but not others,
+     * and some words come up more than once in the same document.
+     *
+     * @param doc the document.
+     * @return the words.
+     */
+    public static String[] words(int doc) {
+        String[] words = new String[4 + doc % 7];
+        for (int i = 0; i < words.length; i++) {
+            words[i] = i % 3 == 2 ? "common" + (doc % 5) : "word" + ((doc * 7 + i * 13) % 101) + "x" + doc;
+        }
+        return words;
+    }
+
+    /**
+     * Tests whether a document gets deleted. A few documents are deleted in each run of a few hundred,
+     * so that some of the compressed chunks of stored fields and term vectors have deletions and
+     * others don't.
+     *
+     * @param doc the document.
+     * @return {@code true} if it gets deleted.
+     */
+    public static boolean isDeleted(int doc) {
+        return doc % 400 < 4;
+    }
+
+    /**
+     * Tests whether a document has doc values, where the generator adds them. Every tenth document
+     * has none.
+     *
+     * @param doc the document.
+     * @return {@code true} if it has them.
+     */
+    public static boolean hasDocValues(int doc) {
+        return doc % 10 != 9;
+    }
+
+    /**
+     * Tests whether the documents in a segment have {@code value} points. Every third segment has
+     * no points at all.
+     *
+     * @param segment the segment.
+     * @return {@code true} if the documents have them.
+     */
+    public static boolean hasPoints(int segment) {
+        return segment % 3 != 1;
+    }
+
+    /**
+     * Tests whether the documents in a segment have {@code partial} points, which only the first
+     * segment does.
+     *
+     * @param segment the segment.
+     * @return {@code true} if the documents have them.
+     */
+    public static boolean hasPartialPoints(int segment) {
+        return segment == 0;
+    }
+}
@@ -0,0 +1,52 @@
+package org.trypticon.luceneupgrader.lucene3;
+
+import org.trypticon.luceneupgrader.TestIndexGenerator;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.document.Document;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.document.Field;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.index.IndexWriter;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.index.IndexWriterConfig;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.index.NoMergePolicy;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.index.Term;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.Directory;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.store.FSDirectory;
+import org.trypticon.luceneupgrader.lucene3.internal.lucene.util.Version;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Generates Lucene 3 indices for tests.
+ */
+public class TestIndexGenerator3 extends TestIndexGenerator {
+    @Override
+    public void generate(Path directory, int docCount, int segmentCount) throws IOException {
+        // Nothing is tokenised, so nothing needs analysing.
+        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(Version.LUCENE_36, null)
+            .setMergePolicy(NoMergePolicy.NO_COMPOUND_FILES);
+        try (Directory dir = FSDirectory.open(directory.toFile());
+             IndexWriter writer = new IndexWriter(dir, indexWriterConfig)) {
+            for (int doc = 0; doc < docCount; doc++) {
+                if (doc > 0 && segment(doc, docCount, segmentCount) != segment(doc - 1, docCount, segmentCount)) {
+                    writer.commit();
+                }
+                writer.addDocument(createDocument(doc));
+            }
+            for (int doc = 0; doc < docCount; doc++) {
+                if (isDeleted(doc)) {
+                    writer.deleteDocuments(new Term("id", Integer.toString(doc)));
+                }
+            }
+            writer.commit();
+        }
+    }
+
+    private static Document createDocument(int doc) {
+        Document document = new Document();
+        document.add(new Field("id", Integer.toString(doc), Field.Store.YES, Field.Index.NOT_ANALYZED_NO_NORMS));
+        for (String word : words(doc)) {
+            document.add(new Field("body", word, Field.Store.YES, Field.Index.NOT_ANALYZED,
+                                   Field.TermVector.WITH_POSITIONS_OFFSETS));
+        }
+        return document;
+    }
+}
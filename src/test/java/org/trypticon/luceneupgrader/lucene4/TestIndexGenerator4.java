@@ -0,0 +1,61 @@
+package org.trypticon.luceneupgrader.lucene4;
+
+import org.trypticon.luceneupgrader.TestIndexGenerator;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.document.Document;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.document.Field;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.document.FieldType;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.document.StringField;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.index.IndexWriter;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.index.IndexWriterConfig;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.index.NoMergePolicy;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.index.Term;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.store.Directory;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.store.FSDirectory;
+import org.trypticon.luceneupgrader.lucene4.internal.lucene.util.Version;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Generates Lucene 4 indices for tests.
+ */
+public class TestIndexGenerator4 extends TestIndexGenerator {
+    private static final FieldType BODY_TYPE = new FieldType(StringField.TYPE_STORED);
+    static {
+        BODY_TYPE.setStoreTermVectors(true);
+        BODY_TYPE.setStoreTermVectorPositions(true);
+        BODY_TYPE.setStoreTermVectorOffsets(true);
+        BODY_TYPE.freeze();
+    }
+
+    @Override
+    public void generate(Path directory, int docCount, int segmentCount) throws IOException {
+        // Nothing is tokenised, so nothing needs analysing.
+        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(Version.LUCENE_4_10_4, null)
+            .setMergePolicy(NoMergePolicy.INSTANCE);
+        try (Directory dir = FSDirectory.open(directory.toFile());
+             IndexWriter writer = new IndexWriter(dir, indexWriterConfig)) {
+            for (int doc = 0; doc < docCount; doc++) {
+                if (doc > 0 && segment(doc, docCount, segmentCount) != segment(doc - 1, docCount, segmentCount)) {
+                    writer.commit();
+                }
+                writer.addDocument(createDocument(doc));
+            }
+            for (int doc = 0; doc < docCount; doc++) {
+                if (isDeleted(doc)) {
+                    writer.deleteDocuments(new Term("id", Integer.toString(doc)));
+                }
+            }
+            writer.commit();
+        }
+    }
+
+    private static Document createDocument(int doc) {
+        Document document = new Document();
+        document.add(new StringField("id", Integer.toString(doc), Field.Store.YES));
+        for (String word : words(doc)) {
+            document.add(new Field("body", word, BODY_TYPE));
+        }
+        return document;
+    }
+}
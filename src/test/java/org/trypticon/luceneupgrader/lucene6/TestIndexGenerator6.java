@@ -0,0 +1,216 @@
+package org.trypticon.luceneupgrader.lucene6;
+
+import org.trypticon.luceneupgrader.TestIndexGenerator;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.analysis.Analyzer;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.analysis.TokenStream;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.analysis.tokenattributes.OffsetAttribute;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.analysis.tokenattributes.PayloadAttribute;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.document.BinaryDocValuesField;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.document.Document;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.document.Field;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.document.FieldType;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.document.IntPoint;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.document.LongPoint;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.document.NumericDocValuesField;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.document.SortedDocValuesField;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.document.SortedNumericDocValuesField;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.document.SortedSetDocValuesField;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.document.StringField;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.document.TextField;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.index.IndexOptions;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.index.IndexFileNames;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.index.IndexWriter;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.index.IndexWriterConfig;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.index.NoMergePolicy;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.index.SegmentCommitInfo;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.index.SegmentInfos;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.index.Term;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.Directory;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.FSDirectory;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.IOContext;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.store.IndexInput;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.util.BytesRef;
+import org.trypticon.luceneupgrader.lucene6.internal.lucene.util.StringHelper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Generates Lucene 6 indices for tests, and reads back the files which tests compare with upgraded ones.
+ */
+public class TestIndexGenerator6 extends TestIndexGenerator {
+    private static final Set<String> STORED_FIELDS_AND_VECTORS_EXTENSIONS =
+        new HashSet<>(Arrays.asList("fdt", "fdx", "tvd", "tvx"));
+
+    private static final FieldType BODY_TYPE = new FieldType(StringField.TYPE_STORED);
+    static {
+        BODY_TYPE.setStoreTermVectors(true);
+        BODY_TYPE.setStoreTermVectorPositions(true);
+        BODY_TYPE.setStoreTermVectorOffsets(true);
+        BODY_TYPE.freeze();
+    }
+
+    private static final FieldType TEXT_TYPE = new FieldType(TextField.TYPE_NOT_STORED);
+    static {
+        TEXT_TYPE.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS_AND_OFFSETS);
+        TEXT_TYPE.setStoreTermVectors(true);
+        TEXT_TYPE.setStoreTermVectorPositions(true);
+        TEXT_TYPE.setStoreTermVectorOffsets(true);
+        TEXT_TYPE.setStoreTermVectorPayloads(true);
+        TEXT_TYPE.freeze();
+    }
+
+    @Override
+    public void generate(Path directory, int docCount, int segmentCount) throws IOException {
+        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(new NoAnalyzer())
+            .setMergePolicy(NoMergePolicy.INSTANCE);
+        try (Directory dir = FSDirectory.open(directory);
+             IndexWriter writer = new IndexWriter(dir, indexWriterConfig)) {
+            for (int doc = 0; doc < docCount; doc++) {
+                if (doc > 0 && segment(doc, docCount, segmentCount) != segment(doc - 1, docCount, segmentCount)) {
+                    writer.commit();
+                }
+                writer.addDocument(createDocument(doc, segment(doc, docCount, segmentCount)));
+            }
+            for (int doc = 0; doc < docCount; doc++) {
+                if (isDeleted(doc)) {
+                    writer.deleteDocuments(new Term("id", Integer.toString(doc)));
+                }
+            }
+            writer.commit();
+        }
+    }
+
+    private static Document createDocument(int doc, int segment) {
+        Document document = new Document();
+        document.add(new StringField("id", Integer.toString(doc), Field.Store.YES));
+        for (String word : words(doc)) {
+            document.add(new Field("body", word, BODY_TYPE));
+        }
+        if (hasPoints(segment)) {
+            document.add(new LongPoint("value", doc));
+        }
+        if (hasPartialPoints(segment)) {
+            document.add(new IntPoint("partial", doc));
+        }
+        document.add(new Field("text", new WordsTokenStream(doc), TEXT_TYPE));
+        if (hasDocValues(doc)) {
+            String[] words = words(doc);
+            document.add(new NumericDocValuesField("number", doc * 3L));
+            document.add(new BinaryDocValuesField("binary", new BytesRef(words[0])));
+            document.add(new SortedDocValuesField("sorted", new BytesRef(words[2])));
+            for (String word : words) {
+                document.add(new SortedSetDocValuesField("sortedset", new BytesRef(word)));
+            }
+            document.add(new SortedNumericDocValuesField("sortednumeric", doc % 7));
+            document.add(new SortedNumericDocValuesField("sortednumeric", -doc));
+        }
+        return document;
+    }
+
+    /**
+     * Reads the stored fields and term vectors files of every segment in an index, which the
+     * later steps can reuse as they are.
+     *
+     * @param directory the index directory.
+     * @return the contents of the files, keyed by segment ID and the file name without the segment name.
+     * @throws IOException if an error occurs reading the index.
+     */
+    public static Map<String, ByteBuffer> storedFieldsAndVectorsFiles(Path directory) throws IOException {
+        Map<String, ByteBuffer> files = new TreeMap<>();
+        try (Directory dir = FSDirectory.open(directory)) {
+            for (SegmentCommitInfo info : SegmentInfos.readLatestCommit(dir)) {
+                Directory segmentDir = info.info.getUseCompoundFile()
+                    ? info.info.getCodec().compoundFormat().getCompoundReader(dir, info.info, IOContext.READONCE)
+                    : dir;
+                try {
+                    Collection<String> segmentFiles = info.info.getUseCompoundFile()
+                        ? Arrays.asList(segmentDir.listAll())
+                        : info.files();
+                    for (String file : segmentFiles) {
+                        if (STORED_FIELDS_AND_VECTORS_EXTENSIONS.contains(IndexFileNames.getExtension(file))) {
+                            try (IndexInput input = segmentDir.openInput(file, IOContext.READONCE)) {
+                                byte[] bytes = new byte[(int) input.length()];
+                                input.readBytes(bytes, 0, bytes.length);
+                                files.put(StringHelper.idToString(info.info.getId()) + IndexFileNames.stripSegmentName(file),
+                                          ByteBuffer.wrap(bytes));
+                            }
+                        }
+                    }
+                } finally {
+                    if (segmentDir != dir) {
+                        segmentDir.close();
+                    }
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Token stream for the {@code text} field, giving the words for a document with their offsets,
+     * and a payload on every other word.
+     */
+    private static class WordsTokenStream extends TokenStream {
+        private final CharTermAttribute termAttribute = addAttribute(CharTermAttribute.class);
+        private final OffsetAttribute offsetAttribute = addAttribute(OffsetAttribute.class);
+        private final PayloadAttribute payloadAttribute = addAttribute(PayloadAttribute.class);
+        private final int doc;
+        private final String[] words;
+        private int index;
+        private int offset;
+
+        private WordsTokenStream(int doc) {
+            this.doc = doc;
+            this.words = words(doc);
+        }
+
+        @Override
+        public boolean incrementToken() {
+            if (index == words.length) {
+                return false;
+            }
+            clearAttributes();
+            String word = words[index];
+            termAttribute.setEmpty().append(word);
+            offsetAttribute.setOffset(offset, offset + word.length());
+            if (index % 2 == 1) {
+                payloadAttribute.setPayload(new BytesRef(doc + "/" + index));
+            }
+            index++;
+            offset += word.length() + 1;
+            return true;
+        }
+
+        @Override
+        public void end() throws IOException {
+            super.end();
+            offsetAttribute.setOffset(offset, offset);
+        }
+
+        @Override
+        public void reset() throws IOException {
+            super.reset();
+            index = 0;
+            offset = 0;
+        }
+    }
+
+    /**
+     * An analyser which fails, because nothing is tokenised.
+     */
+    private static class NoAnalyzer extends Analyzer {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            throw new UnsupportedOperationException("Nothing should need analysing");
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.trypticon.luceneupgrader.lucene7;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.codecs.CodecUtil;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.index.CorruptIndexException;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.ByteBuffersDirectory;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.Directory;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.FilterDirectory;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.IOContext;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.IndexInput;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.IndexOutput;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests for {@link ChecksumVerifyingDirectory}, reading a file the way a merge might and checking
+ * that a flipped byte fails verification wherever it is.
+ */
+public class ChecksumVerifyingDirectoryTests {
+    private static final int DATA_LENGTH = 4 * 1024 * 1024;
+
+    private Directory directory;
+    private long dataStart;
+
+    @Before
+    public void setUp() throws Exception {
+        directory = new ByteBuffersDirectory();
+        byte[] bytes;
+        try (IndexOutput output = directory.createOutput("clean", IOContext.DEFAULT)) {
+            CodecUtil.writeHeader(output, "Test", 0);
+            dataStart = output.getFilePointer();
+            for (int i = 0; i < DATA_LENGTH; i++) {
+                output.writeByte((byte) (i * 31));
+            }
+            CodecUtil.writeFooter(output);
+        }
+        try (IndexInput input = directory.openInput("clean", IOContext.READONCE)) {
+            bytes = new byte[(int) input.length()];
+            input.readBytes(bytes, 0, bytes.length);
+        }
+        for (int position : new int[] { 1000, 1050, DATA_LENGTH / 4, DATA_LENGTH / 2 }) {
+            bytes[(int) dataStart + position] ^= 0x5a;
+            try (IndexOutput output = directory.createOutput("corrupt" + position, IOContext.DEFAULT)) {
+                output.writeBytes(bytes, bytes.length);
+            }
+            bytes[(int) dataStart + position] ^= 0x5a;
+        }
+    }
+
+    @Test
+    public void testNothingRead() throws Exception {
+        // Everything is read at verify time.
+        assertVerifies("clean", input -> { });
+        assertFailsVerify("corrupt" + DATA_LENGTH / 2, input -> { });
+    }
+
+    @Test
+    public void testReadInOrder() throws Exception {
+        assertVerifies("clean", input -> read(input, 0, DATA_LENGTH));
+        assertFailsVerify("corrupt" + DATA_LENGTH / 2, input -> read(input, 0, DATA_LENGTH));
+    }
+
+    @Test
+    public void testSmallGapFilledStraightAway() throws Exception {
+        Reads reads = input -> {
+            read(input, 0, 1000);
+            read(input, 1100, DATA_LENGTH - 1100);
+        };
+        assertVerifies("clean", reads);
+        assertFailsVerify("corrupt1050", reads);
+    }
+
+    @Test
+    public void testLargeGapFilledAtVerify() throws Exception {
+        // Like a tree whose root was written last and read first. The gap is too big to fill straight
+        // away, so the reads after it don't count until verification reads the bytes before them.
+        Reads reads = input -> {
+            read(input, 0, 1000);
+            read(input, DATA_LENGTH / 2, DATA_LENGTH / 2);
+        };
+        assertVerifies("clean", reads);
+        assertFailsVerify("corrupt" + DATA_LENGTH / 4, reads);
+    }
+
+    @Test
+    public void testLargeGapReadLater() throws Exception {
+        Reads reads = input -> {
+            read(input, DATA_LENGTH / 2, DATA_LENGTH / 2);
+            read(input, 0, DATA_LENGTH / 2);
+        };
+        assertVerifies("clean", reads);
+        assertFailsVerify("corrupt" + DATA_LENGTH / 4, reads);
+        assertFailsVerify("corrupt1000", reads);
+    }
+
+    @Test
+    public void testFailureIsKept() throws Exception {
+        try (ChecksumVerifyingDirectory verifying = verifyingDirectory()) {
+            open(verifying, "corrupt1000", input -> read(input, 0, DATA_LENGTH));
+            for (int attempt = 0; attempt < 2; attempt++) {
+                try {
+                    verifying.sync(Collections.singleton("corrupt1000"));
+                    throw new AssertionError("Expected a CorruptIndexException");
+                } catch (CorruptIndexException e) {
+                    // Expected, every time a commit is tried.
+                }
+            }
+        }
+    }
+
+    private void assertVerifies(String name, Reads reads) throws IOException {
+        try (ChecksumVerifyingDirectory verifying = verifyingDirectory()) {
+            open(verifying, name, reads);
+            verifying.verify();
+        }
+    }
+
+    private void assertFailsVerify(String name, Reads reads) throws IOException {
+        try (ChecksumVerifyingDirectory verifying = verifyingDirectory()) {
+            open(verifying, name, reads);
+            try {
+                verifying.verify();
+                throw new AssertionError("Expected a CorruptIndexException for " + name);
+            } catch (CorruptIndexException e) {
+                assertThat(e.getMessage().contains("checksum failed"), is(true));
+            }
+        }
+    }
+
+    private ChecksumVerifyingDirectory verifyingDirectory() {
+        // Closing it closes the files it opened to fill in gaps, but leaves the files themselves.
+        return new ChecksumVerifyingDirectory(new FilterDirectory(directory) {
+            @Override
+            public void close() {
+            }
+        });
+    }
+
+    private void open(ChecksumVerifyingDirectory verifying, String name, Reads reads) throws IOException {
+        try (IndexInput input = verifying.openInput(name, IOContext.DEFAULT)) {
+            // Only noted, the way a merge asks for it before reading.
+            CodecUtil.checksumEntireFile(input);
+            CodecUtil.checkHeader(input, "Test", 0, 0);
+            reads.read(input);
+        }
+    }
+
+    private void read(IndexInput input, long position, int length) throws IOException {
+        input.seek(dataStart + position);
+        byte[] buffer = new byte[8192];
+        for (int remaining = length; remaining > 0; remaining -= buffer.length) {
+            input.readBytes(buffer, 0, Math.min(buffer.length, remaining));
+        }
+    }
+
+    /**
+     * Reads made from a file after its checksum was asked to be checked.
+     */
+    private interface Reads {
+        void read(IndexInput input) throws IOException;
+    }
+}
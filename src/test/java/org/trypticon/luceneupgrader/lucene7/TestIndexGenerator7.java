@@ -0,0 +1,78 @@
+package org.trypticon.luceneupgrader.lucene7;
+
+import org.trypticon.luceneupgrader.TestIndexGenerator;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.analysis.Analyzer;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.document.Document;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.document.Field;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.document.FieldType;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.document.IntPoint;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.document.LongPoint;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.document.StringField;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.index.IndexWriter;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.index.IndexWriterConfig;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.index.NoMergePolicy;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.index.Term;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.Directory;
+import org.trypticon.luceneupgrader.lucene7.internal.lucene.store.FSDirectory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Generates Lucene 7 indices for tests.
+ */
+public class TestIndexGenerator7 extends TestIndexGenerator {
+    private static final FieldType BODY_TYPE = new FieldType(StringField.TYPE_STORED);
+    static {
+        BODY_TYPE.setStoreTermVectors(true);
+        BODY_TYPE.setStoreTermVectorPositions(true);
+        BODY_TYPE.setStoreTermVectorOffsets(true);
+        BODY_TYPE.freeze();
+    }
+
+    @Override
+    public void generate(Path directory, int docCount, int segmentCount) throws IOException {
+        IndexWriterConfig indexWriterConfig = new IndexWriterConfig(new NoAnalyzer())
+            .setMergePolicy(NoMergePolicy.INSTANCE);
+        try (Directory dir = FSDirectory.open(directory);
+             IndexWriter writer = new IndexWriter(dir, indexWriterConfig)) {
+            for (int doc = 0; doc < docCount; doc++) {
+                if (doc > 0 && segment(doc, docCount, segmentCount) != segment(doc - 1, docCount, segmentCount)) {
+                    writer.commit();
+                }
+                writer.addDocument(createDocument(doc, segment(doc, docCount, segmentCount)));
+            }
+            for (int doc = 0; doc < docCount; doc++) {
+                if (isDeleted(doc)) {
+                    writer.deleteDocuments(new Term("id", Integer.toString(doc)));
+                }
+            }
+            writer.commit();
+        }
+    }
+
+    private static Document createDocument(int doc, int segment) {
+        Document document = new Document();
+        document.add(new StringField("id", Integer.toString(doc), Field.Store.YES));
+        for (String word : words(doc)) {
+            document.add(new Field("body", word, BODY_TYPE));
+        }
+        if (hasPoints(segment)) {
+            document.add(new LongPoint("value", doc));
+        }
+        if (hasPartialPoints(segment)) {
+            document.add(new IntPoint("partial", doc));
+        }
+        return document;
+    }
+
+    /**
+     * An analyser which fails, because nothing is tokenised.
+     */
+    private static class NoAnalyzer extends Analyzer {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            throw new UnsupportedOperationException("Nothing should need analysing");
+        }
+    }
+}